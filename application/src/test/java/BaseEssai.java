@@ -0,0 +1,49 @@
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bases H2 en mémoire pour les tests : chaque base reçoit le schéma de reset-h2.sql, comme
+ * la base embarquée, et vit jusqu'à la fin de la JVM.
+ */
+final class BaseEssai {
+
+    private static final AtomicInteger NUMERO = new AtomicInteger();
+
+    private BaseEssai() {
+    }
+
+    /**
+     * Crée une base neuve.
+     *
+     * @param nom Le début du nom de la base, pour la reconnaître dans les messages
+     * @param exemples Vrai pour charger les données d'exemple
+     * @return L'URL JDBC de la base
+     */
+    static String nouvelle(String nom, boolean exemples) throws SQLException {
+        String url = "jdbc:h2:mem:" + nom + "-" + NUMERO.incrementAndGet() + ";MODE=Oracle;DB_CLOSE_DELAY=-1";
+        try (Connection conn = DriverManager.getConnection(url, "sa", "")) {
+            StockageEmbarque.creerSchema(conn, exemples);
+        }
+        return url;
+    }
+
+    /**
+     * Crée une base neuve et la donne à {@link DatabaseConnection} par un pool de la taille demandée.
+     *
+     * @return Le pool installé
+     */
+    static ConnectionPool installer(String nom, boolean exemples, int taille) throws SQLException {
+        ConnectionPool pool = new ConnectionPool(nouvelle(nom, exemples), "sa", "", taille, 5_000, 0, 0);
+        DatabaseConnection.setPool(pool);
+        return pool;
+    }
+
+    /**
+     * @return Une connexion directe, hors pool
+     */
+    static Connection directe(String url) throws SQLException {
+        return DriverManager.getConnection(url, "sa", "");
+    }
+}
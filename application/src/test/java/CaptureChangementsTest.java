@@ -0,0 +1,177 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CaptureChangementsTest {
+
+    @TempDir
+    Path dossier;
+
+    private ConnectionPool pool;
+    private Path fichier;
+    private final List<CaptureChangements.Changement> recus = new ArrayList<>();
+
+    @BeforeEach
+    void preparer() throws SQLException {
+        pool = BaseEssai.installer("cdc", false, 4);
+        fichier = dossier.resolve("cdc-essai.point");
+    }
+
+    @AfterEach
+    void fermer() {
+        JournalAudit.fermerPartage();
+        DatabaseConnection.closeConnection();
+    }
+
+    private CaptureChangements capture(long attenteMs) {
+        CaptureChangements capture = new CaptureChangements("essai", fichier, 100, 10, attenteMs);
+        capture.abonner(recus::addAll);
+        return capture;
+    }
+
+    /** Ajoute une entrée au journal dans la transaction de la connexion ; retourne sa clé. */
+    private static long tracer(Connection conn, int recordId) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "INSERT INTO Trace (table_name, operation_type, record_id, tracking_number) VALUES ('Auteur', 'DELETE', ?, ?)",
+                new String[] {"id_trace"})) {
+            pstmt.setInt(1, recordId);
+            pstmt.setInt(2, recordId);
+            pstmt.executeUpdate();
+            try (java.sql.ResultSet rs = pstmt.getGeneratedKeys()) {
+                rs.next();
+                return rs.getLong(1);
+            }
+        }
+    }
+
+    private long tracer(int recordId) throws SQLException {
+        try (Connection conn = pool.emprunter()) {
+            return tracer(conn, recordId);
+        }
+    }
+
+    private String point() throws Exception {
+        return new String(Files.readAllBytes(fichier), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void lesChangementsSontTransmisAvecLEtatDeLaLigne() throws Exception {
+        CaptureChangements capture = capture(30_000);
+        assertEquals(0, capture.tour());
+
+        int idAuteur;
+        try (Connection conn = pool.emprunter()) {
+            idAuteur = new AuteurRepository(conn).ajouter(new Main.Auteur("Julie Roy", "julie@exemple.ca", null));
+        }
+        tracer(99);
+
+        assertEquals(2, capture.tour());
+        assertEquals("INSERT", recus.get(0).operation_type);
+        assertEquals(idAuteur, recus.get(0).record_id);
+        assertEquals("Julie Roy", recus.get(0).ligne.get("nom"));
+        assertEquals("DELETE", recus.get(1).operation_type);
+        assertNull(recus.get(1).ligne);
+        assertTrue(recus.get(0).id_trace < recus.get(1).id_trace);
+    }
+
+    @Test
+    void laCaptureRepartDeSonPointDeReprise() throws Exception {
+        assertEquals(0, capture(30_000).tour());
+        tracer(1);
+        tracer(2);
+        long derniere = tracer(3);
+        assertEquals(3, capture(30_000).tour());
+        assertEquals(derniere + "\n", point());
+
+        // Une nouvelle capture ne retransmet pas ce qui a déjà été transmis
+        recus.clear();
+        CaptureChangements reprise = capture(30_000);
+        assertEquals(0, reprise.tour());
+        long suivante = tracer(4);
+        assertEquals(1, reprise.tour());
+        assertEquals(suivante, recus.get(0).id_trace);
+    }
+
+    @Test
+    void unLotRefuseEstRetransmis() throws Exception {
+        CaptureChangements capture = capture(30_000);
+        capture.tour();
+        AtomicInteger essais = new AtomicInteger();
+        capture.abonner(changements -> {
+            if (essais.incrementAndGet() == 1) {
+                throw new IllegalStateException("abonné indisponible");
+            }
+        });
+        tracer(1);
+        String avant = point();
+
+        assertThrows(IllegalStateException.class, capture::tour);
+        assertEquals(avant, point());
+        assertEquals(1, capture.tour());
+        assertEquals(2, essais.get());
+        // Le premier abonné a reçu le lot deux fois : livraison au moins une fois
+        assertEquals(2, recus.size());
+        assertEquals(recus.get(0).id_trace, recus.get(1).id_trace);
+    }
+
+    @Test
+    void uneEntreeValideeEnRetardEstTransmiseMemeApresLAttente() throws Exception {
+        CaptureChangements capture = capture(0);
+        capture.tour();
+        try (Connection lente = pool.emprunter()) {
+            lente.setAutoCommit(false);
+            long retard = tracer(lente, 1);
+            long suivante = tracer(2);
+
+            assertEquals(1, capture.tour());
+            assertEquals(suivante, recus.get(0).id_trace);
+            assertEquals(suivante + "\n" + retard + "-" + retard + "\n", point());
+
+            // L'attente est écoulée, mais la transaction qui tient la clé est encore ouverte
+            Thread.sleep(20);
+            assertEquals(0, capture.tour());
+            assertTrue(capture.toString().contains("trous=1"), capture.toString());
+
+            lente.commit();
+            assertEquals(1, capture.tour());
+            assertEquals(retard, recus.get(1).id_trace);
+        }
+        assertTrue(capture.toString().contains("trous=0, "), capture.toString());
+        assertTrue(capture.toString().contains("retards=1, abandonnees=0"), capture.toString());
+    }
+
+    @Test
+    void unTrouEstAttenduPuisAbandonne() throws Exception {
+        CaptureChangements capture = capture(200);
+        capture.tour();
+        try (Connection annulee = pool.emprunter()) {
+            annulee.setAutoCommit(false);
+            tracer(annulee, 1);
+            annulee.rollback();
+        }
+        long suivante = tracer(2);
+        assertEquals(1, capture.tour());
+        assertEquals(0, capture.tour());
+        assertTrue(capture.toString().contains("trous=1"), capture.toString());
+
+        // Aucune transaction ouverte ne peut plus le combler : abandonné après l'attente
+        Thread.sleep(250);
+        assertEquals(0, capture.tour());
+        assertTrue(capture.toString().contains("trous=0, "), capture.toString());
+        assertTrue(capture.toString().contains("abandonnees=1"), capture.toString());
+        assertEquals(suivante + "\n", point());
+    }
+}
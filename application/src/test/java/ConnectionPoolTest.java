@@ -0,0 +1,213 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConnectionPoolTest {
+
+    private final List<ConnectionPool> pools = new ArrayList<>();
+
+    @AfterEach
+    void fermer() {
+        pools.forEach(ConnectionPool::fermer);
+    }
+
+    private ConnectionPool pool(int taille, long delaiInactiviteMs, long delaiFuiteMs) throws SQLException {
+        ConnectionPool pool = new ConnectionPool(BaseEssai.nouvelle("pool", false), "sa", "", taille,
+                300, delaiInactiviteMs, delaiFuiteMs);
+        pools.add(pool);
+        return pool;
+    }
+
+    @Test
+    void leNombreDeConnexionsEstBorne() throws Exception {
+        ConnectionPool pool = pool(2, 0, 0);
+        Connection a = pool.emprunter();
+        Connection b = pool.emprunter();
+
+        assertThrows(SQLTimeoutException.class, pool::emprunter);
+        assertEquals(1, pool.statistiques().delaisDepasses);
+        assertEquals(2, pool.statistiques().actives);
+
+        a.close();
+        try (Connection c = pool.emprunter()) {
+            assertFalse(c.isClosed());
+        }
+        b.close();
+        assertEquals(2, pool.statistiques().creations);
+    }
+
+    @Test
+    void closeRendLaConnexionAuPool() throws Exception {
+        ConnectionPool pool = pool(2, 0, 0);
+        Connection conn = pool.emprunter();
+        conn.close();
+
+        assertTrue(conn.isClosed());
+        assertThrows(SQLException.class, conn::createStatement);
+        assertEquals(0, pool.statistiques().actives);
+        assertEquals(1, pool.statistiques().libres);
+        assertEquals(0, pool.statistiques().destructions);
+
+        // La connexion physique est réutilisée
+        try (Connection deuxieme = pool.emprunter()) {
+            assertNotSame(conn, deuxieme);
+        }
+        assertEquals(1, pool.statistiques().creations);
+        assertEquals(2, pool.statistiques().retours);
+    }
+
+    @Test
+    void lesRequetesNeDonnentPasAccesALaConnexionPhysique() throws Exception {
+        ConnectionPool pool = pool(1, 0, 0);
+        PreparedStatement enCache;
+        try (Connection conn = pool.emprunter()) {
+            conn.setAutoCommit(false);
+            try (Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate("INSERT INTO Ingredient (nom, cote_sante) VALUES ('Sel', 1)");
+                // Fermer la connexion de la requête rend l'emprunt au pool et annule la transaction
+                stmt.getConnection().close();
+            }
+            assertTrue(conn.isClosed());
+        }
+        assertEquals(1, pool.statistiques().retours);
+        assertEquals(0, pool.statistiques().destructions);
+
+        try (Connection conn = pool.emprunter()) {
+            enCache = StatementCache.pour(conn).preparer("SELECT COUNT(*) FROM Ingredient");
+            try (ResultSet rs = enCache.executeQuery()) {
+                rs.next();
+                assertEquals(0, rs.getInt(1));
+            }
+            assertFalse(enCache.getConnection().isClosed());
+        }
+        // Une requête en cache survit à l'emprunt, pas l'accès à la connexion
+        assertThrows(SQLException.class, () -> enCache.getConnection().createStatement());
+        assertEquals(1, pool.statistiques().libres);
+    }
+
+    @Test
+    void uneTransactionOuverteEstAnnuleeAuRetour() throws Exception {
+        ConnectionPool pool = pool(1, 0, 0);
+        try (Connection conn = pool.emprunter()) {
+            conn.setAutoCommit(false);
+            try (Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate("INSERT INTO Ingredient (nom, cote_sante) VALUES ('Sel', 1)");
+            }
+        }
+        try (Connection conn = pool.emprunter();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM Ingredient")) {
+            assertTrue(conn.getAutoCommit());
+            rs.next();
+            assertEquals(0, rs.getInt(1));
+        }
+    }
+
+    @Test
+    void uneConnexionInvalideEstRemplaceeALEmprunt() throws Exception {
+        ConnectionPool pool = pool(2, 0, 0);
+        Connection tueuse = pool.emprunter();
+        int session;
+        try (Connection victime = pool.emprunter();
+             Statement stmt = victime.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT SESSION_ID()")) {
+            rs.next();
+            session = rs.getInt(1);
+        }
+        // Une connexion libre depuis plus d'une seconde est validée avant d'être prêtée
+        Thread.sleep(1_100);
+        try (Statement stmt = tueuse.createStatement()) {
+            stmt.execute("CALL ABORT_SESSION(" + session + ")");
+        }
+
+        try (Connection conn = pool.emprunter();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT 1 FROM DUAL")) {
+            assertTrue(rs.next());
+        }
+        tueuse.close();
+        assertEquals(1, pool.statistiques().echecsValidation);
+        assertEquals(1, pool.statistiques().destructions);
+        assertEquals(3, pool.statistiques().creations);
+    }
+
+    @Test
+    void lesConnexionsInactivesSontFermees() throws Exception {
+        ConnectionPool pool = pool(2, 1_000, 0);
+        pool.emprunter().close();
+        assertEquals(1, pool.statistiques().libres);
+
+        attendre(() -> pool.statistiques().libres == 0, 5_000);
+        assertEquals(1, pool.statistiques().destructions);
+    }
+
+    @Test
+    void unEmpruntTropLongEstSignaleCommeFuite() throws Exception {
+        ConnectionPool pool = pool(2, 0, 1_000);
+        try (Connection conn = pool.emprunter()) {
+            attendre(() -> pool.statistiques().fuites == 1, 5_000);
+            assertFalse(conn.isClosed());
+        }
+        assertEquals(1, pool.statistiques().fuites);
+        assertEquals(0, pool.statistiques().actives);
+    }
+
+    @Test
+    void lesActionsDiffereesSuiventLaTransaction() throws Exception {
+        ConnectionPool pool = pool(1, 0, 0);
+        List<String> faites = new ArrayList<>();
+        try (Connection conn = pool.emprunter()) {
+            conn.setAutoCommit(false);
+            ConnectionPool.apresValidation(conn, () -> faites.add("annulee"));
+            conn.rollback();
+            ConnectionPool.apresValidation(conn, () -> faites.add("validee"));
+            assertTrue(faites.isEmpty());
+            conn.commit();
+            ConnectionPool.apresValidation(conn, () -> faites.add("abandonnee"));
+        }
+        assertEquals(List.of("validee"), faites);
+    }
+
+    @Test
+    void lOrdreDInitialisationEstExecuteSurChaqueConnexion() throws Exception {
+        ConnectionPool pool = new ConnectionPool(BaseEssai.nouvelle("pool", false), "sa", "", 2, 300, 0, 0,
+                "SET @application = 'BlogRecette'");
+        pools.add(pool);
+        try (Connection a = pool.emprunter(); Connection b = pool.emprunter();
+             Connection dediee = pool.ouvrirDediee()) {
+            for (Connection conn : new Connection[] {a, b, dediee}) {
+                try (Statement stmt = conn.createStatement();
+                     ResultSet rs = stmt.executeQuery("SELECT @application")) {
+                    rs.next();
+                    assertEquals("BlogRecette", rs.getString(1));
+                }
+            }
+        }
+        assertEquals(2, pool.statistiques().creations);
+    }
+
+    @Test
+    void unPoolFermeRefuseLesEmprunts() throws Exception {
+        ConnectionPool pool = pool(1, 0, 0);
+        pool.fermer();
+        assertThrows(SQLException.class, pool::emprunter);
+    }
+
+    private static void attendre(java.util.function.BooleanSupplier condition, long delaiMs) throws InterruptedException {
+        long fin = System.currentTimeMillis() + delaiMs;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < fin) {
+            Thread.sleep(50);
+        }
+        assertTrue(condition.getAsBoolean(), "condition non remplie après " + delaiMs + " ms");
+    }
+}
@@ -0,0 +1,145 @@
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * La cote calculée en Java doit être celle du corps PL/SQL de get_cote_sante,
+ * ROUND(AVG(i.cote_sante), 1), et 0 pour une recette sans ingrédient.
+ */
+class CoteSanteCalculateurTest {
+
+    private static final int RECETTES = 300;
+
+    private static ConnectionPool pool;
+    private static String url;
+
+    @BeforeAll
+    static void preparer() throws SQLException {
+        url = BaseEssai.nouvelle("sante", true);
+        Random hasard = new Random(7);
+        try (Connection conn = BaseEssai.directe(url)) {
+            conn.setAutoCommit(false);
+            int[] ingredients = new int[15];
+            try (PreparedStatement pstmt = conn.prepareStatement(
+                    "INSERT INTO Ingredient (nom, cote_sante) VALUES (?, ?)", new String[] {"id_ingredient"})) {
+                for (int i = 0; i < ingredients.length; i++) {
+                    pstmt.setString(1, "Essai " + i);
+                    pstmt.setInt(2, 1 + i % 5);
+                    pstmt.executeUpdate();
+                    try (ResultSet rs = pstmt.getGeneratedKeys()) {
+                        rs.next();
+                        ingredients[i] = rs.getInt(1);
+                    }
+                }
+            }
+            try (PreparedStatement recette = conn.prepareStatement(
+                    "INSERT INTO Recette (titre, auteur_id) VALUES (?, 1)", new String[] {"id_recette"});
+                 PreparedStatement lien = conn.prepareStatement(
+                    "INSERT INTO Recette_Ingredient (id_recette, id_ingredient, quantite) VALUES (?, ?, '1 tasse')")) {
+                for (int r = 0; r < RECETTES; r++) {
+                    recette.setString(1, "Essai " + r);
+                    recette.executeUpdate();
+                    int id;
+                    try (ResultSet rs = recette.getGeneratedKeys()) {
+                        rs.next();
+                        id = rs.getInt(1);
+                    }
+                    for (int ingredient : ingredients) {
+                        if (hasard.nextInt(3) == 0) {
+                            lien.setInt(1, id);
+                            lien.setInt(2, ingredient);
+                            lien.addBatch();
+                        }
+                    }
+                    lien.executeBatch();
+                }
+            }
+            conn.commit();
+        }
+        pool = new ConnectionPool(url, "sa", "", 1, 5_000, 0, 0);
+    }
+
+    @AfterAll
+    static void fermer() {
+        pool.fermer();
+    }
+
+    @Test
+    void lArrondiEstCeluiDeRound() {
+        for (int nombre = 1; nombre <= 60; nombre++) {
+            for (int somme = nombre; somme <= CoteSanteCalculateur.COTE_MAX * nombre; somme++) {
+                BigDecimal attendue = BigDecimal.valueOf(somme)
+                        .divide(BigDecimal.valueOf(nombre), 1, RoundingMode.HALF_UP);
+                assertEquals(attendue.unscaledValue().intValue(), CoteSanteCalculateur.dixiemes(somme, nombre),
+                        somme + " / " + nombre);
+            }
+        }
+        assertEquals(0, CoteSanteCalculateur.dixiemes(0, 0));
+    }
+
+    @Test
+    void leCatalogueCorrespondALaFormulePlsql() throws Exception {
+        Map<Integer, BigDecimal> attendues = formulePlsql();
+        try (Connection conn = pool.emprunter()) {
+            CoteSanteCalculateur calculateur = new CoteSanteCalculateur(conn);
+            CoteSanteCalculateur.Cotes cotes = calculateur.calculerTout();
+
+            assertEquals(attendues.size(), cotes.taille());
+            for (int rang = 0; rang < cotes.taille(); rang++) {
+                BigDecimal attendue = attendues.get(cotes.id(rang));
+                assertEquals(attendue.doubleValue(), cotes.cote(rang), "recette " + cotes.id(rang));
+                assertEquals(attendue.doubleValue(), cotes.coteDe(cotes.id(rang)));
+            }
+            for (int id : new int[] {1, 2, 3, attendues.size() / 2, attendues.size()}) {
+                assertEquals(attendues.get(id).doubleValue(), calculateur.fiche(id).cote_sante, "fiche " + id);
+            }
+            assertNull(calculateur.fiche(attendues.size() + 1));
+        }
+    }
+
+    @Test
+    void leClassementVaDeLaPlusSaineALaMoinsSaine() throws Exception {
+        try (Connection conn = pool.emprunter()) {
+            CoteSanteCalculateur.Cotes cotes = new CoteSanteCalculateur(conn).calculerTout();
+            int[] classement = cotes.classement();
+            assertEquals(cotes.taille(), classement.length);
+            for (int i = 1; i < classement.length; i++) {
+                double avant = cotes.coteDe(classement[i - 1]);
+                double apres = cotes.coteDe(classement[i]);
+                assertTrue(avant > apres || (avant == apres && classement[i - 1] < classement[i]),
+                        "rang " + i);
+            }
+        }
+    }
+
+    /** Cote de chaque recette selon get_cote_sante, exécutée par la base. */
+    private static Map<Integer, BigDecimal> formulePlsql() throws SQLException {
+        Map<Integer, BigDecimal> cotes = new LinkedHashMap<>();
+        try (Connection conn = BaseEssai.directe(url);
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(
+                     "SELECT r.id_recette, ROUND(AVG(i.cote_sante), 1) FROM Recette r " +
+                     "LEFT JOIN Recette_Ingredient ri ON ri.id_recette = r.id_recette " +
+                     "LEFT JOIN Ingredient i ON i.id_ingredient = ri.id_ingredient " +
+                     "GROUP BY r.id_recette ORDER BY r.id_recette")) {
+            while (rs.next()) {
+                BigDecimal cote = rs.getBigDecimal(2);
+                cotes.put(rs.getInt(1), cote == null ? BigDecimal.ZERO : cote);
+            }
+        }
+        return cotes;
+    }
+}
@@ -0,0 +1,97 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EditionRecetteTest {
+
+    private ConnectionPool pool;
+
+    @BeforeEach
+    void preparer() throws SQLException {
+        pool = BaseEssai.installer("edition", true, 3);
+    }
+
+    @AfterEach
+    void fermer() {
+        JournalAudit.fermerPartage();
+        DatabaseConnection.closeConnection();
+    }
+
+    private EditionRecette editer(int idRecette) throws SQLException {
+        try (Connection conn = pool.emprunter()) {
+            return new RecetteRepository(conn).editer(idRecette);
+        }
+    }
+
+    private int enregistrer(EditionRecette edition) throws SQLException {
+        try (Connection conn = pool.emprunter()) {
+            return new RecetteRepository(conn).enregistrer(edition);
+        }
+    }
+
+    @Test
+    void uneEditionSansChangementNeModifiePasLaVersion() throws Exception {
+        EditionRecette edition = editer(1);
+        assertFalse(edition.modifiee());
+        assertEquals(edition.version(), enregistrer(edition));
+        assertEquals(edition.version(), editer(1).version());
+    }
+
+    @Test
+    void lEnregistrementIncrementeLaVersionEtPermetDeContinuer() throws Exception {
+        EditionRecette edition = editer(1);
+        int version = edition.version();
+
+        assertEquals(version + 1, enregistrer(edition.titre("Crêpes fines")));
+        assertEquals(version + 1, edition.version());
+        assertEquals(version + 2, enregistrer(edition.tempsCuisson(edition.tempsCuisson() + 5)));
+
+        EditionRecette relue = editer(1);
+        assertEquals(version + 2, relue.version());
+        assertEquals("Crêpes fines", relue.titre());
+        assertEquals(edition.tempsCuisson(), relue.tempsCuisson());
+    }
+
+    @Test
+    void laSecondeEditionConcurrenteEstRefusee() throws Exception {
+        EditionRecette premiere = editer(1);
+        EditionRecette seconde = editer(1);
+        Map<Integer, String> liens = premiere.ingredients();
+        int idIngredient = liens.keySet().iterator().next();
+
+        int nouvelle = enregistrer(premiere.titre("Crêpes de la première"));
+
+        seconde.titre("Crêpes de la seconde").retirer(idIngredient).lier(6, "1 pincée");
+        RecetteRepository.ConflitVersion conflit =
+                assertThrows(RecetteRepository.ConflitVersion.class, () -> enregistrer(seconde));
+        assertEquals(nouvelle, conflit.versionActuelle);
+        assertFalse(conflit.supprimee());
+
+        // Rien de la seconde édition n'est écrit, ni la recette ni ses liaisons
+        EditionRecette relue = editer(1);
+        assertEquals(nouvelle, relue.version());
+        assertEquals("Crêpes de la première", relue.titre());
+        assertEquals(liens, relue.ingredients());
+        // L'édition refusée garde sa version : elle ne peut pas être réessayée telle quelle
+        assertThrows(RecetteRepository.ConflitVersion.class, () -> enregistrer(seconde));
+    }
+
+    @Test
+    void uneRecetteSupprimeeEstSignalee() throws Exception {
+        EditionRecette edition = editer(2);
+        try (Connection conn = pool.emprunter()) {
+            assertEquals(1, new RecetteRepository(conn).supprimer(2));
+        }
+        RecetteRepository.ConflitVersion conflit =
+                assertThrows(RecetteRepository.ConflitVersion.class, () -> enregistrer(edition.titre("Salade")));
+        assertTrue(conflit.supprimee());
+        assertEquals(-1, conflit.versionActuelle);
+        assertNull(editer(2));
+    }
+}
@@ -0,0 +1,221 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JournalAuditTest {
+
+    private ConnectionPool pool;
+    private final List<JournalAudit> journaux = new ArrayList<>();
+
+    @BeforeEach
+    void preparer() throws SQLException {
+        pool = BaseEssai.installer("audit", false, 2);
+    }
+
+    @AfterEach
+    void fermer() {
+        journaux.forEach(JournalAudit::fermer);
+        JournalAudit.fermerPartage();
+        System.clearProperty("recette.audit.mode");
+        DatabaseConnection.closeConnection();
+    }
+
+    private JournalAudit journal(JournalAudit.Mode mode, int capacite) {
+        JournalAudit journal = new JournalAudit(mode, capacite, 100);
+        journaux.add(journal);
+        return journal;
+    }
+
+    @Test
+    void synchroneEcritDansLaTransactionDeLAppelant() throws Exception {
+        JournalAudit journal = journal(JournalAudit.Mode.SYNCHRONE, 10);
+        try (Connection conn = pool.emprunter()) {
+            conn.setAutoCommit(false);
+            journal.enregistrer(conn, "Auteur", "INSERT", 1);
+            conn.rollback();
+            assertEquals(0, traces());
+
+            journal.enregistrer(conn, "Auteur", "INSERT", 2);
+            journal.enregistrer(conn, "Recette_Ingredient", "INSERT", 3, 4);
+            assertEquals(0, traces());
+            conn.commit();
+        }
+        assertEquals(2, traces());
+        try (Connection conn = pool.emprunter();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(
+                     "SELECT record_id, record_id2, tracking_number FROM Trace ORDER BY id_trace")) {
+            rs.next();
+            assertEquals(2, rs.getInt(1));
+            rs.getInt(2);
+            assertTrue(rs.wasNull());
+            long premier = rs.getLong(3);
+            rs.next();
+            assertEquals(4, rs.getInt(2));
+            // Numéros distribués en mémoire dans le bloc réservé
+            assertEquals(premier + 1, rs.getLong(3));
+        }
+    }
+
+    @Test
+    void asynchroneEcritToutAvantLaFermeture() throws Exception {
+        JournalAudit journal = journal(JournalAudit.Mode.ASYNCHRONE, 10_000);
+        try (Connection conn = pool.emprunter()) {
+            for (int i = 1; i <= 2_000; i++) {
+                journal.enregistrer(conn, "Ingredient", "UPDATE", i);
+            }
+        }
+        journal.fermer();
+        assertEquals(2_000, traces());
+        assertTrue(journal.toString().contains("echecs=0"), journal.toString());
+        try (Connection conn = pool.emprunter()) {
+            assertThrows(SQLException.class, () -> journal.enregistrer(conn, "Ingredient", "UPDATE", 1));
+        }
+        // Fermer deux fois est sans effet
+        journal.fermer();
+    }
+
+    @Test
+    void groupeEcritApresLaValidationDeLAppelant() throws Exception {
+        JournalAudit journal = journal(JournalAudit.Mode.GROUPE, 100);
+        try (Connection conn = pool.emprunter()) {
+            conn.setAutoCommit(false);
+            journal.enregistrer(conn, "Recette", "DELETE", 7);
+            // Rien n'est visible avant la validation, et une annulation n'est pas consignée
+            assertEquals(0, traces());
+            conn.rollback();
+
+            journal.enregistrer(conn, "Recette", "DELETE", 8);
+            assertEquals(0, traces());
+            // Le commit rend la main une fois le lot du fil d'écriture validé
+            conn.commit();
+            assertEquals(1, traces());
+        }
+        assertEquals(1, compter("SELECT COUNT(*) FROM Trace WHERE record_id = 8"));
+    }
+
+    @Test
+    void uneFilePleineEstEcriteSurLaConnexionDeLAppelant() throws Exception {
+        JournalAudit journal = journal(JournalAudit.Mode.GROUPE, 2);
+        List<JournalAudit.Evenement> evenements = new ArrayList<>();
+        for (int i = 1; i <= 500; i++) {
+            evenements.add(new JournalAudit.Evenement("Recette", "UPDATE", i, 0));
+        }
+        // Les deux connexions du pool sont tenues : le débordement ne doit pas en demander
+        try (Connection conn = pool.emprunter(); Connection autre = pool.emprunter()) {
+            conn.setAutoCommit(false);
+            journal.enregistrer(conn, evenements);
+            conn.commit();
+            assertFalse(autre.isClosed());
+            assertFalse(conn.getAutoCommit());
+        }
+        assertEquals(500, traces());
+        assertFalse(journal.toString().contains("debordements=0"), journal.toString());
+    }
+
+    @Test
+    void lesDonneesDExempleSontJournalisees() throws Exception {
+        try (Connection conn = BaseEssai.directe(BaseEssai.nouvelle("exemples", true));
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(
+                     "SELECT t.table_name, COUNT(*), COUNT(DISTINCT t.tracking_number) FROM Trace t " +
+                     "WHERE t.operation_type = 'INSERT' GROUP BY t.table_name ORDER BY t.table_name")) {
+            String[] tables = {"Auteur", "Ingredient", "Recette", "Recette_Ingredient"};
+            int[] lignes = {3, 6, 4, 9};
+            for (int i = 0; i < tables.length; i++) {
+                assertTrue(rs.next());
+                assertEquals(tables[i], rs.getString(1));
+                assertEquals(lignes[i], rs.getInt(2));
+                assertEquals(lignes[i], rs.getInt(3));
+            }
+            assertFalse(rs.next());
+        }
+    }
+
+    @Test
+    void desEcrituresConcurrentesPlusNombreusesQueLePoolAboutissent() throws Exception {
+        System.setProperty("recette.audit.mode", "GROUPE");
+        JournalAudit.fermerPartage();
+        assertEquals(JournalAudit.Mode.GROUPE, JournalAudit.partage().getMode());
+
+        ExecutorService executeur = Executors.newFixedThreadPool(6);
+        try {
+            List<Future<Integer>> ajouts = new ArrayList<>();
+            for (int i = 0; i < 6; i++) {
+                int n = i;
+                ajouts.add(executeur.submit(() -> {
+                    try (Connection conn = DatabaseConnection.getConnection()) {
+                        return new AuteurRepository(conn).ajouter(
+                                new Main.Auteur("Auteur " + n, "auteur" + n + "@essai.ca", null));
+                    }
+                }));
+            }
+            for (Future<Integer> ajout : ajouts) {
+                assertTrue(ajout.get(10, TimeUnit.SECONDS) > 0);
+            }
+        } finally {
+            executeur.shutdownNow();
+        }
+        assertEquals(6, compter("SELECT COUNT(*) FROM Auteur"));
+        assertEquals(6, traces());
+        assertEquals(0, pool.statistiques().delaisDepasses);
+    }
+
+    @Test
+    void uneSuppressionDAuteurJournaliseLaRecetteAjouteeEnMemeTemps() throws Exception {
+        int idAuteur;
+        try (Connection conn = pool.emprunter()) {
+            idAuteur = new AuteurRepository(conn).ajouter(new Main.Auteur("Julie Roy", "julie@exemple.ca", null));
+        }
+        int idRecette;
+        ExecutorService executeur = Executors.newSingleThreadExecutor();
+        try (Connection conn = pool.emprunter()) {
+            conn.setAutoCommit(false);
+            Main.Recette recette = new Main.Recette("Tarte", "Aux pommes", "Cuire", 20, 40, idAuteur);
+            idRecette = new RecetteRepository(conn).ajouter(recette);
+
+            // La suppression attend le verrou de l'auteur, tenu jusqu'à la validation de la recette
+            Future<Integer> suppression = executeur.submit(() -> {
+                try (Connection autre = pool.emprunter()) {
+                    return new AuteurRepository(autre).supprimer(idAuteur);
+                }
+            });
+            Thread.sleep(200);
+            assertFalse(suppression.isDone());
+            conn.commit();
+
+            assertEquals(1, suppression.get(10, TimeUnit.SECONDS));
+        } finally {
+            executeur.shutdownNow();
+        }
+        assertEquals(0, compter("SELECT COUNT(*) FROM Recette"));
+        assertEquals(1, compter("SELECT COUNT(*) FROM Trace WHERE table_name = 'Recette' "
+                + "AND operation_type = 'DELETE' AND record_id = " + idRecette));
+    }
+
+    private int traces() throws SQLException {
+        return compter("SELECT COUNT(*) FROM Trace");
+    }
+
+    private int compter(String sql) throws SQLException {
+        try (Connection conn = pool.emprunter();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+}
@@ -0,0 +1,283 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MoteurMemoireTest {
+
+    @TempDir
+    Path dossier;
+
+    private final List<MoteurMemoire> moteurs = new ArrayList<>();
+
+    @AfterEach
+    void fermer() {
+        moteurs.forEach(MoteurMemoire::close);
+    }
+
+    private MoteurMemoire ouvrir(Path ou) throws IOException {
+        MoteurMemoire moteur = MoteurMemoire.ouvrir(ou);
+        moteurs.add(moteur);
+        return moteur;
+    }
+
+    private MoteurMemoire ouvrir() throws IOException {
+        return ouvrir(dossier);
+    }
+
+    private static int auteur(MoteurMemoire moteur, String nom, String email) throws SQLException {
+        return moteur.ajouterAuteur(new Main.Auteur(nom, email, null));
+    }
+
+    private static int ingredient(MoteurMemoire moteur, String nom, int cote) throws SQLException {
+        return moteur.ajouterIngredient(new Main.Ingredient(nom, cote));
+    }
+
+    private static int recette(MoteurMemoire moteur, String titre, int idAuteur, int... ingredients) throws SQLException {
+        List<RecetteRepository.LienIngredient> liens = new ArrayList<>();
+        for (int idIngredient : ingredients) {
+            liens.add(new RecetteRepository.LienIngredient(idIngredient, "1 tasse"));
+        }
+        return moteur.ajouterRecette(new Main.Recette(titre, null, "Mélanger", 5, 10, idAuteur), liens);
+    }
+
+    @Test
+    void unEmailEnDoubleEstRefuseSansRienChanger() throws Exception {
+        MoteurMemoire moteur = ouvrir();
+        int marie = auteur(moteur, "Marie", "marie@exemple.ca");
+
+        Main.Auteur autre = new Main.Auteur("Autre Marie", "marie@exemple.ca", null);
+        assertThrows(SQLIntegrityConstraintViolationException.class, () -> moteur.ajouterAuteur(autre));
+        assertEquals(0, autre.id_auteur);
+        assertEquals(1, moteur.auteurs().size());
+        assertEquals(marie, moteur.idParEmail("marie@exemple.ca"));
+
+        // L'identifiant refusé n'est pas consommé
+        assertEquals(marie + 1, auteur(moteur, "Olivier", "olivier@exemple.ca"));
+    }
+
+    @Test
+    void deuxEcrituresSimultaneesDuMemeEmailNePassentPasToutesLesDeux() throws Exception {
+        MoteurMemoire moteur = ouvrir();
+        ExecutorService executeur = Executors.newFixedThreadPool(8);
+        try {
+            CountDownLatch depart = new CountDownLatch(1);
+            List<Future<Boolean>> essais = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                String nom = "Auteur " + i;
+                essais.add(executeur.submit(() -> {
+                    depart.await();
+                    try {
+                        auteur(moteur, nom, "meme@exemple.ca");
+                        return true;
+                    } catch (SQLIntegrityConstraintViolationException refuse) {
+                        return false;
+                    }
+                }));
+            }
+            depart.countDown();
+            int acceptes = 0;
+            for (Future<Boolean> essai : essais) {
+                acceptes += essai.get(10, TimeUnit.SECONDS) ? 1 : 0;
+            }
+            assertEquals(1, acceptes);
+        } finally {
+            executeur.shutdownNow();
+        }
+        assertEquals(1, moteur.auteurs().size());
+        moteur.close();
+
+        // La relecture refuse les mêmes enregistrements
+        MoteurMemoire relu = ouvrir();
+        assertEquals(1, relu.auteurs().size());
+        assertEquals(moteur.idParEmail("meme@exemple.ca"), relu.idParEmail("meme@exemple.ca"));
+    }
+
+    @Test
+    void laCoteSanteEstBorneeDeUnACinq() throws Exception {
+        MoteurMemoire moteur = ouvrir();
+        assertThrows(SQLIntegrityConstraintViolationException.class, () -> ingredient(moteur, "Sucre", 0));
+        assertThrows(SQLIntegrityConstraintViolationException.class, () -> ingredient(moteur, "Chou", 6));
+        assertTrue(moteur.ingredients().isEmpty());
+        assertEquals(1, ingredient(moteur, "Sucre", 1));
+        assertEquals(2, ingredient(moteur, "Chou", 5));
+    }
+
+    @Test
+    void lesClesEtrangeresSontVerifiees() throws Exception {
+        MoteurMemoire moteur = ouvrir();
+        int marie = auteur(moteur, "Marie", "marie@exemple.ca");
+        int farine = ingredient(moteur, "Farine", 3);
+
+        assertThrows(SQLIntegrityConstraintViolationException.class, () -> recette(moteur, "Orpheline", 99, farine));
+        assertThrows(SQLIntegrityConstraintViolationException.class, () -> recette(moteur, "Crêpes", marie, farine, 99));
+        assertThrows(SQLIntegrityConstraintViolationException.class, () -> recette(moteur, "Crêpes", marie, farine, farine));
+        assertEquals(0, moteur.nombreRecettes());
+
+        int crepes = recette(moteur, "Crêpes", marie, farine);
+        assertThrows(SQLIntegrityConstraintViolationException.class, () -> moteur.lierIngredient(crepes, 99, "1 pincée"));
+        assertThrows(SQLIntegrityConstraintViolationException.class, () -> moteur.lierIngredient(99, farine, "1 pincée"));
+        // Clé primaire de Recette_Ingredient
+        assertThrows(SQLIntegrityConstraintViolationException.class, () -> moteur.lierIngredient(crepes, farine, "2 tasses"));
+        assertEquals(1, moteur.ingredientsDe(crepes).size());
+        assertEquals("1 tasse", moteur.ingredientsDe(crepes).get(0).quantite);
+    }
+
+    @Test
+    void lesSuppressionsSePropagentEnCascade() throws Exception {
+        MoteurMemoire moteur = ouvrir();
+        int marie = auteur(moteur, "Marie", "marie@exemple.ca");
+        int olivier = auteur(moteur, "Olivier", "olivier@exemple.ca");
+        int farine = ingredient(moteur, "Farine", 4);
+        int sucre = ingredient(moteur, "Sucre", 2);
+        int crepes = recette(moteur, "Crêpes", marie, farine, sucre);
+        int gateau = recette(moteur, "Gâteau", marie, sucre);
+        int pain = recette(moteur, "Pain", olivier, farine, sucre);
+        assertEquals(3.0, moteur.coteSante(crepes));
+
+        assertEquals(1, moteur.supprimerIngredient(sucre));
+        assertEquals(4.0, moteur.coteSante(crepes));
+        assertEquals(0, moteur.coteSante(gateau));
+        assertEquals(1, moteur.ingredientsDe(pain).size());
+        assertEquals("Farine", moteur.ingredientsDe(pain).get(0).nom);
+
+        assertEquals(1, moteur.supprimerAuteur(marie));
+        assertNull(moteur.recette(crepes));
+        assertNull(moteur.recette(gateau));
+        assertNotNull(moteur.recette(pain));
+        assertEquals(0, moteur.idParEmail("marie@exemple.ca"));
+        // L'email libéré peut resservir
+        auteur(moteur, "Marie", "marie@exemple.ca");
+
+        assertEquals(1, moteur.supprimerRecette(pain));
+        assertEquals(0, moteur.supprimerRecette(pain));
+        assertEquals(0, moteur.nombreRecettes());
+    }
+
+    @Test
+    void lEtatEstReluApresUneFermeture() throws Exception {
+        MoteurMemoire moteur = ouvrir();
+        int marie = auteur(moteur, "Marie", "marie@exemple.ca");
+        int farine = ingredient(moteur, "Farine", 4);
+        int crepes = recette(moteur, "Crêpes", marie, farine);
+        moteur.close();
+        assertThrows(SQLException.class, () -> auteur(moteur, "Tardif", "tardif@exemple.ca"));
+
+        MoteurMemoire relu = ouvrir();
+        assertEquals("Crêpes", relu.recette(crepes).titre);
+        assertEquals(4.0, relu.coteSante(crepes));
+        assertEquals(crepes + 1, recette(relu, "Pain", marie, farine));
+    }
+
+    @Test
+    void unInstantanePuisLeJournalSontRelus() throws Exception {
+        MoteurMemoire moteur = ouvrir();
+        int marie = auteur(moteur, "Marie", "marie@exemple.ca");
+        int farine = ingredient(moteur, "Farine", 4);
+        int sucre = ingredient(moteur, "Sucre", 2);
+        int crepes = recette(moteur, "Crêpes", marie, farine);
+        moteur.compacter();
+        assertTrue(Files.exists(dossier.resolve("instantane.bin")));
+        assertEquals(1, journaux(dossier).size());
+
+        // Après l'instantané, seulement dans le journal
+        moteur.lierIngredient(crepes, sucre, "2 c. à soupe");
+        int olivier = auteur(moteur, "Olivier", "olivier@exemple.ca");
+        recette(moteur, "Pain", olivier, farine);
+        moteur.supprimerAuteur(olivier);
+        moteur.close();
+
+        MoteurMemoire relu = ouvrir();
+        assertEquals(3.0, relu.coteSante(crepes));
+        assertEquals(1, relu.nombreRecettes());
+        assertEquals(1, relu.auteurs().size());
+        assertEquals(olivier + 1, auteur(relu, "Sophie", "sophie@exemple.ca"));
+    }
+
+    @Test
+    void uneEcritureConfirmeeSurvitAUnArretBrutal() throws Exception {
+        Path source = dossier.resolve("source");
+        MoteurMemoire moteur = ouvrir(source);
+        int marie = auteur(moteur, "Marie", "marie@exemple.ca");
+        int farine = ingredient(moteur, "Farine", 4);
+        moteur.compacter();
+        int crepes = recette(moteur, "Crêpes", marie, farine);
+        assertThrows(SQLIntegrityConstraintViolationException.class, () -> auteur(moteur, "Double", "marie@exemple.ca"));
+
+        // Copie des fichiers tels quels, moteur ouvert : ce qu'un arrêt brutal laisserait
+        Path copie = Files.createDirectory(dossier.resolve("panne"));
+        try (DirectoryStream<Path> fichiers = Files.newDirectoryStream(source)) {
+            for (Path fichier : fichiers) {
+                Files.copy(fichier, copie.resolve(fichier.getFileName()));
+            }
+        }
+        MoteurMemoire reprise = ouvrir(copie);
+        assertEquals("Crêpes", reprise.recette(crepes).titre);
+        assertEquals(1, reprise.auteurs().size());
+        assertEquals(marie, reprise.idParEmail("marie@exemple.ca"));
+    }
+
+    @Test
+    void uneFinDeJournalTronqueeEstEcartee() throws Exception {
+        MoteurMemoire moteur = ouvrir();
+        int marie = auteur(moteur, "Marie", "marie@exemple.ca");
+        moteur.close();
+        List<Path> journaux = journaux(dossier);
+        Path dernier = journaux.get(journaux.size() - 1);
+        long taille = Files.size(dernier);
+        // Longueur annoncée de 50 octets, dont seulement trois ont été écrits
+        Files.write(dernier, new byte[] {0, 0, 0, 50, 1, 2, 3}, StandardOpenOption.APPEND);
+
+        MoteurMemoire relu = ouvrir();
+        assertEquals(taille, Files.size(dernier));
+        assertEquals(marie, relu.idParEmail("marie@exemple.ca"));
+        int olivier = auteur(relu, "Olivier", "olivier@exemple.ca");
+        relu.close();
+
+        MoteurMemoire encore = ouvrir();
+        assertEquals(olivier, encore.idParEmail("olivier@exemple.ca"));
+    }
+
+    @Test
+    void lImportationCopieLaBase() throws Exception {
+        String url = BaseEssai.nouvelle("memoire", true);
+        MoteurMemoire moteur = ouvrir();
+        try (Connection conn = BaseEssai.directe(url)) {
+            assertEquals(4, moteur.importer(conn));
+            assertThrows(SQLException.class, () -> moteur.importer(conn));
+        }
+        assertEquals(3, moteur.auteurs().size());
+        assertEquals(6, moteur.ingredients().size());
+        assertEquals("Crêpes maison", moteur.recette(1).titre);
+        assertEquals(3.0, moteur.coteSante(1));
+        assertEquals(5.0, moteur.coteSante(2));
+        assertEquals(2.5, moteur.coteSante(4));
+        assertEquals(5, recette(moteur, "Nouvelle", 1, 1));
+    }
+
+    private static List<Path> journaux(Path ou) throws IOException {
+        List<Path> journaux = new ArrayList<>();
+        try (DirectoryStream<Path> fichiers = Files.newDirectoryStream(ou, "journal-*.wal")) {
+            fichiers.forEach(journaux::add);
+        }
+        journaux.sort(null);
+        return journaux;
+    }
+}
@@ -0,0 +1,55 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecetteResumeTest {
+
+    private ConnectionPool pool;
+
+    @BeforeEach
+    void preparer() throws SQLException {
+        pool = BaseEssai.installer("resume", true, 2);
+    }
+
+    @AfterEach
+    void fermer() {
+        JournalAudit.fermerPartage();
+        DatabaseConnection.closeConnection();
+    }
+
+    private RecetteRepository.ResumeRecette resume(int idRecette) throws SQLException {
+        try (Connection conn = pool.emprunter()) {
+            List<RecetteRepository.ResumeRecette> resumes = new RecetteRepository(conn).listerParTemps(null, 100);
+            return resumes.stream().filter(r -> r.id_recette == idRecette).findFirst().orElse(null);
+        }
+    }
+
+    @Test
+    void lesEcrituresHorsApplicationSontRattrapeesParLaReconstruction() throws Exception {
+        RecetteRepository.ResumeRecette avant = resume(1);
+        assertEquals(3, avant.nb_ingredients);
+
+        // Un autre client écrit directement dans les tables
+        try (Connection conn = pool.emprunter(); Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("UPDATE Recette SET titre = 'Crêpes fines', temps_cuisson = temps_cuisson + 10 "
+                    + "WHERE id_recette = 1");
+            stmt.executeUpdate("DELETE FROM Recette_Ingredient WHERE id_recette = 1 AND ROWNUM = 1");
+        }
+        assertEquals(avant.titre, resume(1).titre);
+
+        try (Connection conn = pool.emprunter()) {
+            assertEquals(4, new RecetteRepository(conn).reconstruireResumes());
+        }
+        RecetteRepository.ResumeRecette apres = resume(1);
+        assertEquals("Crêpes fines", apres.titre);
+        assertEquals(avant.temps_total + 10, apres.temps_total);
+        assertEquals(2, apres.nb_ingredients);
+    }
+}
@@ -0,0 +1,71 @@
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StatementCacheTest {
+
+    private static ConnectionPool pool;
+    private static String url;
+
+    @BeforeAll
+    static void preparer() throws SQLException {
+        url = BaseEssai.nouvelle("requetes", true);
+        pool = new ConnectionPool(url, "sa", "", 1, 5_000, 0, 0);
+    }
+
+    @AfterAll
+    static void fermer() {
+        pool.fermer();
+    }
+
+    @Test
+    void uneConnexionDuPoolGardeSonCacheEntreLesEmprunts() throws Exception {
+        StatementCache premier;
+        try (Connection conn = pool.emprunter()) {
+            premier = StatementCache.pour(conn);
+        }
+        try (Connection conn = pool.emprunter()) {
+            assertSame(premier, StatementCache.pour(conn));
+        }
+    }
+
+    @Test
+    void uneConnexionHorsDuPoolEstRefusee() throws Exception {
+        try (Connection conn = BaseEssai.directe(url)) {
+            assertThrows(SQLException.class, () -> StatementCache.pour(conn));
+        }
+    }
+
+    @Test
+    void lesTitresNePreparentQueDeuxFormes() throws Exception {
+        try (Connection conn = pool.emprunter()) {
+            StatementCache requetes = StatementCache.pour(conn);
+            RecetteRepository recettes = new RecetteRepository(conn);
+            long echecs = requetes.getEchecs();
+
+            assertTrue(recettes.titres(List.of()).isEmpty());
+            Map<Integer, String> deux = recettes.titres(List.of(1, 2));
+            assertEquals(2, deux.size());
+            assertEquals(deux, recettes.titres(List.of(2, 1, 999)));
+
+            List<Integer> beaucoup = new ArrayList<>();
+            for (int i = 1; i <= 250; i++) {
+                beaucoup.add(i);
+            }
+            Map<Integer, String> tous = recettes.titres(beaucoup);
+            assertEquals(recettes.listerTitres(), tous);
+            recettes.titres(beaucoup.subList(0, 37));
+
+            // Une forme de 10 clés et une de 100 ; listerTitres ajoute la sienne
+            assertEquals(3, requetes.getEchecs() - echecs);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SuppressionMasseTest {
+
+    private ConnectionPool pool;
+
+    @BeforeEach
+    void preparer() throws SQLException {
+        pool = BaseEssai.installer("suppression", true, 3);
+    }
+
+    @AfterEach
+    void fermer() {
+        JournalAudit.fermerPartage();
+        DatabaseConnection.closeConnection();
+    }
+
+    private SuppressionMasse.Bilan supprimerRecettes(List<Integer> ids, int tailleLot) throws SQLException {
+        try (Connection conn = pool.emprunter()) {
+            return new SuppressionMasse(conn, tailleLot).supprimerRecettes(ids);
+        }
+    }
+
+    @Test
+    void uneListeDAuteursEffaceLeursRecettesEtLeursLiaisons() throws Exception {
+        SuppressionMasse.Bilan bilan;
+        try (Connection conn = pool.emprunter()) {
+            bilan = new SuppressionMasse(conn, 500).supprimerAuteurs(List.of(1, 99));
+        }
+        assertEquals(1, bilan.getAuteurs());
+        assertEquals(2, bilan.getRecettes());
+        assertEquals(5, bilan.getLiens());
+        assertEquals(1, bilan.lots);
+        assertEquals(2, bilan.demandes);
+
+        assertEquals(2, compter("SELECT COUNT(*) FROM Auteur"));
+        assertEquals(2, compter("SELECT COUNT(*) FROM Recette"));
+        // Chaque ligne effacée en cascade a sa ligne de journal
+        assertEquals(1, suppressions("Auteur"));
+        assertEquals(2, suppressions("Recette"));
+        assertEquals(5, suppressions("Recette_Ingredient"));
+        assertEquals(2, compter("SELECT COUNT(*) FROM Trace WHERE table_name = 'Recette' "
+                + "AND operation_type = 'DELETE' AND record_id IN (1, 4)"));
+    }
+
+    @Test
+    void desLotsPleinsSontTousTraites() throws Exception {
+        SuppressionMasse.Bilan bilan = supprimerRecettes(List.of(1, 2, 3, 4), 2);
+        assertEquals(2, bilan.lots);
+        assertEquals(4, bilan.getRecettes());
+        assertEquals(9, bilan.getLiens());
+        assertEquals(0, compter("SELECT COUNT(*) FROM Recette"));
+        assertEquals(0, compter("SELECT COUNT(*) FROM Recette_Resume"));
+        assertEquals(4, suppressions("Recette"));
+        assertEquals(9, suppressions("Recette_Ingredient"));
+    }
+
+    @Test
+    void desLotsDUnIdentifiantIgnorentLesAbsents() throws Exception {
+        SuppressionMasse.Bilan bilan = supprimerRecettes(List.of(2, 99, 3), 1);
+        assertEquals(3, bilan.lots);
+        assertEquals(3, bilan.demandes);
+        assertEquals(2, bilan.getRecettes());
+        assertEquals(4, bilan.getLiens());
+        assertEquals(0, bilan.getAuteurs());
+        assertEquals(2, compter("SELECT COUNT(*) FROM Recette"));
+        assertEquals(2, suppressions("Recette"));
+        assertEquals(4, suppressions("Recette_Ingredient"));
+    }
+
+    @Test
+    void unDernierLotIncompletEstComplete() throws Exception {
+        SuppressionMasse.Bilan bilan = supprimerRecettes(List.of(1, 2, 4), 2);
+        assertEquals(2, bilan.lots);
+        assertEquals(3, bilan.getRecettes());
+        assertEquals(6, bilan.getLiens());
+        assertEquals(1, compter("SELECT COUNT(*) FROM Recette"));
+        assertEquals(3, suppressions("Recette"));
+    }
+
+    @Test
+    void lesAuteursSansRecetteSontSupprimes() throws Exception {
+        try (Connection conn = pool.emprunter()) {
+            AuteurRepository auteurs = new AuteurRepository(conn);
+            auteurs.ajouter(new Main.Auteur("Julie Roy", "julie@exemple.ca", null));
+            auteurs.ajouter(new Main.Auteur("Marc Roy", "marc@exemple.ca", null));
+        }
+        SuppressionMasse.Bilan bilan;
+        try (Connection conn = pool.emprunter()) {
+            bilan = new SuppressionMasse(conn, 1).supprimerAuteursSansRecette();
+        }
+        assertEquals(2, bilan.lots);
+        assertEquals(2, bilan.getAuteurs());
+        assertEquals(0, bilan.getRecettes());
+        assertEquals(3, compter("SELECT COUNT(*) FROM Auteur"));
+        assertEquals(4, compter("SELECT COUNT(*) FROM Recette"));
+        assertEquals(2, suppressions("Auteur"));
+        assertEquals(0, suppressions("Recette"));
+    }
+
+    @Test
+    void uneRecetteQuiARecuUnIngredientEntreDeuxLotsEstGardee() throws Exception {
+        int premiere;
+        int seconde;
+        try (Connection conn = pool.emprunter()) {
+            RecetteRepository recettes = new RecetteRepository(conn);
+            premiere = recettes.ajouter(new Main.Recette("Eau", "Fraîche", "Verser", 1, 0, 1));
+            seconde = recettes.ajouter(new Main.Recette("Thé", "Chaud", "Infuser", 1, 3, 2));
+        }
+        // Après la validation du premier lot, un autre utilisateur ajoute un ingrédient à la seconde
+        AtomicBoolean fait = new AtomicBoolean();
+        JournalAudit.abonner(evenements -> {
+            boolean premierLot = evenements.stream()
+                    .anyMatch(e -> e.table.equals("Recette") && e.operation.equals("DELETE") && e.id == premiere);
+            if (premierLot && fait.compareAndSet(false, true)) {
+                try (Connection autre = pool.emprunter()) {
+                    new RecetteRepository(autre).lierIngredient(seconde, 4, "1 tasse");
+                } catch (SQLException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        });
+
+        SuppressionMasse.Bilan bilan;
+        try (Connection conn = pool.emprunter()) {
+            bilan = new SuppressionMasse(conn, 1).supprimerRecettesSansIngredient();
+        }
+        assertTrue(fait.get());
+        assertEquals(2, bilan.lots);
+        assertEquals(1, bilan.getRecettes());
+        assertEquals(0, bilan.getLiens());
+        assertEquals(1, compter("SELECT COUNT(*) FROM Recette WHERE id_recette = " + seconde));
+        assertEquals(1, compter("SELECT COUNT(*) FROM Recette_Ingredient WHERE id_recette = " + seconde));
+        assertEquals(1, suppressions("Recette"));
+        assertEquals(1, compter("SELECT COUNT(*) FROM Trace WHERE table_name = 'Recette' "
+                + "AND operation_type = 'DELETE' AND record_id = " + premiere));
+    }
+
+    private int suppressions(String table) throws SQLException {
+        return compter("SELECT COUNT(*) FROM Trace WHERE operation_type = 'DELETE' AND table_name = '" + table + "'");
+    }
+
+    private int compter(String sql) throws SQLException {
+        try (Connection conn = pool.emprunter();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+}
@@ -0,0 +1,171 @@
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.SplittableRandom;
+
+/**
+ * Implémentation de bench.Operations sur les classes de l'application.
+ * <p>
+ * Elle est dans le paquetage par défaut, comme l'application, pour pouvoir appeler ses dépôts.
+ * Le catalogue est généré par {@link ImportRecettes} : un même germe donne toujours le même
+ * catalogue, et le journal d'audit est rempli par l'importation comme en production.
+ */
+public class BancRecettes implements bench.Operations {
+
+    private static final int AUTEURS = 50;
+    private static final int INGREDIENTS = 200;
+    private static final int INGREDIENTS_PAR_RECETTE = 4;
+    private static final int TAILLE_PAGE = 10;
+    private static final int TAILLE_FETCH = 100;
+
+    private int recettes;
+    private final SplittableRandom hasard = new SplittableRandom(42);
+
+    @Override
+    public void ouvrir(int recettes) throws Exception {
+        this.recettes = recettes;
+        Path dossier = Paths.get(System.getProperty("recette.banc.dossier", "target/banc")).toAbsolutePath();
+        Files.createDirectories(dossier);
+        Path base = dossier.resolve("catalogue-" + recettes);
+        Path pret = dossier.resolve("catalogue-" + recettes + ".pret");
+        String url = "jdbc:h2:file:" + base + ";MODE=Oracle";
+
+        if (!Files.exists(pret)) {
+            Files.deleteIfExists(dossier.resolve("catalogue-" + recettes + ".mv.db"));
+            Files.deleteIfExists(dossier.resolve("catalogue-" + recettes + ".trace.db"));
+            DatabaseConnection.setPool(new ConnectionPool(url, "sa", "", 4, 10_000, 0, 0));
+            peupler(recettes);
+            Files.createFile(pret);
+        } else {
+            DatabaseConnection.setPool(new ConnectionPool(url, "sa", "", 4, 10_000, 0, 0));
+        }
+        IngredientCache.partage().invalider();
+    }
+
+    @Override
+    public Object listerRecettes(int apresId) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            return new RecetteRepository(conn).listerPage(apresId, TAILLE_PAGE, TAILLE_FETCH);
+        }
+    }
+
+    @Override
+    public int ajouterRecette() throws SQLException {
+        // Même chemin que Main.ajouterRecette : ingrédients validés par le cache, puis insertion
+        List<RecetteRepository.LienIngredient> liens = new ArrayList<>(INGREDIENTS_PAR_RECETTE);
+        for (int i = 0; i < INGREDIENTS_PAR_RECETTE; i++) {
+            int id = 1 + (i * INGREDIENTS / INGREDIENTS_PAR_RECETTE) + hasard.nextInt(INGREDIENTS / INGREDIENTS_PAR_RECETTE);
+            if (IngredientCache.partage().existe(id)) {
+                liens.add(new RecetteRepository.LienIngredient(id, "2 tasses"));
+            }
+        }
+        Main.Recette recette = new Main.Recette("Recette du banc d'essai", texte(400), texte(1200), 15, 30,
+                1 + hasard.nextInt(AUTEURS));
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            int id = new RecetteRepository(conn).ajouter(recette, liens);
+            conn.rollback();
+            return id;
+        }
+    }
+
+    @Override
+    public Object ficheSante(int idRecette) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            return new CoteSanteCalculateur(conn).fiche(idRecette);
+        }
+    }
+
+    @Override
+    public Object calculerCotes() throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            return new CoteSanteCalculateur(conn).calculerTout();
+        }
+    }
+
+    @Override
+    public Object lireJournal(String table) throws SQLException {
+        TraceRepository.Filtre filtre = table == null ? TraceRepository.Filtre.TOUT
+                : new TraceRepository.Filtre(null, null, table, null);
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            return new TraceRepository(conn).lister(filtre, null, TAILLE_PAGE);
+        }
+    }
+
+    @Override
+    public void fermer() {
+        JournalAudit.fermerPartage();
+        DatabaseConnection.closeConnection();
+    }
+
+    /**
+     * Crée le schéma, les auteurs et les ingrédients, puis importe le catalogue.
+     */
+    private void peupler(int recettes) throws SQLException {
+        System.out.println("Génération d'un catalogue de " + recettes + " recettes...");
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            // Même schéma que la base embarquée de l'application, sans les données d'exemple
+            StockageEmbarque.creerSchema(conn, false);
+            AuteurRepository auteurs = new AuteurRepository(conn);
+            for (int i = 1; i <= AUTEURS; i++) {
+                auteurs.ajouter(new Main.Auteur("Auteur " + i, "auteur" + i + "@banc.ca", texte(200)));
+            }
+            IngredientRepository ingredients = new IngredientRepository(conn);
+            for (int i = 1; i <= INGREDIENTS; i++) {
+                ingredients.ajouter(new Main.Ingredient("Ingrédient " + i, 1 + hasard.nextInt(5)));
+            }
+            ImportRecettes.Rapport rapport = new ImportRecettes(conn, 5000).importer(new Generateur(recettes));
+            System.out.println(rapport);
+        }
+    }
+
+    private String texte(int longueur) {
+        StringBuilder texte = new StringBuilder(longueur);
+        while (texte.length() < longueur) {
+            texte.append("Mélanger ").append(hasard.nextInt(1000)).append(" g et cuire. ");
+        }
+        texte.setLength(longueur);
+        return texte.toString();
+    }
+
+    /**
+     * Génère les recettes du catalogue au fil de l'importation, sans les garder en mémoire.
+     */
+    private class Generateur implements Iterator<ImportRecettes.RecetteImportee> {
+        private final int total;
+        private int produites;
+
+        Generateur(int total) {
+            this.total = total;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return produites < total;
+        }
+
+        @Override
+        public ImportRecettes.RecetteImportee next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            produites++;
+            Main.Recette recette = new Main.Recette("Recette " + produites, texte(200 + hasard.nextInt(400)),
+                    texte(500 + hasard.nextInt(1500)), 5 + hasard.nextInt(60), hasard.nextInt(120), 0);
+            List<String[]> ingredients = new ArrayList<>(INGREDIENTS_PAR_RECETTE);
+            // Un ingrédient par tranche du catalogue : jamais deux fois le même
+            for (int i = 0; i < INGREDIENTS_PAR_RECETTE; i++) {
+                int numero = 1 + (i * INGREDIENTS / INGREDIENTS_PAR_RECETTE) + hasard.nextInt(INGREDIENTS / INGREDIENTS_PAR_RECETTE);
+                ingredients.add(new String[] {"Ingrédient " + numero, (1 + hasard.nextInt(5)) + " tasses"});
+            }
+            return new ImportRecettes.RecetteImportee(produites, recette,
+                    "auteur" + (1 + hasard.nextInt(AUTEURS)) + "@banc.ca", Collections.unmodifiableList(ingredients));
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package bench;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Point d'entrée de benchmarks.jar. Accepte les options habituelles de JMH, mais écrit
+ * par défaut les résultats en JSON dans target/jmh-resultats.json pour pouvoir comparer
+ * deux versions ; -rf et -rff remplacent ce choix.
+ * <p>
+ * Exemple : java -jar benchmarks/target/benchmarks.jar -p recettes=1000
+ */
+public class Lanceur {
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions ligne = new CommandLineOptions(args);
+        if (ligne.shouldHelp()) {
+            ligne.showHelp();
+            return;
+        }
+        ChainedOptionsBuilder options = new OptionsBuilder().parent(ligne);
+        if (!ligne.getResultFormat().hasValue()) {
+            options.resultFormat(ResultFormatType.JSON);
+        }
+        if (!ligne.getResult().hasValue()) {
+            Files.createDirectories(Paths.get("target"));
+            options.result("target/jmh-resultats.json");
+        }
+        Runner runner = new Runner(options.build());
+        if (ligne.shouldList()) {
+            runner.list();
+        } else {
+            runner.run();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package bench;
+
+/**
+ * Chemins d'accès aux données mesurés par {@link RecettesBenchmark}.
+ * <p>
+ * Les classes de l'application sont dans le paquetage par défaut, que le code d'un paquetage
+ * nommé ne peut pas importer, alors que JMH exige un paquetage nommé pour ses bancs d'essai.
+ * L'implémentation, BancRecettes, est donc dans le paquetage par défaut et chargée par son nom.
+ */
+public interface Operations {
+
+    /**
+     * Ouvre la base embarquée du catalogue, en la peuplant à la première utilisation.
+     *
+     * @param recettes Le nombre de recettes du catalogue
+     * @throws Exception Si la base ne peut pas être préparée
+     */
+    void ouvrir(int recettes) throws Exception;
+
+    /**
+     * Lit une page de recettes, comme l'option « Voir les recettes ».
+     *
+     * @param apresId L'identifiant de la dernière recette déjà lue
+     * @return La page lue
+     * @throws Exception En cas d'erreur d'accès aux données
+     */
+    Object listerRecettes(int apresId) throws Exception;
+
+    /**
+     * Enregistre une recette et ses ingrédients, puis annule la transaction
+     * pour que le catalogue garde sa taille.
+     *
+     * @return L'identifiant attribué à la recette
+     * @throws Exception En cas d'erreur d'accès aux données
+     */
+    int ajouterRecette() throws Exception;
+
+    /**
+     * Calcule la fiche santé d'une recette.
+     *
+     * @param idRecette L'identifiant de la recette
+     * @return La fiche calculée
+     * @throws Exception En cas d'erreur d'accès aux données
+     */
+    Object ficheSante(int idRecette) throws Exception;
+
+    /**
+     * Calcule la cote santé de tout le catalogue.
+     *
+     * @return Les cotes calculées
+     * @throws Exception En cas d'erreur d'accès aux données
+     */
+    Object calculerCotes() throws Exception;
+
+    /**
+     * Lit la première page du journal d'activité, éventuellement filtrée par table.
+     *
+     * @param table La table à filtrer, ou null pour tout le journal
+     * @return La page lue
+     * @throws Exception En cas d'erreur d'accès aux données
+     */
+    Object lireJournal(String table) throws Exception;
+
+    /**
+     * Ferme la base.
+     */
+    void fermer();
+
+    /**
+     * Charge l'implémentation du paquetage par défaut.
+     *
+     * @return Une nouvelle instance de BancRecettes
+     * @throws ReflectiveOperationException Si la classe est introuvable
+     */
+    static Operations charger() throws ReflectiveOperationException {
+        return (Operations) Class.forName("BancRecettes").getDeclaredConstructor().newInstance();
+    }
+}
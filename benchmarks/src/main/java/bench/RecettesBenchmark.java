@@ -0,0 +1,88 @@
+package bench;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Bancs d'essai des chemins d'accès aux données de l'application, sur une base H2
+ * embarquée peuplée d'un catalogue généré de 1 000, 100 000 ou 1 000 000 de recettes.
+ * <p>
+ * Chaque catalogue est généré une seule fois par l'importateur en lot, puis conservé
+ * dans le dossier donné par la propriété recette.banc.dossier (target/banc par défaut).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class RecettesBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    int recettes;
+
+    private Operations operations;
+
+    @Setup(Level.Trial)
+    public void preparer() throws Exception {
+        operations = Operations.charger();
+        operations.ouvrir(recettes);
+    }
+
+    @TearDown(Level.Trial)
+    public void fermer() {
+        operations.fermer();
+    }
+
+    /** Première page du catalogue. */
+    @Benchmark
+    public Object listerPremierePage() throws Exception {
+        return operations.listerRecettes(0);
+    }
+
+    /** Page prise au hasard dans le catalogue : le coût ne doit pas dépendre du rang. */
+    @Benchmark
+    public Object listerPageAuHasard() throws Exception {
+        return operations.listerRecettes(ThreadLocalRandom.current().nextInt(recettes));
+    }
+
+    @Benchmark
+    public int ajouterRecetteAvecIngredients() throws Exception {
+        return operations.ajouterRecette();
+    }
+
+    @Benchmark
+    public Object ficheSante() throws Exception {
+        return operations.ficheSante(1 + ThreadLocalRandom.current().nextInt(recettes));
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Object calculerToutesLesCotes() throws Exception {
+        return operations.calculerCotes();
+    }
+
+    @Benchmark
+    public Object lireJournal() throws Exception {
+        return operations.lireJournal(null);
+    }
+
+    @Benchmark
+    public Object lireJournalFiltre() throws Exception {
+        return operations.lireJournal("Recette");
+    }
+}
@@ -0,0 +1,551 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Rapports d'analyse du catalogue, pour les traitements de nuit : distribution des temps de
+ * préparation, de cuisson et totaux, distribution des cotes santé, popularité des ingrédients
+ * et cote santé moyenne par auteur.
+ * <p>
+ * Les quatre tables sont lues une seule fois, en ordre de clé, dans des tableaux d'entiers :
+ * colonnes des recettes et liaisons en lignes compressées (début des liaisons de chaque
+ * recette, puis rang de l'ingrédient). Les recettes sont ensuite partagées entre les fils
+ * d'un {@link ForkJoinPool} : chaque tranche accumule ses compteurs dans ses propres tableaux,
+ * sans synchronisation, et les résultats partiels sont additionnés en remontant. Le calcul
+ * ne partage rien entre les fils et son temps décroît avec le nombre de cœurs ; la lecture,
+ * elle, reste séquentielle.
+ * <p>
+ * La cote d'une recette est celle de RECETTE_PKG.get_cote_sante (moyenne des cotes de ses
+ * ingrédients, au dixième) ; les recettes sans ingrédient ne sont pas notées.
+ */
+public class AnalyseCatalogue {
+
+    private static final String SQL_AUTEURS = "SELECT id_auteur, nom FROM Auteur ORDER BY id_auteur";
+    private static final String SQL_INGREDIENTS = "SELECT id_ingredient, nom, cote_sante FROM Ingredient ORDER BY id_ingredient";
+    private static final String SQL_RECETTES =
+        "SELECT id_recette, temps_preparation, temps_cuisson, auteur_id FROM Recette ORDER BY id_recette";
+    private static final String SQL_LIENS =
+        "SELECT id_recette, id_ingredient FROM Recette_Ingredient ORDER BY id_recette, id_ingredient";
+
+    /** Temps maximal d'une colonne NUMBER(3) ; les valeurs hors bornes sont ramenées dans [0, 999]. */
+    private static final int TEMPS_MAX = 999;
+    /** Cote maximale d'une recette, en dixièmes. */
+    private static final int DIXIEMES_MAX = 10 * CoteSanteCalculateur.COTE_MAX;
+    /** Tranches par fil : assez pour équilibrer la charge, assez peu pour que les fusions restent négligeables. */
+    private static final int TRANCHES_PAR_FIL = 4;
+    /** Taille minimale d'une tranche. */
+    private static final int TRANCHE_MIN = 4096;
+
+    private final int[] idsAuteurs;
+    private final String[] nomsAuteurs;
+    private final int[] idsIngredients;
+    private final String[] nomsIngredients;
+    private final int[] cotesIngredients;
+    private final int[] idsRecettes;
+    /** Temps de préparation de chaque recette, -1 pour NULL. */
+    private final int[] preparations;
+    /** Temps de cuisson de chaque recette, -1 pour NULL. */
+    private final int[] cuissons;
+    /** Rang de l'auteur de chaque recette. */
+    private final int[] auteurs;
+    /** Liaisons de la recette r : liens[debutsLiens[r]] à liens[debutsLiens[r + 1] - 1]. */
+    private final int[] debutsLiens;
+    /** Rang de l'ingrédient de chaque liaison. */
+    private final int[] liens;
+
+    private AnalyseCatalogue(int[] idsAuteurs, String[] nomsAuteurs, int[] idsIngredients, String[] nomsIngredients,
+                             int[] cotesIngredients, int[] idsRecettes, int[] preparations, int[] cuissons,
+                             int[] auteurs, int[] debutsLiens, int[] liens) {
+        this.idsAuteurs = idsAuteurs;
+        this.nomsAuteurs = nomsAuteurs;
+        this.idsIngredients = idsIngredients;
+        this.nomsIngredients = nomsIngredients;
+        this.cotesIngredients = cotesIngredients;
+        this.idsRecettes = idsRecettes;
+        this.preparations = preparations;
+        this.cuissons = cuissons;
+        this.auteurs = auteurs;
+        this.debutsLiens = debutsLiens;
+        this.liens = liens;
+    }
+
+    /**
+     * Point d'entrée en ligne de commande.
+     *
+     * @param args Le dossier des rapports (rapports par défaut) et, en option, le nombre de fils
+     */
+    public static void main(String[] args) {
+        Path dossier = Paths.get(args.length > 0 ? args[0] : "rapports");
+        int fils = args.length > 1 ? Integer.parseInt(args[1])
+                : Integer.getInteger("recette.analyse.fils", Runtime.getRuntime().availableProcessors());
+
+        AnalyseCatalogue catalogue;
+        long debut = System.nanoTime();
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            catalogue = lire(conn);
+        } catch (SQLException e) {
+            MesuresJdbc.partage().signalerErreur("Erreur lors de la lecture du catalogue", e);
+            return;
+        } finally {
+            DatabaseConnection.closeConnection();
+        }
+        long lecture = System.nanoTime() - debut;
+
+        ForkJoinPool pool = new ForkJoinPool(fils);
+        try {
+            debut = System.nanoTime();
+            Resultat resultat = catalogue.analyser(pool);
+            long calcul = System.nanoTime() - debut;
+            resultat.ecrire(dossier);
+            System.out.println(catalogue.idsRecettes.length + " recettes analysées : lecture "
+                    + lecture / 1_000_000 + " ms, calcul " + calcul / 1_000_000 + " ms sur " + fils + " fils");
+            System.out.println("Rapports écrits dans " + dossier.toAbsolutePath());
+        } catch (IOException e) {
+            System.out.println("Erreur d'écriture des rapports : " + e.getMessage());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Lit les quatre tables en une passe chacune.
+     *
+     * @param conn La connexion
+     * @return Le catalogue en colonnes
+     * @throws SQLException En cas d'erreur SQL
+     */
+    public static AnalyseCatalogue lire(Connection conn) throws SQLException {
+        StatementCache requetes = StatementCache.pour(conn);
+
+        Entiers idsAuteurs = new Entiers();
+        List<String> nomsAuteurs = new ArrayList<>();
+        try (ResultSet rs = requetes.preparer(SQL_AUTEURS).executeQuery()) {
+            while (rs.next()) {
+                idsAuteurs.ajouter(rs.getInt(1));
+                nomsAuteurs.add(rs.getString(2));
+            }
+        }
+        Entiers idsIngredients = new Entiers();
+        Entiers cotes = new Entiers();
+        List<String> nomsIngredients = new ArrayList<>();
+        try (ResultSet rs = requetes.preparer(SQL_INGREDIENTS).executeQuery()) {
+            while (rs.next()) {
+                idsIngredients.ajouter(rs.getInt(1));
+                nomsIngredients.add(rs.getString(2));
+                cotes.ajouter(rs.getInt(3));
+            }
+        }
+
+        Entiers ids = new Entiers();
+        Entiers preparations = new Entiers();
+        Entiers cuissons = new Entiers();
+        Entiers auteurs = new Entiers();
+        PreparedStatement pstmt = requetes.preparer(SQL_RECETTES);
+        pstmt.setFetchSize(1000);
+        try (ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                int auteur = idsAuteurs.chercher(rs.getInt(4));
+                if (auteur < 0) {
+                    // Auteur ajouté après la lecture de Auteur : recette ignorée
+                    continue;
+                }
+                ids.ajouter(rs.getInt(1));
+                int preparation = rs.getInt(2);
+                preparations.ajouter(rs.wasNull() ? -1 : preparation);
+                int cuisson = rs.getInt(3);
+                cuissons.ajouter(rs.wasNull() ? -1 : cuisson);
+                auteurs.ajouter(auteur);
+            }
+        }
+
+        // Liaisons, fusionnées avec les recettes dans l'ordre des identifiants
+        Entiers debutsLiens = new Entiers();
+        Entiers liens = new Entiers();
+        pstmt = requetes.preparer(SQL_LIENS);
+        pstmt.setFetchSize(1000);
+        try (ResultSet rs = pstmt.executeQuery()) {
+            int rang = 0;
+            debutsLiens.ajouter(0);
+            while (rs.next()) {
+                int idRecette = rs.getInt(1);
+                while (rang < ids.taille && ids.valeurs[rang] < idRecette) {
+                    debutsLiens.ajouter(liens.taille);
+                    rang++;
+                }
+                if (rang == ids.taille || ids.valeurs[rang] != idRecette) {
+                    continue;
+                }
+                int ingredient = idsIngredients.chercher(rs.getInt(2));
+                if (ingredient >= 0) {
+                    liens.ajouter(ingredient);
+                }
+            }
+            while (rang < ids.taille) {
+                debutsLiens.ajouter(liens.taille);
+                rang++;
+            }
+        }
+
+        return new AnalyseCatalogue(idsAuteurs.tableau(), nomsAuteurs.toArray(new String[0]),
+                idsIngredients.tableau(), nomsIngredients.toArray(new String[0]), cotes.tableau(),
+                ids.tableau(), preparations.tableau(), cuissons.tableau(), auteurs.tableau(),
+                debutsLiens.tableau(), liens.tableau());
+    }
+
+    /**
+     * Calcule les agrégats du catalogue sur le pool donné.
+     *
+     * @param pool Le pool de fils
+     * @return Les résultats
+     */
+    public Resultat analyser(ForkJoinPool pool) {
+        int n = idsRecettes.length;
+        int tranche = Math.max(TRANCHE_MIN, n / (pool.getParallelism() * TRANCHES_PAR_FIL) + 1);
+        Partiel total = pool.invoke(new Tache(0, n, tranche));
+        return new Resultat(total);
+    }
+
+    /**
+     * Accumule les recettes [debut, fin) dans un résultat partiel.
+     */
+    private Partiel accumuler(int debut, int fin) {
+        Partiel p = new Partiel(idsIngredients.length, idsAuteurs.length);
+        for (int r = debut; r < fin; r++) {
+            int preparation = preparations[r];
+            int cuisson = cuissons[r];
+            if (preparation < 0) {
+                p.preparationsNulles++;
+            } else {
+                p.preparations[Math.min(preparation, TEMPS_MAX)]++;
+            }
+            if (cuisson < 0) {
+                p.cuissonsNulles++;
+            } else {
+                p.cuissons[Math.min(cuisson, TEMPS_MAX)]++;
+            }
+            // Comme NVL(temps_preparation, 0) + NVL(temps_cuisson, 0)
+            p.totaux[Math.min(Math.max(preparation, 0), TEMPS_MAX) + Math.min(Math.max(cuisson, 0), TEMPS_MAX)]++;
+
+            int auteur = auteurs[r];
+            p.recettesAuteur[auteur]++;
+            int somme = 0;
+            int finLiens = debutsLiens[r + 1];
+            for (int l = debutsLiens[r]; l < finLiens; l++) {
+                int ingredient = liens[l];
+                p.utilisations[ingredient]++;
+                somme += cotesIngredients[ingredient];
+            }
+            int nombre = finLiens - debutsLiens[r];
+            if (nombre == 0) {
+                p.sansIngredient++;
+            } else {
+                int dixiemes = CoteSanteCalculateur.dixiemes(somme, nombre);
+                p.cotes[dixiemes]++;
+                p.noteesAuteur[auteur]++;
+                p.dixiemesAuteur[auteur] += dixiemes;
+            }
+        }
+        return p;
+    }
+
+    /**
+     * Tâche fork-join : découpe la plage de recettes en deux jusqu'à la taille d'une tranche.
+     */
+    private final class Tache extends RecursiveTask<Partiel> {
+        private static final long serialVersionUID = 1L;
+
+        private final int debut;
+        private final int fin;
+        private final int tranche;
+
+        Tache(int debut, int fin, int tranche) {
+            this.debut = debut;
+            this.fin = fin;
+            this.tranche = tranche;
+        }
+
+        @Override
+        protected Partiel compute() {
+            if (fin - debut <= tranche) {
+                return accumuler(debut, fin);
+            }
+            int milieu = (debut + fin) >>> 1;
+            Tache gauche = new Tache(debut, milieu, tranche);
+            gauche.fork();
+            Partiel droite = new Tache(milieu, fin, tranche).compute();
+            Partiel resultat = gauche.join();
+            resultat.fusionner(droite);
+            return resultat;
+        }
+    }
+
+    /**
+     * Compteurs d'une tranche de recettes, indexés par minute, dixième de cote ou rang.
+     */
+    private static final class Partiel {
+        final int[] preparations = new int[TEMPS_MAX + 1];
+        final int[] cuissons = new int[TEMPS_MAX + 1];
+        final int[] totaux = new int[2 * TEMPS_MAX + 1];
+        final int[] cotes = new int[DIXIEMES_MAX + 1];
+        final int[] utilisations;
+        final int[] recettesAuteur;
+        final int[] noteesAuteur;
+        final long[] dixiemesAuteur;
+        int preparationsNulles;
+        int cuissonsNulles;
+        int sansIngredient;
+
+        Partiel(int ingredients, int auteurs) {
+            utilisations = new int[ingredients];
+            recettesAuteur = new int[auteurs];
+            noteesAuteur = new int[auteurs];
+            dixiemesAuteur = new long[auteurs];
+        }
+
+        void fusionner(Partiel autre) {
+            ajouter(preparations, autre.preparations);
+            ajouter(cuissons, autre.cuissons);
+            ajouter(totaux, autre.totaux);
+            ajouter(cotes, autre.cotes);
+            ajouter(utilisations, autre.utilisations);
+            ajouter(recettesAuteur, autre.recettesAuteur);
+            ajouter(noteesAuteur, autre.noteesAuteur);
+            for (int i = 0; i < dixiemesAuteur.length; i++) {
+                dixiemesAuteur[i] += autre.dixiemesAuteur[i];
+            }
+            preparationsNulles += autre.preparationsNulles;
+            cuissonsNulles += autre.cuissonsNulles;
+            sansIngredient += autre.sansIngredient;
+        }
+
+        private static void ajouter(int[] cible, int[] source) {
+            for (int i = 0; i < cible.length; i++) {
+                cible[i] += source[i];
+            }
+        }
+    }
+
+    /**
+     * Résultats de l'analyse, rendus en CSV et en JSON.
+     */
+    public final class Resultat {
+        private final Partiel total;
+
+        private Resultat(Partiel total) {
+            this.total = total;
+        }
+
+        /**
+         * Écrit les rapports dans un dossier : temps.csv, cotes.csv, ingredients.csv,
+         * auteurs.csv et analyse.json.
+         *
+         * @param dossier Le dossier, créé au besoin
+         * @throws IOException En cas d'erreur d'écriture
+         */
+        public void ecrire(Path dossier) throws IOException {
+            Files.createDirectories(dossier);
+            try (BufferedWriter out = Files.newBufferedWriter(dossier.resolve("temps.csv"), StandardCharsets.UTF_8)) {
+                out.write("minutes,preparation,cuisson,total\n");
+                for (int m = 0; m < total.totaux.length; m++) {
+                    int preparation = m <= TEMPS_MAX ? total.preparations[m] : 0;
+                    int cuisson = m <= TEMPS_MAX ? total.cuissons[m] : 0;
+                    if (preparation + cuisson + total.totaux[m] > 0) {
+                        out.write(m + "," + preparation + "," + cuisson + "," + total.totaux[m] + "\n");
+                    }
+                }
+            }
+            try (BufferedWriter out = Files.newBufferedWriter(dossier.resolve("cotes.csv"), StandardCharsets.UTF_8)) {
+                out.write("cote_sante,recettes\n");
+                for (int d = 0; d <= DIXIEMES_MAX; d++) {
+                    if (total.cotes[d] > 0) {
+                        out.write(d / 10 + "." + d % 10 + "," + total.cotes[d] + "\n");
+                    }
+                }
+            }
+            try (BufferedWriter out = Files.newBufferedWriter(dossier.resolve("ingredients.csv"), StandardCharsets.UTF_8)) {
+                out.write("id_ingredient,nom,cote_sante,utilisations\n");
+                for (int i : ingredientsParPopularite()) {
+                    out.write(idsIngredients[i] + "," + csv(nomsIngredients[i]) + "," + cotesIngredients[i]
+                            + "," + total.utilisations[i] + "\n");
+                }
+            }
+            try (BufferedWriter out = Files.newBufferedWriter(dossier.resolve("auteurs.csv"), StandardCharsets.UTF_8)) {
+                out.write("id_auteur,nom,recettes,recettes_notees,cote_moyenne\n");
+                for (int a = 0; a < idsAuteurs.length; a++) {
+                    Double cote = coteMoyenne(a);
+                    out.write(idsAuteurs[a] + "," + csv(nomsAuteurs[a]) + "," + total.recettesAuteur[a] + ","
+                            + total.noteesAuteur[a] + "," + (cote == null ? "" : cote) + "\n");
+                }
+            }
+            Files.write(dossier.resolve("analyse.json"), JsonEcrivain.ecrire(json()).getBytes(StandardCharsets.UTF_8));
+        }
+
+        /**
+         * @return Les résultats sous forme de Map, pour {@link JsonEcrivain}
+         */
+        public Map<String, Object> json() {
+            Map<String, Object> racine = new LinkedHashMap<>();
+            racine.put("recettes", idsRecettes.length);
+            racine.put("auteurs", idsAuteurs.length);
+            racine.put("ingredients", idsIngredients.length);
+            racine.put("liaisons", liens.length);
+            racine.put("temps_preparation", statistiques(total.preparations, total.preparationsNulles));
+            racine.put("temps_cuisson", statistiques(total.cuissons, total.cuissonsNulles));
+            racine.put("temps_total", statistiques(total.totaux, 0));
+
+            Map<String, Object> cotes = new LinkedHashMap<>();
+            cotes.put("sans_ingredient", total.sansIngredient);
+            Map<String, Object> distribution = new LinkedHashMap<>();
+            for (int d = 0; d <= DIXIEMES_MAX; d++) {
+                if (total.cotes[d] > 0) {
+                    distribution.put(d / 10 + "." + d % 10, total.cotes[d]);
+                }
+            }
+            cotes.put("distribution", distribution);
+            racine.put("cote_sante", cotes);
+
+            List<Object> ingredients = new ArrayList<>();
+            for (int i : ingredientsParPopularite()) {
+                Map<String, Object> ingredient = new LinkedHashMap<>();
+                ingredient.put("id_ingredient", idsIngredients[i]);
+                ingredient.put("nom", nomsIngredients[i]);
+                ingredient.put("cote_sante", cotesIngredients[i]);
+                ingredient.put("utilisations", total.utilisations[i]);
+                ingredients.add(ingredient);
+            }
+            racine.put("popularite_ingredients", ingredients);
+
+            List<Object> parAuteur = new ArrayList<>();
+            for (int a = 0; a < idsAuteurs.length; a++) {
+                Map<String, Object> auteur = new LinkedHashMap<>();
+                auteur.put("id_auteur", idsAuteurs[a]);
+                auteur.put("nom", nomsAuteurs[a]);
+                auteur.put("recettes", total.recettesAuteur[a]);
+                auteur.put("recettes_notees", total.noteesAuteur[a]);
+                auteur.put("cote_moyenne", coteMoyenne(a));
+                parAuteur.add(auteur);
+            }
+            racine.put("cote_par_auteur", parAuteur);
+            return racine;
+        }
+
+        /**
+         * @param ingredient Le rang d'un ingrédient
+         * @return Le nombre de recettes qui l'utilisent
+         */
+        public int utilisations(int ingredient) {
+            return total.utilisations[ingredient];
+        }
+
+        /**
+         * @param auteur Le rang d'un auteur
+         * @return La moyenne des cotes de ses recettes notées, au centième, ou null s'il n'en a aucune
+         */
+        public Double coteMoyenne(int auteur) {
+            int notees = total.noteesAuteur[auteur];
+            if (notees == 0) {
+                return null;
+            }
+            return Math.round(10.0 * total.dixiemesAuteur[auteur] / notees) / 100.0;
+        }
+
+        private List<Integer> ingredientsParPopularite() {
+            List<Integer> rangs = new ArrayList<>(idsIngredients.length);
+            for (int i = 0; i < idsIngredients.length; i++) {
+                rangs.add(i);
+            }
+            rangs.sort((a, b) -> total.utilisations[a] != total.utilisations[b]
+                    ? Integer.compare(total.utilisations[b], total.utilisations[a])
+                    : Integer.compare(idsIngredients[a], idsIngredients[b]));
+            return rangs;
+        }
+    }
+
+    /**
+     * Nombre, moyenne, minimum, médiane, 90e centile et maximum d'une distribution en minutes.
+     */
+    private static Map<String, Object> statistiques(int[] distribution, int nuls) {
+        long nombre = 0;
+        long somme = 0;
+        int min = -1;
+        int max = -1;
+        for (int m = 0; m < distribution.length; m++) {
+            if (distribution[m] > 0) {
+                if (min < 0) {
+                    min = m;
+                }
+                max = m;
+                nombre += distribution[m];
+                somme += (long) m * distribution[m];
+            }
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("nombre", nombre);
+        stats.put("nuls", nuls);
+        stats.put("moyenne", nombre == 0 ? null : Math.round(100.0 * somme / nombre) / 100.0);
+        stats.put("min", min < 0 ? null : min);
+        stats.put("mediane", centile(distribution, nombre, 0.5));
+        stats.put("p90", centile(distribution, nombre, 0.9));
+        stats.put("max", max < 0 ? null : max);
+        return stats;
+    }
+
+    private static Integer centile(int[] distribution, long nombre, double fraction) {
+        if (nombre == 0) {
+            return null;
+        }
+        long rang = Math.max(1, (long) Math.ceil(fraction * nombre));
+        long cumul = 0;
+        for (int m = 0; m < distribution.length; m++) {
+            cumul += distribution[m];
+            if (cumul >= rang) {
+                return m;
+            }
+        }
+        return distribution.length - 1;
+    }
+
+    private static String csv(String valeur) {
+        if (valeur == null) {
+            return "";
+        }
+        if (valeur.indexOf(',') < 0 && valeur.indexOf('"') < 0 && valeur.indexOf('\n') < 0 && valeur.indexOf('\r') < 0) {
+            return valeur;
+        }
+        return '"' + valeur.replace("\"", "\"\"") + '"';
+    }
+
+    /**
+     * Tableau d'int extensible ; {@link #chercher} suppose les valeurs triées.
+     */
+    private static final class Entiers {
+        int[] valeurs = new int[1024];
+        int taille;
+
+        void ajouter(int valeur) {
+            if (taille == valeurs.length) {
+                valeurs = Arrays.copyOf(valeurs, taille * 2);
+            }
+            valeurs[taille++] = valeur;
+        }
+
+        int chercher(int valeur) {
+            return Arrays.binarySearch(valeurs, 0, taille, valeur);
+        }
+
+        int[] tableau() {
+            return Arrays.copyOf(valeurs, taille);
+        }
+    }
+}
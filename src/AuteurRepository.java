@@ -0,0 +1,238 @@
+import java.io.IOException;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Accès aux données de la table Auteur.
+ * Les requêtes sont préparées une seule fois par connexion grâce au {@link StatementCache}.
+ */
+public class AuteurRepository {
+
+    private static final String SQL_AJOUTER = "INSERT INTO Auteur (nom, email, bio) VALUES (?, ?, ?)";
+    private static final String SQL_LISTER = "SELECT id_auteur, nom, email, bio FROM Auteur";
+    private static final String SQL_TROUVER = "SELECT id_auteur, nom, email, bio FROM Auteur WHERE id_auteur = ?";
+    private static final String SQL_ID_PAR_EMAIL = "SELECT id_auteur FROM Auteur WHERE email = ?";
+    private static final String SQL_SUPPRIMER = "DELETE FROM Auteur WHERE id_auteur = ?";
+    // Verrous pris avant de lire la cascade : l'auteur, que RecetteRepository.ajouter verrouille
+    // aussi, puis ses recettes, dont chaque écriture sur les liaisons change la version
+    private static final String SQL_VERROUILLER = "SELECT id_auteur FROM Auteur WHERE id_auteur = ? FOR UPDATE";
+    private static final String SQL_VERROUILLER_RECETTES =
+        "SELECT id_recette FROM Recette WHERE auteur_id = ? FOR UPDATE";
+    // Lignes supprimées en cascade avec l'auteur, à consigner dans le journal d'audit
+    private static final String SQL_CASCADE =
+        "SELECT r.id_recette, ri.id_ingredient FROM Recette r " +
+        "LEFT JOIN Recette_Ingredient ri ON r.id_recette = ri.id_recette " +
+        "WHERE r.auteur_id = ? ORDER BY r.id_recette";
+
+    private final Connection conn;
+    private final StatementCache requetes;
+
+    /**
+     * Crée un dépôt travaillant sur la connexion donnée.
+     *
+     * @param conn La connexion empruntée par l'appelant
+     * @throws SQLException En cas d'erreur d'accès à la connexion
+     */
+    public AuteurRepository(Connection conn) throws SQLException {
+        this.conn = conn;
+        this.requetes = StatementCache.pour(conn);
+    }
+
+    /**
+     * Enregistre un auteur, renseigne son identifiant et consigne l'insertion
+     * dans le {@link JournalAudit}.
+     *
+     * @param auteur L'auteur à enregistrer
+     * @return L'identifiant généré
+     * @throws SQLException En cas d'erreur SQL
+     */
+    public int ajouter(Main.Auteur auteur) throws SQLException {
+        boolean autoCommit = conn.getAutoCommit();
+        if (autoCommit) {
+            conn.setAutoCommit(false);
+        }
+        try {
+            PreparedStatement pstmt = requetes.preparer(SQL_AJOUTER, "id_auteur");
+            pstmt.setString(1, auteur.nom);
+            pstmt.setString(2, auteur.email);
+            pstmt.setString(3, auteur.bio);
+            if (pstmt.executeUpdate() == 0) {
+                throw new SQLException("Aucune ligne insérée dans Auteur.");
+            }
+            try (ResultSet generatedKeys = pstmt.getGeneratedKeys()) {
+                if (!generatedKeys.next()) {
+                    throw new SQLException("Impossible de récupérer l'identifiant de l'auteur.");
+                }
+                auteur.id_auteur = generatedKeys.getInt(1);
+            }
+            JournalAudit.partage().enregistrer(conn, "Auteur", "INSERT", auteur.id_auteur);
+
+            if (autoCommit) {
+                conn.commit();
+            }
+            return auteur.id_auteur;
+        } catch (SQLException | RuntimeException e) {
+            if (autoCommit) {
+                conn.rollback();
+            }
+            auteur.id_auteur = 0;
+            throw e;
+        } finally {
+            if (autoCommit) {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    /**
+     * Retourne tous les auteurs.
+     *
+     * @return La liste des auteurs
+     * @throws SQLException En cas d'erreur SQL
+     */
+    public List<Main.Auteur> lister() throws SQLException {
+        List<Main.Auteur> auteurs = new ArrayList<>();
+        try (ResultSet rs = requetes.preparer(SQL_LISTER).executeQuery()) {
+            while (rs.next()) {
+                auteurs.add(lire(rs));
+            }
+        }
+        return auteurs;
+    }
+
+    /**
+     * Écrit tous les auteurs en tableau JSON, directement depuis le ResultSet.
+     *
+     * @param flux Le flux de sortie
+     * @return Le nombre d'auteurs écrits
+     * @throws SQLException En cas d'erreur SQL
+     * @throws IOException En cas d'erreur d'écriture
+     */
+    public int ecrireTous(JsonFlux flux) throws SQLException, IOException {
+        int nombre = 0;
+        PreparedStatement pstmt = requetes.preparer(SQL_LISTER);
+        pstmt.setFetchSize(500);
+        flux.debutTableau();
+        try (ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                flux.debutObjet();
+                flux.nom("id_auteur").valeur(rs.getInt("id_auteur"));
+                flux.nom("nom").valeur(rs.getString("nom"));
+                flux.nom("email").valeur(rs.getString("email"));
+                flux.nom("bio").valeur(rs.getString("bio"));
+                flux.finObjet();
+                nombre++;
+            }
+        }
+        flux.finTableau();
+        return nombre;
+    }
+
+    /**
+     * Recherche un auteur par son identifiant.
+     *
+     * @param idAuteur L'identifiant de l'auteur
+     * @return L'auteur, ou null s'il n'existe pas
+     * @throws SQLException En cas d'erreur SQL
+     */
+    public Main.Auteur trouver(int idAuteur) throws SQLException {
+        PreparedStatement pstmt = requetes.preparer(SQL_TROUVER);
+        pstmt.setInt(1, idAuteur);
+        try (ResultSet rs = pstmt.executeQuery()) {
+            return rs.next() ? lire(rs) : null;
+        }
+    }
+
+    /**
+     * Recherche l'identifiant d'un auteur par son email, qui est unique.
+     *
+     * @param email L'email de l'auteur
+     * @return L'identifiant de l'auteur, ou -1 s'il n'existe pas
+     * @throws SQLException En cas d'erreur SQL
+     */
+    public int idParEmail(String email) throws SQLException {
+        PreparedStatement pstmt = requetes.preparer(SQL_ID_PAR_EMAIL);
+        pstmt.setString(1, email);
+        try (ResultSet rs = pstmt.executeQuery()) {
+            return rs.next() ? rs.getInt(1) : -1;
+        }
+    }
+
+    /**
+     * Supprime un auteur ; ses recettes et leurs liaisons sont supprimées en cascade.
+     * Chaque ligne supprimée, y compris par cascade, est consignée dans le {@link JournalAudit}.
+     * L'auteur et ses recettes sont verrouillés avant la lecture de la cascade : une recette ou
+     * une liaison ajoutée en même temps attend la fin de la suppression, ou la fait attendre.
+     *
+     * @param idAuteur L'identifiant de l'auteur
+     * @return Le nombre de lignes supprimées dans Auteur
+     * @throws SQLException En cas d'erreur SQL
+     */
+    public int supprimer(int idAuteur) throws SQLException {
+        boolean autoCommit = conn.getAutoCommit();
+        if (autoCommit) {
+            conn.setAutoCommit(false);
+        }
+        try {
+            PreparedStatement verrou = requetes.preparer(SQL_VERROUILLER);
+            verrou.setInt(1, idAuteur);
+            try (ResultSet rs = verrou.executeQuery()) {
+                if (!rs.next()) {
+                    return 0;
+                }
+            }
+            PreparedStatement verrouRecettes = requetes.preparer(SQL_VERROUILLER_RECETTES);
+            verrouRecettes.setInt(1, idAuteur);
+            try (ResultSet rs = verrouRecettes.executeQuery()) {
+                // Les recettes sont verrouillées dès l'exécution ; leurs lignes ne servent pas
+            }
+
+            List<JournalAudit.Evenement> evenements = new ArrayList<>();
+            PreparedStatement cascade = requetes.preparer(SQL_CASCADE);
+            cascade.setInt(1, idAuteur);
+            try (ResultSet rs = cascade.executeQuery()) {
+                int courante = 0;
+                while (rs.next()) {
+                    int idRecette = rs.getInt(1);
+                    int idIngredient = rs.getInt(2);
+                    if (!rs.wasNull()) {
+                        evenements.add(new JournalAudit.Evenement("Recette_Ingredient", "DELETE", idRecette, idIngredient));
+                    }
+                    if (idRecette != courante) {
+                        evenements.add(new JournalAudit.Evenement("Recette", "DELETE", idRecette, 0));
+                        courante = idRecette;
+                    }
+                }
+            }
+
+            PreparedStatement pstmt = requetes.preparer(SQL_SUPPRIMER);
+            pstmt.setInt(1, idAuteur);
+            int supprimes = pstmt.executeUpdate();
+            if (supprimes > 0) {
+                evenements.add(new JournalAudit.Evenement("Auteur", "DELETE", idAuteur, 0));
+                JournalAudit.partage().enregistrer(conn, evenements);
+            }
+
+            if (autoCommit) {
+                conn.commit();
+            }
+            return supprimes;
+        } catch (SQLException | RuntimeException e) {
+            if (autoCommit) {
+                conn.rollback();
+            }
+            throw e;
+        } finally {
+            if (autoCommit) {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    private static Main.Auteur lire(ResultSet rs) throws SQLException {
+        Main.Auteur auteur = new Main.Auteur(rs.getString("nom"), rs.getString("email"), rs.getString("bio"));
+        auteur.id_auteur = rs.getInt("id_auteur");
+        return auteur;
+    }
+}
@@ -0,0 +1,592 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Capture des changements de données : suit la table Trace et transmet chaque écriture sur
+ * Auteur, Recette, Ingredient et Recette_Ingredient, avec l'état actuel de la ligne touchée,
+ * à des abonnés du même processus (index de recherche, caches, exports).
+ * <p>
+ * Les entrées sont suivies dans l'ordre de id_trace, la clé générée à l'insertion, et non de
+ * tracking_number : les numéros de suivi sont réservés par blocs de
+ * {@link JournalAudit#TAILLE_BLOC} par chaque processus, si bien qu'un petit numéro peut être
+ * validé longtemps après un grand. Les clés n'ont pas ce défaut, mais une transaction encore
+ * ouverte peut valider une entrée après d'autres de clé plus grande : un trou dans les clés
+ * lues est donc relu à chaque tour. Passé recette.cdc.attenteMs (30 s par défaut), il n'est
+ * abandonné, comme une transaction annulée, que si aucune transaction ouverte dans la base
+ * n'a commencé avant qu'il soit remarqué ({@link TraceRepository#ageTransactionLaPlusAncienne}) ;
+ * si la base ne donne pas ses transactions ouvertes, seule l'attente compte. Chaque plage
+ * abandonnée est signalée avec ses clés. Une entrée arrivée en retard dans un trou est
+ * transmise après des entrées de clé plus grande.
+ * <p>
+ * Chaque tour lit au plus recette.cdc.lot entrées (500 par défaut), résout les lignes touchées
+ * en une requête par table et par tranche de {@link #TRANCHE} clés, puis transmet le lot aux
+ * abonnés sur le fil de lecture. Le lot suivant n'est lu que lorsque tous les abonnés ont fini
+ * le précédent : un abonné lent ralentit la lecture au lieu de laisser les changements
+ * s'accumuler en mémoire. Tant que les lots sont pleins, les tours s'enchaînent ; sinon
+ * l'attente entre deux tours double, de recette.cdc.intervalleMs (200 ms) jusqu'à 5 s.
+ * <p>
+ * Le point de reprise (la plus grande clé lue et les trous encore attendus) est enregistré
+ * dans un fichier après chaque lot transmis. Si un abonné échoue, le point n'avance pas et le
+ * lot est retransmis à tous au tour suivant : la livraison est « au moins une fois ».
+ */
+public class CaptureChangements implements Closeable {
+
+    /** Nombre de clés par requête de résolution ; les listes IN sont complétées à cette taille. */
+    static final int TRANCHE = 100;
+    private static final long INTERVALLE_MAX_MS = 5000;
+
+    /**
+     * Abonné aux changements.
+     */
+    public interface Abonne {
+        /**
+         * Reçoit un lot de changements, dans l'ordre de lecture du journal.
+         *
+         * @param changements Les changements, non modifiables
+         * @throws Exception Si le lot n'a pas pu être traité ; il sera retransmis
+         */
+        void changements(List<Changement> changements) throws Exception;
+    }
+
+    private final String nom;
+    private final Path fichier;
+    private final int tailleLot;
+    private final long intervalleMs;
+    private final long attenteMs;
+    private final List<Abonne> abonnes = new CopyOnWriteArrayList<>();
+    private final Map<String, String> sqlResolution = new HashMap<>();
+
+    private Point point;
+    private Thread fil;
+    private volatile boolean arrete;
+
+    private long tours;
+    private long transmis;
+    private long retards;
+    private long abandonnees;
+    /** Faux après un échec de lecture des transactions ouvertes : seule l'attente compte. */
+    private boolean transactionsLisibles = true;
+    private long echecs;
+
+    /**
+     * Crée une capture configurée par les propriétés recette.cdc.lot, recette.cdc.intervalleMs
+     * et recette.cdc.attenteMs, dont le point de reprise est le fichier cdc-[nom].point.
+     *
+     * @param nom Le nom de l'abonnement, qui désigne son point de reprise
+     */
+    public CaptureChangements(String nom) {
+        this(nom, Paths.get("cdc-" + nom + ".point"), Integer.getInteger("recette.cdc.lot", 500),
+                Long.getLong("recette.cdc.intervalleMs", 200), Long.getLong("recette.cdc.attenteMs", 30_000));
+    }
+
+    /**
+     * Crée une capture.
+     *
+     * @param nom Le nom de l'abonnement
+     * @param fichier Le fichier du point de reprise
+     * @param tailleLot Le nombre maximal d'entrées lues par tour
+     * @param intervalleMs L'attente après un tour sans lot plein, en millisecondes
+     * @param attenteMs La durée pendant laquelle un trou dans les clés est attendu, en millisecondes
+     */
+    public CaptureChangements(String nom, Path fichier, int tailleLot, long intervalleMs, long attenteMs) {
+        if (tailleLot < 1) {
+            throw new IllegalArgumentException("La taille des lots doit être positive : " + tailleLot);
+        }
+        this.nom = nom;
+        this.fichier = fichier;
+        this.tailleLot = tailleLot;
+        this.intervalleMs = Math.max(1, intervalleMs);
+        this.attenteMs = attenteMs;
+        String parametres = "?" + ",?".repeat(TRANCHE - 1);
+        sqlResolution.put("Auteur",
+                "SELECT id_auteur, nom, email, bio FROM Auteur WHERE id_auteur IN (" + parametres + ")");
+        sqlResolution.put("Ingredient",
+                "SELECT id_ingredient, nom, cote_sante FROM Ingredient WHERE id_ingredient IN (" + parametres + ")");
+        sqlResolution.put("Recette",
+                "SELECT id_recette, titre, description, instructions, temps_preparation, temps_cuisson, auteur_id, version " +
+                "FROM Recette WHERE id_recette IN (" + parametres + ")");
+        sqlResolution.put("Recette_Ingredient",
+                "SELECT id_recette, id_ingredient, quantite FROM Recette_Ingredient WHERE id_recette IN (" + parametres + ")");
+    }
+
+    /**
+     * Inscrit un abonné ; à faire avant {@link #demarrer} pour ne manquer aucun lot.
+     *
+     * @param abonne L'abonné
+     */
+    public void abonner(Abonne abonne) {
+        abonnes.add(abonne);
+    }
+
+    /**
+     * Charge le point de reprise et lance le fil de lecture. Sans point de reprise, la
+     * capture part de la fin actuelle du journal, ou de son début si depuisLeDebut est vrai.
+     *
+     * @param depuisLeDebut Vrai pour transmettre tout le journal lors du premier lancement
+     * @throws SQLException Si la fin du journal ne peut pas être lue
+     * @throws IOException Si le point de reprise est illisible
+     */
+    public synchronized void demarrer(boolean depuisLeDebut) throws SQLException, IOException {
+        if (fil != null) {
+            return;
+        }
+        charger(depuisLeDebut);
+        fil = new Thread(this::boucler, "cdc-" + nom);
+        fil.setDaemon(true);
+        fil.start();
+    }
+
+    /**
+     * Arrête le fil de lecture après le lot en cours ; le point de reprise est déjà enregistré.
+     */
+    @Override
+    public void close() {
+        arrete = true;
+        Thread t;
+        synchronized (this) {
+            t = fil;
+        }
+        if (t != null) {
+            t.interrupt();
+            try {
+                t.join(30_000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Exécute un tour : lit les entrées arrivées dans les trous et après la dernière clé lue,
+     * résout leurs lignes, les transmet aux abonnés puis enregistre le point de reprise.
+     * Appelé par le fil de lecture ; utilisable directement si la capture n'est pas démarrée.
+     *
+     * @return Le nombre de changements transmis
+     * @throws SQLException En cas d'erreur SQL
+     * @throws IOException Si le point de reprise ne peut pas être enregistré
+     * @throws Exception Si un abonné échoue ; le point de reprise n'a alors pas avancé
+     */
+    public synchronized int tour() throws Exception {
+        if (point == null) {
+            charger(false);
+        }
+        tours++;
+        Point suivant = point.copie();
+        long maintenant = System.currentTimeMillis();
+        List<TraceRepository.Trace> lues = new ArrayList<>();
+        List<Changement> changements;
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            TraceRepository traces = new TraceRepository(conn);
+            for (Map.Entry<Long, long[]> trou : point.trous.entrySet()) {
+                if (lues.size() >= tailleLot) {
+                    break;
+                }
+                for (TraceRepository.Trace trace : traces.entre(trou.getKey(), trou.getValue()[0], tailleLot - lues.size())) {
+                    suivant.combler(trace.id_trace);
+                    lues.add(trace);
+                    retards++;
+                }
+            }
+            if (lues.size() < tailleLot) {
+                for (TraceRepository.Trace trace : traces.apres(point.derniere, tailleLot - lues.size())) {
+                    suivant.avancer(trace.id_trace, maintenant);
+                    lues.add(trace);
+                }
+            }
+            long limite = maintenant - attenteMs;
+            if (suivant.attenteEcoulee(limite)) {
+                for (long[] plage : suivant.abandonner(limite, debutTransactionLaPlusAncienne(traces, maintenant))) {
+                    abandonnees += plage[1] - plage[0] + 1;
+                    System.out.println("Capture " + nom + " : clés " + plage[0] + " à " + plage[1]
+                            + " de Trace abandonnées, attendues depuis " + (maintenant - plage[2]) + " ms");
+                }
+            }
+            changements = resoudre(conn, lues);
+        }
+
+        if (!changements.isEmpty()) {
+            List<Changement> lot = Collections.unmodifiableList(changements);
+            for (Abonne abonne : abonnes) {
+                abonne.changements(lot);
+            }
+        }
+        // Sans lecture, seul l'abandon d'un trou change le point de reprise
+        boolean avance = !lues.isEmpty() || suivant.trous.size() != point.trous.size();
+        point = suivant;
+        if (avance) {
+            enregistrer();
+        }
+        transmis += changements.size();
+        return changements.size();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "CaptureChangements[" + nom + ", derniere=" + (point == null ? "-" : String.valueOf(point.derniere))
+                + ", trous=" + (point == null ? 0 : point.trous.size()) + ", tours=" + tours
+                + ", transmis=" + transmis + ", retards=" + retards + ", abandonnees=" + abandonnees
+                + ", echecs=" + echecs + "]";
+    }
+
+    private void boucler() {
+        long attente = intervalleMs;
+        while (!arrete) {
+            int lus;
+            try {
+                lus = tour();
+                attente = lus >= tailleLot ? 0 : Math.min(INTERVALLE_MAX_MS, attente == 0 ? intervalleMs : attente * 2);
+                if (lus > 0 && lus < tailleLot) {
+                    attente = intervalleMs;
+                }
+            } catch (Exception e) {
+                synchronized (this) {
+                    echecs++;
+                }
+                System.out.println("Capture " + nom + " : lot non transmis, nouvel essai dans "
+                        + INTERVALLE_MAX_MS + " ms : " + e.getMessage());
+                attente = INTERVALLE_MAX_MS;
+            }
+            if (attente > 0) {
+                try {
+                    Thread.sleep(attente);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Moment où a commencé la plus ancienne transaction ouverte, Long.MAX_VALUE s'il n'est
+     * pas connu.
+     */
+    private long debutTransactionLaPlusAncienne(TraceRepository traces, long maintenant) {
+        if (!transactionsLisibles) {
+            return Long.MAX_VALUE;
+        }
+        try {
+            long age = traces.ageTransactionLaPlusAncienne();
+            return age < 0 ? Long.MAX_VALUE : maintenant - age;
+        } catch (SQLException e) {
+            transactionsLisibles = false;
+            System.out.println("Capture " + nom + " : transactions ouvertes illisibles, les trous seront abandonnés après "
+                    + attenteMs + " ms : " + e.getMessage());
+            return Long.MAX_VALUE;
+        }
+    }
+
+    // ---------------------------------------------------------------- résolution
+
+    /**
+     * Associe à chaque entrée l'état actuel de sa ligne, lu en une requête par table et par
+     * tranche de clés. Une suppression, ou une ligne supprimée depuis, n'a pas de ligne.
+     */
+    private List<Changement> resoudre(Connection conn, List<TraceRepository.Trace> lues) throws SQLException {
+        Map<String, Set<Integer>> cles = new HashMap<>();
+        for (TraceRepository.Trace trace : lues) {
+            if (!trace.operation_type.equals("DELETE") && sqlResolution.containsKey(trace.table_name)) {
+                cles.computeIfAbsent(trace.table_name, t -> new LinkedHashSet<>()).add(trace.record_id);
+            }
+        }
+        Map<String, Map<Long, Map<String, Object>>> lignes = new HashMap<>();
+        StatementCache requetes = StatementCache.pour(conn);
+        for (Map.Entry<String, Set<Integer>> table : cles.entrySet()) {
+            Map<Long, Map<String, Object>> parCle = new HashMap<>();
+            boolean liaison = table.getKey().equals("Recette_Ingredient");
+            List<Integer> ids = new ArrayList<>(table.getValue());
+            for (int debut = 0; debut < ids.size(); debut += TRANCHE) {
+                PreparedStatement pstmt = requetes.preparer(sqlResolution.get(table.getKey()));
+                int fin = Math.min(ids.size(), debut + TRANCHE);
+                for (int i = 0; i < TRANCHE; i++) {
+                    // Dernière tranche complétée par sa dernière clé : une seule requête préparée
+                    pstmt.setInt(i + 1, ids.get(Math.min(debut + i, fin - 1)));
+                }
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    ResultSetMetaData meta = rs.getMetaData();
+                    while (rs.next()) {
+                        Map<String, Object> ligne = lireLigne(rs, meta);
+                        long cle = rs.getLong(1);
+                        if (liaison) {
+                            cle = cle(cle, rs.getInt(2));
+                        }
+                        parCle.put(cle, ligne);
+                    }
+                }
+            }
+            lignes.put(table.getKey(), parCle);
+        }
+
+        List<Changement> changements = new ArrayList<>(lues.size());
+        for (TraceRepository.Trace trace : lues) {
+            Map<Long, Map<String, Object>> parCle = lignes.get(trace.table_name);
+            Map<String, Object> ligne = null;
+            if (parCle != null) {
+                ligne = parCle.get(trace.table_name.equals("Recette_Ingredient")
+                        ? cle(trace.record_id, trace.record_id2) : trace.record_id);
+            }
+            changements.add(new Changement(trace, ligne));
+        }
+        return changements;
+    }
+
+    private static long cle(long id, int id2) {
+        return (id << 32) | (id2 & 0xFFFFFFFFL);
+    }
+
+    private static Map<String, Object> lireLigne(ResultSet rs, ResultSetMetaData meta) throws SQLException {
+        Map<String, Object> ligne = new LinkedHashMap<>();
+        for (int i = 1; i <= meta.getColumnCount(); i++) {
+            Object valeur;
+            switch (meta.getColumnType(i)) {
+                case Types.CLOB:
+                case Types.NCLOB:
+                    valeur = rs.getString(i);
+                    break;
+                default:
+                    valeur = rs.getObject(i);
+                    // NUMBER sans décimale : lu comme un entier plutôt qu'un BigDecimal
+                    if (valeur instanceof BigDecimal && ((BigDecimal) valeur).scale() <= 0) {
+                        valeur = ((BigDecimal) valeur).longValueExact();
+                    } else if (valeur instanceof Integer) {
+                        valeur = ((Integer) valeur).longValue();
+                    }
+                    break;
+            }
+            ligne.put(meta.getColumnLabel(i).toLowerCase(), valeur);
+        }
+        return Collections.unmodifiableMap(ligne);
+    }
+
+    // ---------------------------------------------------------------- point de reprise
+
+    private void charger(boolean depuisLeDebut) throws SQLException, IOException {
+        if (Files.exists(fichier)) {
+            point = Point.lire(fichier, System.currentTimeMillis());
+            return;
+        }
+        point = new Point();
+        if (!depuisLeDebut) {
+            try (Connection conn = DatabaseConnection.getConnection()) {
+                point.derniere = new TraceRepository(conn).dernierId();
+            }
+        }
+        enregistrer();
+    }
+
+    private void enregistrer() throws IOException {
+        Path temporaire = fichier.resolveSibling(fichier.getFileName() + ".tmp");
+        Files.write(temporaire, point.texte().getBytes(StandardCharsets.UTF_8));
+        Files.move(temporaire, fichier, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Position de lecture : la plus grande clé lue et les plages de clés inférieures encore
+     * absentes, avec le moment où chacune a été remarquée.
+     */
+    private static final class Point {
+        long derniere;
+        /** Début de chaque trou vers {fin incluse, remarqué à (ms)}. */
+        final TreeMap<Long, long[]> trous = new TreeMap<>();
+
+        Point copie() {
+            Point p = new Point();
+            p.derniere = derniere;
+            for (Map.Entry<Long, long[]> trou : trous.entrySet()) {
+                p.trous.put(trou.getKey(), trou.getValue().clone());
+            }
+            return p;
+        }
+
+        /** Une clé lue après la dernière : les clés sautées forment un nouveau trou. */
+        void avancer(long cle, long maintenant) {
+            if (cle > derniere + 1) {
+                trous.put(derniere + 1, new long[] {cle - 1, maintenant});
+            }
+            derniere = Math.max(derniere, cle);
+        }
+
+        /** Une clé arrivée en retard : son trou est coupé en deux. */
+        void combler(long cle) {
+            Map.Entry<Long, long[]> trou = trous.floorEntry(cle);
+            if (trou == null || trou.getValue()[0] < cle) {
+                return;
+            }
+            long debut = trou.getKey();
+            long fin = trou.getValue()[0];
+            long depuis = trou.getValue()[1];
+            trous.remove(debut);
+            if (cle > debut) {
+                trous.put(debut, new long[] {cle - 1, depuis});
+            }
+            if (cle < fin) {
+                trous.put(cle + 1, new long[] {fin, depuis});
+            }
+        }
+
+        /** Vrai si un trou a été remarqué avant la limite. */
+        boolean attenteEcoulee(long limite) {
+            for (long[] trou : trous.values()) {
+                if (trou[1] < limite) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Oublie les trous remarqués avant la limite et avant le début de la plus ancienne
+         * transaction ouverte, la seule qui pourrait encore les combler.
+         *
+         * @return Les plages abandonnées, {début, fin, remarquée à (ms)}
+         */
+        List<long[]> abandonner(long limite, long debutTransaction) {
+            List<long[]> plages = new ArrayList<>();
+            for (Iterator<Map.Entry<Long, long[]>> it = trous.entrySet().iterator(); it.hasNext(); ) {
+                Map.Entry<Long, long[]> trou = it.next();
+                long depuis = trou.getValue()[1];
+                if (depuis < limite && depuis < debutTransaction) {
+                    it.remove();
+                    plages.add(new long[] {trou.getKey(), trou.getValue()[0], depuis});
+                }
+            }
+            return plages;
+        }
+
+        String texte() {
+            StringBuilder sb = new StringBuilder().append(derniere).append('\n');
+            for (Map.Entry<Long, long[]> trou : trous.entrySet()) {
+                sb.append(trou.getKey()).append('-').append(trou.getValue()[0]).append('\n');
+            }
+            return sb.toString();
+        }
+
+        /** Relit un point enregistré ; ses trous sont attendus de nouveau à partir de maintenant. */
+        static Point lire(Path fichier, long maintenant) throws IOException {
+            List<String> lignes = Files.readAllLines(fichier, StandardCharsets.UTF_8);
+            Point p = new Point();
+            try {
+                p.derniere = Long.parseLong(lignes.get(0).trim());
+                for (String ligne : lignes.subList(1, lignes.size())) {
+                    if (!ligne.isBlank()) {
+                        int tiret = ligne.indexOf('-');
+                        p.trous.put(Long.parseLong(ligne.substring(0, tiret).trim()),
+                                new long[] {Long.parseLong(ligne.substring(tiret + 1).trim()), maintenant});
+                    }
+                }
+            } catch (RuntimeException e) {
+                throw new IOException("Point de reprise illisible : " + fichier, e);
+            }
+            return p;
+        }
+    }
+
+    /**
+     * Changement transmis aux abonnés : une entrée du journal et l'état actuel de sa ligne.
+     */
+    public static class Changement {
+        final long id_trace;
+        /** Numéro de suivi tiré de seq_tracking_number. */
+        final long tracking_number;
+        final String table_name;
+        /** INSERT, UPDATE ou DELETE. */
+        final String operation_type;
+        final Timestamp operation_date;
+        final int record_id;
+        /** Second élément de la clé pour Recette_Ingredient, 0 sinon. */
+        final int record_id2;
+        /**
+         * Colonnes de la ligne, en minuscules, lues au moment de la transmission ; null pour
+         * une suppression ou si la ligne a été supprimée depuis.
+         */
+        final Map<String, Object> ligne;
+
+        Changement(TraceRepository.Trace trace, Map<String, Object> ligne) {
+            this.id_trace = trace.id_trace;
+            this.tracking_number = trace.tracking_number;
+            this.table_name = trace.table_name;
+            this.operation_type = trace.operation_type;
+            this.operation_date = trace.operation_date;
+            this.record_id = trace.record_id;
+            this.record_id2 = trace.record_id2;
+            this.ligne = ligne;
+        }
+
+        /**
+         * @return Le changement sous forme d'objet JSON
+         */
+        Map<String, Object> json() {
+            Map<String, Object> c = new LinkedHashMap<>();
+            c.put("id_trace", id_trace);
+            c.put("tracking_number", tracking_number);
+            c.put("table", table_name);
+            c.put("operation", operation_type);
+            c.put("date", operation_date == null ? null : operation_date.toInstant().toString());
+            c.put("record_id", record_id);
+            if (record_id2 != 0) {
+                c.put("record_id2", record_id2);
+            }
+            c.put("ligne", ligne);
+            return c;
+        }
+    }
+
+    /**
+     * Affiche les changements en continu, un objet JSON par ligne, jusqu'à l'arrêt du processus.
+     * Usage : java CaptureChangements [nom] [--debut]
+     *
+     * @param args Le nom de l'abonnement (console par défaut), et --debut pour relire tout le
+     *             journal au premier lancement
+     */
+    public static void main(String[] args) {
+        String nom = "console";
+        boolean depuisLeDebut = false;
+        for (String arg : args) {
+            if (arg.equals("--debut")) {
+                depuisLeDebut = true;
+            } else {
+                nom = arg;
+            }
+        }
+        CaptureChangements capture = new CaptureChangements(nom);
+        capture.abonner(changements -> {
+            for (Changement changement : changements) {
+                System.out.println(JsonEcrivain.ecrire(changement.json()));
+            }
+        });
+        try {
+            capture.demarrer(depuisLeDebut);
+        } catch (SQLException | IOException e) {
+            System.out.println("Impossible de démarrer la capture des changements : " + e.getMessage());
+            DatabaseConnection.closeConnection();
+            return;
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            capture.close();
+            System.out.println(capture);
+            DatabaseConnection.closeConnection();
+        }, "cdc-arret"));
+        try {
+            Thread.currentThread().join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
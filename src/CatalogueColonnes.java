@@ -0,0 +1,617 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.*;
+import java.util.*;
+
+/**
+ * Instantané du catalogue en colonnes, lu par projection en mémoire (FileChannel.map).
+ * <p>
+ * Le fichier contient, après un en-tête de 64 octets :
+ * <ul>
+ * <li>les colonnes entières des recettes, triées par identifiant : id_recette,
+ *     temps_preparation, temps_cuisson et le rang de l'auteur dans son dictionnaire ;</li>
+ * <li>les liaisons Recette_Ingredient en lignes compressées : début des liaisons de chaque
+ *     recette, puis rang de l'ingrédient et rang de la quantité dans leurs dictionnaires ;</li>
+ * <li>le début et la longueur en octets du titre, de la description et des instructions
+ *     de chaque recette dans la zone des textes (longueur -1 pour NULL) ;</li>
+ * <li>les dictionnaires des auteurs, des ingrédients (avec leur cote santé) et des
+ *     quantités : identifiants, puis fins des noms et noms en UTF-8 ;</li>
+ * <li>la zone des textes, projetée par segments de 1 Go qu'aucun texte ne chevauche.</li>
+ * </ul>
+ * L'ouverture ne lit que l'en-tête : les colonnes sont des vues sur le fichier projeté,
+ * et un texte n'est décodé qu'à sa lecture. Le système charge les pages à la demande et
+ * les partage entre processus ; rien n'est copié dans le tas. Les lectures sont thread-safe.
+ * <p>
+ * L'instantané n'est pas tenu à jour : il reflète la base au moment de l'exportation.
+ */
+public class CatalogueColonnes implements Closeable {
+
+    private static final String SQL_AUTEURS = "SELECT id_auteur, nom FROM Auteur ORDER BY id_auteur";
+    private static final String SQL_INGREDIENTS = "SELECT id_ingredient, nom, cote_sante FROM Ingredient ORDER BY id_ingredient";
+    private static final String SQL_RECETTES =
+        "SELECT id_recette, titre, description, instructions, temps_preparation, temps_cuisson, auteur_id " +
+        "FROM Recette ORDER BY id_recette";
+    private static final String SQL_LIENS =
+        "SELECT id_recette, id_ingredient, quantite FROM Recette_Ingredient ORDER BY id_recette, id_ingredient";
+
+    private static final int MAGIC = 0x52434331;
+    private static final int VERSION = 1;
+    private static final int TAILLE_ENTETE = 64;
+    private static final int BITS_SEGMENT = 30;
+    private static final long TAILLE_SEGMENT = 1L << BITS_SEGMENT;
+
+    private final FileChannel canal;
+    private final int taille;
+    private final IntBuffer ids;
+    private final IntBuffer tempsPreparation;
+    private final IntBuffer tempsCuisson;
+    private final IntBuffer auteurs;
+    private final IntBuffer debutsLiens;
+    private final IntBuffer liensIngredients;
+    private final IntBuffer liensQuantites;
+    private final LongBuffer debutsTextes;
+    private final IntBuffer longueursTextes;
+    private final IntBuffer idsAuteurs;
+    private final Dictionnaire nomsAuteurs;
+    private final IntBuffer idsIngredients;
+    private final IntBuffer cotesIngredients;
+    private final Dictionnaire nomsIngredients;
+    private final Dictionnaire quantites;
+    private final MappedByteBuffer[] textes;
+
+    private CatalogueColonnes(Path fichier) throws IOException {
+        canal = FileChannel.open(fichier, StandardOpenOption.READ);
+        try {
+            ByteBuffer entete = ByteBuffer.allocate(TAILLE_ENTETE);
+            while (entete.hasRemaining() && canal.read(entete) >= 0) {
+                // lecture complète de l'en-tête
+            }
+            entete.flip();
+            if (entete.remaining() < TAILLE_ENTETE || entete.getInt() != MAGIC || entete.getInt() != VERSION) {
+                throw new IOException("Catalogue de format inconnu : " + fichier);
+            }
+            taille = entete.getInt();
+            int nbAuteurs = entete.getInt();
+            int nbIngredients = entete.getInt();
+            int nbLiens = entete.getInt();
+            int nbQuantites = entete.getInt();
+            entete.getInt();
+            long debutZoneTextes = entete.getLong();
+            long tailleZoneTextes = entete.getLong();
+
+            MappedByteBuffer colonnes = canal.map(FileChannel.MapMode.READ_ONLY, 0, debutZoneTextes);
+            Lecteur l = new Lecteur(colonnes, TAILLE_ENTETE);
+            ids = l.entiers(taille);
+            tempsPreparation = l.entiers(taille);
+            tempsCuisson = l.entiers(taille);
+            auteurs = l.entiers(taille);
+            debutsLiens = l.entiers(taille + 1);
+            liensIngredients = l.entiers(nbLiens);
+            liensQuantites = l.entiers(nbLiens);
+            debutsTextes = l.longs(3 * taille);
+            longueursTextes = l.entiers(3 * taille);
+            idsAuteurs = l.entiers(nbAuteurs);
+            nomsAuteurs = l.dictionnaire(nbAuteurs);
+            idsIngredients = l.entiers(nbIngredients);
+            cotesIngredients = l.entiers(nbIngredients);
+            nomsIngredients = l.dictionnaire(nbIngredients);
+            quantites = l.dictionnaire(nbQuantites);
+
+            int segments = (int) ((tailleZoneTextes + TAILLE_SEGMENT - 1) >>> BITS_SEGMENT);
+            textes = new MappedByteBuffer[segments];
+            for (int s = 0; s < segments; s++) {
+                long debut = (long) s << BITS_SEGMENT;
+                textes[s] = canal.map(FileChannel.MapMode.READ_ONLY, debutZoneTextes + debut,
+                        Math.min(TAILLE_SEGMENT, tailleZoneTextes - debut));
+            }
+        } catch (IOException | RuntimeException e) {
+            canal.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Ouvre un catalogue exporté. Seul l'en-tête est lu.
+     *
+     * @param fichier Le fichier du catalogue
+     * @return Le catalogue
+     * @throws IOException Si le fichier est illisible ou d'un autre format
+     */
+    public static CatalogueColonnes ouvrir(Path fichier) throws IOException {
+        return new CatalogueColonnes(fichier);
+    }
+
+    // ---------------------------------------------------------------- lectures
+
+    /**
+     * @return Le nombre de recettes
+     */
+    public int taille() {
+        return taille;
+    }
+
+    /**
+     * Cherche une recette par dichotomie sur la colonne des identifiants.
+     *
+     * @param idRecette L'identifiant de la recette
+     * @return Le rang de la recette, ou -1 si elle n'est pas dans le catalogue
+     */
+    public int rang(int idRecette) {
+        int bas = 0;
+        int haut = taille - 1;
+        while (bas <= haut) {
+            int milieu = (bas + haut) >>> 1;
+            int id = ids.get(milieu);
+            if (id < idRecette) {
+                bas = milieu + 1;
+            } else if (id > idRecette) {
+                haut = milieu - 1;
+            } else {
+                return milieu;
+            }
+        }
+        return -1;
+    }
+
+    public int id(int rang) {
+        return ids.get(rang);
+    }
+
+    public String titre(int rang) {
+        return texte(3 * rang);
+    }
+
+    public String description(int rang) {
+        return texte(3 * rang + 1);
+    }
+
+    public String instructions(int rang) {
+        return texte(3 * rang + 2);
+    }
+
+    public int tempsPreparation(int rang) {
+        return tempsPreparation.get(rang);
+    }
+
+    public int tempsCuisson(int rang) {
+        return tempsCuisson.get(rang);
+    }
+
+    public int auteurId(int rang) {
+        return idsAuteurs.get(auteurs.get(rang));
+    }
+
+    public String auteurNom(int rang) {
+        return nomsAuteurs.lire(auteurs.get(rang));
+    }
+
+    /**
+     * @param rang Le rang de la recette
+     * @return Les noms de ses ingrédients, par identifiant d'ingrédient
+     */
+    public List<String> ingredients(int rang) {
+        int debut = debutsLiens.get(rang);
+        int fin = debutsLiens.get(rang + 1);
+        List<String> noms = new ArrayList<>(fin - debut);
+        for (int i = debut; i < fin; i++) {
+            noms.add(nomsIngredients.lire(liensIngredients.get(i)));
+        }
+        return noms;
+    }
+
+    /**
+     * @param rang Le rang de la recette
+     * @return Ses ingrédients avec leur quantité, triés par nom
+     */
+    public List<RecetteRepository.LigneIngredient> lignes(int rang) {
+        int debut = debutsLiens.get(rang);
+        int fin = debutsLiens.get(rang + 1);
+        List<RecetteRepository.LigneIngredient> lignes = new ArrayList<>(fin - debut);
+        for (int i = debut; i < fin; i++) {
+            lignes.add(new RecetteRepository.LigneIngredient(nomsIngredients.lire(liensIngredients.get(i)),
+                    quantites.lire(liensQuantites.get(i))));
+        }
+        lignes.sort(Comparator.comparing((RecetteRepository.LigneIngredient l) -> l.nom));
+        return lignes;
+    }
+
+    /**
+     * Cote santé moyenne, calculée comme {@link CoteSanteCalculateur} sans décoder aucun texte.
+     *
+     * @param rang Le rang de la recette
+     * @return La cote, 0 si la recette n'a pas d'ingrédient
+     */
+    public double coteSante(int rang) {
+        int debut = debutsLiens.get(rang);
+        int fin = debutsLiens.get(rang + 1);
+        int somme = 0;
+        for (int i = debut; i < fin; i++) {
+            somme += cotesIngredients.get(liensIngredients.get(i));
+        }
+        return CoteSanteCalculateur.dixiemes(somme, fin - debut) / 10.0;
+    }
+
+    /**
+     * @param idRecette L'identifiant de la recette
+     * @return La recette, sans ses ingrédients, ou null si elle n'est pas dans le catalogue
+     */
+    public Main.Recette recette(int idRecette) {
+        int rang = rang(idRecette);
+        if (rang < 0) {
+            return null;
+        }
+        Main.Recette recette = new Main.Recette(titre(rang), description(rang), instructions(rang),
+                tempsPreparation(rang), tempsCuisson(rang), auteurId(rang));
+        recette.id_recette = idRecette;
+        return recette;
+    }
+
+    /**
+     * Ferme le canal. Les projections restent valides jusqu'à ce que le catalogue soit
+     * récupéré par le ramasse-miettes.
+     */
+    @Override
+    public void close() throws IOException {
+        canal.close();
+    }
+
+    @Override
+    public String toString() {
+        return "CatalogueColonnes[recettes=" + taille + ", auteurs=" + idsAuteurs.limit()
+                + ", ingredients=" + idsIngredients.limit() + ", liens=" + liensIngredients.limit()
+                + ", quantites=" + quantites.taille() + ", segmentsTextes=" + textes.length + "]";
+    }
+
+    private String texte(int indice) {
+        int longueur = longueursTextes.get(indice);
+        if (longueur <= 0) {
+            return longueur < 0 ? null : "";
+        }
+        long debut = debutsTextes.get(indice);
+        byte[] octets = new byte[longueur];
+        textes[(int) (debut >>> BITS_SEGMENT)].get((int) (debut & (TAILLE_SEGMENT - 1)), octets);
+        return new String(octets, StandardCharsets.UTF_8);
+    }
+
+    // ---------------------------------------------------------------- exportation
+
+    /**
+     * Exporte le catalogue de la base. Les textes sont écrits au fil de la lecture dans un
+     * fichier temporaire ; seules les colonnes entières sont gardées en mémoire. Le fichier
+     * final est mis en place d'un seul coup.
+     *
+     * @param conn La connexion
+     * @param fichier Le fichier du catalogue, remplacé s'il existe
+     * @return Le nombre de recettes exportées
+     * @throws SQLException En cas d'erreur SQL
+     * @throws IOException En cas d'erreur d'écriture
+     */
+    public static int exporter(Connection conn, Path fichier) throws SQLException, IOException {
+        StatementCache requetes = StatementCache.pour(conn);
+        Path zoneTextes = fichier.resolveSibling(fichier.getFileName() + ".textes.tmp");
+        Path temporaire = fichier.resolveSibling(fichier.getFileName() + ".tmp");
+        try {
+            // Dictionnaires des auteurs et des ingrédients, par identifiant
+            Entiers idsAuteurs = new Entiers();
+            List<String> nomsAuteurs = new ArrayList<>();
+            try (ResultSet rs = requetes.preparer(SQL_AUTEURS).executeQuery()) {
+                while (rs.next()) {
+                    idsAuteurs.ajouter(rs.getInt(1));
+                    nomsAuteurs.add(rs.getString(2));
+                }
+            }
+            Entiers idsIngredients = new Entiers();
+            Entiers cotes = new Entiers();
+            List<String> nomsIngredients = new ArrayList<>();
+            try (ResultSet rs = requetes.preparer(SQL_INGREDIENTS).executeQuery()) {
+                while (rs.next()) {
+                    idsIngredients.ajouter(rs.getInt(1));
+                    nomsIngredients.add(rs.getString(2));
+                    cotes.ajouter(rs.getInt(3));
+                }
+            }
+
+            // Recettes : colonnes en mémoire, textes vers la zone temporaire
+            Entiers ids = new Entiers();
+            Entiers preparations = new Entiers();
+            Entiers cuissons = new Entiers();
+            Entiers auteurs = new Entiers();
+            long[] debuts = new long[3 * 1024];
+            Entiers longueurs = new Entiers();
+            long position = 0;
+            try (OutputStream textes = new BufferedOutputStream(Files.newOutputStream(zoneTextes), 1 << 16)) {
+                PreparedStatement pstmt = requetes.preparer(SQL_RECETTES);
+                pstmt.setFetchSize(1000);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        ids.ajouter(rs.getInt(1));
+                        preparations.ajouter(rs.getInt(5));
+                        cuissons.ajouter(rs.getInt(6));
+                        int auteur = idsAuteurs.chercher(rs.getInt(7));
+                        if (auteur < 0) {
+                            throw new SQLException("Auteur " + rs.getInt(7) + " introuvable pour la recette " + rs.getInt(1));
+                        }
+                        auteurs.ajouter(auteur);
+                        for (int colonne = 2; colonne <= 4; colonne++) {
+                            String texte = rs.getString(colonne);
+                            if (longueurs.taille == debuts.length) {
+                                debuts = Arrays.copyOf(debuts, debuts.length * 2);
+                            }
+                            if (texte == null) {
+                                debuts[longueurs.taille] = position;
+                                longueurs.ajouter(-1);
+                                continue;
+                            }
+                            byte[] octets = texte.getBytes(StandardCharsets.UTF_8);
+                            // Un texte ne chevauche jamais deux segments projetés
+                            long reste = TAILLE_SEGMENT - (position & (TAILLE_SEGMENT - 1));
+                            if (octets.length > reste) {
+                                for (long i = 0; i < reste; i++) {
+                                    textes.write(0);
+                                }
+                                position += reste;
+                            }
+                            debuts[longueurs.taille] = position;
+                            longueurs.ajouter(octets.length);
+                            textes.write(octets);
+                            position += octets.length;
+                        }
+                    }
+                }
+            }
+
+            // Liaisons, dans l'ordre des recettes
+            Entiers debutsLiens = new Entiers();
+            Entiers liensIngredients = new Entiers();
+            Entiers liensQuantites = new Entiers();
+            Map<String, Integer> rangsQuantites = new HashMap<>();
+            List<String> quantites = new ArrayList<>();
+            PreparedStatement pstmt = requetes.preparer(SQL_LIENS);
+            pstmt.setFetchSize(1000);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                int rang = 0;
+                debutsLiens.ajouter(0);
+                while (rs.next()) {
+                    int idRecette = rs.getInt(1);
+                    while (rang < ids.taille && ids.valeurs[rang] < idRecette) {
+                        debutsLiens.ajouter(liensIngredients.taille);
+                        rang++;
+                    }
+                    if (rang == ids.taille || ids.valeurs[rang] != idRecette) {
+                        // Recette ajoutée après la lecture de Recette : ignorée
+                        continue;
+                    }
+                    int ingredient = idsIngredients.chercher(rs.getInt(2));
+                    if (ingredient < 0) {
+                        continue;
+                    }
+                    liensIngredients.ajouter(ingredient);
+                    String quantite = rs.getString(3);
+                    Integer q = rangsQuantites.get(quantite);
+                    if (q == null) {
+                        q = quantites.size();
+                        rangsQuantites.put(quantite, q);
+                        quantites.add(quantite);
+                    }
+                    liensQuantites.ajouter(q);
+                }
+                while (rang < ids.taille) {
+                    debutsLiens.ajouter(liensIngredients.taille);
+                    rang++;
+                }
+            }
+
+            // Assemblage : en-tête, colonnes, puis la zone des textes recopiée telle quelle
+            long debutZoneTextes;
+            try (FileOutputStream sortie = new FileOutputStream(temporaire.toFile())) {
+                Ecrivain e = new Ecrivain(new DataOutputStream(new BufferedOutputStream(sortie, 1 << 16)));
+                e.out.writeInt(MAGIC);
+                e.out.writeInt(VERSION);
+                e.out.writeInt(ids.taille);
+                e.out.writeInt(idsAuteurs.taille);
+                e.out.writeInt(idsIngredients.taille);
+                e.out.writeInt(liensIngredients.taille);
+                e.out.writeInt(quantites.size());
+                e.out.writeInt(0);
+                e.out.writeLong(0);
+                e.out.writeLong(position);
+                e.aligner(TAILLE_ENTETE);
+                e.entiers(ids);
+                e.entiers(preparations);
+                e.entiers(cuissons);
+                e.entiers(auteurs);
+                e.entiers(debutsLiens);
+                e.entiers(liensIngredients);
+                e.entiers(liensQuantites);
+                for (int i = 0; i < longueurs.taille; i++) {
+                    e.out.writeLong(debuts[i]);
+                }
+                e.entiers(longueurs);
+                e.entiers(idsAuteurs);
+                e.dictionnaire(nomsAuteurs);
+                e.entiers(idsIngredients);
+                e.entiers(cotes);
+                e.dictionnaire(nomsIngredients);
+                e.dictionnaire(quantites);
+                e.aligner(8);
+                e.out.flush();
+                // size() reste bloqué à Integer.MAX_VALUE au-delà de 2 Go
+                if (e.out.size() == Integer.MAX_VALUE) {
+                    throw new IOException("Colonnes trop volumineuses pour une seule projection");
+                }
+                debutZoneTextes = e.out.size();
+                Files.copy(zoneTextes, sortie);
+                sortie.getFD().sync();
+            }
+            try (FileChannel canal = FileChannel.open(temporaire, StandardOpenOption.WRITE)) {
+                canal.write(ByteBuffer.allocate(8).putLong(0, debutZoneTextes), 32);
+                canal.force(false);
+            }
+            Files.move(temporaire, fichier, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return ids.taille;
+        } finally {
+            Files.deleteIfExists(zoneTextes);
+            Files.deleteIfExists(temporaire);
+        }
+    }
+
+    /**
+     * Exporte le catalogue de la base configurée.
+     *
+     * @param args Le fichier du catalogue (par défaut la propriété recette.catalogue.fichier)
+     */
+    public static void main(String[] args) {
+        Path fichier = args.length > 0 ? Paths.get(args[0]) : fichierParDefaut();
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            long debut = System.nanoTime();
+            int recettes = exporter(conn, fichier);
+            System.out.println(recettes + " recettes exportées dans " + fichier + " en "
+                    + (System.nanoTime() - debut) / 1_000_000 + " ms (" + Files.size(fichier) + " octets)");
+        } catch (SQLException e) {
+            MesuresJdbc.partage().signalerErreur("Erreur lors de l'exportation", e);
+        } catch (IOException e) {
+            System.out.println("Erreur d'écriture du catalogue : " + e.getMessage());
+        } finally {
+            DatabaseConnection.closeConnection();
+        }
+    }
+
+    /**
+     * @return Le fichier donné par la propriété recette.catalogue.fichier (catalogue-recettes.bin)
+     */
+    public static Path fichierParDefaut() {
+        return Paths.get(System.getProperty("recette.catalogue.fichier", "catalogue-recettes.bin"));
+    }
+
+    // ---------------------------------------------------------------- structures
+
+    /**
+     * Tableau d'int extensible ; {@link #chercher} suppose les valeurs triées.
+     */
+    private static final class Entiers {
+        int[] valeurs = new int[1024];
+        int taille;
+
+        void ajouter(int valeur) {
+            if (taille == valeurs.length) {
+                valeurs = Arrays.copyOf(valeurs, taille * 2);
+            }
+            valeurs[taille++] = valeur;
+        }
+
+        int chercher(int valeur) {
+            int rang = Arrays.binarySearch(valeurs, 0, taille, valeur);
+            return rang < 0 ? -1 : rang;
+        }
+    }
+
+    /**
+     * Écriture des colonnes, chacune alignée sur 8 octets.
+     */
+    private static final class Ecrivain {
+        final DataOutputStream out;
+
+        Ecrivain(DataOutputStream out) {
+            this.out = out;
+        }
+
+        void entiers(Entiers colonne) throws IOException {
+            for (int i = 0; i < colonne.taille; i++) {
+                out.writeInt(colonne.valeurs[i]);
+            }
+            aligner(8);
+        }
+
+        void dictionnaire(List<String> noms) throws IOException {
+            byte[][] octets = new byte[noms.size()][];
+            int fin = 0;
+            for (int i = 0; i < octets.length; i++) {
+                octets[i] = noms.get(i) == null ? new byte[0] : noms.get(i).getBytes(StandardCharsets.UTF_8);
+                fin += octets[i].length;
+                out.writeInt(fin);
+            }
+            aligner(8);
+            for (byte[] nom : octets) {
+                out.write(nom);
+            }
+            aligner(8);
+        }
+
+        void aligner(int multiple) throws IOException {
+            while (out.size() % multiple != 0) {
+                out.writeByte(0);
+            }
+        }
+    }
+
+    /**
+     * Découpe des colonnes dans la projection, dans l'ordre où {@link Ecrivain} les a écrites.
+     */
+    private static final class Lecteur {
+        private final ByteBuffer projection;
+        private int position;
+
+        Lecteur(ByteBuffer projection, int position) {
+            this.projection = projection;
+            this.position = position;
+        }
+
+        IntBuffer entiers(int nombre) {
+            IntBuffer colonne = projection.slice(position, 4 * nombre).asIntBuffer();
+            avancer(4L * nombre);
+            return colonne;
+        }
+
+        LongBuffer longs(int nombre) {
+            LongBuffer colonne = projection.slice(position, 8 * nombre).asLongBuffer();
+            avancer(8L * nombre);
+            return colonne;
+        }
+
+        Dictionnaire dictionnaire(int nombre) {
+            IntBuffer fins = entiers(nombre);
+            int octets = nombre == 0 ? 0 : fins.get(nombre - 1);
+            ByteBuffer noms = projection.slice(position, octets);
+            avancer(octets);
+            return new Dictionnaire(fins, noms);
+        }
+
+        private void avancer(long octets) {
+            position += (int) ((octets + 7) & ~7L);
+        }
+    }
+
+    /**
+     * Chaînes d'un dictionnaire : la fin de chacune, puis leurs octets UTF-8 mis bout à bout.
+     */
+    private static final class Dictionnaire {
+        private final IntBuffer fins;
+        private final ByteBuffer noms;
+
+        Dictionnaire(IntBuffer fins, ByteBuffer noms) {
+            this.fins = fins;
+            this.noms = noms;
+        }
+
+        int taille() {
+            return fins.limit();
+        }
+
+        String lire(int rang) {
+            int debut = rang == 0 ? 0 : fins.get(rang - 1);
+            byte[] octets = new byte[fins.get(rang) - debut];
+            noms.get(debut, octets);
+            return new String(octets, StandardCharsets.UTF_8);
+        }
+    }
+}
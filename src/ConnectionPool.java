@@ -0,0 +1,553 @@
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool de connexions JDBC borné et thread-safe.
+ * Les connexions empruntées sont des mandataires : appeler close() les rend au pool
+ * au lieu de fermer la connexion physique ; les requêtes qu'elles créent rendent par
+ * getConnection() la connexion empruntée, jamais la connexion physique. Chaque connexion physique conserve un
+ * {@link StatementCache}, accessible par unwrap(StatementCache.class), et est instrumentée
+ * par {@link MesuresJdbc}. Une action peut être différée jusqu'à la validation de la transaction
+ * en cours d'un emprunt avec {@link #apresValidation}.
+ */
+public class ConnectionPool {
+
+    /** Une connexion inactive depuis plus longtemps que ce délai est validée avant d'être prêtée. */
+    private static final long DELAI_VALIDATION_MS = 1000;
+    /** Délai accordé au pilote pour Connection.isValid, en secondes. */
+    private static final int DELAI_IS_VALID_SEC = 2;
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int tailleMax;
+    private final long delaiEmpruntMs;
+    private final long delaiInactiviteMs;
+    private final long delaiFuiteMs;
+    /** Ordre exécuté sur chaque connexion physique à son ouverture, ou null. */
+    private final String initialisation;
+
+    /** Connexions libres, la plus récemment rendue en tête (LIFO). */
+    private final LinkedBlockingDeque<ConnexionPhysique> libres = new LinkedBlockingDeque<>();
+    /** Un permis par connexion pouvant encore être prêtée. */
+    private final Semaphore permis;
+    private final Set<Emprunt> empruntees = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService entretien;
+    private volatile boolean ferme;
+
+    private final AtomicLong emprunts = new AtomicLong();
+    private final AtomicLong retours = new AtomicLong();
+    private final AtomicLong creations = new AtomicLong();
+    private final AtomicLong destructions = new AtomicLong();
+    private final AtomicLong echecsValidation = new AtomicLong();
+    private final AtomicLong delaisDepasses = new AtomicLong();
+    private final AtomicLong fuites = new AtomicLong();
+    private final AtomicLong attenteTotaleNanos = new AtomicLong();
+
+    /**
+     * Crée un pool de connexions. Aucune connexion n'est ouverte avant le premier emprunt.
+     *
+     * @param url L'URL JDBC de la base de données
+     * @param user L'utilisateur de la base de données
+     * @param password Le mot de passe
+     * @param tailleMax Le nombre maximal de connexions ouvertes simultanément
+     * @param delaiEmpruntMs L'attente maximale pour obtenir une connexion, en millisecondes
+     * @param delaiInactiviteMs Une connexion libre depuis plus longtemps est fermée (0 = jamais)
+     * @param delaiFuiteMs Une connexion empruntée plus longtemps est signalée comme fuite (0 = désactivé)
+     */
+    public ConnectionPool(String url, String user, String password, int tailleMax,
+                          long delaiEmpruntMs, long delaiInactiviteMs, long delaiFuiteMs) {
+        this(url, user, password, tailleMax, delaiEmpruntMs, delaiInactiviteMs, delaiFuiteMs, null);
+    }
+
+    /**
+     * Crée un pool de connexions dont chaque connexion physique exécute un ordre SQL à son
+     * ouverture (voir {@link Stockage#initialisationSession}).
+     *
+     * @param url L'URL JDBC de la base de données
+     * @param user L'utilisateur de la base de données
+     * @param password Le mot de passe
+     * @param tailleMax Le nombre maximal de connexions ouvertes simultanément
+     * @param delaiEmpruntMs L'attente maximale pour obtenir une connexion, en millisecondes
+     * @param delaiInactiviteMs Une connexion libre depuis plus longtemps est fermée (0 = jamais)
+     * @param delaiFuiteMs Une connexion empruntée plus longtemps est signalée comme fuite (0 = désactivé)
+     * @param initialisation L'ordre exécuté à l'ouverture de chaque connexion, ou null
+     */
+    public ConnectionPool(String url, String user, String password, int tailleMax,
+                          long delaiEmpruntMs, long delaiInactiviteMs, long delaiFuiteMs, String initialisation) {
+        if (tailleMax < 1) {
+            throw new IllegalArgumentException("La taille du pool doit être d'au moins 1 : " + tailleMax);
+        }
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.tailleMax = tailleMax;
+        this.delaiEmpruntMs = delaiEmpruntMs;
+        this.delaiInactiviteMs = delaiInactiviteMs;
+        this.delaiFuiteMs = delaiFuiteMs;
+        this.initialisation = initialisation;
+        this.permis = new Semaphore(tailleMax, true);
+
+        this.entretien = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "pool-connexions-entretien");
+            t.setDaemon(true);
+            return t;
+        });
+        long periode = Math.max(1000, Math.min(
+                delaiInactiviteMs > 0 ? delaiInactiviteMs : Long.MAX_VALUE,
+                delaiFuiteMs > 0 ? delaiFuiteMs : 30_000) / 2);
+        entretien.scheduleWithFixedDelay(this::entretenir, periode, periode, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Emprunte une connexion au pool. La connexion doit être rendue en appelant close().
+     *
+     * @return Une connexion valide
+     * @throws SQLException Si le pool est fermé, si le délai d'attente est dépassé
+     *                      ou si la connexion ne peut pas être ouverte
+     */
+    public Connection emprunter() throws SQLException {
+        if (ferme) {
+            throw new SQLException("Le pool de connexions est fermé.");
+        }
+        long debut = System.nanoTime();
+        try {
+            if (!permis.tryAcquire(delaiEmpruntMs, TimeUnit.MILLISECONDS)) {
+                delaisDepasses.incrementAndGet();
+                throw new SQLTimeoutException("Aucune connexion disponible après " + delaiEmpruntMs + " ms ("
+                        + tailleMax + " connexions empruntées).");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrompu en attente d'une connexion.", e);
+        }
+
+        try {
+            ConnexionPhysique cp;
+            while ((cp = libres.pollFirst()) != null) {
+                if (valider(cp)) {
+                    break;
+                }
+                echecsValidation.incrementAndGet();
+                detruire(cp);
+            }
+            if (cp == null) {
+                cp = creer();
+            }
+
+            Emprunt emprunt = new Emprunt(cp);
+            empruntees.add(emprunt);
+            emprunts.incrementAndGet();
+            attenteTotaleNanos.addAndGet(System.nanoTime() - debut);
+            Connection proxy = (Connection) Proxy.newProxyInstance(
+                    ConnectionPool.class.getClassLoader(), new Class<?>[] {Connection.class}, emprunt);
+            cp.emprunteur = proxy;
+            return proxy;
+        } catch (SQLException | RuntimeException e) {
+            permis.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Ferme le pool et toutes les connexions libres.
+     * Les connexions encore empruntées sont fermées à leur retour.
+     */
+    public void fermer() {
+        ferme = true;
+        entretien.shutdownNow();
+        ConnexionPhysique cp;
+        while ((cp = libres.pollFirst()) != null) {
+            detruire(cp);
+        }
+    }
+
+    /**
+     * Retourne un instantané des métriques du pool.
+     *
+     * @return Les statistiques courantes
+     */
+    public Statistiques statistiques() {
+        return new Statistiques(tailleMax, empruntees.size(), libres.size(), emprunts.get(), retours.get(),
+                creations.get(), destructions.get(), echecsValidation.get(), delaisDepasses.get(),
+                fuites.get(), attenteTotaleNanos.get());
+    }
+
+    /**
+     * Exécute une action après la validation de la transaction en cours : au prochain commit()
+     * de la connexion empruntée, ou au passage en auto-commit qui la valide. Une annulation
+     * abandonne l'action. En auto-commit, ou sur une connexion qui ne vient pas d'un pool,
+     * l'action est exécutée tout de suite.
+     *
+     * @param conn La connexion empruntée
+     * @param action L'action, qui ne doit pas lever d'exception
+     * @throws SQLException En cas d'erreur d'accès à la connexion
+     */
+    public static void apresValidation(Connection conn, Runnable action) throws SQLException {
+        if (!conn.getAutoCommit() && Proxy.isProxyClass(conn.getClass())
+                && Proxy.getInvocationHandler(conn) instanceof Emprunt) {
+            ((Emprunt) Proxy.getInvocationHandler(conn)).apresValidation.add(action);
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * Ouvre une connexion physique vers la base du pool, hors de sa limite de taille, pour un
+     * fil d'arrière-plan dont les emprunteurs attendent le travail (l'écrivain du
+     * {@link JournalAudit}) : s'il devait emprunter, des emprunteurs assez nombreux
+     * l'empêcheraient d'avancer. La connexion n'a pas de {@link StatementCache} partagé et
+     * l'appelant la ferme lui-même.
+     *
+     * @return Une connexion physique, instrumentée comme celles du pool
+     * @throws SQLException Si le pool est fermé ou si la connexion ne peut pas être ouverte
+     */
+    public Connection ouvrirDediee() throws SQLException {
+        if (ferme) {
+            throw new SQLException("Le pool de connexions est fermé.");
+        }
+        return ouvrir();
+    }
+
+    private ConnexionPhysique creer() throws SQLException {
+        ConnexionPhysique cp = new ConnexionPhysique(ouvrir());
+        creations.incrementAndGet();
+        return cp;
+    }
+
+    private Connection ouvrir() throws SQLException {
+        Connection conn = DriverManager.getConnection(url, user, password);
+        if (initialisation != null) {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute(initialisation);
+            } catch (SQLException e) {
+                conn.close();
+                throw e;
+            }
+        }
+        if (MesuresJdbc.ACTIF) {
+            conn = MesuresJdbc.partage().instrumenter(conn);
+        }
+        return conn;
+    }
+
+    private boolean valider(ConnexionPhysique cp) {
+        if (System.currentTimeMillis() - cp.dernierUsage < DELAI_VALIDATION_MS) {
+            return true;
+        }
+        try {
+            return cp.connexion.isValid(DELAI_IS_VALID_SEC);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void detruire(ConnexionPhysique cp) {
+        destructions.incrementAndGet();
+        cp.requetes.vider();
+        try {
+            cp.connexion.close();
+        } catch (SQLException e) {
+            System.out.println("Erreur lors de la fermeture d'une connexion du pool : " + e.getMessage());
+        }
+    }
+
+    private void rendre(Emprunt emprunt) {
+        empruntees.remove(emprunt);
+        retours.incrementAndGet();
+        ConnexionPhysique cp = emprunt.cp;
+        boolean reutilisable;
+        try {
+            // Une transaction laissée ouverte ne doit pas fuir vers le prochain emprunteur.
+            if (!cp.connexion.getAutoCommit()) {
+                cp.connexion.rollback();
+                cp.connexion.setAutoCommit(true);
+            }
+            cp.connexion.clearWarnings();
+            reutilisable = !cp.connexion.isClosed();
+        } catch (SQLException e) {
+            reutilisable = false;
+        }
+
+        if (reutilisable && !ferme) {
+            cp.dernierUsage = System.currentTimeMillis();
+            libres.offerFirst(cp);
+        } else {
+            detruire(cp);
+        }
+        permis.release();
+    }
+
+    /**
+     * Tâche périodique : ferme les connexions inactives et signale les emprunts trop longs.
+     */
+    private void entretenir() {
+        long maintenant = System.currentTimeMillis();
+        if (delaiInactiviteMs > 0) {
+            for (ConnexionPhysique cp : libres) {
+                if (maintenant - cp.dernierUsage > delaiInactiviteMs && libres.remove(cp)) {
+                    detruire(cp);
+                }
+            }
+        }
+        if (delaiFuiteMs > 0) {
+            for (Emprunt emprunt : empruntees) {
+                if (!emprunt.signale && maintenant - emprunt.debut > delaiFuiteMs) {
+                    emprunt.signale = true;
+                    fuites.incrementAndGet();
+                    System.out.println("Fuite de connexion possible : empruntée depuis "
+                            + (maintenant - emprunt.debut) + " ms sans être rendue.");
+                    emprunt.origine.printStackTrace(System.out);
+                }
+            }
+        }
+    }
+
+    /**
+     * Connexion physique gérée par le pool, avec son cache de requêtes préparées.
+     */
+    private static class ConnexionPhysique {
+        final Connection connexion;
+        /**
+         * Connexion rendue par getConnection() des requêtes : elle agit sur l'emprunt en cours,
+         * puisque les requêtes en cache servent à tous les emprunteurs successifs.
+         */
+        final Connection facade;
+        final StatementCache requetes;
+        volatile long dernierUsage = System.currentTimeMillis();
+        /** Mandataire de l'emprunt en cours, null quand la connexion est libre. */
+        volatile Connection emprunteur;
+
+        ConnexionPhysique(Connection connexion) {
+            this.connexion = connexion;
+            this.facade = (Connection) Proxy.newProxyInstance(ConnectionPool.class.getClassLoader(),
+                    new Class<?>[] {Connection.class}, this::versEmprunteur);
+            this.requetes = new StatementCache(facade, StatementCache.TAILLE_DEFAUT);
+        }
+
+        private Object versEmprunteur(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    break;
+            }
+            Connection conn = emprunteur;
+            if (conn == null) {
+                throw new SQLException("La connexion a déjà été rendue au pool.");
+            }
+            try {
+                return method.invoke(conn, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    /**
+     * Requête créée par une connexion empruntée : getConnection() rend la connexion empruntée,
+     * pour que close() ou commit() passent par le pool.
+     */
+    private static final class RequeteEmpruntee implements InvocationHandler {
+        private final Statement cible;
+        private final Connection connexion;
+
+        RequeteEmpruntee(Statement cible, Connection connexion) {
+            this.cible = cible;
+            this.connexion = connexion;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "getConnection":
+                    return connexion;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    break;
+            }
+            try {
+                return method.invoke(cible, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    /**
+     * Mandataire remis à l'emprunteur ; intercepte close() pour rendre la connexion au pool,
+     * et commit() pour exécuter les actions différées par {@link #apresValidation}.
+     */
+    private class Emprunt implements InvocationHandler {
+        final ConnexionPhysique cp;
+        final long debut = System.currentTimeMillis();
+        /** Pile d'appel de l'emprunt, conservée seulement si la détection de fuites est active. */
+        final Throwable origine = delaiFuiteMs > 0 ? new Throwable("Connexion empruntée ici") : null;
+        volatile boolean signale;
+        private volatile boolean rendue;
+        /** Actions en attente de la validation de la transaction en cours (un seul thread). */
+        final List<Runnable> apresValidation = new ArrayList<>();
+
+        Emprunt(ConnexionPhysique cp) {
+            this.cp = cp;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!rendue) {
+                        rendue = true;
+                        if (cp.emprunteur == proxy) {
+                            cp.emprunteur = null;
+                        }
+                        apresValidation.clear();
+                        rendre(this);
+                    }
+                    return null;
+                case "isClosed":
+                    return rendue || cp.connexion.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "ConnexionEmpruntee[" + cp.connexion + "]";
+                case "isWrapperFor":
+                    if (args[0] == StatementCache.class) {
+                        return true;
+                    }
+                    break;
+                case "unwrap":
+                    if (args[0] == StatementCache.class) {
+                        if (rendue) {
+                            throw new SQLException("La connexion a déjà été rendue au pool.");
+                        }
+                        return cp.requetes;
+                    }
+                    break;
+                default:
+                    break;
+            }
+            if (rendue) {
+                throw new SQLException("La connexion a déjà été rendue au pool.");
+            }
+            Object resultat;
+            try {
+                resultat = method.invoke(cp.connexion, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+            if (resultat instanceof Statement) {
+                return Proxy.newProxyInstance(ConnectionPool.class.getClassLoader(),
+                        new Class<?>[] {method.getReturnType()}, new RequeteEmpruntee((Statement) resultat, cp.facade));
+            }
+            if (!apresValidation.isEmpty()) {
+                switch (method.getName()) {
+                    case "commit":
+                        executerApresValidation();
+                        break;
+                    case "setAutoCommit":
+                        // Repasser en auto-commit valide la transaction en cours
+                        if ((Boolean) args[0]) {
+                            executerApresValidation();
+                        }
+                        break;
+                    case "rollback":
+                        if (args == null) {
+                            apresValidation.clear();
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            }
+            return resultat;
+        }
+
+        private void executerApresValidation() {
+            List<Runnable> actions = new ArrayList<>(apresValidation);
+            apresValidation.clear();
+            for (Runnable action : actions) {
+                try {
+                    action.run();
+                } catch (RuntimeException e) {
+                    System.out.println("Erreur après la validation d'une transaction : " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Instantané des métriques d'emprunt et de retour du pool.
+     */
+    public static class Statistiques {
+        /** Taille maximale du pool. */
+        public final int tailleMax;
+        /** Connexions actuellement empruntées. */
+        public final int actives;
+        /** Connexions ouvertes et disponibles. */
+        public final int libres;
+        /** Nombre total d'emprunts réussis. */
+        public final long emprunts;
+        /** Nombre total de retours. */
+        public final long retours;
+        /** Connexions physiques ouvertes depuis le démarrage. */
+        public final long creations;
+        /** Connexions physiques fermées depuis le démarrage. */
+        public final long destructions;
+        /** Connexions écartées car invalides au moment de l'emprunt. */
+        public final long echecsValidation;
+        /** Emprunts abandonnés faute de connexion disponible. */
+        public final long delaisDepasses;
+        /** Emprunts signalés comme fuites. */
+        public final long fuites;
+        /** Temps total passé à attendre une connexion, en nanosecondes. */
+        public final long attenteTotaleNanos;
+
+        Statistiques(int tailleMax, int actives, int libres, long emprunts, long retours, long creations,
+                     long destructions, long echecsValidation, long delaisDepasses, long fuites,
+                     long attenteTotaleNanos) {
+            this.tailleMax = tailleMax;
+            this.actives = actives;
+            this.libres = libres;
+            this.emprunts = emprunts;
+            this.retours = retours;
+            this.creations = creations;
+            this.destructions = destructions;
+            this.echecsValidation = echecsValidation;
+            this.delaisDepasses = delaisDepasses;
+            this.fuites = fuites;
+            this.attenteTotaleNanos = attenteTotaleNanos;
+        }
+
+        /**
+         * @return L'attente moyenne par emprunt, en microsecondes
+         */
+        public double attenteMoyenneMicros() {
+            return emprunts == 0 ? 0 : attenteTotaleNanos / 1000.0 / emprunts;
+        }
+
+        @Override
+        public String toString() {
+            return "Pool[actives=" + actives + "/" + tailleMax + ", libres=" + libres
+                    + ", emprunts=" + emprunts + ", retours=" + retours
+                    + ", creations=" + creations + ", destructions=" + destructions
+                    + ", echecsValidation=" + echecsValidation + ", delaisDepasses=" + delaisDepasses
+                    + ", fuites=" + fuites + ", attenteMoyenne=" + String.format("%.1f", attenteMoyenneMicros()) + " µs]";
+        }
+    }
+}
@@ -0,0 +1,239 @@
+import java.sql.*;
+import java.util.Arrays;
+
+/**
+ * Calcul de la cote santé des recettes côté Java, en remplacement des appels
+ * RECETTE_PKG.get_cote_sante et RECETTE_PKG.get_ingredients_texte.
+ * <p>
+ * La cote d'une recette est la moyenne des cotes de ses ingrédients arrondie au dixième,
+ * la moitié étant arrondie vers le haut, comme ROUND(AVG(i.cote_sante), 1) ; une recette
+ * sans ingrédient vaut 0. Le catalogue entier est calculé en une seule lecture de
+ * Recette_Ingredient, accumulée dans des tableaux d'entiers.
+ */
+public class CoteSanteCalculateur {
+
+    // Le CLOB de la description est lu une fois, pas sur chaque ligne d'ingrédient
+    private static final String SQL_FICHE =
+        "SELECT titre, description FROM Recette WHERE id_recette = ?";
+    private static final String SQL_FICHE_INGREDIENTS =
+        "SELECT i.nom, ri.quantite, i.cote_sante " +
+        "FROM Recette_Ingredient ri " +
+        "JOIN Ingredient i ON ri.id_ingredient = i.id_ingredient " +
+        "WHERE ri.id_recette = ? " +
+        "ORDER BY i.nom";
+    private static final String SQL_TOUT =
+        "SELECT r.id_recette, i.cote_sante " +
+        "FROM Recette r " +
+        "LEFT JOIN Recette_Ingredient ri ON r.id_recette = ri.id_recette " +
+        "LEFT JOIN Ingredient i ON ri.id_ingredient = i.id_ingredient " +
+        "ORDER BY r.id_recette";
+
+    /** Cote santé maximale d'un ingrédient. */
+    static final int COTE_MAX = 5;
+
+    private final StatementCache requetes;
+
+    /**
+     * Crée un calculateur travaillant sur la connexion donnée.
+     *
+     * @param conn La connexion empruntée par l'appelant
+     * @throws SQLException En cas d'erreur d'accès à la connexion
+     */
+    public CoteSanteCalculateur(Connection conn) throws SQLException {
+        this.requetes = StatementCache.pour(conn);
+    }
+
+    /**
+     * Arrondit la moyenne somme / nombre au dixième, la moitié vers le haut.
+     *
+     * @param somme La somme des cotes
+     * @param nombre Le nombre d'ingrédients
+     * @return La cote en dixièmes (0 à 50), 0 s'il n'y a aucun ingrédient
+     */
+    static int dixiemes(int somme, int nombre) {
+        if (nombre == 0) {
+            return 0;
+        }
+        // floor(10 * somme / nombre + 1/2), en arithmétique entière
+        return (int) ((20L * somme + nombre) / (2L * nombre));
+    }
+
+    /**
+     * Calcule la fiche santé d'une recette : titre, description, cote santé moyenne et texte
+     * des ingrédients au format de get_ingredients_texte. La recette et ses ingrédients sont
+     * lus par deux requêtes, pour ne pas répéter la description sur chaque ingrédient.
+     *
+     * @param idRecette L'identifiant de la recette
+     * @return La fiche, ou null si la recette n'existe pas
+     * @throws SQLException En cas d'erreur SQL
+     */
+    public FicheSante fiche(int idRecette) throws SQLException {
+        PreparedStatement pstmt = requetes.preparer(SQL_FICHE);
+        pstmt.setInt(1, idRecette);
+        String titre;
+        String description;
+        try (ResultSet rs = pstmt.executeQuery()) {
+            if (!rs.next()) {
+                return null;
+            }
+            titre = rs.getString(1);
+            description = rs.getString(2);
+        }
+
+        PreparedStatement lire = requetes.preparer(SQL_FICHE_INGREDIENTS);
+        lire.setInt(1, idRecette);
+        StringBuilder ingredients = new StringBuilder();
+        int somme = 0;
+        int nombre = 0;
+        try (ResultSet rs = lire.executeQuery()) {
+            while (rs.next()) {
+                if (nombre > 0) {
+                    ingredients.append(", ");
+                }
+                ingredients.append(rs.getString(2)).append(" de ").append(rs.getString(1));
+                somme += rs.getInt(3);
+                nombre++;
+            }
+        }
+        return new FicheSante(idRecette, titre, description, dixiemes(somme, nombre) / 10.0,
+                ingredients.toString());
+    }
+
+    /**
+     * Calcule la cote santé de toutes les recettes en une seule requête.
+     *
+     * @return Les cotes de toutes les recettes, triées par identifiant
+     * @throws SQLException En cas d'erreur SQL
+     */
+    public Cotes calculerTout() throws SQLException {
+        PreparedStatement pstmt = requetes.preparer(SQL_TOUT);
+        pstmt.setFetchSize(1000);
+        int[] ids = new int[256];
+        int[] sommes = new int[256];
+        int[] nombres = new int[256];
+        int taille = 0;
+        try (ResultSet rs = pstmt.executeQuery()) {
+            int courant = -1;
+            while (rs.next()) {
+                int id = rs.getInt(1);
+                if (taille == 0 || id != courant) {
+                    if (taille == ids.length) {
+                        ids = Arrays.copyOf(ids, taille * 2);
+                        sommes = Arrays.copyOf(sommes, taille * 2);
+                        nombres = Arrays.copyOf(nombres, taille * 2);
+                    }
+                    ids[taille++] = id;
+                    courant = id;
+                }
+                int cote = rs.getInt(2);
+                // LEFT JOIN : cote NULL (lue comme 0) pour une recette sans ingrédient
+                if (!rs.wasNull()) {
+                    sommes[taille - 1] += cote;
+                    nombres[taille - 1]++;
+                }
+            }
+        }
+        return new Cotes(ids, sommes, nombres, taille);
+    }
+
+    /**
+     * Titre, description, cote santé et ingrédients d'une recette.
+     */
+    static class FicheSante {
+        final int id_recette;
+        final String titre;
+        final String description;
+        /** Cote santé moyenne, arrondie au dixième. */
+        final double cote_sante;
+        /** Ingrédients au format "quantité de nom", séparés par des virgules et triés par nom. */
+        final String ingredients;
+
+        FicheSante(int id_recette, String titre, String description, double cote_sante, String ingredients) {
+            this.id_recette = id_recette;
+            this.titre = titre;
+            this.description = description;
+            this.cote_sante = cote_sante;
+            this.ingredients = ingredients;
+        }
+    }
+
+    /**
+     * Cotes santé de tout le catalogue, stockées dans des tableaux parallèles triés par identifiant.
+     */
+    static class Cotes {
+        private final int[] ids;
+        private final int[] sommes;
+        private final int[] nombres;
+        private final int taille;
+
+        Cotes(int[] ids, int[] sommes, int[] nombres, int taille) {
+            this.ids = ids;
+            this.sommes = sommes;
+            this.nombres = nombres;
+            this.taille = taille;
+        }
+
+        /**
+         * @return Le nombre de recettes
+         */
+        int taille() {
+            return taille;
+        }
+
+        /**
+         * @param rang Le rang de la recette, de 0 à taille() - 1
+         * @return L'identifiant de la recette à ce rang
+         */
+        int id(int rang) {
+            return ids[rang];
+        }
+
+        /**
+         * @param rang Le rang de la recette, de 0 à taille() - 1
+         * @return Le nombre d'ingrédients de la recette à ce rang
+         */
+        int nombreIngredients(int rang) {
+            return nombres[rang];
+        }
+
+        /**
+         * @param rang Le rang de la recette, de 0 à taille() - 1
+         * @return La cote santé de la recette à ce rang
+         */
+        double cote(int rang) {
+            return dixiemes(sommes[rang], nombres[rang]) / 10.0;
+        }
+
+        /**
+         * Retourne la cote d'une recette par recherche dichotomique.
+         *
+         * @param idRecette L'identifiant de la recette
+         * @return La cote santé, ou 0 si la recette est inconnue
+         */
+        double coteDe(int idRecette) {
+            int rang = Arrays.binarySearch(ids, 0, taille, idRecette);
+            return rang < 0 ? 0 : cote(rang);
+        }
+
+        /**
+         * Classe les recettes de la plus saine à la moins saine ; à cote égale,
+         * par identifiant croissant.
+         *
+         * @return Les identifiants de recettes dans l'ordre du classement
+         */
+        int[] classement() {
+            // Clé de tri : (cote inversée, identifiant) empaquetée dans un long
+            long[] cles = new long[taille];
+            for (int i = 0; i < taille; i++) {
+                long inverse = 10 * COTE_MAX - dixiemes(sommes[i], nombres[i]);
+                cles[i] = (inverse << 32) | (ids[i] & 0xFFFFFFFFL);
+            }
+            Arrays.sort(cles);
+            int[] classement = new int[taille];
+            for (int i = 0; i < taille; i++) {
+                classement[i] = (int) cles[i];
+            }
+            return classement;
+        }
+    }
+}
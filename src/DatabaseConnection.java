@@ -1,47 +1,97 @@
 import java.sql.*;
 
 public class DatabaseConnection {
-    // Paramètres de connexion déjà correctement configurés pour Oracle
-    private static final String URL = "jdbc:oracle:thin:@//gaia.emp.uqtr.ca:1521/coursbd.uqtr.ca";
-    private static final String USER = "SMI1002_029";
-    private static final String PASSWORD = "26jvbd88";   
-    
-    private static Connection connection;
-    
+    // Base utilisée : Oracle par défaut, ou H2 embarquée avec -Drecette.stockage=h2
+    // (paramètres de connexion remplaçables par -Drecette.db.url, -Drecette.db.user et -Drecette.db.password)
+    private static final Stockage STOCKAGE = Stockage.choisir();
+
+    // Paramètres du pool
+    private static final int TAILLE_POOL = Integer.getInteger("recette.pool.taille", Math.max(4, Runtime.getRuntime().availableProcessors() * 2));
+    private static final long DELAI_EMPRUNT_MS = Long.getLong("recette.pool.delaiEmpruntMs", 30_000);
+    private static final long DELAI_INACTIVITE_MS = Long.getLong("recette.pool.delaiInactiviteMs", 600_000);
+    private static final long DELAI_FUITE_MS = Long.getLong("recette.pool.delaiFuiteMs", 60_000);
+
+    private static volatile ConnectionPool pool;
+
+    /**
+     * Emprunte une connexion au pool. L'appelant doit la fermer pour la rendre au pool.
+     *
+     * @return Une connexion empruntée
+     * @throws SQLException Si aucune connexion ne peut être obtenue
+     */
     public static Connection getConnection() throws SQLException {
-        if (connection == null || connection.isClosed()) {
-            try {
-                Class.forName("oracle.jdbc.driver.OracleDriver");
-                connection = DriverManager.getConnection(URL, USER, PASSWORD);
-
-                if (connection != null) {
-                    System.out.println("Connecté à la base de données avec succès !");
-                } else {
-                    System.out.println("Échec de la connexion à la base de données.");
-                }
+        return getPool().emprunter();
+    }
 
-            } catch (ClassNotFoundException e) {
-                System.out.println("Pilote JDBC Oracle introuvable.");
-                e.printStackTrace();
-                throw new SQLException("Pilote Oracle JDBC non trouvé", e);
-            } catch (SQLException e) {
-                System.out.println("Échec de la connexion.");
-                e.printStackTrace();
-                throw e;
+    /**
+     * Retourne le pool de connexions, en le créant au premier appel.
+     *
+     * @return Le pool partagé
+     * @throws SQLException Si le pilote est introuvable ou si la base est inaccessible
+     */
+    public static ConnectionPool getPool() throws SQLException {
+        ConnectionPool p = pool;
+        if (p == null) {
+            synchronized (DatabaseConnection.class) {
+                p = pool;
+                if (p == null) {
+                    p = creerPool();
+                    pool = p;
+                }
             }
         }
-        return connection;
+        return p;
     }
-    
-    public static void closeConnection() {
-        try {
-            if (connection != null && !connection.isClosed()) {
-                connection.close();
-                System.out.println("Connexion à la base de données fermée.");
-            }
+
+    /**
+     * @return Le stockage choisi par la propriété recette.stockage
+     */
+    public static Stockage getStockage() {
+        return STOCKAGE;
+    }
+
+    /**
+     * Remplace le pool partagé, par exemple par un pool vers une base embarquée.
+     * L'ancien pool est fermé.
+     *
+     * @param nouveau Le nouveau pool
+     */
+    public static synchronized void setPool(ConnectionPool nouveau) {
+        ConnectionPool ancien = pool;
+        pool = nouveau;
+        if (ancien != null && ancien != nouveau) {
+            ancien.fermer();
+        }
+    }
+
+    private static ConnectionPool creerPool() throws SQLException {
+        STOCKAGE.chargerPilote();
+
+        ConnectionPool p = new ConnectionPool(STOCKAGE.url(), STOCKAGE.utilisateur(), STOCKAGE.motDePasse(), TAILLE_POOL,
+                DELAI_EMPRUNT_MS, DELAI_INACTIVITE_MS, DELAI_FUITE_MS, STOCKAGE.initialisationSession());
+        // Ouvre une première connexion pour vérifier la configuration dès le démarrage
+        // et, pour la base embarquée, créer le schéma
+        try (Connection connection = p.emprunter()) {
+            STOCKAGE.preparer(connection);
+            System.out.println("Connecté à la base de données avec succès !");
         } catch (SQLException e) {
-            System.out.println("Erreur lors de la fermeture de la connexion.");
-            e.printStackTrace();
+            MesuresJdbc.partage().signalerErreur("Échec de la connexion", e);
+            p.fermer();
+            throw e;
+        }
+        return p;
+    }
+
+    public static void closeConnection() {
+        ConnectionPool p;
+        synchronized (DatabaseConnection.class) {
+            p = pool;
+            pool = null;
+        }
+        if (p != null) {
+            System.out.println(p.statistiques());
+            p.fermer();
+            System.out.println("Connexion à la base de données fermée.");
         }
     }
-}
\ No newline at end of file
+}
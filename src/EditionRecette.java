@@ -0,0 +1,314 @@
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Unité de travail pour la modification d'une recette et de ses ingrédients.
+ * <p>
+ * L'édition est ouverte par {@link RecetteRepository#editer}, qui lit la recette, ses liaisons
+ * et sa version. Les changements sont ensuite notés en mémoire, sans accès à la base ni verrou,
+ * puis écrits ensemble par {@link RecetteRepository#enregistrer} : un seul UPDATE de Recette
+ * qui vérifie la version, les liaisons ajoutées, modifiées et retirées envoyées en lots, et un
+ * seul commit. Si un autre éditeur a enregistré la recette entre-temps, l'enregistrement échoue
+ * avec {@link RecetteRepository.ConflitVersion} et rien n'est écrit.
+ * <p>
+ * La description et les instructions ne sont pas lues à l'ouverture : elles ne sont écrites
+ * que si elles ont été remplacées. Une édition n'est pas partagée entre threads.
+ */
+public class EditionRecette {
+
+    private final int idRecette;
+    private final int auteurId;
+    private int version;
+
+    private String titre;
+    private int tempsPreparation;
+    private int tempsCuisson;
+    private boolean recetteModifiee;
+    private String description;
+    private boolean descriptionModifiee;
+    private String instructions;
+    private boolean instructionsModifiees;
+
+    /** Liaisons telles qu'elles sont en base à la version lue, par identifiant d'ingrédient. */
+    private final Map<Integer, String> liens;
+    private final Map<Integer, String> ajouts = new LinkedHashMap<>();
+    private final Map<Integer, String> quantites = new LinkedHashMap<>();
+    private final Set<Integer> retraits = new LinkedHashSet<>();
+
+    EditionRecette(int idRecette, int version, String titre, int tempsPreparation, int tempsCuisson,
+                   int auteurId, Map<Integer, String> liens) {
+        this.idRecette = idRecette;
+        this.version = version;
+        this.titre = titre;
+        this.tempsPreparation = tempsPreparation;
+        this.tempsCuisson = tempsCuisson;
+        this.auteurId = auteurId;
+        this.liens = liens;
+    }
+
+    /**
+     * @return L'identifiant de la recette
+     */
+    public int idRecette() {
+        return idRecette;
+    }
+
+    /**
+     * @return La version de la recette sur laquelle porte l'édition
+     */
+    public int version() {
+        return version;
+    }
+
+    /**
+     * @return L'identifiant de l'auteur
+     */
+    public int auteurId() {
+        return auteurId;
+    }
+
+    /**
+     * @return Le titre, modifié ou non
+     */
+    public String titre() {
+        return titre;
+    }
+
+    /**
+     * @return Le temps de préparation en minutes, modifié ou non
+     */
+    public int tempsPreparation() {
+        return tempsPreparation;
+    }
+
+    /**
+     * @return Le temps de cuisson en minutes, modifié ou non
+     */
+    public int tempsCuisson() {
+        return tempsCuisson;
+    }
+
+    /**
+     * Remplace le titre.
+     *
+     * @param titre Le nouveau titre
+     * @return Cette édition
+     * @throws IllegalArgumentException Si le titre est vide
+     */
+    public EditionRecette titre(String titre) {
+        if (titre == null || titre.trim().isEmpty()) {
+            throw new IllegalArgumentException("Le titre ne peut pas être vide");
+        }
+        if (!titre.equals(this.titre)) {
+            this.titre = titre;
+            recetteModifiee = true;
+        }
+        return this;
+    }
+
+    /**
+     * Remplace le temps de préparation.
+     *
+     * @param minutes Le temps de préparation en minutes
+     * @return Cette édition
+     * @throws IllegalArgumentException Si le temps est négatif
+     */
+    public EditionRecette tempsPreparation(int minutes) {
+        if (minutes < 0) {
+            throw new IllegalArgumentException("Le temps de préparation ne peut pas être négatif");
+        }
+        if (minutes != tempsPreparation) {
+            tempsPreparation = minutes;
+            recetteModifiee = true;
+        }
+        return this;
+    }
+
+    /**
+     * Remplace le temps de cuisson.
+     *
+     * @param minutes Le temps de cuisson en minutes
+     * @return Cette édition
+     * @throws IllegalArgumentException Si le temps est négatif
+     */
+    public EditionRecette tempsCuisson(int minutes) {
+        if (minutes < 0) {
+            throw new IllegalArgumentException("Le temps de cuisson ne peut pas être négatif");
+        }
+        if (minutes != tempsCuisson) {
+            tempsCuisson = minutes;
+            recetteModifiee = true;
+        }
+        return this;
+    }
+
+    /**
+     * Remplace la description.
+     *
+     * @param description La nouvelle description, ou null pour l'effacer
+     * @return Cette édition
+     */
+    public EditionRecette description(String description) {
+        this.description = description;
+        descriptionModifiee = true;
+        return this;
+    }
+
+    /**
+     * Remplace les instructions.
+     *
+     * @param instructions Les nouvelles instructions, ou null pour les effacer
+     * @return Cette édition
+     */
+    public EditionRecette instructions(String instructions) {
+        this.instructions = instructions;
+        instructionsModifiees = true;
+        return this;
+    }
+
+    /**
+     * Ajoute un ingrédient à la recette, ou change sa quantité s'il en fait déjà partie.
+     *
+     * @param idIngredient L'identifiant de l'ingrédient
+     * @param quantite La quantité, par exemple "2 tasses"
+     * @return Cette édition
+     */
+    public EditionRecette lier(int idIngredient, String quantite) {
+        Objects.requireNonNull(quantite, "quantite");
+        String origine = liens.get(idIngredient);
+        if (origine == null) {
+            ajouts.put(idIngredient, quantite);
+            return this;
+        }
+        retraits.remove(idIngredient);
+        if (origine.equals(quantite)) {
+            quantites.remove(idIngredient);
+        } else {
+            quantites.put(idIngredient, quantite);
+        }
+        return this;
+    }
+
+    /**
+     * Retire un ingrédient de la recette ; sans effet s'il n'en fait pas partie.
+     *
+     * @param idIngredient L'identifiant de l'ingrédient
+     * @return Cette édition
+     */
+    public EditionRecette retirer(int idIngredient) {
+        if (ajouts.remove(idIngredient) == null && liens.containsKey(idIngredient)) {
+            quantites.remove(idIngredient);
+            retraits.add(idIngredient);
+        }
+        return this;
+    }
+
+    /**
+     * Remplace tous les ingrédients de la recette : ceux qui ne sont pas dans la liste sont
+     * retirés, les autres ajoutés ou mis à jour.
+     *
+     * @param nouveaux Les ingrédients de la recette et leurs quantités
+     * @return Cette édition
+     */
+    public EditionRecette remplacerIngredients(Collection<RecetteRepository.LienIngredient> nouveaux) {
+        Set<Integer> gardes = new HashSet<>();
+        for (RecetteRepository.LienIngredient lien : nouveaux) {
+            gardes.add(lien.id_ingredient);
+        }
+        for (Integer idIngredient : liens.keySet()) {
+            if (!gardes.contains(idIngredient)) {
+                retirer(idIngredient);
+            }
+        }
+        ajouts.keySet().retainAll(gardes);
+        for (RecetteRepository.LienIngredient lien : nouveaux) {
+            lier(lien.id_ingredient, lien.quantite);
+        }
+        return this;
+    }
+
+    /**
+     * @return Les ingrédients de la recette après modification et leurs quantités,
+     *         par identifiant d'ingrédient
+     */
+    public Map<Integer, String> ingredients() {
+        Map<Integer, String> courants = new LinkedHashMap<>(liens);
+        courants.keySet().removeAll(retraits);
+        courants.putAll(quantites);
+        courants.putAll(ajouts);
+        return courants;
+    }
+
+    /**
+     * @return Vrai si l'édition contient au moins un changement à enregistrer
+     */
+    public boolean modifiee() {
+        return recetteModifiee || textesModifies() || liensModifies();
+    }
+
+    // ---------------------------------------------------------------- pour RecetteRepository
+
+    boolean recetteModifiee() {
+        return recetteModifiee;
+    }
+
+    boolean textesModifies() {
+        return descriptionModifiee || instructionsModifiees;
+    }
+
+    boolean descriptionModifiee() {
+        return descriptionModifiee;
+    }
+
+    boolean instructionsModifiees() {
+        return instructionsModifiees;
+    }
+
+    String description() {
+        return description;
+    }
+
+    String instructions() {
+        return instructions;
+    }
+
+    boolean liensModifies() {
+        return !ajouts.isEmpty() || !quantites.isEmpty() || !retraits.isEmpty();
+    }
+
+    Map<Integer, String> ajouts() {
+        return ajouts;
+    }
+
+    Map<Integer, String> quantites() {
+        return quantites;
+    }
+
+    Set<Integer> retraits() {
+        return retraits;
+    }
+
+    /**
+     * Prend en compte un enregistrement validé : les changements deviennent l'état de
+     * référence de la nouvelle version, et l'édition peut continuer.
+     */
+    void enregistree(int nouvelleVersion) {
+        liens.keySet().removeAll(retraits);
+        liens.putAll(quantites);
+        liens.putAll(ajouts);
+        ajouts.clear();
+        quantites.clear();
+        retraits.clear();
+        recetteModifiee = false;
+        descriptionModifiee = false;
+        instructionsModifiees = false;
+        description = null;
+        instructions = null;
+        version = nouvelleVersion;
+    }
+}
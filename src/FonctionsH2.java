@@ -0,0 +1,72 @@
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Fonctions de RECETTE_PKG pour la base H2 embarquée, déclarées par reset-h2.sql avec
+ * CREATE ALIAS. H2 passe la connexion de la session appelante en premier paramètre.
+ * Les résultats sont ceux du corps PL/SQL de reset.sql.
+ */
+public class FonctionsH2 {
+
+    private FonctionsH2() {
+    }
+
+    /**
+     * RECETTE_PKG.get_cote_sante : ROUND(AVG(i.cote_sante), 1).
+     *
+     * @param conn La connexion de la session
+     * @param idRecette L'identifiant de la recette
+     * @return La cote moyenne, ou null si la recette n'a pas d'ingrédient
+     * @throws SQLException En cas d'erreur SQL
+     */
+    public static BigDecimal coteSante(Connection conn, int idRecette) throws SQLException {
+        String sql = "SELECT SUM(i.cote_sante), COUNT(i.cote_sante) " +
+                     "FROM Recette_Ingredient ri " +
+                     "JOIN Ingredient i ON ri.id_ingredient = i.id_ingredient " +
+                     "WHERE ri.id_recette = ?";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, idRecette);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                rs.next();
+                int somme = rs.getInt(1);
+                int nombre = rs.getInt(2);
+                if (nombre == 0) {
+                    return null;
+                }
+                return BigDecimal.valueOf(CoteSanteCalculateur.dixiemes(somme, nombre), 1);
+            }
+        }
+    }
+
+    /**
+     * RECETTE_PKG.get_ingredients_texte : "quantité de nom" séparés par des virgules, triés par nom.
+     *
+     * @param conn La connexion de la session
+     * @param idRecette L'identifiant de la recette
+     * @return Le texte des ingrédients, ou null si la recette n'en a pas (la chaîne vide d'Oracle)
+     * @throws SQLException En cas d'erreur SQL
+     */
+    public static String ingredientsTexte(Connection conn, int idRecette) throws SQLException {
+        String sql = "SELECT ri.quantite, i.nom " +
+                     "FROM Recette_Ingredient ri " +
+                     "JOIN Ingredient i ON ri.id_ingredient = i.id_ingredient " +
+                     "WHERE ri.id_recette = ? " +
+                     "ORDER BY i.nom";
+        StringBuilder texte = new StringBuilder();
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, idRecette);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    if (texte.length() > 0) {
+                        texte.append(", ");
+                    }
+                    texte.append(rs.getString(1)).append(" de ").append(rs.getString(2));
+                }
+            }
+        }
+        return texte.length() == 0 ? null : texte.toString();
+    }
+}
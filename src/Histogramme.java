@@ -0,0 +1,131 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogramme de durées à précision relative constante, sur le principe de HdrHistogram :
+ * les valeurs de 0 à 63 ont chacune leur case, puis chaque puissance de deux est découpée
+ * en 32 cases de même largeur. L'erreur sur un centile est donc d'au plus 1/32 (3 %),
+ * quelle que soit l'échelle, pour 1088 compteurs.
+ * <p>
+ * L'enregistrement est sans verrou et peut être appelé par plusieurs threads à la fois ;
+ * les lectures donnent une vue approchée si des enregistrements sont en cours.
+ */
+public class Histogramme {
+
+    private static final int BITS = 5;
+    private static final int SOUS = 1 << BITS;
+    /** Nombre de puissances de deux découpées au-delà des valeurs exactes. */
+    private static final int PUISSANCES = 32;
+    private static final int CASES = 2 * SOUS + PUISSANCES * SOUS;
+
+    private final AtomicLongArray comptes = new AtomicLongArray(CASES);
+    private final LongAdder nombre = new LongAdder();
+    private final LongAdder somme = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Enregistre une valeur. Une valeur négative compte pour 0, une valeur au-delà de
+     * 2^38 est rangée dans la dernière case.
+     *
+     * @param valeur La valeur
+     */
+    public void enregistrer(long valeur) {
+        if (valeur < 0) {
+            valeur = 0;
+        }
+        comptes.incrementAndGet(indice(valeur));
+        nombre.increment();
+        somme.add(valeur);
+        long courant = max.get();
+        while (valeur > courant && !max.compareAndSet(courant, valeur)) {
+            courant = max.get();
+        }
+    }
+
+    /**
+     * @return Le nombre de valeurs enregistrées
+     */
+    public long nombre() {
+        return nombre.sum();
+    }
+
+    /**
+     * @return La somme des valeurs enregistrées
+     */
+    public long somme() {
+        return somme.sum();
+    }
+
+    /**
+     * @return La plus grande valeur enregistrée
+     */
+    public long max() {
+        return max.get();
+    }
+
+    /**
+     * @return La moyenne des valeurs, ou 0 si aucune n'a été enregistrée
+     */
+    public double moyenne() {
+        long n = nombre.sum();
+        return n == 0 ? 0 : (double) somme.sum() / n;
+    }
+
+    /**
+     * Retourne la valeur sous laquelle se trouve la fraction demandée des enregistrements.
+     *
+     * @param fraction Le centile, entre 0 et 1 (0.99 pour le 99e centile)
+     * @return La borne supérieure de la case du centile, au plus le maximum enregistré
+     */
+    public long centile(double fraction) {
+        long[] copie = new long[CASES];
+        long total = 0;
+        for (int i = 0; i < CASES; i++) {
+            copie[i] = comptes.get(i);
+            total += copie[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rang = Math.max(1, (long) Math.ceil(fraction * total));
+        long cumul = 0;
+        for (int i = 0; i < CASES; i++) {
+            cumul += copie[i];
+            if (cumul >= rang) {
+                return Math.min(borneSuperieure(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * Remet tous les compteurs à zéro.
+     */
+    public void reinitialiser() {
+        for (int i = 0; i < CASES; i++) {
+            comptes.set(i, 0);
+        }
+        nombre.reset();
+        somme.reset();
+        max.set(0);
+    }
+
+    static int indice(long valeur) {
+        if (valeur < 2 * SOUS) {
+            return (int) valeur;
+        }
+        int decalage = 63 - Long.numberOfLeadingZeros(valeur) - BITS;
+        int indice = 2 * SOUS + (decalage - 1) * SOUS + (int) ((valeur >>> decalage) - SOUS);
+        return Math.min(indice, CASES - 1);
+    }
+
+    static long borneSuperieure(int indice) {
+        if (indice < 2 * SOUS) {
+            return indice;
+        }
+        int decalage = (indice - 2 * SOUS) / SOUS + 1;
+        long mantisse = (indice - 2 * SOUS) % SOUS + SOUS;
+        return ((mantisse + 1) << decalage) - 1;
+    }
+}
@@ -0,0 +1,616 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.*;
+import java.util.*;
+
+/**
+ * Importation en masse de recettes depuis un fichier CSV ou JSON Lines, sans interaction.
+ * <p>
+ * Le fichier est lu en flux et écrit par lots : les recettes d'un lot sont insérées avec
+ * addBatch/executeBatch, leurs liaisons aux ingrédients aussi, puis le lot est validé en
+ * une seule transaction. La mémoire utilisée dépend de la taille des lots, pas de celle
+ * du fichier. Les ingrédients sont retrouvés par nom et créés s'ils n'existent pas ;
+ * les auteurs sont retrouvés par email et doivent déjà exister.
+ * <p>
+ * Format CSV (séparateur virgule, champs entre guillemets au besoin, première ligne d'en-tête) :
+ * <pre>
+ * titre,description,instructions,temps_preparation,temps_cuisson,auteur_email,ingredients
+ * Crêpes,"Des crêpes","1. Mélanger",10,5,marie@recettesqc.ca,Oeuf=2 œufs|Lait=1 tasse
+ * </pre>
+ * Format JSON Lines (un objet par ligne) :
+ * <pre>
+ * {"titre":"Crêpes","auteur_email":"marie@recettesqc.ca","temps_preparation":10,
+ *  "ingredients":[{"nom":"Oeuf","quantite":"2 œufs"}]}
+ * </pre>
+ */
+public class ImportRecettes {
+
+    /** Cote santé donnée aux ingrédients créés pendant l'importation. */
+    private static final int COTE_DEFAUT = Integer.getInteger("recette.import.coteSante", 3);
+    /** Nombre de recettes par transaction si aucune taille n'est fournie. */
+    private static final int TAILLE_LOT_DEFAUT = 500;
+
+    private final Connection conn;
+    private final int tailleLot;
+    private final StatementCache requetes;
+    private final AuteurRepository auteurs;
+    private final IngredientRepository ingredients;
+    /** Identifiants d'auteurs déjà résolus, par email. */
+    private final Map<String, Integer> idsAuteurs = new HashMap<>();
+    /** Identifiants de tous les ingrédients connus, par nom. */
+    private final Map<String, Integer> idsIngredients = new HashMap<>();
+    /** Faux si le pilote ne renvoie pas les clés générées d'un lot d'insertions. */
+    private boolean clesEnLot = true;
+    private final Rapport rapport = new Rapport();
+
+    /**
+     * Prépare une importation sur la connexion donnée.
+     *
+     * @param conn La connexion, réservée à l'importation pendant sa durée
+     * @param tailleLot Le nombre de recettes par transaction
+     * @throws SQLException En cas d'erreur SQL lors du chargement des ingrédients
+     */
+    public ImportRecettes(Connection conn, int tailleLot) throws SQLException {
+        if (tailleLot < 1) {
+            throw new IllegalArgumentException("La taille des lots doit être d'au moins 1 : " + tailleLot);
+        }
+        this.conn = conn;
+        this.tailleLot = tailleLot;
+        this.requetes = StatementCache.pour(conn);
+        this.auteurs = new AuteurRepository(conn);
+        this.ingredients = new IngredientRepository(conn);
+        for (Main.Ingredient ingredient : ingredients.lister()) {
+            idsIngredients.putIfAbsent(ingredient.nom, ingredient.id_ingredient);
+        }
+    }
+
+    /**
+     * Point d'entrée en ligne de commande.
+     *
+     * @param args Le fichier à importer (.csv, .json, .jsonl ou .ndjson) et, en option, la taille des lots
+     */
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.out.println("Usage : java ImportRecettes <fichier.csv|fichier.jsonl> [taille des lots]");
+            return;
+        }
+        Path fichier = Paths.get(args[0]);
+        int tailleLot = args.length > 1 ? Integer.parseInt(args[1]) : TAILLE_LOT_DEFAUT;
+
+        try (BufferedReader in = Files.newBufferedReader(fichier, StandardCharsets.UTF_8);
+             Connection conn = DatabaseConnection.getConnection()) {
+            Rapport rapport = new ImportRecettes(conn, tailleLot).importer(ouvrir(fichier, in));
+            System.out.println("\nImportation terminée :");
+            System.out.println(rapport);
+        } catch (IOException | UncheckedIOException e) {
+            System.out.println("Erreur de lecture du fichier : " + e.getMessage());
+        } catch (SQLException e) {
+            MesuresJdbc.partage().signalerErreur("Erreur lors de l'importation", e);
+        } finally {
+            JournalAudit.fermerPartage();
+            DatabaseConnection.closeConnection();
+        }
+    }
+
+    /**
+     * Choisit le lecteur selon l'extension du fichier.
+     *
+     * @param fichier Le fichier à importer
+     * @param in Le flux ouvert sur le fichier
+     * @return Les recettes lues
+     */
+    public static Iterator<RecetteImportee> ouvrir(Path fichier, BufferedReader in) {
+        String nom = fichier.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (nom.endsWith(".json") || nom.endsWith(".jsonl") || nom.endsWith(".ndjson")) {
+            return new LecteurJsonLignes(in);
+        }
+        return new LecteurCsv(in);
+    }
+
+    /**
+     * Importe toutes les recettes de la source, lot par lot.
+     *
+     * @param source Les recettes à importer
+     * @return Le rapport d'importation
+     * @throws SQLException En cas d'erreur SQL qui empêche de poursuivre
+     */
+    public Rapport importer(Iterator<RecetteImportee> source) throws SQLException {
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        List<RecetteImportee> lot = new ArrayList<>(tailleLot);
+        try {
+            while (source.hasNext()) {
+                RecetteImportee recette = source.next();
+                rapport.lues++;
+                if (recette.erreur != null) {
+                    rejeter(recette);
+                    continue;
+                }
+                lot.add(recette);
+                if (lot.size() == tailleLot) {
+                    ecrireLot(lot);
+                    lot.clear();
+                    System.out.println(rapport.importees + " recettes importées ("
+                            + String.format("%.0f", rapport.debit()) + " recettes/s)");
+                }
+            }
+            if (!lot.isEmpty()) {
+                ecrireLot(lot);
+            }
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+        rapport.finNanos = System.nanoTime();
+        return rapport;
+    }
+
+    /**
+     * Écrit un lot dans une transaction. Si le lot échoue, il est annulé puis repris
+     * recette par recette pour n'écarter que les recettes fautives.
+     */
+    private void ecrireLot(List<RecetteImportee> lot) throws SQLException {
+        List<String> nouveaux = new ArrayList<>();
+        try {
+            List<RecetteImportee> valides = new ArrayList<>(lot.size());
+            for (RecetteImportee recette : lot) {
+                if (resoudre(recette, nouveaux)) {
+                    valides.add(recette);
+                }
+            }
+            insererRecettes(valides);
+            int liaisons = insererLiens(valides);
+            resumer(valides);
+            journaliser(valides, liaisons);
+            conn.commit();
+            if (!nouveaux.isEmpty()) {
+                IngredientCache.partage().invalider();
+            }
+            indexer(valides);
+
+            rapport.importees += valides.size();
+            rapport.liaisons += liaisons;
+            rapport.ingredientsCrees += nouveaux.size();
+            for (RecetteImportee recette : lot) {
+                if (recette.erreur != null) {
+                    rejeter(recette);
+                }
+            }
+        } catch (SQLFeatureNotSupportedException e) {
+            annuler(nouveaux);
+            clesEnLot = false;
+            ecrireLot(lot);
+        } catch (SQLException e) {
+            annuler(nouveaux);
+            if (lot.size() == 1) {
+                lot.get(0).erreur = e.getMessage();
+                rejeter(lot.get(0));
+                return;
+            }
+            for (RecetteImportee recette : lot) {
+                recette.erreur = null;
+                ecrireLot(Collections.singletonList(recette));
+            }
+        }
+    }
+
+    /**
+     * Résout l'auteur et les ingrédients d'une recette, en créant les ingrédients inconnus.
+     *
+     * @return false si la recette doit être écartée
+     */
+    private boolean resoudre(RecetteImportee recette, List<String> nouveaux) throws SQLException {
+        Integer idAuteur = idsAuteurs.get(recette.auteur_email);
+        if (idAuteur == null) {
+            idAuteur = auteurs.idParEmail(recette.auteur_email);
+            idsAuteurs.put(recette.auteur_email, idAuteur);
+        }
+        if (idAuteur < 0) {
+            recette.erreur = "Auteur inconnu : " + recette.auteur_email;
+            return false;
+        }
+        recette.recette.auteur_id = idAuteur;
+
+        recette.liens.clear();
+        Set<Integer> vus = new HashSet<>();
+        for (String[] ingredient : recette.ingredients) {
+            Integer id = idsIngredients.get(ingredient[0]);
+            if (id == null) {
+                id = ingredients.ajouter(new Main.Ingredient(ingredient[0], COTE_DEFAUT));
+                idsIngredients.put(ingredient[0], id);
+                nouveaux.add(ingredient[0]);
+            }
+            // Un même ingrédient cité deux fois violerait la clé primaire de Recette_Ingredient
+            if (vus.add(id)) {
+                recette.liens.add(new RecetteRepository.LienIngredient(id, ingredient[1]));
+            }
+        }
+        return true;
+    }
+
+    private void insererRecettes(List<RecetteImportee> recettes) throws SQLException {
+        if (recettes.isEmpty()) {
+            return;
+        }
+        PreparedStatement pstmt = requetes.preparer(RecetteRepository.SQL_AJOUTER, "id_recette");
+        if (!clesEnLot) {
+            for (RecetteImportee recette : recettes) {
+                lier(pstmt, recette.recette);
+                pstmt.executeUpdate();
+                try (ResultSet cles = pstmt.getGeneratedKeys()) {
+                    if (!cles.next()) {
+                        throw new SQLException("Impossible de récupérer l'identifiant de la recette.");
+                    }
+                    recette.recette.id_recette = cles.getInt(1);
+                }
+            }
+            return;
+        }
+
+        for (RecetteImportee recette : recettes) {
+            lier(pstmt, recette.recette);
+            pstmt.addBatch();
+        }
+        pstmt.executeBatch();
+        int i = 0;
+        try (ResultSet cles = pstmt.getGeneratedKeys()) {
+            while (i < recettes.size() && cles.next()) {
+                recettes.get(i++).recette.id_recette = cles.getInt(1);
+            }
+        }
+        if (i < recettes.size()) {
+            throw new SQLFeatureNotSupportedException("Le pilote ne renvoie pas les clés générées d'un lot.");
+        }
+    }
+
+    private int insererLiens(List<RecetteImportee> recettes) throws SQLException {
+        PreparedStatement pstmt = requetes.preparer(RecetteRepository.SQL_LIER);
+        int liaisons = 0;
+        for (RecetteImportee recette : recettes) {
+            for (RecetteRepository.LienIngredient lien : recette.liens) {
+                pstmt.setInt(1, recette.recette.id_recette);
+                pstmt.setInt(2, lien.id_ingredient);
+                pstmt.setString(3, lien.quantite);
+                pstmt.addBatch();
+                liaisons++;
+            }
+        }
+        if (liaisons > 0) {
+            pstmt.executeBatch();
+        }
+        return liaisons;
+    }
+
+    /**
+     * Calcule le résumé (Recette_Resume) des recettes du lot, en un seul envoi.
+     */
+    private void resumer(List<RecetteImportee> recettes) throws SQLException {
+        if (recettes.isEmpty()) {
+            return;
+        }
+        PreparedStatement pstmt = requetes.preparer(RecetteRepository.SQL_RESUMER);
+        for (RecetteImportee recette : recettes) {
+            pstmt.setInt(1, recette.recette.id_recette);
+            pstmt.addBatch();
+        }
+        pstmt.executeBatch();
+    }
+
+    /**
+     * Ajoute les recettes validées du lot à l'index de recherche.
+     */
+    private static void indexer(List<RecetteImportee> recettes) {
+        IndexRecherche index = IndexRecherche.partage();
+        for (RecetteImportee recette : recettes) {
+            List<String> noms = new ArrayList<>(recette.ingredients.size());
+            for (String[] ingredient : recette.ingredients) {
+                noms.add(ingredient[0]);
+            }
+            index.indexer(recette.recette, noms);
+        }
+    }
+
+    /**
+     * Consigne les recettes et les liaisons du lot dans le journal d'audit, en un seul envoi.
+     */
+    private void journaliser(List<RecetteImportee> recettes, int liaisons) throws SQLException {
+        List<JournalAudit.Evenement> evenements = new ArrayList<>(recettes.size() + liaisons);
+        for (RecetteImportee recette : recettes) {
+            int id = recette.recette.id_recette;
+            evenements.add(new JournalAudit.Evenement("Recette", "INSERT", id, 0));
+            for (RecetteRepository.LienIngredient lien : recette.liens) {
+                evenements.add(new JournalAudit.Evenement("Recette_Ingredient", "INSERT", id, lien.id_ingredient));
+            }
+        }
+        JournalAudit.partage().enregistrer(conn, evenements);
+    }
+
+    private static void lier(PreparedStatement pstmt, Main.Recette recette) throws SQLException {
+        pstmt.setString(1, recette.titre);
+        RecetteRepository.lierTexte(pstmt, 2, recette.description);
+        RecetteRepository.lierTexte(pstmt, 3, recette.instructions);
+        pstmt.setInt(4, recette.temps_preparation);
+        pstmt.setInt(5, recette.temps_cuisson);
+        pstmt.setInt(6, recette.auteur_id);
+    }
+
+    /**
+     * Annule la transaction en cours et oublie les ingrédients qu'elle avait créés.
+     */
+    private void annuler(List<String> nouveaux) throws SQLException {
+        conn.rollback();
+        for (String nom : nouveaux) {
+            idsIngredients.remove(nom);
+        }
+    }
+
+    private void rejeter(RecetteImportee recette) {
+        rapport.rejetees++;
+        System.out.println("Recette ignorée (enregistrement " + recette.numero + ") : " + recette.erreur);
+    }
+
+    /**
+     * Recette lue dans le fichier, avant sa résolution.
+     */
+    static class RecetteImportee {
+        /** Rang de l'enregistrement dans le fichier, à partir de 1. */
+        final long numero;
+        final Main.Recette recette;
+        final String auteur_email;
+        /** Couples {nom, quantité}. */
+        final List<String[]> ingredients;
+        /** Ingrédients résolus en identifiants. */
+        final List<RecetteRepository.LienIngredient> liens = new ArrayList<>();
+        /** Raison du rejet, ou null si la recette est valide. */
+        String erreur;
+
+        RecetteImportee(long numero, Main.Recette recette, String auteur_email, List<String[]> ingredients) {
+            this.numero = numero;
+            this.recette = recette;
+            this.auteur_email = auteur_email;
+            this.ingredients = ingredients;
+        }
+
+        /**
+         * Crée une recette rejetée dès la lecture.
+         */
+        static RecetteImportee invalide(long numero, String erreur) {
+            RecetteImportee recette = new RecetteImportee(numero, null, null, Collections.emptyList());
+            recette.erreur = erreur;
+            return recette;
+        }
+    }
+
+    /**
+     * Résultat d'une importation.
+     */
+    public static class Rapport {
+        final long debutNanos = System.nanoTime();
+        long finNanos;
+        /** Enregistrements lus dans le fichier. */
+        long lues;
+        /** Recettes enregistrées. */
+        long importees;
+        /** Enregistrements écartés. */
+        long rejetees;
+        /** Lignes insérées dans Recette_Ingredient. */
+        long liaisons;
+        /** Ingrédients créés faute d'exister. */
+        long ingredientsCrees;
+
+        /**
+         * @return Le nombre de recettes importées par seconde
+         */
+        public double debit() {
+            long fin = finNanos == 0 ? System.nanoTime() : finNanos;
+            double secondes = (fin - debutNanos) / 1e9;
+            return secondes > 0 ? importees / secondes : 0;
+        }
+
+        @Override
+        public String toString() {
+            long fin = finNanos == 0 ? System.nanoTime() : finNanos;
+            return "Enregistrements lus: " + lues
+                    + "\nRecettes importées: " + importees
+                    + "\nRecettes ignorées: " + rejetees
+                    + "\nIngrédients liés: " + liaisons
+                    + "\nIngrédients créés: " + ingredientsCrees
+                    + "\nDurée: " + String.format("%.2f", (fin - debutNanos) / 1e9) + " s"
+                    + "\nDébit: " + String.format("%.0f", debit()) + " recettes/s";
+        }
+    }
+
+    /**
+     * Lit des recettes au format CSV. Les champs entre guillemets peuvent contenir
+     * des virgules, des sauts de ligne et des guillemets doublés.
+     */
+    static class LecteurCsv implements Iterator<RecetteImportee> {
+        private final BufferedReader in;
+        private final Map<String, Integer> colonnes = new HashMap<>();
+        private List<String> suivant;
+        private long numero;
+
+        LecteurCsv(BufferedReader in) {
+            this.in = in;
+            List<String> entete = lireEnregistrement();
+            if (entete == null) {
+                return;
+            }
+            for (int i = 0; i < entete.size(); i++) {
+                colonnes.put(entete.get(i).trim().toLowerCase(Locale.ROOT), i);
+            }
+            if (!colonnes.containsKey("titre") || !colonnes.containsKey("auteur_email")) {
+                throw new IllegalArgumentException("L'en-tête CSV doit contenir les colonnes titre et auteur_email.");
+            }
+            suivant = lireEnregistrement();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return suivant != null;
+        }
+
+        @Override
+        public RecetteImportee next() {
+            if (suivant == null) {
+                throw new NoSuchElementException();
+            }
+            List<String> champs = suivant;
+            suivant = lireEnregistrement();
+            numero++;
+            try {
+                String titre = champ(champs, "titre");
+                String email = champ(champs, "auteur_email");
+                if (titre == null || titre.trim().isEmpty() || email == null || email.trim().isEmpty()) {
+                    return RecetteImportee.invalide(numero, "titre ou auteur_email manquant");
+                }
+                Main.Recette recette = new Main.Recette(titre, champ(champs, "description"),
+                        champ(champs, "instructions"), entier(champ(champs, "temps_preparation")),
+                        entier(champ(champs, "temps_cuisson")), 0);
+
+                List<String[]> ingredients = new ArrayList<>();
+                String liste = champ(champs, "ingredients");
+                if (liste != null && !liste.trim().isEmpty()) {
+                    for (String element : liste.split("\\|")) {
+                        int egal = element.indexOf('=');
+                        String nom = (egal < 0 ? element : element.substring(0, egal)).trim();
+                        String quantite = egal < 0 ? "" : element.substring(egal + 1).trim();
+                        if (!nom.isEmpty()) {
+                            ingredients.add(new String[] {nom, quantite});
+                        }
+                    }
+                }
+                return new RecetteImportee(numero, recette, email.trim(), ingredients);
+            } catch (NumberFormatException e) {
+                return RecetteImportee.invalide(numero, "temps invalide : " + e.getMessage());
+            }
+        }
+
+        private String champ(List<String> champs, String nom) {
+            Integer i = colonnes.get(nom);
+            return i == null || i >= champs.size() ? null : champs.get(i);
+        }
+
+        private List<String> lireEnregistrement() {
+            try {
+                int c = in.read();
+                if (c < 0) {
+                    return null;
+                }
+                List<String> champs = new ArrayList<>();
+                StringBuilder champ = new StringBuilder();
+                boolean guillemets = false;
+                while (c >= 0) {
+                    if (guillemets) {
+                        if (c == '"') {
+                            in.mark(1);
+                            int d = in.read();
+                            if (d == '"') {
+                                champ.append('"');
+                            } else {
+                                guillemets = false;
+                                in.reset();
+                            }
+                        } else {
+                            champ.append((char) c);
+                        }
+                    } else if (c == '"') {
+                        guillemets = true;
+                    } else if (c == ',') {
+                        champs.add(champ.toString());
+                        champ.setLength(0);
+                    } else if (c == '\n') {
+                        break;
+                    } else if (c != '\r') {
+                        champ.append((char) c);
+                    }
+                    c = in.read();
+                }
+                champs.add(champ.toString());
+                return champs;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Lit des recettes au format JSON Lines : un objet JSON par ligne.
+     */
+    static class LecteurJsonLignes implements Iterator<RecetteImportee> {
+        private final BufferedReader in;
+        private String suivante;
+        private long numero;
+
+        LecteurJsonLignes(BufferedReader in) {
+            this.in = in;
+            avancer();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return suivante != null;
+        }
+
+        @Override
+        public RecetteImportee next() {
+            if (suivante == null) {
+                throw new NoSuchElementException();
+            }
+            String ligne = suivante;
+            avancer();
+            numero++;
+            try {
+                Map<String, Object> objet = JsonLecteur.lireObjet(ligne);
+                String titre = texte(objet.get("titre"));
+                String email = texte(objet.get("auteur_email"));
+                if (titre == null || titre.trim().isEmpty() || email == null || email.trim().isEmpty()) {
+                    return RecetteImportee.invalide(numero, "titre ou auteur_email manquant");
+                }
+                Main.Recette recette = new Main.Recette(titre, texte(objet.get("description")),
+                        texte(objet.get("instructions")), entier(texte(objet.get("temps_preparation"))),
+                        entier(texte(objet.get("temps_cuisson"))), 0);
+
+                List<String[]> ingredients = new ArrayList<>();
+                Object liste = objet.get("ingredients");
+                if (liste instanceof List) {
+                    for (Object element : (List<?>) liste) {
+                        if (element instanceof Map) {
+                            Map<?, ?> ingredient = (Map<?, ?>) element;
+                            String nom = texte(ingredient.get("nom"));
+                            String quantite = texte(ingredient.get("quantite"));
+                            if (nom != null && !nom.trim().isEmpty()) {
+                                ingredients.add(new String[] {nom.trim(), quantite == null ? "" : quantite});
+                            }
+                        }
+                    }
+                }
+                return new RecetteImportee(numero, recette, email.trim(), ingredients);
+            } catch (IllegalArgumentException e) {
+                return RecetteImportee.invalide(numero, e.getMessage());
+            }
+        }
+
+        private void avancer() {
+            try {
+                do {
+                    suivante = in.readLine();
+                } while (suivante != null && suivante.trim().isEmpty());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private static String texte(Object valeur) {
+            return valeur == null ? null : valeur.toString();
+        }
+    }
+
+    private static int entier(String valeur) {
+        return valeur == null || valeur.trim().isEmpty() ? 0 : Integer.parseInt(valeur.trim());
+    }
+}
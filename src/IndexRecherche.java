@@ -0,0 +1,780 @@
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.*;
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Index plein texte des recettes, tenu en mémoire : titre, description, instructions
+ * et noms des ingrédients.
+ * <p>
+ * Les mots sont ramenés en minuscules sans accents ni ligatures (« Épinards » et « epinards »
+ * sont le même mot), au singulier par retrait du s final, et les mots vides du français sont
+ * écartés. Une requête retient les recettes qui contiennent tous ses mots ; un mot terminé
+ * par * est un préfixe. Les résultats sont classés par BM25, un mot du titre pesant plus
+ * qu'un ingrédient, lui-même plus qu'un mot du texte.
+ * <p>
+ * L'index est chargé à la première recherche depuis son instantané sur disque, puis rapproché
+ * de la table Recette : les recettes supprimées entre-temps sont retirées et les nouvelles
+ * indexées. Sans instantané, il est construit à partir du catalogue en colonnes s'il a été
+ * exporté ({@link CatalogueColonnes}), sinon de la base. Il est ensuite tenu à jour
+ * par {@link #indexer} et {@link #retirer} après chaque écriture validée.
+ */
+public class IndexRecherche {
+
+    private static final String SQL_IDS = "SELECT id_recette FROM Recette ORDER BY id_recette";
+    private static final String SQL_DOCUMENTS =
+        "SELECT id_recette, auteur_id, titre, description, instructions FROM Recette " +
+        "WHERE id_recette > ? ORDER BY id_recette";
+    private static final String SQL_INGREDIENTS =
+        "SELECT ri.id_recette, i.nom FROM Recette_Ingredient ri " +
+        "JOIN Ingredient i ON ri.id_ingredient = i.id_ingredient " +
+        "WHERE ri.id_recette > ? ORDER BY ri.id_recette";
+
+    private static final int MAGIC = 0x52435831;
+    private static final int VERSION = 1;
+
+    /** Poids d'une occurrence selon le champ. */
+    private static final int POIDS_TITRE = 3;
+    private static final int POIDS_INGREDIENT = 2;
+    private static final int POIDS_TEXTE = 1;
+
+    /** Paramètres de BM25. */
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+
+    private static final Set<String> MOTS_VIDES = new HashSet<>(Arrays.asList(
+        "le", "la", "les", "un", "une", "des", "de", "du", "et", "ou", "au", "aux", "en",
+        "pour", "par", "avec", "sans", "sur", "sous", "dans", "ce", "cet", "cette", "ces",
+        "son", "sa", "ses", "leur", "leurs", "est", "sont", "se", "qu", "que", "qui", "puis"));
+
+    private static final IndexRecherche PARTAGE =
+            new IndexRecherche(Paths.get(System.getProperty("recette.recherche.fichier", "index-recettes.bin")));
+
+    private final Path fichier;
+    private final ReentrantReadWriteLock verrou = new ReentrantReadWriteLock();
+    private boolean charge;
+    private boolean modifie;
+
+    // Documents, par numéro interne attribué dans l'ordre d'indexation
+    private int[] ids = new int[1024];
+    private int[] auteurs = new int[1024];
+    private int[] longueurs = new int[1024];
+    private String[] titres = new String[1024];
+    private int nbDocs;
+    private final BitSet supprimes = new BitSet();
+    private int nbSupprimes;
+    private long longueurTotale;
+    private final Map<Integer, Integer> numeros = new HashMap<>();
+
+    private final TreeMap<String, Postings> termes = new TreeMap<>();
+
+    /**
+     * Crée un index vide.
+     *
+     * @param fichier Le fichier de l'instantané
+     */
+    public IndexRecherche(Path fichier) {
+        this.fichier = fichier;
+    }
+
+    /**
+     * @return L'index partagé par l'application, dont l'instantané est donné par
+     *         la propriété recette.recherche.fichier
+     */
+    public static IndexRecherche partage() {
+        return PARTAGE;
+    }
+
+    /**
+     * Recherche des recettes.
+     *
+     * @param requete Les mots recherchés ; un mot terminé par * est un préfixe
+     * @param max Le nombre maximal de résultats
+     * @return Les recettes trouvées, de la plus pertinente à la moins pertinente
+     * @throws SQLException Si l'index doit être chargé et que la lecture de la base échoue
+     */
+    public List<Resultat> rechercher(String requete, int max) throws SQLException {
+        charger();
+        List<String> mots = new ArrayList<>();
+        List<Boolean> prefixes = new ArrayList<>();
+        for (String brut : requete.trim().split("\\s+")) {
+            boolean prefixe = brut.endsWith("*");
+            List<String> jetons = jetons(prefixe ? brut.substring(0, brut.length() - 1) : brut);
+            for (int i = 0; i < jetons.size(); i++) {
+                mots.add(jetons.get(i));
+                prefixes.add(prefixe && i == jetons.size() - 1);
+            }
+        }
+        if (mots.isEmpty() || max < 1) {
+            return Collections.emptyList();
+        }
+
+        verrou.readLock().lock();
+        try {
+            float moyenne = nbDocs == nbSupprimes ? 1 : (float) longueurTotale / (nbDocs - nbSupprimes);
+            List<Correspondances> parMot = new ArrayList<>(mots.size());
+            for (int i = 0; i < mots.size(); i++) {
+                Correspondances c = correspondances(mots.get(i), prefixes.get(i), moyenne);
+                if (c.taille == 0) {
+                    return Collections.emptyList();
+                }
+                parMot.add(c);
+            }
+            // Intersection en partant du mot le plus rare
+            parMot.sort(Comparator.comparingInt(c -> c.taille));
+            Correspondances resultat = parMot.get(0);
+            for (int i = 1; i < parMot.size() && resultat.taille > 0; i++) {
+                resultat = resultat.intersection(parMot.get(i));
+            }
+            return meilleurs(resultat, max);
+        } finally {
+            verrou.readLock().unlock();
+        }
+    }
+
+    /**
+     * Indexe une recette validée, ou la réindexe si elle l'est déjà.
+     * Sans effet tant que l'index n'est pas chargé : le chargement la trouvera en base.
+     *
+     * @param recette La recette, avec son identifiant
+     * @param ingredients Les noms de ses ingrédients
+     */
+    public void indexer(Main.Recette recette, Collection<String> ingredients) {
+        verrou.writeLock().lock();
+        try {
+            if (charge) {
+                ajouterDocument(recette.id_recette, recette.auteur_id, recette.titre, recette.description,
+                        recette.instructions, ingredients);
+                modifie = true;
+            }
+        } finally {
+            verrou.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Retire une recette supprimée.
+     *
+     * @param idRecette L'identifiant de la recette
+     */
+    public void retirer(int idRecette) {
+        verrou.writeLock().lock();
+        try {
+            if (charge && retirerDocument(idRecette)) {
+                modifie = true;
+                compacterSiNecessaire();
+            }
+        } finally {
+            verrou.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Retire les recettes d'un auteur supprimé, effacées en cascade.
+     *
+     * @param idAuteur L'identifiant de l'auteur
+     */
+    public void retirerAuteur(int idAuteur) {
+        verrou.writeLock().lock();
+        try {
+            if (!charge) {
+                return;
+            }
+            for (int n = 0; n < nbDocs; n++) {
+                if (auteurs[n] == idAuteur && !supprimes.get(n)) {
+                    retirerDocument(ids[n]);
+                    modifie = true;
+                }
+            }
+            compacterSiNecessaire();
+        } finally {
+            verrou.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Écrit l'instantané de l'index s'il a changé depuis le dernier enregistrement.
+     *
+     * @throws IOException En cas d'erreur d'écriture
+     */
+    public void sauvegarder() throws IOException {
+        verrou.writeLock().lock();
+        try {
+            if (!charge || !modifie) {
+                return;
+            }
+            compacter();
+            ecrire();
+            modifie = false;
+        } finally {
+            verrou.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return Le nombre de recettes indexées
+     */
+    public int taille() {
+        verrou.readLock().lock();
+        try {
+            return nbDocs - nbSupprimes;
+        } finally {
+            verrou.readLock().unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        verrou.readLock().lock();
+        try {
+            return "IndexRecherche[recettes=" + (nbDocs - nbSupprimes) + ", termes=" + termes.size()
+                    + ", charge=" + charge + "]";
+        } finally {
+            verrou.readLock().unlock();
+        }
+    }
+
+    // ---------------------------------------------------------------- chargement
+
+    private void charger() throws SQLException {
+        verrou.readLock().lock();
+        try {
+            if (charge) {
+                return;
+            }
+        } finally {
+            verrou.readLock().unlock();
+        }
+        verrou.writeLock().lock();
+        try {
+            if (charge) {
+                return;
+            }
+            boolean instantane = false;
+            if (Files.exists(fichier)) {
+                try {
+                    lire();
+                    instantane = true;
+                } catch (IOException e) {
+                    System.out.println("Instantané de l'index illisible, reconstruction : " + e.getMessage());
+                    vider();
+                }
+            }
+            if (!instantane) {
+                indexerCatalogue();
+            }
+            try (Connection conn = DatabaseConnection.getConnection()) {
+                rapprocher(conn);
+            }
+            charge = true;
+            if (!instantane || modifie) {
+                try {
+                    ecrire();
+                    modifie = false;
+                } catch (IOException e) {
+                    System.out.println("Impossible d'écrire l'instantané de l'index : " + e.getMessage());
+                }
+            }
+        } finally {
+            verrou.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Aligne l'index sur la table Recette : retire les recettes disparues, puis indexe
+     * celles qui manquent. Seuls les identifiants sont lus pour la comparaison.
+     */
+    private void rapprocher(Connection conn) throws SQLException {
+        StatementCache requetes = StatementCache.pour(conn);
+        BitSet presents = new BitSet();
+        int premierManquant = Integer.MAX_VALUE;
+        PreparedStatement ids = requetes.preparer(SQL_IDS);
+        ids.setFetchSize(10_000);
+        try (ResultSet rs = ids.executeQuery()) {
+            while (rs.next()) {
+                int id = rs.getInt(1);
+                Integer numero = numeros.get(id);
+                if (numero == null) {
+                    premierManquant = Math.min(premierManquant, id);
+                } else {
+                    presents.set(numero);
+                }
+            }
+        }
+        for (int n = 0; n < nbDocs; n++) {
+            if (!supprimes.get(n) && !presents.get(n)) {
+                retirerDocument(this.ids[n]);
+                modifie = true;
+            }
+        }
+        if (premierManquant != Integer.MAX_VALUE) {
+            indexerDepuis(requetes, premierManquant - 1);
+            modifie = true;
+        }
+        compacterSiNecessaire();
+    }
+
+    /**
+     * Indexe les recettes d'identifiant supérieur à apresId qui ne le sont pas encore,
+     * en parcourant en parallèle les recettes et leurs ingrédients, triés par identifiant.
+     */
+    private void indexerDepuis(StatementCache requetes, int apresId) throws SQLException {
+        PreparedStatement documents = requetes.preparer(SQL_DOCUMENTS);
+        documents.setInt(1, apresId);
+        documents.setFetchSize(1000);
+        PreparedStatement ingredients = requetes.preparer(SQL_INGREDIENTS);
+        ingredients.setInt(1, apresId);
+        ingredients.setFetchSize(1000);
+        try (ResultSet rd = documents.executeQuery(); ResultSet ri = ingredients.executeQuery()) {
+            boolean ingredient = ri.next();
+            List<String> noms = new ArrayList<>();
+            while (rd.next()) {
+                int id = rd.getInt(1);
+                noms.clear();
+                while (ingredient && ri.getInt(1) < id) {
+                    ingredient = ri.next();
+                }
+                while (ingredient && ri.getInt(1) == id) {
+                    noms.add(ri.getString(2));
+                    ingredient = ri.next();
+                }
+                if (!numeros.containsKey(id)) {
+                    ajouterDocument(id, rd.getInt(2), rd.getString(3), rd.getString(4), rd.getString(5), noms);
+                }
+            }
+        }
+    }
+
+    /**
+     * Sans instantané de l'index, indexe les recettes du catalogue en colonnes s'il existe
+     * ({@link CatalogueColonnes}) : les textes sont lus dans le fichier projeté au lieu de la
+     * base. Le rapprochement qui suit rattrape les recettes ajoutées ou supprimées depuis.
+     */
+    private void indexerCatalogue() {
+        Path catalogue = CatalogueColonnes.fichierParDefaut();
+        if (!Files.exists(catalogue)) {
+            return;
+        }
+        try (CatalogueColonnes c = CatalogueColonnes.ouvrir(catalogue)) {
+            for (int rang = 0; rang < c.taille(); rang++) {
+                ajouterDocument(c.id(rang), c.auteurId(rang), c.titre(rang), c.description(rang),
+                        c.instructions(rang), c.ingredients(rang));
+            }
+        } catch (IOException | RuntimeException e) {
+            System.out.println("Catalogue illisible, reconstruction depuis la base : " + e.getMessage());
+            vider();
+        }
+    }
+
+    // ---------------------------------------------------------------- documents
+
+    private void ajouterDocument(int idRecette, int idAuteur, String titre, String description,
+                                 String instructions, Collection<String> ingredients) {
+        retirerDocument(idRecette);
+        Map<String, Integer> frequences = new HashMap<>();
+        compter(frequences, titre, POIDS_TITRE);
+        for (String ingredient : ingredients) {
+            compter(frequences, ingredient, POIDS_INGREDIENT);
+        }
+        compter(frequences, description, POIDS_TEXTE);
+        compter(frequences, instructions, POIDS_TEXTE);
+
+        int numero = nouveauNumero(idRecette, idAuteur, titre);
+        int longueur = 0;
+        for (Map.Entry<String, Integer> e : frequences.entrySet()) {
+            termes.computeIfAbsent(e.getKey(), t -> new Postings()).ajouter(numero, e.getValue());
+            longueur += e.getValue();
+        }
+        longueurs[numero] = longueur;
+        longueurTotale += longueur;
+    }
+
+    private int nouveauNumero(int idRecette, int idAuteur, String titre) {
+        if (nbDocs == ids.length) {
+            int capacite = nbDocs * 2;
+            ids = Arrays.copyOf(ids, capacite);
+            auteurs = Arrays.copyOf(auteurs, capacite);
+            longueurs = Arrays.copyOf(longueurs, capacite);
+            titres = Arrays.copyOf(titres, capacite);
+        }
+        int numero = nbDocs++;
+        ids[numero] = idRecette;
+        auteurs[numero] = idAuteur;
+        titres[numero] = titre;
+        numeros.put(idRecette, numero);
+        return numero;
+    }
+
+    /**
+     * Marque un document comme supprimé ; ses entrées sont purgées par {@link #compacter}.
+     */
+    private boolean retirerDocument(int idRecette) {
+        Integer numero = numeros.remove(idRecette);
+        if (numero == null) {
+            return false;
+        }
+        supprimes.set(numero);
+        nbSupprimes++;
+        longueurTotale -= longueurs[numero];
+        titres[numero] = null;
+        return true;
+    }
+
+    private void compacterSiNecessaire() {
+        if (nbSupprimes > 1000 && nbSupprimes > nbDocs / 4) {
+            compacter();
+        }
+    }
+
+    /**
+     * Renumérote les documents restants et purge les listes d'occurrences des documents supprimés.
+     */
+    private void compacter() {
+        if (nbSupprimes == 0) {
+            return;
+        }
+        int[] nouveaux = new int[nbDocs];
+        int vivants = 0;
+        for (int n = 0; n < nbDocs; n++) {
+            if (supprimes.get(n)) {
+                nouveaux[n] = -1;
+            } else {
+                nouveaux[n] = vivants;
+                ids[vivants] = ids[n];
+                auteurs[vivants] = auteurs[n];
+                longueurs[vivants] = longueurs[n];
+                titres[vivants] = titres[n];
+                vivants++;
+            }
+        }
+        Arrays.fill(titres, vivants, nbDocs, null);
+        nbDocs = vivants;
+        supprimes.clear();
+        nbSupprimes = 0;
+        numeros.clear();
+        for (int n = 0; n < nbDocs; n++) {
+            numeros.put(ids[n], n);
+        }
+        for (Iterator<Postings> it = termes.values().iterator(); it.hasNext(); ) {
+            Postings p = it.next();
+            p.renumeroter(nouveaux);
+            if (p.taille == 0) {
+                it.remove();
+            }
+        }
+    }
+
+    private void vider() {
+        nbDocs = 0;
+        supprimes.clear();
+        nbSupprimes = 0;
+        longueurTotale = 0;
+        numeros.clear();
+        termes.clear();
+    }
+
+    // ---------------------------------------------------------------- recherche
+
+    /**
+     * Documents contenant un mot, ou un mot commençant par un préfixe, avec leur score BM25.
+     */
+    private Correspondances correspondances(String mot, boolean prefixe, float moyenne) {
+        Collection<Postings> listes;
+        if (prefixe) {
+            listes = termes.subMap(mot, true, mot + Character.MAX_VALUE, true).values();
+        } else {
+            Postings p = termes.get(mot);
+            listes = p == null ? Collections.emptyList() : Collections.singletonList(p);
+        }
+        int total = 0;
+        for (Postings p : listes) {
+            total += p.taille;
+        }
+        int vivants = nbDocs - nbSupprimes;
+        // Clé de tri : numéro de document dans les 32 bits de poids fort, score dans les autres
+        long[] cles = new long[total];
+        int k = 0;
+        for (Postings p : listes) {
+            float idf = (float) Math.log(1 + (vivants - p.taille + 0.5) / (p.taille + 0.5));
+            for (int i = 0; i < p.taille; i++) {
+                int doc = p.docs[i];
+                if (supprimes.get(doc)) {
+                    continue;
+                }
+                float tf = p.frequences[i];
+                float score = idf * tf * (K1 + 1) / (tf + K1 * (1 - B + B * longueurs[doc] / moyenne));
+                cles[k++] = ((long) doc << 32) | (Float.floatToIntBits(score) & 0xFFFFFFFFL);
+            }
+        }
+        if (listes.size() > 1) {
+            Arrays.sort(cles, 0, k);
+        }
+        Correspondances c = new Correspondances(k);
+        for (int i = 0; i < k; i++) {
+            int doc = (int) (cles[i] >>> 32);
+            float score = Float.intBitsToFloat((int) cles[i]);
+            // Un document peut contenir plusieurs mots du même préfixe : on cumule
+            if (c.taille > 0 && c.docs[c.taille - 1] == doc) {
+                c.scores[c.taille - 1] += score;
+            } else {
+                c.docs[c.taille] = doc;
+                c.scores[c.taille++] = score;
+            }
+        }
+        return c;
+    }
+
+    private List<Resultat> meilleurs(Correspondances c, int max) {
+        PriorityQueue<Integer> tas = new PriorityQueue<>(max + 1,
+                (a, b) -> c.scores[a] != c.scores[b] ? Float.compare(c.scores[a], c.scores[b])
+                        : Integer.compare(ids[c.docs[b]], ids[c.docs[a]]));
+        for (int i = 0; i < c.taille; i++) {
+            tas.add(i);
+            if (tas.size() > max) {
+                tas.poll();
+            }
+        }
+        Resultat[] resultats = new Resultat[tas.size()];
+        for (int i = resultats.length - 1; i >= 0; i--) {
+            int rang = tas.poll();
+            int doc = c.docs[rang];
+            resultats[i] = new Resultat(ids[doc], titres[doc], c.scores[rang]);
+        }
+        return Arrays.asList(resultats);
+    }
+
+    // ---------------------------------------------------------------- texte
+
+    private static void compter(Map<String, Integer> frequences, String texte, int poids) {
+        if (texte == null) {
+            return;
+        }
+        for (String jeton : jetons(texte)) {
+            frequences.merge(jeton, poids, Integer::sum);
+        }
+    }
+
+    /**
+     * Découpe un texte en mots normalisés, sans les mots vides.
+     *
+     * @param texte Le texte
+     * @return Les mots, dans l'ordre du texte
+     */
+    static List<String> jetons(String texte) {
+        String plie = plier(texte);
+        List<String> jetons = new ArrayList<>();
+        int debut = -1;
+        for (int i = 0; i <= plie.length(); i++) {
+            boolean lettre = i < plie.length() && Character.isLetterOrDigit(plie.charAt(i));
+            if (lettre && debut < 0) {
+                debut = i;
+            } else if (!lettre && debut >= 0) {
+                String mot = plie.substring(debut, i);
+                if (mot.length() > 1 && !MOTS_VIDES.contains(mot)) {
+                    jetons.add(singulier(mot));
+                }
+                debut = -1;
+            }
+        }
+        return jetons;
+    }
+
+    /**
+     * Met un texte en minuscules et retire accents et ligatures : « Œufs brûlés » devient « oeufs brules ».
+     */
+    static String plier(String texte) {
+        String minuscules = texte.toLowerCase(Locale.FRENCH).replace("œ", "oe").replace("æ", "ae");
+        String decompose = Normalizer.normalize(minuscules, Normalizer.Form.NFD);
+        StringBuilder plie = new StringBuilder(decompose.length());
+        for (int i = 0; i < decompose.length(); i++) {
+            char c = decompose.charAt(i);
+            if (Character.getType(c) != Character.NON_SPACING_MARK) {
+                plie.append(c);
+            }
+        }
+        return plie.toString();
+    }
+
+    private static String singulier(String mot) {
+        if (mot.length() > 3 && mot.endsWith("s") && !mot.endsWith("ss")) {
+            return mot.substring(0, mot.length() - 1);
+        }
+        return mot;
+    }
+
+    // ---------------------------------------------------------------- instantané
+
+    /**
+     * Écrit l'instantané dans un fichier temporaire puis le met en place d'un seul coup.
+     * Les numéros de documents sont écrits en écarts et tous les entiers en longueur variable.
+     */
+    private void ecrire() throws IOException {
+        compacter();
+        Path temporaire = fichier.resolveSibling(fichier.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporaire), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            ecrireEntier(out, nbDocs);
+            for (int n = 0; n < nbDocs; n++) {
+                ecrireEntier(out, ids[n]);
+                ecrireEntier(out, auteurs[n]);
+                ecrireEntier(out, longueurs[n]);
+                out.writeUTF(titres[n] == null ? "" : titres[n]);
+            }
+            ecrireEntier(out, termes.size());
+            for (Map.Entry<String, Postings> e : termes.entrySet()) {
+                Postings p = e.getValue();
+                out.writeUTF(e.getKey());
+                ecrireEntier(out, p.taille);
+                int precedent = 0;
+                for (int i = 0; i < p.taille; i++) {
+                    ecrireEntier(out, p.docs[i] - precedent);
+                    ecrireEntier(out, p.frequences[i]);
+                    precedent = p.docs[i];
+                }
+            }
+        }
+        Files.move(temporaire, fichier, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void lire() throws IOException {
+        vider();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(fichier), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("format inconnu");
+            }
+            int documents = lireEntier(in);
+            for (int n = 0; n < documents; n++) {
+                int numero = nouveauNumero(lireEntier(in), lireEntier(in), null);
+                longueurs[numero] = lireEntier(in);
+                titres[numero] = in.readUTF();
+                longueurTotale += longueurs[numero];
+            }
+            int nbTermes = lireEntier(in);
+            for (int t = 0; t < nbTermes; t++) {
+                String terme = in.readUTF();
+                int taille = lireEntier(in);
+                Postings p = new Postings(taille);
+                int doc = 0;
+                for (int i = 0; i < taille; i++) {
+                    doc += lireEntier(in);
+                    p.ajouter(doc, lireEntier(in));
+                }
+                termes.put(terme, p);
+            }
+        }
+    }
+
+    private static void ecrireEntier(DataOutput out, int valeur) throws IOException {
+        while ((valeur & ~0x7F) != 0) {
+            out.writeByte((valeur & 0x7F) | 0x80);
+            valeur >>>= 7;
+        }
+        out.writeByte(valeur);
+    }
+
+    private static int lireEntier(DataInput in) throws IOException {
+        int valeur = 0;
+        for (int decalage = 0; decalage < 35; decalage += 7) {
+            byte b = in.readByte();
+            valeur |= (b & 0x7F) << decalage;
+            if (b >= 0) {
+                return valeur;
+            }
+        }
+        throw new IOException("entier mal formé");
+    }
+
+    // ---------------------------------------------------------------- structures
+
+    /**
+     * Liste des documents contenant un terme, triée par numéro, avec la fréquence pondérée du terme.
+     */
+    private static final class Postings {
+        int[] docs;
+        int[] frequences;
+        int taille;
+
+        Postings() {
+            this(4);
+        }
+
+        Postings(int capacite) {
+            docs = new int[Math.max(capacite, 1)];
+            frequences = new int[docs.length];
+        }
+
+        void ajouter(int doc, int frequence) {
+            if (taille == docs.length) {
+                docs = Arrays.copyOf(docs, taille * 2);
+                frequences = Arrays.copyOf(frequences, taille * 2);
+            }
+            docs[taille] = doc;
+            frequences[taille++] = frequence;
+        }
+
+        void renumeroter(int[] nouveaux) {
+            int k = 0;
+            for (int i = 0; i < taille; i++) {
+                int doc = nouveaux[docs[i]];
+                if (doc >= 0) {
+                    docs[k] = doc;
+                    frequences[k++] = frequences[i];
+                }
+            }
+            taille = k;
+        }
+    }
+
+    /**
+     * Documents retenus par une requête, triés par numéro, avec leur score.
+     */
+    private static final class Correspondances {
+        final int[] docs;
+        final float[] scores;
+        int taille;
+
+        Correspondances(int capacite) {
+            docs = new int[capacite];
+            scores = new float[capacite];
+        }
+
+        Correspondances intersection(Correspondances autre) {
+            Correspondances c = new Correspondances(Math.min(taille, autre.taille));
+            int i = 0;
+            int j = 0;
+            while (i < taille && j < autre.taille) {
+                if (docs[i] < autre.docs[j]) {
+                    i++;
+                } else if (docs[i] > autre.docs[j]) {
+                    j++;
+                } else {
+                    c.docs[c.taille] = docs[i];
+                    c.scores[c.taille++] = scores[i++] + autre.scores[j++];
+                }
+            }
+            return c;
+        }
+    }
+
+    /**
+     * Recette trouvée par une recherche.
+     */
+    static class Resultat {
+        final int id_recette;
+        final String titre;
+        /** Pertinence BM25, sans unité. */
+        final float score;
+
+        Resultat(int id_recette, String titre, float score) {
+            this.id_recette = id_recette;
+            this.titre = titre;
+            this.score = score;
+        }
+    }
+}
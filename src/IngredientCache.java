@@ -0,0 +1,150 @@
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache en mémoire du catalogue d'ingrédients, partagé par tout le processus.
+ * <p>
+ * Le catalogue est petit et change rarement : il est lu en entier à la première demande,
+ * puis servi depuis la mémoire jusqu'à expiration de sa durée de vie ou jusqu'à ce qu'une
+ * écriture l'invalide. Il offre un accès par identifiant et une vue triée par nom.
+ * Les ingrédients renvoyés sont partagés et ne doivent pas être modifiés.
+ */
+public class IngredientCache {
+
+    private static final IngredientCache PARTAGE =
+            new IngredientCache(Long.getLong("recette.cache.ingredients.ttlMs", 300_000));
+
+    private final long dureeVieMs;
+    private volatile Catalogue catalogue;
+    /** Incrémentée à chaque invalidation pour écarter un chargement commencé avant. */
+    private final AtomicLong generation = new AtomicLong();
+    private final AtomicLong succes = new AtomicLong();
+    private final AtomicLong echecs = new AtomicLong();
+
+    /**
+     * Crée un cache.
+     *
+     * @param dureeVieMs La durée de vie du catalogue chargé, en millisecondes
+     */
+    public IngredientCache(long dureeVieMs) {
+        this.dureeVieMs = dureeVieMs;
+    }
+
+    /**
+     * @return Le cache partagé par l'application
+     */
+    public static IngredientCache partage() {
+        return PARTAGE;
+    }
+
+    /**
+     * Retourne tous les ingrédients, triés par nom.
+     *
+     * @return La liste non modifiable des ingrédients
+     * @throws SQLException Si le catalogue doit être rechargé et que la lecture échoue
+     */
+    public List<Main.Ingredient> lister() throws SQLException {
+        return catalogue().parNom;
+    }
+
+    /**
+     * Recherche un ingrédient par son identifiant.
+     *
+     * @param idIngredient L'identifiant de l'ingrédient
+     * @return L'ingrédient, ou null s'il n'existe pas
+     * @throws SQLException Si le catalogue doit être rechargé et que la lecture échoue
+     */
+    public Main.Ingredient trouver(int idIngredient) throws SQLException {
+        return catalogue().parId.get(idIngredient);
+    }
+
+    /**
+     * Indique si un ingrédient existe.
+     *
+     * @param idIngredient L'identifiant de l'ingrédient
+     * @return true si l'ingrédient existe
+     * @throws SQLException Si le catalogue doit être rechargé et que la lecture échoue
+     */
+    public boolean existe(int idIngredient) throws SQLException {
+        return trouver(idIngredient) != null;
+    }
+
+    /**
+     * Oublie le catalogue chargé ; la prochaine lecture le rechargera.
+     * À appeler après toute écriture validée dans la table Ingredient.
+     */
+    public void invalider() {
+        generation.incrementAndGet();
+        catalogue = null;
+    }
+
+    /**
+     * @return Le nombre de lectures servies depuis la mémoire
+     */
+    public long getSucces() {
+        return succes.get();
+    }
+
+    /**
+     * @return Le nombre de lectures qui ont demandé un chargement
+     */
+    public long getEchecs() {
+        return echecs.get();
+    }
+
+    @Override
+    public String toString() {
+        Catalogue c = catalogue;
+        return "IngredientCache[ingredients=" + (c == null ? "-" : String.valueOf(c.parNom.size()))
+                + ", succes=" + succes.get() + ", echecs=" + echecs.get() + "]";
+    }
+
+    private Catalogue catalogue() throws SQLException {
+        Catalogue c = catalogue;
+        if (c != null && System.currentTimeMillis() < c.expiration) {
+            succes.incrementAndGet();
+            return c;
+        }
+        synchronized (this) {
+            // Un autre thread a pu recharger le catalogue pendant l'attente du verrou
+            c = catalogue;
+            if (c != null && System.currentTimeMillis() < c.expiration) {
+                succes.incrementAndGet();
+                return c;
+            }
+            echecs.incrementAndGet();
+            long gen = generation.get();
+            c = charger();
+            if (generation.get() == gen) {
+                catalogue = c;
+            }
+            return c;
+        }
+    }
+
+    private Catalogue charger() throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            return new Catalogue(new IngredientRepository(conn).lister(), System.currentTimeMillis() + dureeVieMs);
+        }
+    }
+
+    /**
+     * Instantané immuable du catalogue.
+     */
+    private static class Catalogue {
+        final Map<Integer, Main.Ingredient> parId;
+        final List<Main.Ingredient> parNom;
+        final long expiration;
+
+        Catalogue(List<Main.Ingredient> triesParNom, long expiration) {
+            Map<Integer, Main.Ingredient> index = new HashMap<>(triesParNom.size() * 2);
+            for (Main.Ingredient ingredient : triesParNom) {
+                index.put(ingredient.id_ingredient, ingredient);
+            }
+            this.parId = index;
+            this.parNom = Collections.unmodifiableList(new ArrayList<>(triesParNom));
+            this.expiration = expiration;
+        }
+    }
+}
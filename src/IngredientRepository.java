@@ -0,0 +1,106 @@
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Accès aux données de la table Ingredient.
+ * Les requêtes sont préparées une seule fois par connexion grâce au {@link StatementCache}.
+ */
+public class IngredientRepository {
+
+    private static final String SQL_AJOUTER = "INSERT INTO Ingredient (nom, cote_sante) VALUES (?, ?)";
+    private static final String SQL_LISTER = "SELECT id_ingredient, nom, cote_sante FROM Ingredient ORDER BY nom";
+    private static final String SQL_EXISTE = "SELECT COUNT(*) FROM Ingredient WHERE id_ingredient = ?";
+
+    private final Connection conn;
+    private final StatementCache requetes;
+
+    /**
+     * Crée un dépôt travaillant sur la connexion donnée.
+     *
+     * @param conn La connexion empruntée par l'appelant
+     * @throws SQLException En cas d'erreur d'accès à la connexion
+     */
+    public IngredientRepository(Connection conn) throws SQLException {
+        this.conn = conn;
+        this.requetes = StatementCache.pour(conn);
+    }
+
+    /**
+     * Enregistre un ingrédient, renseigne son identifiant et consigne l'insertion
+     * dans le {@link JournalAudit}.
+     *
+     * @param ingredient L'ingrédient à enregistrer
+     * @return L'identifiant généré
+     * @throws SQLException En cas d'erreur SQL
+     */
+    public int ajouter(Main.Ingredient ingredient) throws SQLException {
+        boolean autoCommit = conn.getAutoCommit();
+        if (autoCommit) {
+            conn.setAutoCommit(false);
+        }
+        try {
+            PreparedStatement pstmt = requetes.preparer(SQL_AJOUTER, "id_ingredient");
+            pstmt.setString(1, ingredient.nom);
+            pstmt.setInt(2, ingredient.cote_sante);
+            if (pstmt.executeUpdate() == 0) {
+                throw new SQLException("Aucune ligne insérée dans Ingredient.");
+            }
+            try (ResultSet generatedKeys = pstmt.getGeneratedKeys()) {
+                if (!generatedKeys.next()) {
+                    throw new SQLException("Impossible de récupérer l'identifiant de l'ingrédient.");
+                }
+                ingredient.id_ingredient = generatedKeys.getInt(1);
+            }
+            JournalAudit.partage().enregistrer(conn, "Ingredient", "INSERT", ingredient.id_ingredient);
+
+            if (autoCommit) {
+                conn.commit();
+            }
+            return ingredient.id_ingredient;
+        } catch (SQLException | RuntimeException e) {
+            if (autoCommit) {
+                conn.rollback();
+            }
+            ingredient.id_ingredient = 0;
+            throw e;
+        } finally {
+            if (autoCommit) {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    /**
+     * Retourne tous les ingrédients, triés par nom.
+     *
+     * @return La liste des ingrédients
+     * @throws SQLException En cas d'erreur SQL
+     */
+    public List<Main.Ingredient> lister() throws SQLException {
+        List<Main.Ingredient> ingredients = new ArrayList<>();
+        try (ResultSet rs = requetes.preparer(SQL_LISTER).executeQuery()) {
+            while (rs.next()) {
+                Main.Ingredient ingredient = new Main.Ingredient(rs.getString("nom"), rs.getInt("cote_sante"));
+                ingredient.id_ingredient = rs.getInt("id_ingredient");
+                ingredients.add(ingredient);
+            }
+        }
+        return ingredients;
+    }
+
+    /**
+     * Indique si un ingrédient existe.
+     *
+     * @param idIngredient L'identifiant de l'ingrédient
+     * @return true si l'ingrédient existe
+     * @throws SQLException En cas d'erreur SQL
+     */
+    public boolean existe(int idIngredient) throws SQLException {
+        PreparedStatement pstmt = requetes.preparer(SQL_EXISTE);
+        pstmt.setInt(1, idIngredient);
+        try (ResultSet rs = pstmt.executeQuery()) {
+            return rs.next() && rs.getInt(1) > 0;
+        }
+    }
+}
@@ -0,0 +1,496 @@
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Journal d'audit écrit par l'application dans la table Trace, à la place des déclencheurs
+ * trg_*_trace et de la procédure log_transaction. Sur Oracle, les sessions de l'application
+ * s'identifient ({@link StockageOracle#initialisationSession}) et les déclencheurs ne
+ * journalisent plus que les écritures des autres sessions.
+ * <p>
+ * Les numéros de suivi sont réservés par blocs : la séquence seq_tracking_number avance
+ * de {@link #TAILLE_BLOC} à chaque NEXTVAL, et les numéros du bloc sont distribués en mémoire.
+ * Trois modes de durabilité sont offerts :
+ * <ul>
+ * <li>SYNCHRONE : la ligne Trace est écrite sur la connexion de l'appelant, dans sa
+ *     transaction, comme le faisaient les déclencheurs ;</li>
+ * <li>ASYNCHRONE : une fois la transaction de l'appelant validée, l'événement est placé dans
+ *     une file bornée et l'appelant repart aussitôt ; un fil d'arrière-plan écrit les
+ *     événements par lots ;</li>
+ * <li>GROUPE : comme ASYNCHRONE, mais le commit() de l'appelant attend, au plus
+ *     {@link #ATTENTE_MS} ms, que le lot contenant son événement soit validé (validation
+ *     groupée).</li>
+ * </ul>
+ * Dans ces deux modes, les événements ne quittent la transaction de l'appelant qu'à sa
+ * validation ({@link ConnectionPool#apresValidation}) : une transaction annulée n'est pas
+ * consignée, et une ligne Trace n'est jamais visible avant les données qu'elle décrit. En
+ * contrepartie, un arrêt entre les deux validations perd les événements : seul le mode
+ * SYNCHRONE garantit un journal complet, par exemple pour la capture des changements.
+ * <p>
+ * Le fil d'écriture a sa propre connexion, ouverte hors du pool par
+ * {@link ConnectionPool#ouvrirDediee} : les appelants qui l'attendent tiennent une connexion
+ * empruntée, et il ne doit pas en emprunter une à son tour. Quand la file est pleine,
+ * l'appelant n'attend pas : ses événements sont écrits sur sa propre connexion, dans une
+ * transaction qui suit aussitôt la sienne.
+ * <p>
+ * Quel que soit le mode, les abonnés inscrits par {@link #abonner} reçoivent les événements
+ * une fois la transaction de l'appelant validée, par exemple pour invalider un cache.
+ */
+public class JournalAudit {
+
+    /** Mode de durabilité des écritures d'audit. */
+    public enum Mode { SYNCHRONE, ASYNCHRONE, GROUPE }
+
+    /** Pas de la séquence seq_tracking_number ; doit correspondre à son INCREMENT BY. */
+    static final int TAILLE_BLOC = 100;
+
+    /** Attente maximale d'un appelant en mode GROUPE, en millisecondes. */
+    static final long ATTENTE_MS = Long.getLong("recette.audit.attenteMs", 10_000);
+
+    private static final String SQL_INSERER =
+        "INSERT INTO Trace (table_name, operation_type, operation_date, record_id, record_id2, tracking_number) " +
+        "VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String SQL_SEQUENCE = "SELECT seq_tracking_number.NEXTVAL FROM DUAL";
+
+    private static volatile JournalAudit partage;
+    private static final List<Consumer<List<Evenement>>> ABONNES = new CopyOnWriteArrayList<>();
+
+    private final Mode mode;
+    private final int tailleLot;
+    private final BlockingQueue<Evenement> file;
+    /** Protège le dépôt dans la file contre la fermeture. */
+    private final Object verrouFile = new Object();
+    private Thread ecrivain;
+    private volatile boolean ferme;
+    /** Connexion du fil d'écriture, hors du pool, et son cache de requêtes. */
+    private Connection connexionEcrivain;
+    private StatementCache requetesEcrivain;
+
+    /** Prochain numéro de suivi à distribuer et dernier numéro du bloc réservé. */
+    private long prochainNumero = 1;
+    private long finBloc = 0;
+
+    private final AtomicLong soumis = new AtomicLong();
+    private final AtomicLong ecrits = new AtomicLong();
+    private final AtomicLong lots = new AtomicLong();
+    private final AtomicLong echecs = new AtomicLong();
+    private final AtomicLong debordements = new AtomicLong();
+    private final AtomicLong attentesDepassees = new AtomicLong();
+
+    /** Marque de fin déposée dans la file par {@link #fermer}. */
+    private static final Evenement FIN = new Evenement("", "", 0, 0);
+
+    /**
+     * Crée un journal d'audit.
+     *
+     * @param mode Le mode de durabilité
+     * @param capacite La capacité de la file des modes ASYNCHRONE et GROUPE
+     * @param tailleLot Le nombre maximal d'événements écrits par transaction
+     */
+    public JournalAudit(Mode mode, int capacite, int tailleLot) {
+        this.mode = mode;
+        this.tailleLot = tailleLot;
+        this.file = new ArrayBlockingQueue<>(capacite);
+    }
+
+    /**
+     * Retourne le journal partagé par l'application, configuré par les propriétés
+     * recette.audit.mode (SYNCHRONE par défaut), recette.audit.capacite et recette.audit.tailleLot.
+     *
+     * @return Le journal partagé
+     */
+    public static JournalAudit partage() {
+        JournalAudit j = partage;
+        if (j == null) {
+            synchronized (JournalAudit.class) {
+                j = partage;
+                if (j == null) {
+                    Mode mode = Mode.valueOf(System.getProperty("recette.audit.mode", "SYNCHRONE").toUpperCase(Locale.ROOT));
+                    j = new JournalAudit(mode, Integer.getInteger("recette.audit.capacite", 10_000),
+                            Integer.getInteger("recette.audit.tailleLot", 500));
+                    partage = j;
+                }
+            }
+        }
+        return j;
+    }
+
+    /**
+     * Inscrit un abonné aux écritures. Il est appelé sur le thread de l'écrivain, après la
+     * validation de la transaction qui a enregistré les événements (voir
+     * {@link ConnectionPool#apresValidation}) ; les événements d'une transaction annulée ne
+     * lui parviennent pas.
+     *
+     * @param abonne L'abonné, qui reçoit les événements de chaque appel à enregistrer
+     */
+    public static void abonner(Consumer<List<Evenement>> abonne) {
+        ABONNES.add(abonne);
+    }
+
+    /**
+     * Vide et arrête le journal partagé, s'il a été utilisé.
+     * À appeler avant de fermer le pool de connexions.
+     */
+    public static void fermerPartage() {
+        JournalAudit j;
+        synchronized (JournalAudit.class) {
+            j = partage;
+            partage = null;
+        }
+        if (j != null) {
+            j.fermer();
+        }
+    }
+
+    /**
+     * Enregistre une opération sur une ligne à clé simple.
+     *
+     * @param conn La connexion de l'appelant, dans la transaction qui a fait l'écriture
+     * @param table La table modifiée
+     * @param operation INSERT, UPDATE ou DELETE
+     * @param id La clé de la ligne
+     * @throws SQLException Si l'écriture échoue (mode SYNCHRONE) ou si le journal est fermé
+     */
+    public void enregistrer(Connection conn, String table, String operation, int id) throws SQLException {
+        enregistrer(conn, new Evenement(table, operation, id, 0));
+    }
+
+    /**
+     * Enregistre une opération sur une ligne à clé composée (Recette_Ingredient).
+     *
+     * @param conn La connexion de l'appelant, dans la transaction qui a fait l'écriture
+     * @param table La table modifiée
+     * @param operation INSERT, UPDATE ou DELETE
+     * @param id Le premier élément de la clé
+     * @param id2 Le second élément de la clé
+     * @throws SQLException Si l'écriture échoue (mode SYNCHRONE) ou si le journal est fermé
+     */
+    public void enregistrer(Connection conn, String table, String operation, int id, int id2) throws SQLException {
+        enregistrer(conn, new Evenement(table, operation, id, id2));
+    }
+
+    /**
+     * Enregistre un événement.
+     *
+     * @param conn La connexion de l'appelant, dans la transaction qui a fait l'écriture
+     * @param evenement L'événement
+     * @throws SQLException Si l'écriture échoue (mode SYNCHRONE) ou si le journal est fermé
+     */
+    public void enregistrer(Connection conn, Evenement evenement) throws SQLException {
+        List<Evenement> evenements = new ArrayList<>(1);
+        evenements.add(evenement);
+        enregistrer(conn, evenements);
+    }
+
+    /**
+     * Enregistre plusieurs événements ; en mode SYNCHRONE ils sont écrits en un seul lot,
+     * dans les autres modes ils sont déposés dans la file à la validation de la transaction.
+     *
+     * @param conn La connexion de l'appelant, dans la transaction qui a fait l'écriture
+     * @param evenements Les événements
+     * @throws SQLException Si l'écriture échoue (mode SYNCHRONE) ou si le journal est fermé
+     */
+    public void enregistrer(Connection conn, List<Evenement> evenements) throws SQLException {
+        if (evenements.isEmpty()) {
+            return;
+        }
+        soumis.addAndGet(evenements.size());
+        if (mode == Mode.SYNCHRONE) {
+            ecrire(conn, StatementCache.pour(conn), evenements);
+            avertir(conn, evenements);
+            return;
+        }
+        synchronized (verrouFile) {
+            if (ferme) {
+                throw new SQLException("Le journal d'audit est fermé.");
+            }
+            demarrer();
+        }
+        List<Evenement> copie = new ArrayList<>(evenements);
+        ConnectionPool.apresValidation(conn, () -> deposer(conn, copie));
+        avertir(conn, evenements);
+    }
+
+    /**
+     * Dépose dans la file les événements d'une transaction qui vient d'être validée ; en mode
+     * GROUPE, attend que le dernier soit écrit. Appelé par {@link ConnectionPool#apresValidation},
+     * ne lève pas d'exception : un échec est affiché et compté.
+     */
+    private void deposer(Connection conn, List<Evenement> evenements) {
+        CompletableFuture<Void> dernier = null;
+        List<Evenement> debordes = null;
+        synchronized (verrouFile) {
+            if (ferme) {
+                // Fermé depuis l'enregistrement : le fil ne lit plus la file
+                debordes = evenements;
+            }
+            for (int i = 0; debordes == null && i < evenements.size(); i++) {
+                Evenement evenement = evenements.get(i);
+                if (mode == Mode.GROUPE) {
+                    evenement.ecrit = new CompletableFuture<>();
+                }
+                if (!file.offer(evenement)) {
+                    evenement.ecrit = null;
+                    debordes = evenements.subList(i, evenements.size());
+                    break;
+                }
+                dernier = evenement.ecrit;
+            }
+        }
+        if (debordes != null) {
+            // File pleine : attendre une place en tenant la connexion empruntée bloquerait
+            // d'autres emprunteurs, alors le reste est écrit sur la connexion de l'appelant
+            debordements.addAndGet(debordes.size());
+            ecrireApresValidation(conn, debordes);
+        }
+        if (dernier != null) {
+            // Les lots sont écrits dans l'ordre de la file : le dernier événement validé
+            // garantit que les précédents le sont aussi.
+            try {
+                attendre(dernier);
+            } catch (SQLException e) {
+                System.out.println("Erreur lors de l'attente du journal d'audit : " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Écrit des événements sur la connexion de l'appelant, dont la transaction vient d'être
+     * validée, et valide à son tour.
+     */
+    private void ecrireApresValidation(Connection conn, List<Evenement> evenements) {
+        try {
+            ecrire(conn, StatementCache.pour(conn), evenements);
+            if (!conn.getAutoCommit()) {
+                conn.commit();
+            }
+        } catch (SQLException e) {
+            echecs.addAndGet(evenements.size());
+            System.out.println("Erreur lors de l'écriture du journal d'audit (" + evenements.size()
+                    + " événements perdus) : " + e.getMessage());
+            try {
+                if (!conn.getAutoCommit()) {
+                    conn.rollback();
+                }
+            } catch (SQLException ignoree) {
+                // La connexion est rendue au pool, qui annule ce qui reste
+            }
+        }
+    }
+
+    private static void avertir(Connection conn, List<Evenement> evenements) throws SQLException {
+        if (ABONNES.isEmpty()) {
+            return;
+        }
+        List<Evenement> copie = new ArrayList<>(evenements);
+        ConnectionPool.apresValidation(conn, () -> {
+            for (Consumer<List<Evenement>> abonne : ABONNES) {
+                abonne.accept(copie);
+            }
+        });
+    }
+
+    /**
+     * Attend que tous les événements déjà soumis soient écrits, puis arrête le fil d'écriture.
+     * Le fil n'est pas interrompu : une marque de fin, déposée dans la file après les derniers
+     * événements, lui fait terminer son lot en cours puis s'arrêter.
+     */
+    public void fermer() {
+        Thread t;
+        synchronized (verrouFile) {
+            if (ferme) {
+                return;
+            }
+            ferme = true;
+            t = ecrivain;
+        }
+        if (t == null) {
+            return;
+        }
+        try {
+            // Plus aucun dépôt après ferme : la place se libère à mesure que le fil écrit
+            file.put(FIN);
+            t.join(30_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return Le mode de durabilité
+     */
+    public Mode getMode() {
+        return mode;
+    }
+
+    @Override
+    public String toString() {
+        return "JournalAudit[mode=" + mode + ", soumis=" + soumis.get() + ", ecrits=" + ecrits.get()
+                + ", lots=" + lots.get() + ", echecs=" + echecs.get() + ", enFile=" + file.size()
+                + ", debordements=" + debordements.get() + ", attentesDepassees=" + attentesDepassees.get() + "]";
+    }
+
+    private void demarrer() {
+        if (ecrivain == null) {
+            ecrivain = new Thread(this::boucler, "journal-audit");
+            ecrivain.setDaemon(true);
+            ecrivain.start();
+        }
+    }
+
+    /**
+     * Boucle du fil d'écriture : prend les événements en attente par lots et les écrit
+     * chacun dans une transaction sur la connexion du fil, jusqu'à la marque de fin.
+     */
+    private void boucler() {
+        List<Evenement> lot = new ArrayList<>(tailleLot);
+        boolean fin = false;
+        while (!fin) {
+            try {
+                lot.add(file.take());
+            } catch (InterruptedException e) {
+                // Le journal n'interrompt pas son fil : seule la marque de fin l'arrête
+                continue;
+            }
+            file.drainTo(lot, tailleLot - 1);
+            fin = lot.remove(FIN);
+            if (!lot.isEmpty()) {
+                ecrireLot(lot);
+                lot.clear();
+            }
+        }
+        fermerConnexionEcrivain();
+    }
+
+    private void ecrireLot(List<Evenement> lot) {
+        try {
+            if (connexionEcrivain == null) {
+                connexionEcrivain = DatabaseConnection.getPool().ouvrirDediee();
+                connexionEcrivain.setAutoCommit(false);
+                requetesEcrivain = new StatementCache(connexionEcrivain, 2);
+            }
+            ecrire(connexionEcrivain, requetesEcrivain, lot);
+            connexionEcrivain.commit();
+            for (Evenement evenement : lot) {
+                if (evenement.ecrit != null) {
+                    evenement.ecrit.complete(null);
+                }
+            }
+        } catch (SQLException | RuntimeException e) {
+            echecs.addAndGet(lot.size());
+            System.out.println("Erreur lors de l'écriture du journal d'audit (" + lot.size()
+                    + " événements perdus) : " + e.getMessage());
+            // La connexion est rouverte au prochain lot
+            fermerConnexionEcrivain();
+            for (Evenement evenement : lot) {
+                if (evenement.ecrit != null) {
+                    evenement.ecrit.completeExceptionally(e);
+                }
+            }
+        }
+    }
+
+    private void fermerConnexionEcrivain() {
+        if (connexionEcrivain == null) {
+            return;
+        }
+        requetesEcrivain.vider();
+        try {
+            connexionEcrivain.close();
+        } catch (SQLException e) {
+            System.out.println("Erreur lors de la fermeture de la connexion du journal d'audit : " + e.getMessage());
+        }
+        connexionEcrivain = null;
+        requetesEcrivain = null;
+    }
+
+    /**
+     * Écrit des événements en un lot sur la connexion donnée, sans valider.
+     */
+    private void ecrire(Connection conn, StatementCache requetes, List<Evenement> evenements) throws SQLException {
+        PreparedStatement pstmt = requetes.preparer(SQL_INSERER);
+        for (Evenement evenement : evenements) {
+            pstmt.setString(1, evenement.table);
+            pstmt.setString(2, evenement.operation);
+            pstmt.setTimestamp(3, evenement.date);
+            pstmt.setInt(4, evenement.id);
+            if (evenement.id2 > 0) {
+                pstmt.setInt(5, evenement.id2);
+            } else {
+                pstmt.setNull(5, Types.NUMERIC);
+            }
+            pstmt.setLong(6, numeroSuivant(conn));
+            pstmt.addBatch();
+        }
+        pstmt.executeBatch();
+        ecrits.addAndGet(evenements.size());
+        lots.incrementAndGet();
+    }
+
+    /**
+     * Distribue le prochain numéro de suivi, en réservant un nouveau bloc au besoin.
+     */
+    private synchronized long numeroSuivant(Connection conn) throws SQLException {
+        if (prochainNumero > finBloc) {
+            try (Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery(SQL_SEQUENCE)) {
+                rs.next();
+                prochainNumero = rs.getLong(1);
+                finBloc = prochainNumero + TAILLE_BLOC - 1;
+            }
+        }
+        return prochainNumero++;
+    }
+
+    private void attendre(CompletableFuture<Void> ecrit) throws SQLException {
+        try {
+            ecrit.get(ATTENTE_MS, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            attentesDepassees.incrementAndGet();
+            throw new SQLException("Le journal d'audit n'a pas écrit l'événement en " + ATTENTE_MS + " ms.", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrompu en attente de l'écriture du journal d'audit.", e);
+        } catch (ExecutionException e) {
+            throw new SQLException("Échec de l'écriture du journal d'audit.", e.getCause());
+        }
+    }
+
+    /**
+     * Opération à consigner dans la table Trace.
+     */
+    public static class Evenement {
+        final String table;
+        final String operation;
+        final int id;
+        /** Second élément de la clé pour Recette_Ingredient, 0 sinon. */
+        final int id2;
+        /** Moment de l'opération, et non de son écriture dans le journal. */
+        final Timestamp date = new Timestamp(System.currentTimeMillis());
+        /** Terminé quand l'événement est validé, en mode GROUPE. */
+        CompletableFuture<Void> ecrit;
+
+        /**
+         * @param table La table modifiée
+         * @param operation INSERT, UPDATE ou DELETE
+         * @param id La clé de la ligne, ou son premier élément
+         * @param id2 Le second élément de la clé, ou 0
+         */
+        public Evenement(String table, String operation, int id, int id2) {
+            this.table = table;
+            this.operation = operation;
+            this.id = id;
+            this.id2 = id2;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Écriture JSON minimale, sans dépendance, symétrique de {@link JsonLecteur}.
+ * Les Map deviennent des objets, les Collection et tableaux d'int des tableaux,
+ * les Number et Boolean restent tels quels ; toute autre valeur est écrite comme chaîne.
+ */
+public class JsonEcrivain {
+
+    private JsonEcrivain() {
+    }
+
+    /**
+     * Écrit une valeur en JSON.
+     *
+     * @param valeur La valeur à écrire
+     * @return Le document JSON
+     */
+    public static String ecrire(Object valeur) {
+        StringBuilder sb = new StringBuilder(256);
+        ecrire(sb, valeur);
+        return sb.toString();
+    }
+
+    private static void ecrire(StringBuilder sb, Object valeur) {
+        if (valeur == null) {
+            sb.append("null");
+        } else if (valeur instanceof Map) {
+            sb.append('{');
+            boolean premier = true;
+            for (Map.Entry<?, ?> entree : ((Map<?, ?>) valeur).entrySet()) {
+                if (!premier) {
+                    sb.append(',');
+                }
+                premier = false;
+                chaine(sb, String.valueOf(entree.getKey()));
+                sb.append(':');
+                ecrire(sb, entree.getValue());
+            }
+            sb.append('}');
+        } else if (valeur instanceof Collection) {
+            sb.append('[');
+            boolean premier = true;
+            for (Object element : (Collection<?>) valeur) {
+                if (!premier) {
+                    sb.append(',');
+                }
+                premier = false;
+                ecrire(sb, element);
+            }
+            sb.append(']');
+        } else if (valeur instanceof int[]) {
+            int[] entiers = (int[]) valeur;
+            sb.append('[');
+            for (int i = 0; i < entiers.length; i++) {
+                if (i > 0) {
+                    sb.append(',');
+                }
+                sb.append(entiers[i]);
+            }
+            sb.append(']');
+        } else if (valeur instanceof Double || valeur instanceof Float) {
+            double d = ((Number) valeur).doubleValue();
+            // NaN et l'infini n'existent pas en JSON
+            sb.append(Double.isFinite(d) ? valeur.toString() : "null");
+        } else if (valeur instanceof Number || valeur instanceof Boolean) {
+            sb.append(valeur);
+        } else {
+            chaine(sb, valeur.toString());
+        }
+    }
+
+    private static void chaine(StringBuilder sb, String texte) {
+        sb.append('"');
+        for (int i = 0; i < texte.length(); i++) {
+            char c = texte.charAt(i);
+            switch (c) {
+                case '"': sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        sb.append('"');
+    }
+}
@@ -0,0 +1,401 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Écriture JSON en flux, sans réflexion ni graphe d'objets intermédiaire.
+ * <p>
+ * Les caractères sont encodés en UTF-8 directement dans un tampon d'octets recyclé d'une
+ * réponse à l'autre, et le tampon est vidé vers la sortie dès qu'il est plein : le premier
+ * octet part après quelques kilo-octets quelle que soit la taille du résultat, et la mémoire
+ * allouée par réponse ne dépend pas du nombre de lignes. Les textes longs (CLOB) peuvent
+ * être recopiés depuis un {@link Reader} sans être matérialisés en String.
+ * <p>
+ * Les virgules sont placées automatiquement ; l'appelant ouvre et ferme objets et tableaux
+ * dans l'ordre. Un flux n'est pas thread-safe.
+ */
+public class JsonFlux implements Closeable {
+
+    private static final int TAILLE_TAMPON = Integer.getInteger("recette.json.tailleTampon", 8192);
+    /** Tampons libres, partagés par tous les flux. */
+    private static final ArrayBlockingQueue<byte[]> TAMPONS = new ArrayBlockingQueue<>(64);
+    private static final byte[] HEX = "0123456789abcdef".getBytes();
+    private static final byte[] NULL = {'n', 'u', 'l', 'l'};
+    private static final byte[] TRUE = {'t', 'r', 'u', 'e'};
+    private static final byte[] FALSE = {'f', 'a', 'l', 's', 'e'};
+
+    private final OutputStream sortie;
+    private byte[] tampon;
+    private int pos;
+    /** Pour chaque niveau d'imbrication, vrai tant qu'aucun élément n'y a été écrit. */
+    private boolean[] premiers = new boolean[16];
+    private int profondeur;
+    /** Vrai juste après un nom de propriété : la valeur suit sans virgule. */
+    private boolean apresNom;
+    private final char[] caracteres = new char[512];
+
+    /**
+     * Crée un flux écrivant vers une sortie.
+     *
+     * @param sortie La sortie, qui n'est pas fermée par {@link #close()}
+     */
+    public JsonFlux(OutputStream sortie) {
+        this.sortie = sortie;
+        byte[] recycle = TAMPONS.poll();
+        this.tampon = recycle != null ? recycle : new byte[TAILLE_TAMPON];
+        this.premiers[0] = true;
+    }
+
+    // ---------------------------------------------------------------- structure
+
+    public JsonFlux debutObjet() throws IOException {
+        separer();
+        octet('{');
+        ouvrir();
+        return this;
+    }
+
+    public JsonFlux finObjet() throws IOException {
+        profondeur--;
+        octet('}');
+        return this;
+    }
+
+    public JsonFlux debutTableau() throws IOException {
+        separer();
+        octet('[');
+        ouvrir();
+        return this;
+    }
+
+    public JsonFlux finTableau() throws IOException {
+        profondeur--;
+        octet(']');
+        return this;
+    }
+
+    /**
+     * Écrit un nom de propriété ; la valeur doit suivre.
+     *
+     * @param nom Le nom, écrit tel quel : il doit être sans caractère à échapper
+     * @return Ce flux
+     * @throws IOException En cas d'erreur d'écriture
+     */
+    public JsonFlux nom(String nom) throws IOException {
+        separer();
+        octet('"');
+        for (int i = 0; i < nom.length(); i++) {
+            octet(nom.charAt(i));
+        }
+        octet('"');
+        octet(':');
+        apresNom = true;
+        return this;
+    }
+
+    // ---------------------------------------------------------------- valeurs
+
+    public JsonFlux valeur(String texte) throws IOException {
+        separer();
+        if (texte == null) {
+            octets(NULL);
+            return this;
+        }
+        octet('"');
+        ecrireTexte(texte);
+        octet('"');
+        return this;
+    }
+
+    /**
+     * Écrit une chaîne lue depuis un Reader, par exemple ResultSet.getCharacterStream,
+     * sans la charger en mémoire.
+     *
+     * @param lecteur Le texte, ou null pour écrire null
+     * @return Ce flux
+     * @throws IOException En cas d'erreur de lecture ou d'écriture
+     */
+    public JsonFlux valeur(Reader lecteur) throws IOException {
+        separer();
+        if (lecteur == null) {
+            octets(NULL);
+            return this;
+        }
+        octet('"');
+        try (Reader r = lecteur) {
+            int lus;
+            char precedent = 0;
+            while ((lus = r.read(caracteres)) > 0) {
+                int debut = 0;
+                // Une paire de substitution peut être coupée entre deux lectures
+                if (precedent != 0) {
+                    debut = caractere(precedent, caracteres[0]);
+                    precedent = 0;
+                }
+                int fin = lus;
+                if (Character.isHighSurrogate(caracteres[lus - 1])) {
+                    precedent = caracteres[lus - 1];
+                    fin--;
+                }
+                for (int i = debut; i < fin; i++) {
+                    i += caractere(caracteres[i], i + 1 < fin ? caracteres[i + 1] : 0);
+                }
+            }
+            if (precedent != 0) {
+                caractere(precedent, (char) 0);
+            }
+        }
+        octet('"');
+        return this;
+    }
+
+    public JsonFlux valeur(long nombre) throws IOException {
+        separer();
+        entier(nombre);
+        return this;
+    }
+
+    public JsonFlux valeur(double nombre) throws IOException {
+        separer();
+        if (!Double.isFinite(nombre)) {
+            octets(NULL);
+        } else if (nombre == (long) nombre && Math.abs(nombre) < 1e15) {
+            entier((long) nombre);
+        } else {
+            ecrireTexte(Double.toString(nombre));
+        }
+        return this;
+    }
+
+    public JsonFlux valeur(boolean booleen) throws IOException {
+        separer();
+        octets(booleen ? TRUE : FALSE);
+        return this;
+    }
+
+    public JsonFlux nul() throws IOException {
+        separer();
+        octets(NULL);
+        return this;
+    }
+
+    // ---------------------------------------------------------------- modèle
+
+    /**
+     * Écrit une recette du modèle, sans ses ingrédients.
+     *
+     * @param recette La recette
+     * @return Ce flux
+     * @throws IOException En cas d'erreur d'écriture
+     */
+    public JsonFlux recette(Main.Recette recette) throws IOException {
+        debutObjet();
+        nom("id_recette").valeur(recette.id_recette);
+        nom("titre").valeur(recette.titre);
+        nom("description").valeur(recette.description);
+        nom("instructions").valeur(recette.instructions);
+        nom("temps_preparation").valeur(recette.temps_preparation);
+        nom("temps_cuisson").valeur(recette.temps_cuisson);
+        nom("auteur_id").valeur(recette.auteur_id);
+        return finObjet();
+    }
+
+    /**
+     * Écrit une recette réduite à son titre et sa description.
+     *
+     * @param recette La recette
+     * @return Ce flux
+     * @throws IOException En cas d'erreur d'écriture
+     */
+    public JsonFlux recette(Recette recette) throws IOException {
+        debutObjet();
+        nom("titre").valeur(recette.getTitre());
+        nom("description").valeur(recette.getDescription());
+        return finObjet();
+    }
+
+    public JsonFlux auteur(Main.Auteur auteur) throws IOException {
+        debutObjet();
+        nom("id_auteur").valeur(auteur.id_auteur);
+        nom("nom").valeur(auteur.nom);
+        nom("email").valeur(auteur.email);
+        nom("bio").valeur(auteur.bio);
+        return finObjet();
+    }
+
+    public JsonFlux ingredient(Main.Ingredient ingredient) throws IOException {
+        debutObjet();
+        nom("id_ingredient").valeur(ingredient.id_ingredient);
+        nom("nom").valeur(ingredient.nom);
+        nom("cote_sante").valeur(ingredient.cote_sante);
+        return finObjet();
+    }
+
+    // ---------------------------------------------------------------- sortie
+
+    /**
+     * Envoie le contenu du tampon vers la sortie.
+     *
+     * @throws IOException En cas d'erreur d'écriture
+     */
+    public void vider() throws IOException {
+        if (pos > 0) {
+            sortie.write(tampon, 0, pos);
+            pos = 0;
+        }
+    }
+
+    /**
+     * Vide le tampon et le rend pour un autre flux. La sortie n'est pas fermée.
+     *
+     * @throws IOException En cas d'erreur d'écriture
+     */
+    @Override
+    public void close() throws IOException {
+        if (tampon == null) {
+            return;
+        }
+        try {
+            vider();
+            sortie.flush();
+        } finally {
+            if (tampon.length == TAILLE_TAMPON) {
+                TAMPONS.offer(tampon);
+            }
+            tampon = null;
+        }
+    }
+
+    /**
+     * Rend le tampon sans écrire ce qu'il contient, après une erreur.
+     */
+    public void abandonner() {
+        if (tampon != null && tampon.length == TAILLE_TAMPON) {
+            TAMPONS.offer(tampon);
+        }
+        tampon = null;
+        pos = 0;
+    }
+
+    // ---------------------------------------------------------------- interne
+
+    private void ouvrir() {
+        if (++profondeur == premiers.length) {
+            premiers = Arrays.copyOf(premiers, profondeur * 2);
+        }
+        premiers[profondeur] = true;
+    }
+
+    private void separer() throws IOException {
+        if (apresNom) {
+            apresNom = false;
+            return;
+        }
+        if (premiers[profondeur]) {
+            premiers[profondeur] = false;
+        } else {
+            octet(',');
+        }
+    }
+
+    private void entier(long nombre) throws IOException {
+        if (nombre == Long.MIN_VALUE) {
+            ecrireTexte(Long.toString(nombre));
+            return;
+        }
+        if (nombre < 0) {
+            octet('-');
+            nombre = -nombre;
+        }
+        // Chiffres écrits directement dans le tampon, du dernier au premier
+        int chiffres = 1;
+        for (long p = nombre / 10; p > 0; p /= 10) {
+            chiffres++;
+        }
+        reserver(chiffres);
+        for (int i = pos + chiffres - 1; i >= pos; i--) {
+            tampon[i] = (byte) ('0' + nombre % 10);
+            nombre /= 10;
+        }
+        pos += chiffres;
+    }
+
+    private void ecrireTexte(String texte) throws IOException {
+        int n = texte.length();
+        for (int i = 0; i < n; i++) {
+            i += caractere(texte.charAt(i), i + 1 < n ? texte.charAt(i + 1) : 0);
+        }
+    }
+
+    /**
+     * Écrit un caractère échappé et encodé en UTF-8.
+     *
+     * @return 1 si le caractère suivant a été consommé (paire de substitution), 0 sinon
+     */
+    private int caractere(char c, char suivant) throws IOException {
+        if (c < 0x80) {
+            if (c == '"' || c == '\\') {
+                reserver(2);
+                tampon[pos++] = '\\';
+                tampon[pos++] = (byte) c;
+            } else if (c < 0x20) {
+                reserver(6);
+                tampon[pos++] = '\\';
+                tampon[pos++] = 'u';
+                tampon[pos++] = '0';
+                tampon[pos++] = '0';
+                tampon[pos++] = HEX[c >> 4];
+                tampon[pos++] = HEX[c & 0xF];
+            } else {
+                octet(c);
+            }
+            return 0;
+        }
+        reserver(4);
+        if (c < 0x800) {
+            tampon[pos++] = (byte) (0xC0 | (c >> 6));
+            tampon[pos++] = (byte) (0x80 | (c & 0x3F));
+            return 0;
+        }
+        if (Character.isHighSurrogate(c) && Character.isLowSurrogate(suivant)) {
+            int point = Character.toCodePoint(c, suivant);
+            tampon[pos++] = (byte) (0xF0 | (point >> 18));
+            tampon[pos++] = (byte) (0x80 | ((point >> 12) & 0x3F));
+            tampon[pos++] = (byte) (0x80 | ((point >> 6) & 0x3F));
+            tampon[pos++] = (byte) (0x80 | (point & 0x3F));
+            return 1;
+        }
+        if (Character.isSurrogate(c)) {
+            // Demi-paire isolée : remplacée, comme le fait String.getBytes
+            c = '?';
+            tampon[pos++] = (byte) c;
+            return 0;
+        }
+        tampon[pos++] = (byte) (0xE0 | (c >> 12));
+        tampon[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+        tampon[pos++] = (byte) (0x80 | (c & 0x3F));
+        return 0;
+    }
+
+    private void octet(int b) throws IOException {
+        if (pos == tampon.length) {
+            vider();
+        }
+        tampon[pos++] = (byte) b;
+    }
+
+    private void octets(byte[] b) throws IOException {
+        reserver(b.length);
+        System.arraycopy(b, 0, tampon, pos, b.length);
+        pos += b.length;
+    }
+
+    private void reserver(int n) throws IOException {
+        if (pos + n > tampon.length) {
+            vider();
+        }
+    }
+}
@@ -0,0 +1,210 @@
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Analyseur JSON minimal, sans dépendance.
+ * Les objets deviennent des Map (ordre des clés conservé), les tableaux des List,
+ * les nombres des Long ou des Double, et null reste null.
+ */
+public class JsonLecteur {
+
+    private final String texte;
+    private int pos;
+
+    private JsonLecteur(String texte) {
+        this.texte = texte;
+    }
+
+    /**
+     * Analyse un document JSON complet.
+     *
+     * @param texte Le document JSON
+     * @return La valeur lue
+     * @throws IllegalArgumentException Si le document n'est pas du JSON valide
+     */
+    public static Object lire(String texte) {
+        JsonLecteur lecteur = new JsonLecteur(texte);
+        Object valeur = lecteur.valeur();
+        lecteur.espaces();
+        if (lecteur.pos < texte.length()) {
+            throw lecteur.erreur("Caractères inattendus après la valeur");
+        }
+        return valeur;
+    }
+
+    /**
+     * Analyse un objet JSON.
+     *
+     * @param texte Le document JSON
+     * @return L'objet lu
+     * @throws IllegalArgumentException Si le document n'est pas un objet JSON valide
+     */
+    @SuppressWarnings("unchecked")
+    public static Map<String, Object> lireObjet(String texte) {
+        Object valeur = lire(texte);
+        if (!(valeur instanceof Map)) {
+            throw new IllegalArgumentException("Objet JSON attendu");
+        }
+        return (Map<String, Object>) valeur;
+    }
+
+    private Object valeur() {
+        espaces();
+        if (pos >= texte.length()) {
+            throw erreur("Fin de document inattendue");
+        }
+        char c = texte.charAt(pos);
+        switch (c) {
+            case '{':
+                return objet();
+            case '[':
+                return tableau();
+            case '"':
+                return chaine();
+            case 't':
+                motCle("true");
+                return Boolean.TRUE;
+            case 'f':
+                motCle("false");
+                return Boolean.FALSE;
+            case 'n':
+                motCle("null");
+                return null;
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) {
+                    return nombre();
+                }
+                throw erreur("Caractère inattendu '" + c + "'");
+        }
+    }
+
+    private Map<String, Object> objet() {
+        Map<String, Object> objet = new LinkedHashMap<>();
+        pos++;
+        espaces();
+        if (suivantEst('}')) {
+            return objet;
+        }
+        do {
+            espaces();
+            if (pos >= texte.length() || texte.charAt(pos) != '"') {
+                throw erreur("Nom de propriété attendu");
+            }
+            String cle = chaine();
+            espaces();
+            attendre(':');
+            objet.put(cle, valeur());
+            espaces();
+        } while (suivantEst(','));
+        attendre('}');
+        return objet;
+    }
+
+    private List<Object> tableau() {
+        List<Object> tableau = new ArrayList<>();
+        pos++;
+        espaces();
+        if (suivantEst(']')) {
+            return tableau;
+        }
+        do {
+            tableau.add(valeur());
+            espaces();
+        } while (suivantEst(','));
+        attendre(']');
+        return tableau;
+    }
+
+    private String chaine() {
+        pos++;
+        StringBuilder sb = new StringBuilder();
+        while (pos < texte.length()) {
+            char c = texte.charAt(pos++);
+            if (c == '"') {
+                return sb.toString();
+            }
+            if (c != '\\') {
+                sb.append(c);
+                continue;
+            }
+            if (pos >= texte.length()) {
+                break;
+            }
+            char e = texte.charAt(pos++);
+            switch (e) {
+                case '"': sb.append('"'); break;
+                case '\\': sb.append('\\'); break;
+                case '/': sb.append('/'); break;
+                case 'b': sb.append('\b'); break;
+                case 'f': sb.append('\f'); break;
+                case 'n': sb.append('\n'); break;
+                case 'r': sb.append('\r'); break;
+                case 't': sb.append('\t'); break;
+                case 'u':
+                    if (pos + 4 > texte.length()) {
+                        throw erreur("Séquence \\u incomplète");
+                    }
+                    sb.append((char) Integer.parseInt(texte.substring(pos, pos + 4), 16));
+                    pos += 4;
+                    break;
+                default:
+                    throw erreur("Échappement invalide \\" + e);
+            }
+        }
+        throw erreur("Chaîne non terminée");
+    }
+
+    private Number nombre() {
+        int debut = pos;
+        boolean decimal = false;
+        while (pos < texte.length()) {
+            char c = texte.charAt(pos);
+            if (c == '.' || c == 'e' || c == 'E') {
+                decimal = true;
+            } else if (!(c == '-' || c == '+' || (c >= '0' && c <= '9'))) {
+                break;
+            }
+            pos++;
+        }
+        String nombre = texte.substring(debut, pos);
+        try {
+            return decimal ? (Number) Double.parseDouble(nombre) : (Number) Long.parseLong(nombre);
+        } catch (NumberFormatException e) {
+            throw erreur("Nombre invalide " + nombre);
+        }
+    }
+
+    private void motCle(String mot) {
+        if (!texte.startsWith(mot, pos)) {
+            throw erreur(mot + " attendu");
+        }
+        pos += mot.length();
+    }
+
+    private void espaces() {
+        while (pos < texte.length() && Character.isWhitespace(texte.charAt(pos))) {
+            pos++;
+        }
+    }
+
+    private boolean suivantEst(char c) {
+        if (pos < texte.length() && texte.charAt(pos) == c) {
+            pos++;
+            return true;
+        }
+        return false;
+    }
+
+    private void attendre(char c) {
+        espaces();
+        if (!suivantEst(c)) {
+            throw erreur("'" + c + "' attendu");
+        }
+    }
+
+    private IllegalArgumentException erreur(String message) {
+        return new IllegalArgumentException(message + " (position " + pos + ")");
+    }
+}
@@ -1,4 +1,12 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
+import java.util.Set;
 import java.sql.*;
 
 /**
@@ -7,10 +15,21 @@ import java.sql.*;
  */
 public class Main {
 
+    /** Nombre de recettes affichées par page dans la liste des recettes. */
+    private static final int TAILLE_PAGE = Integer.getInteger("recette.liste.taillePage", 10);
+    /** Nombre de lignes ramenées par aller-retour lors de la lecture d'une page. */
+    private static final int TAILLE_FETCH = Integer.getInteger("recette.liste.tailleFetch", 100);
+    /** Durée relue à chaque interrogation du suivi du journal, pour les entrées validées en retard. */
+    private static final long MARGE_SUIVI_MS = Long.getLong("recette.journal.margeSuiviMs", 5_000);
+    /** Nombre d'ingrédients manquants toléré par « Que puis-je cuisiner ? ». */
+    private static final int MANQUANTS_MAX = Integer.getInteger("recette.frigo.manquantsMax", 2);
+
     /**
      * Classe représentant une recette dans le système.
      */
     static class Recette {
+        /** Identifiant de la recette (0 tant qu'elle n'est pas enregistrée). */
+        int id_recette;
         /** Titre de la recette. */
         String titre;
         /** Description de la recette. */
@@ -48,6 +67,8 @@ public class Main {
      * Classe représentant un auteur dans le système.
      */
     static class Auteur {
+        /** Identifiant de l'auteur (0 tant qu'il n'est pas enregistré). */
+        int id_auteur;
         /** Nom de l'auteur. */
         String nom;
         /** Email de l'auteur. */
@@ -73,6 +94,8 @@ public class Main {
      * Classe représentant un ingrédient dans le système.
      */
     static class Ingredient {
+        /** Identifiant de l'ingrédient (0 tant qu'il n'est pas enregistré). */
+        int id_ingredient;
         /** Nom de l'ingrédient. */
         String nom;
         /** Cote santé sur une échelle de 1 à 5. */
@@ -92,16 +115,25 @@ public class Main {
 
     /**
      * Point d'entrée principal de l'application.
-     * Affiche un menu permettant à l'utilisateur d'interagir avec le système de recettes.
+     * Affiche un menu permettant à l'utilisateur d'interagir avec le système de recettes,
+     * ou lance l'API HTTP ({@link ServeurApi}) avec l'argument --serveur [port].
+     * L'argument --reconstruire-resumes recalcule Recette_Resume et quitte.
      *
-     * @param args Arguments de ligne de commande (non utilisés)
+     * @param args Arguments de ligne de commande
      */
     public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("--serveur")) {
+            ServeurApi.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--reconstruire-resumes")) {
+            reconstruireResumes();
+            return;
+        }
         try {
-            DatabaseConnection.getConnection();
+            DatabaseConnection.getPool();
         } catch (SQLException e) {
-            System.out.println("Erreur de connexion à la base de données:");
-            e.printStackTrace();
+            MesuresJdbc.partage().signalerErreur("Erreur de connexion à la base de données", e);
             return;
         }
         
@@ -122,7 +154,12 @@ public class Main {
             System.out.println("10. Voir les ingrédients d'une recette"); 
             System.out.println("11. Afficher la cote santé d'une recette"); 
             System.out.println("12. Consulter le journal d'activité");
-            System.out.println("13. Quitter");
+            System.out.println("13. Rechercher des recettes");
+            System.out.println("14. Que puis-je cuisiner ?");
+            System.out.println("15. Voir les recettes les plus saines");
+            System.out.println("16. Lire une recette");
+            System.out.println("17. Modifier une recette");
+            System.out.println("18. Quitter");
             System.out.print("Votre choix : ");
             choix = sc.nextInt();
             sc.nextLine();
@@ -138,7 +175,7 @@ public class Main {
                     ajouterIngredient(sc); 
                     break;
                 case 4:
-                    afficherRecettes();
+                    afficherRecettes(sc);
                     break;
                 case 5:
                     supprimerRecette(sc);
@@ -153,7 +190,7 @@ public class Main {
                     afficherIngredients();
                     break;
                 case 9:
-                    afficherRecettesParTemps();
+                    afficherRecettesParTemps(sc);
                     break;
                 case 10:
                     afficherIngredientsPourRecette(sc);
@@ -162,18 +199,39 @@ public class Main {
                     afficherCoteSanteRecette(sc);
                     break;
                 case 12:
-                    afficherJournalActivite();
+                    afficherJournalActivite(sc);
                     break;
                 case 13:
+                    rechercherRecettes(sc);
+                    break;
+                case 14:
+                    cuisinerAvecFrigo(sc);
+                    break;
+                case 15:
+                    afficherRecettesPlusSaines(sc);
+                    break;
+                case 16:
+                    lireRecette(sc);
+                    break;
+                case 17:
+                    modifierRecette(sc);
+                    break;
+                case 18:
                     System.out.println("Au revoir !");
                     break;
                 default:
                     System.out.println("Choix invalide !");
             }
             
-        } while (choix != 13);
+        } while (choix != 18);
 
         sc.close();
+        try {
+            IndexRecherche.partage().sauvegarder();
+        } catch (IOException e) {
+            System.out.println("Erreur lors de l'enregistrement de l'index de recherche : " + e.getMessage());
+        }
+        JournalAudit.fermerPartage();
         DatabaseConnection.closeConnection();
     }
 
@@ -190,47 +248,27 @@ public class Main {
         System.out.print("Bio de l'auteur : ");
         String bio = sc.nextLine();
 
-        PreparedStatement pstmt = null;
-        ResultSet generatedKeys = null;
+        Connection conn = null;
         try {
-            Connection conn = DatabaseConnection.getConnection();
-            pstmt = conn.prepareStatement(
-                    "INSERT INTO Auteur (nom, email, bio) VALUES (?, ?, ?)",
-                    Statement.RETURN_GENERATED_KEYS);
-            
-            pstmt.setString(1, nom);
-            pstmt.setString(2, email);
-            pstmt.setString(3, bio);
-            
-            int rowsAffected = pstmt.executeUpdate();
-            if (rowsAffected > 0) {
-                generatedKeys = pstmt.getGeneratedKeys();
-                if (generatedKeys.next()) {
-                    int id = generatedKeys.getInt(1);
-                    System.out.println("\nAuteur ajouté avec succès !");
-                    System.out.println("------------------");
-                    System.out.println("ID: " + id);
-                    System.out.println("Nom: " + nom);
-                    System.out.println("Email: " + email);
-                    if (bio != null && !bio.isEmpty()) {
-                        System.out.println("Bio: " + bio);
-                    }
-                    System.out.println("------------------");
-                } else {
-                    System.out.println("Auteur ajouté avec succès mais impossible de récupérer l'ID.");
+            conn = DatabaseConnection.getConnection();
+            int id = new AuteurRepository(conn).ajouter(new Auteur(nom, email, bio));
+            if (id > 0) {
+                System.out.println("\nAuteur ajouté avec succès !");
+                System.out.println("------------------");
+                System.out.println("ID: " + id);
+                System.out.println("Nom: " + nom);
+                System.out.println("Email: " + email);
+                if (bio != null && !bio.isEmpty()) {
+                    System.out.println("Bio: " + bio);
                 }
+                System.out.println("------------------");
             } else {
-                System.out.println("Échec de l'ajout de l'auteur.");
+                System.out.println("Auteur ajouté avec succès mais impossible de récupérer l'ID.");
             }
         } catch (SQLException e) {
             System.out.println("Erreur lors de l'ajout de l'auteur : " + e.getMessage());
         } finally {
-            try {
-                if (generatedKeys != null) generatedKeys.close();
-                if (pstmt != null) pstmt.close();
-            } catch (SQLException e) {
-                System.out.println("Erreur lors de la fermeture des ressources : " + e.getMessage());
-            }
+            fermer(conn);
         }
     }
 
@@ -238,51 +276,37 @@ public class Main {
      * Affiche la liste de tous les auteurs dans la base de données.
      */
     private static void afficherAuteurs() {
-        Statement stmt = null;
-        ResultSet rs = null;
+        Connection conn = null;
         try {
-            Connection conn = DatabaseConnection.getConnection();
-            stmt = conn.createStatement();
-            rs = stmt.executeQuery("SELECT id_auteur, nom, email, bio FROM Auteur");
+            conn = DatabaseConnection.getConnection();
+            List<Auteur> auteurs = new AuteurRepository(conn).lister();
             
-            boolean found = false;
             System.out.println("\nListe des auteurs :");
             System.out.println("------------------");
             
-            while (rs.next()) {
-                found = true;
-                int id = rs.getInt("id_auteur");
-                String nom = rs.getString("nom");
-                String email = rs.getString("email");
-                String bio = rs.getString("bio");
-                
-                System.out.println(id + ". " + nom + " (" + email + ")");
-                if (bio != null && !bio.trim().isEmpty()) {
-                    System.out.println("   Bio: " + bio);
+            for (Auteur auteur : auteurs) {
+                System.out.println(auteur.id_auteur + ". " + auteur.nom + " (" + auteur.email + ")");
+                if (auteur.bio != null && !auteur.bio.trim().isEmpty()) {
+                    System.out.println("   Bio: " + auteur.bio);
                 }
                 System.out.println();
             }
             
             System.out.println("------------------");
             
-            if (!found) {
+            if (auteurs.isEmpty()) {
                 System.out.println("Aucun auteur enregistré.");
             }
         } catch (SQLException e) {
             System.out.println("Erreur lors de l'affichage des auteurs : " + e.getMessage());
         } finally {
-            try {
-                if (rs != null) rs.close();
-                if (stmt != null) stmt.close();
-            } catch (SQLException e) {
-                System.out.println("Erreur lors de la fermeture des ressources : " + e.getMessage());
-            }
+            fermer(conn);
         }
     }
 
     /**
      * Ajoute une nouvelle recette dans la base de données.
-     * Permet également d'ajouter des ingrédients à la recette.
+     * Permet également d'ajouter des ingrédients à la recette, enregistrés dans la même transaction.
      *
      * @param sc Scanner pour lire les entrées utilisateur
      */
@@ -360,98 +384,74 @@ public class Main {
 
         sc.nextLine();
 
-        PreparedStatement pstmt = null;
-        ResultSet generatedKeys = null;
+        // Les ingrédients sont choisis avant l'enregistrement : la recette et ses
+        // liaisons sont ensuite écrites dans une seule transaction.
+        List<RecetteRepository.LienIngredient> liens = new ArrayList<>();
+        System.out.println("\nVoulez-vous ajouter des ingrédients à cette recette? (O/N)");
+        String reponse = sc.nextLine();
+        if (reponse.equalsIgnoreCase("O")) {
+            liens = choisirIngredients(sc);
+        }
+
+        Connection conn = null;
         try {
-            Connection conn = DatabaseConnection.getConnection();
-            
-            String sql = "INSERT INTO Recette (titre, description, instructions, temps_preparation, temps_cuisson, auteur_id) VALUES (?, EMPTY_CLOB(), EMPTY_CLOB(), ?, ?, ?)";
-            pstmt = conn.prepareStatement(sql, new String[] {"id_recette"});
-            
-            pstmt.setString(1, titre);
-            pstmt.setInt(2, temps_preparation);
-            pstmt.setInt(3, temps_cuisson);
-            pstmt.setInt(4, auteur_id);
-            
-            int rowsAffected = pstmt.executeUpdate();
-            
-            if (rowsAffected > 0) {
-                generatedKeys = pstmt.getGeneratedKeys();
-                if (generatedKeys.next()) {
-                    int id = generatedKeys.getInt(1);
-                    
-                    PreparedStatement updateStmt = conn.prepareStatement(
-                        "UPDATE Recette SET description = ?, instructions = ? WHERE id_recette = ?");
-                    updateStmt.setString(1, description);
-                    updateStmt.setString(2, instructions);
-                    updateStmt.setInt(3, id);
-                    updateStmt.executeUpdate();
-                    updateStmt.close();
-                    
-                    System.out.println("\nRecette ajoutée avec succès !");
-                    System.out.println("------------------");
-                    System.out.println("ID: " + id);
-                    System.out.println("Titre: " + titre);
-                    System.out.println("Description: " + description);
-                    System.out.println("Instructions: " + instructions);
-                    System.out.println("Temps de préparation: " + temps_preparation + " min");
-                    System.out.println("Temps de cuisson: " + temps_cuisson + " min");
-                    System.out.println("------------------");
-                    System.out.println("\nVoulez-vous ajouter des ingrédients à cette recette? (O/N)");
-                    String reponse = sc.nextLine();
-                    if (reponse.equalsIgnoreCase("O")) {
-                        ajouterIngredientsRecette(sc, id);
-                    }
-                } else {
-                    System.out.println("Recette ajoutée avec succès mais impossible de récupérer l'ID.");
+            conn = DatabaseConnection.getConnection();
+            Recette recette = new Recette(titre, description, instructions, temps_preparation, temps_cuisson, auteur_id);
+            int id = new RecetteRepository(conn).ajouter(recette, liens);
+            List<String> noms = new ArrayList<>(liens.size());
+            for (RecetteRepository.LienIngredient lien : liens) {
+                Ingredient ingredient = IngredientCache.partage().trouver(lien.id_ingredient);
+                if (ingredient != null) {
+                    noms.add(ingredient.nom);
                 }
-            } else {
-                System.out.println("Échec de l'ajout de la recette.");
             }
+            IndexRecherche.partage().indexer(recette, noms);
+
+            System.out.println("\nRecette ajoutée avec succès !");
+            System.out.println("------------------");
+            System.out.println("ID: " + id);
+            System.out.println("Titre: " + titre);
+            System.out.println("Description: " + description);
+            System.out.println("Instructions: " + instructions);
+            System.out.println("Temps de préparation: " + temps_preparation + " min");
+            System.out.println("Temps de cuisson: " + temps_cuisson + " min");
+            System.out.println("Ingrédients: " + liens.size());
+            System.out.println("------------------");
         } catch (SQLException e) {
-            System.out.println("Erreur lors de l'ajout de la recette : " + e.getMessage());
-            e.printStackTrace();
+            MesuresJdbc.partage().signalerErreur("Erreur lors de l'ajout de la recette", e);
         } finally {
-            try {
-                if (generatedKeys != null) generatedKeys.close();
-                if (pstmt != null) pstmt.close();
-            } catch (SQLException e) {
-                System.out.println("Erreur lors de la fermeture des ressources : " + e.getMessage());
-            }
+            fermer(conn);
         }
     }
 
     /**
-     * Ajoute des ingrédients à une recette existante.
+     * Demande à l'utilisateur les ingrédients d'une recette à enregistrer.
+     * Le catalogue et les vérifications d'existence sont servis par {@link IngredientCache}.
      *
      * @param sc Scanner pour lire les entrées utilisateur
-     * @param idRecette ID de la recette à laquelle ajouter des ingrédients
+     * @return Les ingrédients choisis et leurs quantités
      */
-    private static void ajouterIngredientsRecette(Scanner sc, int idRecette) {
+    private static List<RecetteRepository.LienIngredient> choisirIngredients(Scanner sc) {
+        List<RecetteRepository.LienIngredient> liens = new ArrayList<>();
+        Set<Integer> choisis = new HashSet<>();
         boolean continuer = true;
         
+        IngredientCache ingredients = IngredientCache.partage();
+        
         while (continuer) {
-            Statement stmt = null;
-            ResultSet rs = null;
             try {
-                Connection conn = DatabaseConnection.getConnection();
-                stmt = conn.createStatement();
-                rs = stmt.executeQuery("SELECT id_ingredient, nom FROM Ingredient ORDER BY nom");
+                List<Ingredient> disponibles = ingredients.lister();
                 
                 System.out.println("\nListe des ingrédients disponibles :");
                 System.out.println("-------------------------------");
                 
-                boolean found = false;
-                while (rs.next()) {
-                    found = true;
-                    int id = rs.getInt("id_ingredient");
-                    String nom = rs.getString("nom");
-                    System.out.println(id + ". " + nom);
+                for (Ingredient ingredient : disponibles) {
+                    System.out.println(ingredient.id_ingredient + ". " + ingredient.nom);
                 }
                 
-                if (!found) {
+                if (disponibles.isEmpty()) {
                     System.out.println("Aucun ingrédient disponible. Veuillez d'abord en ajouter.");
-                    return;
+                    return liens;
                 }
                 
                 System.out.print("\nEntrez l'ID de l'ingrédient à ajouter : ");
@@ -459,128 +459,90 @@ public class Main {
                 try {
                     idIngredient = Integer.parseInt(sc.nextLine());
                 } catch (NumberFormatException e) {
-                    System.out.println("ID invalide. Opération annulée.");
-                    return;
+                    System.out.println("ID invalide. Fin de l'ajout d'ingrédients.");
+                    return liens;
                 }
                 
                 System.out.print("Quantité (ex: '2 tasses', '100g') : ");
                 String quantite = sc.nextLine();
                 
-                PreparedStatement pstmtCheck = conn.prepareStatement("SELECT COUNT(*) FROM Ingredient WHERE id_ingredient = ?");
-                pstmtCheck.setInt(1, idIngredient);
-                ResultSet rsCheck = pstmtCheck.executeQuery();
-                
-                if (rsCheck.next() && rsCheck.getInt(1) > 0) {
-                    PreparedStatement pstmtInsert = conn.prepareStatement(
-                        "INSERT INTO Recette_Ingredient (id_recette, id_ingredient, quantite) VALUES (?, ?, ?)");
-                    pstmtInsert.setInt(1, idRecette);
-                    pstmtInsert.setInt(2, idIngredient);
-                    pstmtInsert.setString(3, quantite);
-                    
-                    int rowsAffected = pstmtInsert.executeUpdate();
-                    if (rowsAffected > 0) {
-                        System.out.println("Ingrédient ajouté à la recette !");
-                    } else {
-                        System.out.println("Échec de l'ajout de l'ingrédient à la recette.");
-                    }
-                    
-                    pstmtInsert.close();
-                } else {
+                if (!ingredients.existe(idIngredient)) {
                     System.out.println("Ingrédient non trouvé !");
+                } else if (!choisis.add(idIngredient)) {
+                    System.out.println("Cet ingrédient fait déjà partie de la recette.");
+                } else {
+                    liens.add(new RecetteRepository.LienIngredient(idIngredient, quantite));
+                    System.out.println("Ingrédient ajouté à la recette !");
                 }
                 
-                rsCheck.close();
-                pstmtCheck.close();
-                
                 System.out.print("\nVoulez-vous ajouter un autre ingrédient? (O/N) : ");
                 String reponse = sc.nextLine();
                 continuer = reponse.equalsIgnoreCase("O");
                 
             } catch (SQLException e) {
-                System.out.println("Erreur lors de l'ajout des ingrédients : " + e.getMessage());
+                System.out.println("Erreur lors de la lecture des ingrédients : " + e.getMessage());
                 continuer = false;
-            } finally {
-                try {
-                    if (rs != null) rs.close();
-                    if (stmt != null) stmt.close();
-                } catch (SQLException e) {
-                    System.out.println("Erreur lors de la fermeture des ressources : " + e.getMessage());
-                }
             }
         }
+        return liens;
     }
 
     /**
-     * Affiche la liste de toutes les recettes avec leurs ingrédients.
-     * Version optimisée qui utilise une seule requête au lieu de N+1 requêtes.
+     * Affiche la liste des recettes avec leurs ingrédients, page par page.
+     * Chaque page est lue en une seule requête qui reprend après la dernière recette affichée,
+     * si bien que le coût d'une page ne dépend pas de la taille du catalogue.
+     *
+     * @param sc Scanner pour lire les entrées utilisateur
      */
-    private static void afficherRecettes() {
-        Statement stmt = null;
-        ResultSet rs = null;
-        try {
-            Connection conn = DatabaseConnection.getConnection();
-            stmt = conn.createStatement();
-            rs = stmt.executeQuery(
-                "SELECT r.id_recette, r.titre, r.description, r.temps_preparation, r.temps_cuisson, " +
-                "a.nom as auteur_nom, i.nom as ingredient_nom, ri.quantite " +
-                "FROM Recette r " +
-                "JOIN Auteur a ON r.auteur_id = a.id_auteur " +
-                "LEFT JOIN Recette_Ingredient ri ON r.id_recette = ri.id_recette " +
-                "LEFT JOIN Ingredient i ON ri.id_ingredient = i.id_ingredient " +
-                "ORDER BY r.id_recette, i.nom");
-            
-            boolean found = false;
-            int currentRecetteId = -1;
-            System.out.println("\nListe des recettes :");
+    private static void afficherRecettes(Scanner sc) {
+        System.out.println("\nListe des recettes :");
+        
+        int apresId = 0;
+        boolean premiere = true;
+        while (true) {
+            RecetteRepository.Page page;
+            Connection conn = null;
+            try {
+                conn = DatabaseConnection.getConnection();
+                page = new RecetteRepository(conn).listerPage(apresId, TAILLE_PAGE, TAILLE_FETCH);
+            } catch (SQLException e) {
+                System.out.println("Erreur lors de l'affichage des recettes : " + e.getMessage());
+                return;
+            } finally {
+                fermer(conn);
+            }
             
-            while (rs.next()) {
-                found = true;
-                int id = rs.getInt("id_recette");
-                
-                // Si on commence une nouvelle recette
-                if (id != currentRecetteId) {
-                    if (currentRecetteId != -1) {
-                        System.out.println();
-                    }
-                    
-                    // Informations de la recette
-                    currentRecetteId = id;
-                    String titre = rs.getString("titre");
-                    String description = rs.getString("description");
-                    int temps_prep = rs.getInt("temps_preparation");
-                    int temps_cuisson = rs.getInt("temps_cuisson");
-                    String auteur = rs.getString("auteur_nom");
-                    
-                    System.out.println("ID: " + id + " - " + titre);
-                    System.out.println("  Par: " + auteur);
-                    System.out.println("  Description: " + description);
-                    System.out.println("  Temps de préparation: " + temps_prep + " min, Temps de cuisson: " + temps_cuisson + " min");
-                    System.out.println("  Ingrédients:");
+            for (RecetteRepository.RecetteDetail recette : page.recettes) {
+                if (!premiere) {
+                    System.out.println();
                 }
+                premiere = false;
                 
-                // Afficher l'ingrédient (utilisez LEFT JOIN donc peut être NULL)
-                String ingredient = rs.getString("ingredient_nom");
-                String quantite = rs.getString("quantite");
-                if (ingredient != null) {
-                    System.out.println("    - " + quantite + " de " + ingredient);
-                } else if (currentRecetteId == id) {
-                    // Si c'est une nouvelle recette et qu'il n'y a pas d'ingrédient
+                System.out.println("ID: " + recette.id_recette + " - " + recette.titre);
+                System.out.println("  Par: " + recette.auteur_nom);
+                System.out.println("  Description: " + recette.apercu + (recette.apercuTronque ? "…" : ""));
+                System.out.println("  Temps de préparation: " + recette.temps_preparation + " min, Temps de cuisson: " + recette.temps_cuisson + " min");
+                System.out.println("  Ingrédients:");
+                for (RecetteRepository.LigneIngredient ligne : recette.ingredients) {
+                    System.out.println("    - " + ligne.quantite + " de " + ligne.nom);
+                }
+                if (recette.ingredients.isEmpty()) {
                     System.out.println("    Aucun ingrédient enregistré pour cette recette.");
                 }
             }
             
-            if (!found) {
+            if (premiere) {
                 System.out.println("Aucune recette enregistrée.");
             }
-        } catch (SQLException e) {
-            System.out.println("Erreur lors de l'affichage des recettes : " + e.getMessage());
-        } finally {
-            try {
-                if (rs != null) rs.close();
-                if (stmt != null) stmt.close();
-            } catch (SQLException e) {
-                System.out.println("Erreur lors de la fermeture des ressources : " + e.getMessage());
+            if (!page.suite) {
+                return;
             }
+            
+            System.out.print("\nAfficher les recettes suivantes? (O/N) : ");
+            if (!sc.nextLine().equalsIgnoreCase("O")) {
+                return;
+            }
+            apresId = page.dernierId;
         }
     }
 
@@ -590,42 +552,201 @@ public class Main {
      * @param idRecette ID de la recette dont on veut afficher les ingrédients
      */
     private static void afficherIngredientsRecette(int idRecette) {
-        PreparedStatement pstmt = null;
-        ResultSet rs = null;
+        Connection conn = null;
         try {
-            Connection conn = DatabaseConnection.getConnection();
-            pstmt = conn.prepareStatement(
-                "SELECT i.nom, ri.quantite FROM Recette_Ingredient ri " +
-                "JOIN Ingredient i ON ri.id_ingredient = i.id_ingredient " +
-                "WHERE ri.id_recette = ?");
-            
-            pstmt.setInt(1, idRecette);
-            rs = pstmt.executeQuery();
+            conn = DatabaseConnection.getConnection();
+            List<RecetteRepository.LigneIngredient> ingredients = new RecetteRepository(conn).listerIngredients(idRecette);
             
-            boolean foundIngredients = false;
             System.out.println("  Ingrédients:");
             
-            while (rs.next()) {
-                foundIngredients = true;
-                String nom = rs.getString("nom");
-                String quantite = rs.getString("quantite");
-                
-                System.out.println("    - " + quantite + " de " + nom);
+            for (RecetteRepository.LigneIngredient ligne : ingredients) {
+                System.out.println("    - " + ligne.quantite + " de " + ligne.nom);
             }
             
-            if (!foundIngredients) {
+            if (ingredients.isEmpty()) {
                 System.out.println("    Aucun ingrédient enregistré pour cette recette.");
             }
         } catch (SQLException e) {
             System.out.println("Erreur lors de l'affichage des ingrédients : " + e.getMessage());
         } finally {
-            try {
-                if (rs != null) rs.close();
-                if (pstmt != null) pstmt.close();
-            } catch (SQLException e) {
-                System.out.println("Erreur lors de la fermeture des ressources : " + e.getMessage());
+            fermer(conn);
+        }
+    }
+
+    /**
+     * Affiche une recette avec sa description et ses instructions complètes.
+     * Les deux textes sont lus en flux depuis leur CLOB.
+     *
+     * @param sc Scanner pour lire les entrées utilisateur
+     */
+    private static void lireRecette(Scanner sc) {
+        System.out.print("Entrez l'ID de la recette : ");
+        int idRecette;
+        try {
+            idRecette = Integer.parseInt(sc.nextLine());
+        } catch (NumberFormatException e) {
+            System.out.println("ID invalide. Opération annulée.");
+            return;
+        }
+
+        Connection conn = null;
+        try {
+            conn = DatabaseConnection.getConnection();
+            RecetteRepository recettes = new RecetteRepository(conn);
+            RecetteRepository.RecetteDetail recette = recettes.trouverApercu(idRecette);
+            if (recette == null) {
+                System.out.println("Recette non trouvée !");
+                return;
+            }
+            System.out.println("\n" + recette.titre);
+            System.out.println("Par: " + recette.auteur_nom);
+            System.out.println("Temps de préparation: " + recette.temps_preparation + " min, Temps de cuisson: " + recette.temps_cuisson + " min");
+            System.out.println("\nDescription:");
+            afficherTexte(recettes.lireDescription(idRecette));
+            System.out.println("\nInstructions:");
+            afficherTexte(recettes.lireInstructions(idRecette));
+        } catch (SQLException e) {
+            System.out.println("Erreur lors de la lecture de la recette : " + e.getMessage());
+        } catch (IOException e) {
+            System.out.println("Erreur lors de la lecture du texte de la recette : " + e.getMessage());
+        } finally {
+            fermer(conn);
+        }
+    }
+
+    private static void afficherTexte(Reader texte) throws IOException {
+        if (texte == null) {
+            System.out.println("(aucun texte)");
+            return;
+        }
+        try (Reader r = texte) {
+            char[] tampon = new char[8192];
+            int lus;
+            while ((lus = r.read(tampon)) > 0) {
+                System.out.print(new String(tampon, 0, lus));
             }
         }
+        System.out.println();
+    }
+
+    /**
+     * Modifie une recette et ses ingrédients. Les changements sont saisis dans une
+     * {@link EditionRecette}, sans connexion ouverte, puis enregistrés en une seule transaction ;
+     * si la recette a été modifiée entre-temps, rien n'est enregistré.
+     *
+     * @param sc Scanner pour lire les entrées utilisateur
+     */
+    private static void modifierRecette(Scanner sc) {
+        System.out.print("Entrez l'ID de la recette à modifier : ");
+        int idRecette;
+        try {
+            idRecette = Integer.parseInt(sc.nextLine());
+        } catch (NumberFormatException e) {
+            System.out.println("ID invalide. Opération annulée.");
+            return;
+        }
+
+        EditionRecette edition;
+        Connection conn = null;
+        try {
+            conn = DatabaseConnection.getConnection();
+            edition = new RecetteRepository(conn).editer(idRecette);
+        } catch (SQLException e) {
+            System.out.println("Erreur lors de la lecture de la recette : " + e.getMessage());
+            return;
+        } finally {
+            fermer(conn);
+        }
+        if (edition == null) {
+            System.out.println("Recette non trouvée !");
+            return;
+        }
+
+        System.out.println("Laissez un champ vide pour le conserver.");
+        System.out.print("Titre [" + edition.titre() + "] : ");
+        String titre = sc.nextLine();
+        if (!titre.trim().isEmpty()) {
+            edition.titre(titre);
+        }
+        System.out.print("Description : ");
+        String description = sc.nextLine();
+        if (!description.trim().isEmpty()) {
+            edition.description(description);
+        }
+        System.out.print("Instructions : ");
+        String instructions = sc.nextLine();
+        if (!instructions.trim().isEmpty()) {
+            edition.instructions(instructions);
+        }
+        try {
+            System.out.print("Temps de préparation [" + edition.tempsPreparation() + " min] : ");
+            String temps = sc.nextLine().trim();
+            if (!temps.isEmpty()) {
+                edition.tempsPreparation(Integer.parseInt(temps));
+            }
+            System.out.print("Temps de cuisson [" + edition.tempsCuisson() + " min] : ");
+            temps = sc.nextLine().trim();
+            if (!temps.isEmpty()) {
+                edition.tempsCuisson(Integer.parseInt(temps));
+            }
+        } catch (IllegalArgumentException e) {
+            System.out.println("Temps invalide. Opération annulée.");
+            return;
+        }
+
+        System.out.println("\nIngrédients actuels :");
+        IngredientCache ingredients = IngredientCache.partage();
+        try {
+            for (Map.Entry<Integer, String> lien : edition.ingredients().entrySet()) {
+                Ingredient ingredient = ingredients.trouver(lien.getKey());
+                System.out.println("  " + lien.getKey() + ". " + (ingredient != null ? ingredient.nom : "?")
+                        + " : " + lien.getValue());
+            }
+        } catch (SQLException e) {
+            System.out.println("Erreur lors de la lecture des ingrédients : " + e.getMessage());
+        }
+        System.out.print("IDs des ingrédients à retirer (séparés par des virgules, vide pour aucun) : ");
+        for (String id : sc.nextLine().split(",")) {
+            if (!id.trim().isEmpty()) {
+                try {
+                    edition.retirer(Integer.parseInt(id.trim()));
+                } catch (NumberFormatException e) {
+                    System.out.println("ID ignoré : " + id.trim());
+                }
+            }
+        }
+        System.out.println("Voulez-vous ajouter des ingrédients ou changer leur quantité ? (O/N)");
+        if (sc.nextLine().equalsIgnoreCase("O")) {
+            for (RecetteRepository.LienIngredient lien : choisirIngredients(sc)) {
+                edition.lier(lien.id_ingredient, lien.quantite);
+            }
+        }
+
+        if (!edition.modifiee()) {
+            System.out.println("Aucune modification.");
+            return;
+        }
+        conn = null;
+        try {
+            conn = DatabaseConnection.getConnection();
+            RecetteRepository recettes = new RecetteRepository(conn);
+            int version = recettes.enregistrer(edition);
+            RecetteRepository.RecetteDetail recette = recettes.trouver(idRecette);
+            if (recette != null) {
+                List<String> noms = new ArrayList<>();
+                for (RecetteRepository.LigneIngredient ligne : recettes.listerIngredients(idRecette)) {
+                    noms.add(ligne.nom);
+                }
+                IndexRecherche.partage().indexer(recette, noms);
+            }
+            System.out.println("\nRecette modifiée avec succès ! (version " + version + ")");
+        } catch (RecetteRepository.ConflitVersion e) {
+            System.out.println(e.getMessage() + " Aucune modification n'a été enregistrée.");
+        } catch (SQLException e) {
+            System.out.println("Erreur lors de la modification de la recette : " + e.getMessage());
+        } finally {
+            fermer(conn);
+        }
     }
 
     /**
@@ -643,40 +764,24 @@ public class Main {
             return;
         }
 
-        PreparedStatement pstmtSelect = null;
-        PreparedStatement pstmtDelete = null;
-        ResultSet rs = null;
-        
+        Connection conn = null;
         try {
-            Connection conn = DatabaseConnection.getConnection();
-            
-            pstmtSelect = conn.prepareStatement(
-                "SELECT r.*, a.nom as auteur_nom FROM Recette r " +
-                "JOIN Auteur a ON r.auteur_id = a.id_auteur " +
-                "WHERE r.id_recette = ?");
-            pstmtSelect.setInt(1, idRecette);
-            rs = pstmtSelect.executeQuery();
+            conn = DatabaseConnection.getConnection();
+            RecetteRepository recettes = new RecetteRepository(conn);
             
-            if (rs.next()) {
-                String titre = rs.getString("titre");
-                String description = rs.getString("description");
-                String auteurNom = rs.getString("auteur_nom");
-                int tempsPrep = rs.getInt("temps_preparation");
-                int tempsCuisson = rs.getInt("temps_cuisson");
-                
-                pstmtDelete = conn.prepareStatement("DELETE FROM Recette WHERE id_recette = ?");
-                pstmtDelete.setInt(1, idRecette);
-                
-                int rowsAffected = pstmtDelete.executeUpdate();
+            RecetteRepository.RecetteDetail recette = recettes.trouverApercu(idRecette);
+            if (recette != null) {
+                int rowsAffected = recettes.supprimer(idRecette);
                 if (rowsAffected > 0) {
+                    IndexRecherche.partage().retirer(idRecette);
                     System.out.println("\nRecette supprimée avec succès !");
                     System.out.println("------------------");
                     System.out.println("ID: " + idRecette);
-                    System.out.println("Titre: " + titre);
-                    System.out.println("Auteur: " + auteurNom);
-                    System.out.println("Description: " + description);
-                    System.out.println("Temps de préparation: " + tempsPrep + " min");
-                    System.out.println("Temps de cuisson: " + tempsCuisson + " min");
+                    System.out.println("Titre: " + recette.titre);
+                    System.out.println("Auteur: " + recette.auteur_nom);
+                    System.out.println("Description: " + recette.apercu + (recette.apercuTronque ? "…" : ""));
+                    System.out.println("Temps de préparation: " + recette.temps_preparation + " min");
+                    System.out.println("Temps de cuisson: " + recette.temps_cuisson + " min");
                     System.out.println("------------------");
                 } else {
                     System.out.println("Échec de la suppression de la recette.");
@@ -687,13 +792,21 @@ public class Main {
         } catch (SQLException e) {
             System.out.println("Erreur lors de la suppression de la recette : " + e.getMessage());
         } finally {
-            try {
-                if (rs != null) rs.close();
-                if (pstmtSelect != null) pstmtSelect.close();
-                if (pstmtDelete != null) pstmtDelete.close();
-            } catch (SQLException e) {
-                System.out.println("Erreur lors de la fermeture des ressources : " + e.getMessage());
-            }
+            fermer(conn);
+        }
+    }
+
+    /**
+     * Recalcule le résumé de toutes les recettes, après des écritures faites hors de l'application.
+     */
+    private static void reconstruireResumes() {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            int resumes = new RecetteRepository(conn).reconstruireResumes();
+            System.out.println(resumes + " résumé(s) de recette recalculé(s).");
+        } catch (SQLException e) {
+            MesuresJdbc.partage().signalerErreur("Erreur lors du recalcul des résumés", e);
+        } finally {
+            DatabaseConnection.closeConnection();
         }
     }
 
@@ -713,34 +826,23 @@ public class Main {
             return;
         }
 
-        PreparedStatement pstmtSelect = null;
-        PreparedStatement pstmtDelete = null;
-        ResultSet rs = null;
-        
+        Connection conn = null;
         try {
-            Connection conn = DatabaseConnection.getConnection();
+            conn = DatabaseConnection.getConnection();
+            AuteurRepository auteurs = new AuteurRepository(conn);
             
-            pstmtSelect = conn.prepareStatement("SELECT * FROM Auteur WHERE id_auteur = ?");
-            pstmtSelect.setInt(1, idAuteur);
-            rs = pstmtSelect.executeQuery();
-            
-            if (rs.next()) {
-                String nom = rs.getString("nom");
-                String email = rs.getString("email");
-                String bio = rs.getString("bio");
-                
-                pstmtDelete = conn.prepareStatement("DELETE FROM Auteur WHERE id_auteur = ?");
-                pstmtDelete.setInt(1, idAuteur);
-                
-                int rowsAffected = pstmtDelete.executeUpdate();
+            Auteur auteur = auteurs.trouver(idAuteur);
+            if (auteur != null) {
+                int rowsAffected = auteurs.supprimer(idAuteur);
                 if (rowsAffected > 0) {
+                    IndexRecherche.partage().retirerAuteur(idAuteur);
                     System.out.println("\nAuteur supprimé avec succès !");
                     System.out.println("------------------");
                     System.out.println("ID: " + idAuteur);
-                    System.out.println("Nom: " + nom);
-                    System.out.println("Email: " + email);
-                    if (bio != null && !bio.isEmpty()) {
-                        System.out.println("Bio: " + bio);
+                    System.out.println("Nom: " + auteur.nom);
+                    System.out.println("Email: " + auteur.email);
+                    if (auteur.bio != null && !auteur.bio.isEmpty()) {
+                        System.out.println("Bio: " + auteur.bio);
                     }
                     System.out.println("------------------");
                     System.out.println("Toutes ses recettes ont également été supprimées.");
@@ -753,13 +855,7 @@ public class Main {
         } catch (SQLException e) {
             System.out.println("Erreur lors de la suppression de l'auteur : " + e.getMessage());
         } finally {
-            try {
-                if (rs != null) rs.close();
-                if (pstmtSelect != null) pstmtSelect.close();
-                if (pstmtDelete != null) pstmtDelete.close();
-            } catch (SQLException e) {
-                System.out.println("Erreur lors de la fermeture des ressources : " + e.getMessage());
-            }
+            fermer(conn);
         }
     }
 
@@ -790,42 +886,25 @@ public class Main {
 
         sc.nextLine();
 
-        PreparedStatement pstmt = null;
-        ResultSet generatedKeys = null;
+        Connection conn = null;
         try {
-            Connection conn = DatabaseConnection.getConnection();
-            pstmt = conn.prepareStatement(
-                    "INSERT INTO Ingredient (nom, cote_sante) VALUES (?, ?)",
-                    Statement.RETURN_GENERATED_KEYS);
-            pstmt.setString(1, nom);
-            pstmt.setInt(2, cote_sante);
-            
-            int rowsAffected = pstmt.executeUpdate();
-            if (rowsAffected > 0) {
-                generatedKeys = pstmt.getGeneratedKeys();
-                if (generatedKeys.next()) {
-                    int id = generatedKeys.getInt(1);
-                    System.out.println("\nIngrédient ajouté avec succès !");
-                    System.out.println("------------------");
-                    System.out.println("ID: " + id);
-                    System.out.println("Nom: " + nom);
-                    System.out.println("Cote santé: " + cote_sante + "/5");
-                    System.out.println("------------------");
-                } else {
-                    System.out.println("Ingrédient ajouté avec succès mais impossible de récupérer l'ID.");
-                }
+            conn = DatabaseConnection.getConnection();
+            int id = new IngredientRepository(conn).ajouter(new Ingredient(nom, cote_sante));
+            IngredientCache.partage().invalider();
+            if (id > 0) {
+                System.out.println("\nIngrédient ajouté avec succès !");
+                System.out.println("------------------");
+                System.out.println("ID: " + id);
+                System.out.println("Nom: " + nom);
+                System.out.println("Cote santé: " + cote_sante + "/5");
+                System.out.println("------------------");
             } else {
-                System.out.println("Échec de l'ajout de l'ingrédient.");
+                System.out.println("Ingrédient ajouté avec succès mais impossible de récupérer l'ID.");
             }
         } catch (SQLException e) {
             System.out.println("Erreur lors de l'ajout de l'ingrédient : " + e.getMessage());
         } finally {
-            try {
-                if (generatedKeys != null) generatedKeys.close();
-                if (pstmt != null) pstmt.close();
-            } catch (SQLException e) {
-                System.out.println("Erreur lors de la fermeture des ressources : " + e.getMessage());
-            }
+            fermer(conn);
         }
     }
 
@@ -833,87 +912,137 @@ public class Main {
      * Affiche la liste de tous les ingrédients dans la base de données.
      */
     private static void afficherIngredients() {
-        Statement stmt = null;
-        ResultSet rs = null;
+        Connection conn = null;
         try {
-            Connection conn = DatabaseConnection.getConnection();
-            stmt = conn.createStatement();
-            rs = stmt.executeQuery("SELECT id_ingredient, nom, cote_sante FROM Ingredient ORDER BY nom");
+            conn = DatabaseConnection.getConnection();
+            List<Ingredient> ingredients = new IngredientRepository(conn).lister();
             
-            boolean found = false;
             System.out.println("\nListe des ingrédients :");
             System.out.println("---------------------");
             
-            while (rs.next()) {
-                found = true;
-                int id = rs.getInt("id_ingredient");
-                String nom = rs.getString("nom");
-                int coteSante = rs.getInt("cote_sante");
-                
-                System.out.println(id + ". " + nom + " (Cote santé: " + coteSante + "/5)");
+            for (Ingredient ingredient : ingredients) {
+                System.out.println(ingredient.id_ingredient + ". " + ingredient.nom + " (Cote santé: " + ingredient.cote_sante + "/5)");
             }
             
             System.out.println("---------------------");
             
-            if (!found) {
+            if (ingredients.isEmpty()) {
                 System.out.println("Aucun ingrédient enregistré.");
             }
         } catch (SQLException e) {
             System.out.println("Erreur lors de l'affichage des ingrédients : " + e.getMessage());
         } finally {
-            try {
-                if (rs != null) rs.close();
-                if (stmt != null) stmt.close();
-            } catch (SQLException e) {
-                System.out.println("Erreur lors de la fermeture des ressources : " + e.getMessage());
-            }
+            fermer(conn);
         }
     }
 
  /**
- * Affiche les recettes triées par temps total de préparation.
- * Utilise la vue Vue_Recette_Details.
+ * Affiche les recettes triées par temps total de préparation, page par page.
+ * Les pages sont lues dans le résumé Recette_Resume par son index sur le temps total.
+ *
+ * @param sc Scanner pour lire les entrées utilisateur
  */
-private static void afficherRecettesParTemps() {
-    Statement stmt = null;
-    ResultSet rs = null;
-    try {
-        Connection conn = DatabaseConnection.getConnection();
-        stmt = conn.createStatement();
-        rs = stmt.executeQuery("SELECT * FROM Vue_Recette_Details ORDER BY temps_total");
-        
-        boolean found = false;
-        System.out.println("\nRecettes par temps total de préparation :");
-        System.out.println("------------------------------------------");
+private static void afficherRecettesParTemps(Scanner sc) {
+    System.out.println("\nRecettes par temps total de préparation :");
+    System.out.println("------------------------------------------");
+    
+    RecetteRepository.ResumeRecette apres = null;
+    while (true) {
+        List<RecetteRepository.ResumeRecette> recettes;
+        Connection conn = null;
+        try {
+            conn = DatabaseConnection.getConnection();
+            recettes = new RecetteRepository(conn).listerParTemps(apres, TAILLE_PAGE);
+        } catch (SQLException e) {
+            System.out.println("Erreur lors de l'affichage des recettes : " + e.getMessage());
+            return;
+        } finally {
+            fermer(conn);
+        }
         
-        while (rs.next()) {
-            found = true;
-            int id = rs.getInt("id_recette");
-            String titre = rs.getString("titre");
-            String auteur = rs.getString("auteur_nom");
-            int tempsTotal = rs.getInt("temps_total");
-            
-            System.out.println("ID: " + id + " - " + titre);
-            System.out.println("  Par: " + auteur);
-            System.out.println("  Temps total: " + tempsTotal + " minutes");
+        for (RecetteRepository.ResumeRecette recette : recettes) {
+            System.out.println("ID: " + recette.id_recette + " - " + recette.titre);
+            System.out.println("  Par: " + recette.auteur_nom);
+            System.out.println("  Temps total: " + recette.temps_total + " minutes");
             System.out.println();
         }
-        
-        if (!found) {
+        if (apres == null && recettes.isEmpty()) {
             System.out.println("Aucune recette enregistrée.");
         }
+        if (recettes.size() < TAILLE_PAGE) {
+            break;
+        }
         
-        System.out.println("------------------------------------------");
-    } catch (SQLException e) {
-        System.out.println("Erreur lors de l'affichage des recettes : " + e.getMessage());
-    } finally {
+        System.out.print("Afficher les recettes suivantes? (O/N) : ");
+        if (!sc.nextLine().equalsIgnoreCase("O")) {
+            break;
+        }
+        apres = recettes.get(recettes.size() - 1);
+    }
+    System.out.println("------------------------------------------");
+}
+
+/**
+ * Affiche les recettes de la meilleure à la moins bonne cote santé, page par page.
+ * Les pages sont lues dans le résumé Recette_Resume par son index sur la cote.
+ *
+ * @param sc Scanner pour lire les entrées utilisateur
+ */
+private static void afficherRecettesPlusSaines(Scanner sc) {
+    System.out.println("\nRecettes les plus saines :");
+    System.out.println("------------------------------------------");
+    
+    RecetteRepository.ResumeRecette apres = null;
+    while (true) {
+        List<RecetteRepository.ResumeRecette> recettes;
+        Connection conn = null;
         try {
-            if (rs != null) rs.close();
-            if (stmt != null) stmt.close();
+            conn = DatabaseConnection.getConnection();
+            recettes = new RecetteRepository(conn).listerPlusSaines(apres, TAILLE_PAGE);
         } catch (SQLException e) {
-            System.out.println("Erreur lors de la fermeture des ressources : " + e.getMessage());
+            System.out.println("Erreur lors de l'affichage des recettes : " + e.getMessage());
+            return;
+        } finally {
+            fermer(conn);
+        }
+        
+        for (RecetteRepository.ResumeRecette recette : recettes) {
+            System.out.println("ID: " + recette.id_recette + " - " + recette.titre);
+            System.out.println("  Par: " + recette.auteur_nom);
+            System.out.println("  Cote santé: " + recette.coteSante() + "/5 (" + recette.nb_ingredients + " ingrédients)");
+            System.out.println();
+        }
+        if (apres == null && recettes.isEmpty()) {
+            System.out.println("Aucune recette enregistrée.");
         }
+        if (recettes.size() < TAILLE_PAGE) {
+            break;
+        }
+        
+        System.out.print("Afficher les recettes suivantes? (O/N) : ");
+        if (!sc.nextLine().equalsIgnoreCase("O")) {
+            break;
+        }
+        apres = recettes.get(recettes.size() - 1);
+    }
+    System.out.println("------------------------------------------");
+}
+
+/**
+ * Affiche l'identifiant et le titre de chaque recette.
+ *
+ * @param recettes Le dépôt des recettes
+ * @throws SQLException En cas d'erreur SQL
+ */
+private static void afficherTitresRecettes(RecetteRepository recettes) throws SQLException {
+    System.out.println("\nRecettes disponibles :");
+    System.out.println("----------------------");
+    
+    for (Map.Entry<Integer, String> titre : recettes.listerTitres().entrySet()) {
+        System.out.println(titre.getKey() + ". " + titre.getValue());
     }
+    
+    System.out.println("----------------------\n");
 }
 
 /**
@@ -923,23 +1052,12 @@ private static void afficherRecettesParTemps() {
  * @param sc Scanner pour lire les entrées utilisateur
  */
 private static void afficherIngredientsPourRecette(Scanner sc) {
-    System.out.println("\nRecettes disponibles :");
-    System.out.println("----------------------");
-    
-    Statement stmtRecettes = null;
-    ResultSet rsRecettes = null;
+    Connection conn = null;
     try {
-        Connection conn = DatabaseConnection.getConnection();
-        stmtRecettes = conn.createStatement();
-        rsRecettes = stmtRecettes.executeQuery("SELECT id_recette, titre FROM Recette");
-        
-        while (rsRecettes.next()) {
-            int id = rsRecettes.getInt("id_recette");
-            String titre = rsRecettes.getString("titre");
-            System.out.println(id + ". " + titre);
-        }
+        conn = DatabaseConnection.getConnection();
+        RecetteRepository recettes = new RecetteRepository(conn);
+        afficherTitresRecettes(recettes);
         
-        System.out.println("----------------------\n");
         System.out.print("Entrez l'ID de la recette : ");
         int idRecette;
         try {
@@ -949,69 +1067,40 @@ private static void afficherIngredientsPourRecette(Scanner sc) {
             return;
         }
         
-        PreparedStatement pstmt = null;
-        ResultSet rs = null;
-        try {
-            pstmt = conn.prepareStatement(
-                "SELECT ingredient, quantite FROM Vue_Ingredients_Recette WHERE id_recette = ?");
-            pstmt.setInt(1, idRecette);
-            rs = pstmt.executeQuery();
-            
-            boolean found = false;
-            System.out.println("\nIngrédients pour la recette ID " + idRecette + " :");
-            System.out.println("---------------------------------------------");
-            
-            while (rs.next()) {
-                found = true;
-                String ingredient = rs.getString("ingredient");
-                String quantite = rs.getString("quantite");
-                System.out.println("- " + quantite + " de " + ingredient);
-            }
-            
-            if (!found) {
-                System.out.println("Aucun ingrédient trouvé pour cette recette ou recette inexistante.");
-            }
-            
-            System.out.println("---------------------------------------------");
-        } finally {
-            if (rs != null) rs.close();
-            if (pstmt != null) pstmt.close();
+        List<RecetteRepository.LigneIngredient> ingredients = recettes.listerIngredients(idRecette);
+        
+        System.out.println("\nIngrédients pour la recette ID " + idRecette + " :");
+        System.out.println("---------------------------------------------");
+        
+        for (RecetteRepository.LigneIngredient ligne : ingredients) {
+            System.out.println("- " + ligne.quantite + " de " + ligne.nom);
         }
+        
+        if (ingredients.isEmpty()) {
+            System.out.println("Aucun ingrédient trouvé pour cette recette ou recette inexistante.");
+        }
+        
+        System.out.println("---------------------------------------------");
     } catch (SQLException e) {
         System.out.println("Erreur lors de l'affichage des ingrédients : " + e.getMessage());
     } finally {
-        try {
-            if (rsRecettes != null) rsRecettes.close();
-            if (stmtRecettes != null) stmtRecettes.close();
-        } catch (SQLException e) {
-            System.out.println("Erreur lors de la fermeture des ressources : " + e.getMessage());
-        }
+        fermer(conn);
     }
 }
 
 /**
- * Affiche la cote santé d'une recette en utilisant le package SQL RECETTE_PKG.
+ * Affiche la cote santé d'une recette, calculée par {@link CoteSanteCalculateur}
+ * avec les mêmes règles que RECETTE_PKG.get_cote_sante.
  * 
  * @param sc Scanner pour lire les entrées utilisateur
  */
 private static void afficherCoteSanteRecette(Scanner sc) {
-    System.out.println("\nRecettes disponibles :");
-    System.out.println("----------------------");
-    
-    Statement stmtRecettes = null;
-    ResultSet rsRecettes = null;
+    Connection conn = null;
     try {
-        Connection conn = DatabaseConnection.getConnection();
-        stmtRecettes = conn.createStatement();
-        rsRecettes = stmtRecettes.executeQuery("SELECT id_recette, titre FROM Recette");
-        
-        while (rsRecettes.next()) {
-            int id = rsRecettes.getInt("id_recette");
-            String titre = rsRecettes.getString("titre");
-            System.out.println(id + ". " + titre);
-        }
+        conn = DatabaseConnection.getConnection();
+        RecetteRepository recettes = new RecetteRepository(conn);
+        afficherTitresRecettes(recettes);
         
-        System.out.println("----------------------\n");
         System.out.print("Entrez l'ID de la recette : ");
         
         int idRecette;
@@ -1022,110 +1111,254 @@ private static void afficherCoteSanteRecette(Scanner sc) {
             return;
         }
         
-        CallableStatement cstmt = null;
-        ResultSet rs = null;
+        // Titre, description, cote santé et ingrédients en une seule requête
+        CoteSanteCalculateur.FicheSante fiche = new CoteSanteCalculateur(conn).fiche(idRecette);
         
-        try {
-            // Récupérer la cote santé
-            cstmt = conn.prepareCall("{? = call RECETTE_PKG.get_cote_sante(?)}");
-            cstmt.registerOutParameter(1, Types.NUMERIC);
-            cstmt.setInt(2, idRecette);
-            cstmt.execute();
-            double coteSante = cstmt.getDouble(1);
-            cstmt.close();
-            
-            // Récupérer le titre et la description
-            PreparedStatement pstmt = conn.prepareStatement(
-                "SELECT titre, description FROM Recette WHERE id_recette = ?");
-            pstmt.setInt(1, idRecette);
-            rs = pstmt.executeQuery();
-            
-            if (rs.next()) {
-                String titre = rs.getString("titre");
-                String description = rs.getString("description");
-                
-                // Récupérer la liste des ingrédients
-                cstmt = conn.prepareCall("{? = call RECETTE_PKG.get_ingredients_texte(?)}");
-                cstmt.registerOutParameter(1, Types.VARCHAR);
-                cstmt.setInt(2, idRecette);
-                cstmt.execute();
-                String ingredients = cstmt.getString(1);
-                
-                System.out.println("\nDétails nutritionnels :");
-                System.out.println("----------------------");
-                System.out.println("Recette: " + titre);
-                System.out.println("Description: " + description);
-                System.out.println("Cote santé moyenne: " + coteSante + "/5");
-                System.out.println("Ingrédients: " + ingredients);
-                System.out.println("----------------------");
-            } else {
-                System.out.println("Recette non trouvée !");
-            }
-        } finally {
-            if (rs != null) rs.close();
-            if (cstmt != null) cstmt.close();
+        if (fiche != null) {
+            System.out.println("\nDétails nutritionnels :");
+            System.out.println("----------------------");
+            System.out.println("Recette: " + fiche.titre);
+            System.out.println("Description: " + fiche.description);
+            System.out.println("Cote santé moyenne: " + fiche.cote_sante + "/5");
+            System.out.println("Ingrédients: " + fiche.ingredients);
+            System.out.println("----------------------");
+        } else {
+            System.out.println("Recette non trouvée !");
         }
     } catch (SQLException e) {
         System.out.println("Erreur lors de l'affichage de la cote santé : " + e.getMessage());
     } finally {
+        fermer(conn);
+    }
+}
+
+/**
+ * Affiche le journal d'activité avec les numéros de suivi générés par la séquence,
+ * filtré par table, opération et période, page par page du plus récent au plus ancien.
+ * L'utilisateur peut ensuite suivre les nouvelles entrées au fil de l'eau.
+ *
+ * @param sc Scanner pour lire les entrées utilisateur
+ */
+private static void afficherJournalActivite(Scanner sc) {
+    System.out.print("Table (Auteur, Recette, Ingredient, Recette_Ingredient, vide pour toutes) : ");
+    String table = sc.nextLine().trim();
+    System.out.print("Opération (INSERT, UPDATE, DELETE, vide pour toutes) : ");
+    String operation = sc.nextLine().trim().toUpperCase();
+    System.out.print("Nombre d'heures à remonter (vide pour tout le journal) : ");
+    String heures = sc.nextLine().trim();
+    Timestamp debut = null;
+    if (!heures.isEmpty()) {
+        try {
+            debut = new Timestamp(System.currentTimeMillis() - Long.parseLong(heures) * 3_600_000L);
+        } catch (NumberFormatException e) {
+            System.out.println("Nombre d'heures invalide.");
+            return;
+        }
+    }
+    TraceRepository.Filtre filtre = new TraceRepository.Filtre(debut, null,
+            table.isEmpty() ? null : table, operation.isEmpty() ? null : operation);
+    
+    System.out.println("\nJournal d'activité :");
+    System.out.println("------------------");
+    
+    TraceRepository.Curseur avant = null;
+    TraceRepository.Curseur plusRecente = null;
+    while (true) {
+        TraceRepository.Page page;
+        Connection conn = null;
         try {
-            if (rsRecettes != null) rsRecettes.close();
-            if (stmtRecettes != null) stmtRecettes.close();
+            conn = DatabaseConnection.getConnection();
+            page = new TraceRepository(conn).lister(filtre, avant, TAILLE_PAGE);
         } catch (SQLException e) {
-            System.out.println("Erreur lors de la fermeture des ressources : " + e.getMessage());
+            System.out.println("Erreur lors de l'affichage du journal : " + e.getMessage());
+            return;
+        } finally {
+            fermer(conn);
+        }
+        
+        for (TraceRepository.Trace trace : page.traces) {
+            afficherTrace(trace);
+        }
+        if (plusRecente == null && !page.traces.isEmpty()) {
+            plusRecente = TraceRepository.Curseur.de(page.traces.get(0));
         }
+        if (avant == null && page.traces.isEmpty()) {
+            System.out.println("Aucune activité enregistrée.");
+        }
+        if (!page.suite) {
+            break;
+        }
+        
+        System.out.print("Afficher les entrées suivantes? (O/N) : ");
+        if (!sc.nextLine().equalsIgnoreCase("O")) {
+            break;
+        }
+        avant = page.curseur;
+    }
+    System.out.println("------------------");
+    
+    System.out.print("Suivre les nouvelles entrées? (O/N) : ");
+    if (sc.nextLine().equalsIgnoreCase("O")) {
+        suivreJournal(sc, filtre, plusRecente);
+    }
+}
+
+/**
+ * Affiche les nouvelles entrées du journal chaque seconde jusqu'à ce que l'utilisateur
+ * appuie sur Entrée.
+ *
+ * @param sc Scanner pour lire les entrées utilisateur
+ * @param filtre Les critères de sélection
+ * @param depuis La plus récente entrée déjà affichée, ou null
+ */
+private static void suivreJournal(Scanner sc, TraceRepository.Filtre filtre, TraceRepository.Curseur depuis) {
+    System.out.println("Suivi du journal (Entrée pour arrêter)...");
+    TraceRepository.Suivi suivi = new TraceRepository.Suivi(filtre, depuis, MARGE_SUIVI_MS);
+    try {
+        while (System.in.available() == 0) {
+            Connection conn = null;
+            try {
+                conn = DatabaseConnection.getConnection();
+                for (TraceRepository.Trace trace : suivi.nouvelles(new TraceRepository(conn), TAILLE_FETCH)) {
+                    afficherTrace(trace);
+                }
+            } catch (SQLException e) {
+                System.out.println("Erreur lors du suivi du journal : " + e.getMessage());
+                return;
+            } finally {
+                fermer(conn);
+            }
+            Thread.sleep(1000);
+        }
+        sc.nextLine();
+    } catch (IOException e) {
+        System.out.println("Erreur de lecture du clavier : " + e.getMessage());
+    } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
     }
 }
 
+private static void afficherTrace(TraceRepository.Trace trace) {
+    System.out.println("Suivi #" + trace.tracking_number + " - " + trace.operation_date);
+    System.out.println("  Opération: " + trace.operation_type + " sur " + trace.table_name);
+    System.out.println("  Enregistrement: " + trace.record_id + 
+        (trace.record_id2 > 0 ? ", " + trace.record_id2 : ""));
+    System.out.println();
+}
+
 /**
- * Affiche le journal d'activité avec les numéros de suivi générés par la séquence.
+ * Recherche des recettes par mots du titre, de la description, des instructions ou des
+ * ingrédients, dans l'index en mémoire plutôt qu'en base.
+ *
+ * @param sc Scanner pour lire les entrées utilisateur
  */
-private static void afficherJournalActivite() {
-    Statement stmt = null;
-    ResultSet rs = null;
+private static void rechercherRecettes(Scanner sc) {
+    System.out.print("Mots recherchés (terminer un mot par * pour chercher un préfixe) : ");
+    String requete = sc.nextLine();
+    
     try {
-        Connection conn = DatabaseConnection.getConnection();
-        stmt = conn.createStatement();
-        rs = stmt.executeQuery(
-            "SELECT id_trace, table_name, operation_type, operation_date, " +
-            "record_id, record_id2, tracking_number " +
-            "FROM Trace ORDER BY operation_date DESC");
+        long debut = System.nanoTime();
+        List<IndexRecherche.Resultat> resultats = IndexRecherche.partage().rechercher(requete, TAILLE_PAGE);
+        long duree = (System.nanoTime() - debut) / 1_000_000;
         
-        boolean found = false;
-        System.out.println("\nJournal d'activité :");
+        System.out.println("\nRésultats de la recherche :");
         System.out.println("------------------");
+        for (IndexRecherche.Resultat resultat : resultats) {
+            System.out.println("ID: " + resultat.id_recette + " - " + resultat.titre
+                    + String.format(" (pertinence %.2f)", resultat.score));
+        }
+        if (resultats.isEmpty()) {
+            System.out.println("Aucune recette trouvée.");
+        }
+        System.out.println("------------------");
+        System.out.println(resultats.size() + " résultat(s) en " + duree + " ms");
+    } catch (SQLException e) {
+        System.out.println("Erreur lors du chargement de l'index de recherche : " + e.getMessage());
+    }
+}
+
+/**
+ * Propose les recettes réalisables avec les ingrédients du frigo, puis celles auxquelles
+ * il ne manque que quelques ingrédients.
+ *
+ * @param sc Scanner pour lire les entrées utilisateur
+ */
+private static void cuisinerAvecFrigo(Scanner sc) {
+    afficherIngredients();
+    System.out.print("\nIDs des ingrédients de votre frigo, séparés par des virgules : ");
+    Set<Integer> frigo = new HashSet<>();
+    for (String id : sc.nextLine().split(",")) {
+        if (id.isBlank()) {
+            continue;
+        }
+        try {
+            frigo.add(Integer.parseInt(id.trim()));
+        } catch (NumberFormatException e) {
+            System.out.println("ID invalide ignoré : " + id.trim());
+        }
+    }
+    if (frigo.isEmpty()) {
+        System.out.println("Aucun ingrédient choisi. Opération annulée.");
+        return;
+    }
+    
+    Connection conn = null;
+    try {
+        MoteurFrigo moteur = MoteurFrigo.partage();
+        List<MoteurFrigo.Correspondance> realisables = moteur.realisables(frigo, TAILLE_PAGE);
+        List<MoteurFrigo.Correspondance> presque = moteur.presqueRealisables(frigo, 1, MANQUANTS_MAX, TAILLE_PAGE);
         
-        while (rs.next()) {
-            found = true;
-            int id = rs.getInt("id_trace");
-            String table = rs.getString("table_name");
-            String operation = rs.getString("operation_type");
-            Timestamp date = rs.getTimestamp("operation_date");
-            int recordId = rs.getInt("record_id");
-            int recordId2 = rs.getInt("record_id2");
-            int trackingNumber = rs.getInt("tracking_number");
-            
-            System.out.println("Suivi #" + trackingNumber + " - " + date);
-            System.out.println("  Opération: " + operation + " sur " + table);
-            System.out.println("  Enregistrement: " + recordId + 
-                (recordId2 > 0 ? ", " + recordId2 : ""));
-            System.out.println();
+        List<Integer> ids = new ArrayList<>();
+        for (MoteurFrigo.Correspondance c : realisables) {
+            ids.add(c.id_recette);
+        }
+        for (MoteurFrigo.Correspondance c : presque) {
+            ids.add(c.id_recette);
         }
+        conn = DatabaseConnection.getConnection();
+        Map<Integer, String> titres = new RecetteRepository(conn).titres(ids);
         
-        if (!found) {
-            System.out.println("Aucune activité enregistrée.");
+        System.out.println("\nRecettes réalisables :");
+        System.out.println("------------------");
+        for (MoteurFrigo.Correspondance c : realisables) {
+            System.out.println("ID: " + c.id_recette + " - " + titres.get(c.id_recette));
+        }
+        if (realisables.isEmpty()) {
+            System.out.println("Aucune recette réalisable avec ces ingrédients.");
         }
         
+        System.out.println("\nIl vous manque au plus " + MANQUANTS_MAX + " ingrédient(s) pour :");
+        System.out.println("------------------");
+        for (MoteurFrigo.Correspondance c : presque) {
+            StringBuilder manquants = new StringBuilder();
+            for (int id : c.ingredientsManquants) {
+                Ingredient ingredient = IngredientCache.partage().trouver(id);
+                if (manquants.length() > 0) {
+                    manquants.append(", ");
+                }
+                manquants.append(ingredient != null ? ingredient.nom : "#" + id);
+            }
+            System.out.println("ID: " + c.id_recette + " - " + titres.get(c.id_recette));
+            System.out.println("  Manque: " + manquants);
+        }
         System.out.println("------------------");
     } catch (SQLException e) {
-        System.out.println("Erreur lors de l'affichage du journal : " + e.getMessage());
+        System.out.println("Erreur lors de la recherche des recettes : " + e.getMessage());
     } finally {
-        try {
-            if (rs != null) rs.close();
-            if (stmt != null) stmt.close();
-        } catch (SQLException e) {
-            System.out.println("Erreur lors de la fermeture des ressources : " + e.getMessage());
-        }
+        fermer(conn);
+    }
+}
+
+/**
+ * Rend une connexion au pool.
+ *
+ * @param conn La connexion empruntée, ou null
+ */
+private static void fermer(Connection conn) {
+    try {
+        if (conn != null) conn.close();
+    } catch (SQLException e) {
+        System.out.println("Erreur lors de la fermeture des ressources : " + e.getMessage());
     }
 }
-}
\ No newline at end of file
+}
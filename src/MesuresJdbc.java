@@ -0,0 +1,551 @@
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Mesures de tous les appels à la base : latence de chaque exécution, lignes modifiées,
+ * allers-retours et requêtes lentes, regroupées par forme de requête.
+ * <p>
+ * {@link ConnectionPool} enveloppe chaque connexion physique avec {@link #instrumenter(Connection)} :
+ * les Statement, PreparedStatement et CallableStatement qu'elle crée sont des mandataires qui
+ * chronomètrent les appels execute*, commit et rollback. Les ResultSet sont ceux du pilote,
+ * sans mandataire : la lecture des lignes ne coûte rien de plus, mais n'est pas mesurée. La
+ * forme d'une requête est son texte SQL où les littéraux et les listes de paramètres sont
+ * remplacés par ?. Une requête préparée calcule sa forme une seule fois ; comme les requêtes
+ * restent dans le {@link StatementCache}, une exécution ne coûte qu'un appel à System.nanoTime
+ * et quelques compteurs sans verrou.
+ * <p>
+ * Les lignes comptées sont celles que rapportent executeUpdate et executeBatch ; les
+ * allers-retours, un par exécution, validation ou annulation, ne comptent pas les lectures
+ * de lignes supplémentaires.
+ * <p>
+ * Les mesures sont exposées par JMX (BlogRecette:type=MesuresJdbc), au format texte de
+ * Prometheus par {@link #texte()} et sur la route GET /metriques de {@link ServeurApi}.
+ * Une exécution qui dépasse recette.mesures.lenteMs (200 ms par défaut) est signalée.
+ * Les erreurs rendues à l'utilisateur par {@link #signalerErreur(String, SQLException)}
+ * sont comptées par message.
+ * -Drecette.mesures=false désactive l'instrumentation.
+ */
+public class MesuresJdbc implements MesuresJdbcMXBean {
+
+    /** Vrai si les connexions du pool sont instrumentées. */
+    public static final boolean ACTIF = Boolean.parseBoolean(System.getProperty("recette.mesures", "true"));
+    /** Au-delà, les requêtes sont regroupées sous la forme AUTRES. */
+    private static final int FORMES_MAX = Integer.getInteger("recette.mesures.formesMax", 1000);
+    private static final String AUTRES = "(autres)";
+    private static final String NOM_JMX = "BlogRecette:type=MesuresJdbc";
+
+    private static final MesuresJdbc PARTAGE = creerPartage();
+
+    private final Map<String, Forme> formes = new ConcurrentHashMap<>();
+    /** Formes déjà calculées pour un texte SQL brut. */
+    private final Map<String, Forme> parTexte = new ConcurrentHashMap<>();
+    private final LongAdder lentes = new LongAdder();
+    /** Erreurs signalées à l'utilisateur, par message. */
+    private final Map<String, LongAdder> signalees = new ConcurrentHashMap<>();
+    private volatile long seuilLentNanos = Long.getLong("recette.mesures.lenteMs", 200) * 1_000_000;
+
+    /**
+     * @return Les mesures partagées par toute l'application
+     */
+    public static MesuresJdbc partage() {
+        return PARTAGE;
+    }
+
+    private static MesuresJdbc creerPartage() {
+        MesuresJdbc mesures = new MesuresJdbc();
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(mesures, new ObjectName(NOM_JMX));
+        } catch (JMException | RuntimeException e) {
+            System.out.println("Mesures JDBC non publiées par JMX : " + e.getMessage());
+        }
+        return mesures;
+    }
+
+    /**
+     * Enveloppe une connexion pour mesurer les requêtes qui y sont exécutées.
+     *
+     * @param conn La connexion physique
+     * @return La connexion instrumentée
+     */
+    public Connection instrumenter(Connection conn) {
+        return (Connection) Proxy.newProxyInstance(MesuresJdbc.class.getClassLoader(),
+                new Class<?>[] {Connection.class}, new ConnexionMesuree(conn));
+    }
+
+    /**
+     * Retourne la forme d'une requête, créée au besoin.
+     *
+     * @param sql Le texte SQL
+     * @return Les mesures de la forme
+     */
+    Forme forme(String sql) {
+        Forme forme = parTexte.get(sql);
+        if (forme != null) {
+            return forme;
+        }
+        String texte = normaliser(sql);
+        forme = formes.get(texte);
+        if (forme == null) {
+            if (formes.size() >= FORMES_MAX) {
+                texte = AUTRES;
+            }
+            forme = formes.computeIfAbsent(texte, Forme::new);
+        }
+        if (parTexte.size() < FORMES_MAX) {
+            parTexte.put(sql, forme);
+        }
+        return forme;
+    }
+
+    /**
+     * Remplace les littéraux par ? et les listes de paramètres par « ?, ... », et réduit
+     * les espaces : deux requêtes qui ne diffèrent que par leurs valeurs ont la même forme.
+     *
+     * @param sql Le texte SQL
+     * @return La forme de la requête
+     */
+    static String normaliser(String sql) {
+        StringBuilder forme = new StringBuilder(sql.length());
+        int n = sql.length();
+        int i = 0;
+        while (i < n) {
+            char c = sql.charAt(i);
+            if (Character.isWhitespace(c)) {
+                while (i < n && Character.isWhitespace(sql.charAt(i))) {
+                    i++;
+                }
+                if (forme.length() > 0 && i < n) {
+                    forme.append(' ');
+                }
+            } else if (c == '\'') {
+                i++;
+                while (i < n) {
+                    if (sql.charAt(i) == '\'') {
+                        if (i + 1 < n && sql.charAt(i + 1) == '\'') {
+                            i += 2;
+                            continue;
+                        }
+                        break;
+                    }
+                    i++;
+                }
+                i++;
+                forme.append('?');
+            } else if (Character.isDigit(c) && (forme.length() == 0 || !partieDeNom(forme.charAt(forme.length() - 1)))) {
+                while (i < n && (Character.isDigit(sql.charAt(i)) || sql.charAt(i) == '.')) {
+                    i++;
+                }
+                forme.append('?');
+            } else {
+                forme.append(c);
+                i++;
+            }
+        }
+        return forme.toString().replaceAll("\\?(\\s*,\\s*\\?)+", "?, ...");
+    }
+
+    private static boolean partieDeNom(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$' || c == '#';
+    }
+
+    /**
+     * @return Un instantané des mesures de chaque forme, de la plus coûteuse à la moins coûteuse
+     */
+    @Override
+    public List<ResumeForme> getFormes() {
+        List<ResumeForme> resumes = new ArrayList<>(formes.size());
+        for (Forme forme : formes.values()) {
+            resumes.add(new ResumeForme(forme));
+        }
+        resumes.sort((a, b) -> Double.compare(b.tempsTotalMs, a.tempsTotalMs));
+        return resumes;
+    }
+
+    @Override
+    public long getExecutions() {
+        long total = 0;
+        for (Forme forme : formes.values()) {
+            total += forme.latences.nombre();
+        }
+        return total;
+    }
+
+    @Override
+    public long getErreurs() {
+        long total = 0;
+        for (Forme forme : formes.values()) {
+            total += forme.erreurs.sum();
+        }
+        return total;
+    }
+
+    @Override
+    public long getErreursSignalees() {
+        long total = 0;
+        for (LongAdder compteur : signalees.values()) {
+            total += compteur.sum();
+        }
+        return total;
+    }
+
+    /**
+     * Affiche une erreur SQL avec son état SQL et le code d'erreur du pilote, et la compte
+     * sous son message.
+     *
+     * @param message Le message affiché, qui décrit l'opération en échec
+     * @param e L'erreur
+     */
+    public void signalerErreur(String message, SQLException e) {
+        StringBuilder sb = new StringBuilder(message).append(" : ").append(e.getMessage());
+        sb.append(" (SQLState ").append(e.getSQLState()).append(", code ").append(e.getErrorCode()).append(')');
+        for (SQLException suivante = e.getNextException(); suivante != null; suivante = suivante.getNextException()) {
+            sb.append("\n  puis : ").append(suivante.getMessage());
+        }
+        System.out.println(sb);
+        if (signalees.size() < FORMES_MAX || signalees.containsKey(message)) {
+            signalees.computeIfAbsent(message, m -> new LongAdder()).increment();
+        } else {
+            signalees.computeIfAbsent(AUTRES, m -> new LongAdder()).increment();
+        }
+    }
+
+    @Override
+    public long getRequetesLentes() {
+        return lentes.sum();
+    }
+
+    @Override
+    public long getSeuilLentMs() {
+        return seuilLentNanos / 1_000_000;
+    }
+
+    @Override
+    public void setSeuilLentMs(long seuilMs) {
+        seuilLentNanos = seuilMs * 1_000_000;
+    }
+
+    @Override
+    public void reinitialiser() {
+        // Les requêtes en cache gardent leur forme : on remet ses compteurs à zéro sans la retirer
+        for (Forme forme : formes.values()) {
+            forme.reinitialiser();
+        }
+        lentes.reset();
+        signalees.clear();
+    }
+
+    /**
+     * Rend les mesures au format texte de Prometheus : un résumé de latence (centiles 0,5,
+     * 0,95 et 0,99, en secondes) et des compteurs par forme de requête.
+     *
+     * @return Le texte des mesures
+     */
+    @Override
+    public String texte() {
+        List<ResumeForme> resumes = getFormes();
+        StringBuilder sb = new StringBuilder();
+        sb.append("# HELP recette_jdbc_latence_secondes Durée des exécutions par forme de requête.\n");
+        sb.append("# TYPE recette_jdbc_latence_secondes summary\n");
+        for (ResumeForme r : resumes) {
+            String forme = etiquette(r.sql);
+            ligne(sb, "recette_jdbc_latence_secondes", forme, ",quantile=\"0.5\"", r.p50Ms / 1000);
+            ligne(sb, "recette_jdbc_latence_secondes", forme, ",quantile=\"0.95\"", r.p95Ms / 1000);
+            ligne(sb, "recette_jdbc_latence_secondes", forme, ",quantile=\"0.99\"", r.p99Ms / 1000);
+            ligne(sb, "recette_jdbc_latence_secondes_sum", forme, "", r.tempsTotalMs / 1000);
+            ligne(sb, "recette_jdbc_latence_secondes_count", forme, "", r.executions);
+        }
+        compteur(sb, resumes, "recette_jdbc_lignes_total", "Lignes modifiées.", r -> r.lignes);
+        compteur(sb, resumes, "recette_jdbc_allers_retours_total", "Allers-retours estimés.", r -> r.allersRetours);
+        compteur(sb, resumes, "recette_jdbc_erreurs_total", "Exécutions terminées par une exception.", r -> r.erreurs);
+        compteur(sb, resumes, "recette_jdbc_lentes_total", "Exécutions plus longues que le seuil.", r -> r.lentes);
+        sb.append("# HELP recette_erreurs_signalees_total Erreurs SQL rendues à l'utilisateur, par message.\n");
+        sb.append("# TYPE recette_erreurs_signalees_total counter\n");
+        for (Map.Entry<String, LongAdder> e : signalees.entrySet()) {
+            sb.append("recette_erreurs_signalees_total{message=\"").append(etiquette(e.getKey())).append("\"} ")
+                    .append(e.getValue().sum()).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private interface Valeur {
+        long de(ResumeForme resume);
+    }
+
+    private static void compteur(StringBuilder sb, List<ResumeForme> resumes, String nom, String aide, Valeur valeur) {
+        sb.append("# HELP ").append(nom).append(' ').append(aide).append('\n');
+        sb.append("# TYPE ").append(nom).append(" counter\n");
+        for (ResumeForme r : resumes) {
+            ligne(sb, nom, etiquette(r.sql), "", valeur.de(r));
+        }
+    }
+
+    private static void ligne(StringBuilder sb, String nom, String forme, String autres, double valeur) {
+        sb.append(nom).append("{forme=\"").append(forme).append('"').append(autres).append("} ");
+        if (valeur == Math.rint(valeur)) {
+            sb.append((long) valeur);
+        } else {
+            sb.append(String.format(Locale.ROOT, "%.6f", valeur));
+        }
+        sb.append('\n');
+    }
+
+    private static String etiquette(String sql) {
+        return sql.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private void signalerLente(Forme forme, long nanos) {
+        lentes.increment();
+        forme.lentes.increment();
+        System.out.println("Requête lente (" + nanos / 1_000_000 + " ms) : " + forme.sql);
+    }
+
+    /**
+     * Mesures d'une forme de requête.
+     */
+    static final class Forme {
+        final String sql;
+        /** Durées d'exécution, en microsecondes. */
+        final Histogramme latences = new Histogramme();
+        final LongAdder lignes = new LongAdder();
+        final LongAdder allersRetours = new LongAdder();
+        final LongAdder erreurs = new LongAdder();
+        final LongAdder lentes = new LongAdder();
+
+        Forme(String sql) {
+            this.sql = sql;
+        }
+
+        void reinitialiser() {
+            latences.reinitialiser();
+            lignes.reset();
+            allersRetours.reset();
+            erreurs.reset();
+            lentes.reset();
+        }
+    }
+
+    /**
+     * Instantané des mesures d'une forme de requête ; les durées sont en millisecondes.
+     */
+    public static final class ResumeForme {
+        private final String sql;
+        private final long executions;
+        private final long erreurs;
+        private final long lentes;
+        private final long lignes;
+        private final long allersRetours;
+        private final double tempsTotalMs;
+        private final double moyenneMs;
+        private final double p50Ms;
+        private final double p95Ms;
+        private final double p99Ms;
+        private final double maxMs;
+
+        ResumeForme(Forme forme) {
+            Histogramme h = forme.latences;
+            this.sql = forme.sql;
+            this.executions = h.nombre();
+            this.erreurs = forme.erreurs.sum();
+            this.lentes = forme.lentes.sum();
+            this.lignes = forme.lignes.sum();
+            this.allersRetours = forme.allersRetours.sum();
+            this.tempsTotalMs = h.somme() / 1000.0;
+            this.moyenneMs = h.moyenne() / 1000.0;
+            this.p50Ms = h.centile(0.5) / 1000.0;
+            this.p95Ms = h.centile(0.95) / 1000.0;
+            this.p99Ms = h.centile(0.99) / 1000.0;
+            this.maxMs = h.max() / 1000.0;
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        public long getExecutions() {
+            return executions;
+        }
+
+        public long getErreurs() {
+            return erreurs;
+        }
+
+        public long getLentes() {
+            return lentes;
+        }
+
+        public long getLignes() {
+            return lignes;
+        }
+
+        public long getAllersRetours() {
+            return allersRetours;
+        }
+
+        public double getTempsTotalMs() {
+            return tempsTotalMs;
+        }
+
+        public double getMoyenneMs() {
+            return moyenneMs;
+        }
+
+        public double getP50Ms() {
+            return p50Ms;
+        }
+
+        public double getP95Ms() {
+            return p95Ms;
+        }
+
+        public double getP99Ms() {
+            return p99Ms;
+        }
+
+        public double getMaxMs() {
+            return maxMs;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%d exéc., moy. %.2f ms, p99 %.2f ms, max %.2f ms, %d lignes : %s",
+                    executions, moyenneMs, p99Ms, maxMs, lignes, sql);
+        }
+    }
+
+    // ---------------------------------------------------------------- mandataires
+
+    private static Object appeler(Object cible, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(cible, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Chronomètre un appel et l'enregistre dans la forme donnée.
+     */
+    private Object mesurer(Forme forme, Object cible, Method method, Object[] args) throws Throwable {
+        long debut = System.nanoTime();
+        Object resultat;
+        try {
+            resultat = appeler(cible, method, args);
+        } catch (Throwable e) {
+            forme.erreurs.increment();
+            throw e;
+        } finally {
+            long duree = System.nanoTime() - debut;
+            forme.latences.enregistrer(duree / 1000);
+            forme.allersRetours.increment();
+            if (duree >= seuilLentNanos) {
+                signalerLente(forme, duree);
+            }
+        }
+        return resultat;
+    }
+
+    /**
+     * Connexion instrumentée : ses requêtes sont enveloppées, commit et rollback chronométrés.
+     */
+    private final class ConnexionMesuree implements InvocationHandler {
+        private final Connection cible;
+
+        ConnexionMesuree(Connection cible) {
+            this.cible = cible;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "prepareStatement":
+                    return envelopper(PreparedStatement.class, appeler(cible, method, args), forme((String) args[0]), proxy);
+                case "prepareCall":
+                    return envelopper(CallableStatement.class, appeler(cible, method, args), forme((String) args[0]), proxy);
+                case "createStatement":
+                    return envelopper(Statement.class, appeler(cible, method, args), null, proxy);
+                case "commit":
+                    return mesurer(forme("COMMIT"), cible, method, args);
+                case "rollback":
+                    return mesurer(forme("ROLLBACK"), cible, method, args);
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    return appeler(cible, method, args);
+            }
+        }
+
+        private Object envelopper(Class<?> type, Object requete, Forme forme, Object connexion) {
+            return Proxy.newProxyInstance(MesuresJdbc.class.getClassLoader(), new Class<?>[] {type},
+                    new RequeteMesuree((Statement) requete, forme, (Connection) connexion));
+        }
+    }
+
+    /**
+     * Requête instrumentée. Une requête préparée a sa forme ; pour un simple Statement,
+     * la forme est celle du texte SQL passé à chaque exécution.
+     */
+    private final class RequeteMesuree implements InvocationHandler {
+        private final Statement cible;
+        private final Forme forme;
+        private final Connection connexion;
+
+        RequeteMesuree(Statement cible, Forme forme, Connection connexion) {
+            this.cible = cible;
+            this.forme = forme;
+            this.connexion = connexion;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String nom = method.getName();
+            if (nom.startsWith("execute")) {
+                Forme f = forme;
+                if (f == null) {
+                    f = args != null && args.length > 0 && args[0] instanceof String ? forme((String) args[0]) : forme("(lot)");
+                }
+                Object resultat = mesurer(f, cible, method, args);
+                compterLignes(f, resultat);
+                return resultat;
+            }
+            switch (nom) {
+                case "getConnection":
+                    return connexion;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    return appeler(cible, method, args);
+            }
+        }
+
+        /** Ajoute les lignes modifiées rapportées par executeUpdate ou executeBatch. */
+        private void compterLignes(Forme f, Object resultat) {
+            if (resultat instanceof Integer || resultat instanceof Long) {
+                f.lignes.add(Math.max(0, ((Number) resultat).longValue()));
+            } else if (resultat instanceof int[]) {
+                for (int n : (int[]) resultat) {
+                    f.lignes.add(Math.max(0, n));
+                }
+            } else if (resultat instanceof long[]) {
+                for (long n : (long[]) resultat) {
+                    f.lignes.add(Math.max(0, n));
+                }
+            }
+        }
+    }
+}
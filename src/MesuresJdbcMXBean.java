@@ -0,0 +1,52 @@
+import java.util.List;
+
+/**
+ * Interface JMX de {@link MesuresJdbc}, enregistrée sous BlogRecette:type=MesuresJdbc.
+ */
+public interface MesuresJdbcMXBean {
+
+    /**
+     * @return Le nombre total d'exécutions mesurées
+     */
+    long getExecutions();
+
+    /**
+     * @return Le nombre d'exécutions terminées par une exception
+     */
+    long getErreurs();
+
+    /**
+     * @return Le nombre d'erreurs SQL signalées à l'utilisateur
+     */
+    long getErreursSignalees();
+
+    /**
+     * @return Le nombre d'exécutions plus longues que le seuil de requête lente
+     */
+    long getRequetesLentes();
+
+    /**
+     * @return Le seuil de requête lente, en millisecondes
+     */
+    long getSeuilLentMs();
+
+    /**
+     * @param seuilMs Le nouveau seuil de requête lente, en millisecondes
+     */
+    void setSeuilLentMs(long seuilMs);
+
+    /**
+     * @return Les mesures de chaque forme de requête, de la plus coûteuse à la moins coûteuse
+     */
+    List<MesuresJdbc.ResumeForme> getFormes();
+
+    /**
+     * @return Les mesures au format texte de Prometheus
+     */
+    String texte();
+
+    /**
+     * Remet toutes les mesures à zéro.
+     */
+    void reinitialiser();
+}
@@ -0,0 +1,474 @@
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Moteur « Que puis-je cuisiner ? » : à partir des ingrédients d'un frigo, trouve les recettes
+ * réalisables, presque réalisables (au plus k ingrédients manquants) ou les plus proches
+ * au sens de Jaccard, sur tout le catalogue et sans requête SQL.
+ * <p>
+ * Chaque recette est numérotée par un rang interne et son ensemble d'ingrédients est gardé
+ * trié. Pour chaque ingrédient, l'ensemble des recettes qui l'utilisent est un bitset
+ * compressé sur ces rangs : liste triée tant qu'il est creux, mots de 64 bits quand il
+ * devient dense. Une requête parcourt les ensembles des seuls ingrédients du frigo et compte,
+ * par recette, les ingrédients en commun ; le nombre d'ingrédients manquants et l'indice
+ * de Jaccard s'en déduisent. Seules les recettes partageant au moins un ingrédient avec
+ * le frigo sont proposées.
+ * <p>
+ * Le moteur est chargé depuis Recette_Ingredient à la première requête, puis rafraîchi
+ * en rejouant les entrées du journal d'activité sur Recette_Ingredient apparues depuis.
+ */
+public class MoteurFrigo {
+
+    private static final String SQL_LIENS =
+        "SELECT id_recette, id_ingredient FROM Recette_Ingredient ORDER BY id_recette, id_ingredient";
+    private static final TraceRepository.Filtre FILTRE_LIENS =
+        new TraceRepository.Filtre(null, null, "Recette_Ingredient", null);
+
+    private static final MoteurFrigo PARTAGE = new MoteurFrigo(
+            Long.getLong("recette.frigo.rafraichissementMs", 1000),
+            Long.getLong("recette.journal.margeSuiviMs", 5000));
+
+    private final long rafraichissementMs;
+    private final long margeMs;
+    private final ReentrantReadWriteLock verrou = new ReentrantReadWriteLock();
+    private volatile boolean charge;
+    private TraceRepository.Suivi suivi;
+    private volatile long dernierRafraichissement;
+
+    // Recettes, par rang interne
+    private int[] ids = new int[1024];
+    private int[][] ingredients = new int[1024][];
+    private int nbRecettes;
+    private final Map<Integer, Integer> rangs = new HashMap<>();
+
+    /** Recettes utilisant chaque ingrédient, indexées par id_ingredient. */
+    private Occurrences[] occurrences = new Occurrences[256];
+
+    /** Compteurs par rang de recette, réutilisés d'une requête à l'autre par chaque thread. */
+    private final ThreadLocal<int[]> compteurs = ThreadLocal.withInitial(() -> new int[0]);
+
+    /**
+     * Crée un moteur vide.
+     *
+     * @param rafraichissementMs L'intervalle minimal entre deux lectures du journal
+     * @param margeMs La durée relue avant le curseur du journal (voir {@link TraceRepository.Suivi})
+     */
+    public MoteurFrigo(long rafraichissementMs, long margeMs) {
+        this.rafraichissementMs = rafraichissementMs;
+        this.margeMs = margeMs;
+    }
+
+    /**
+     * @return Le moteur partagé par l'application
+     */
+    public static MoteurFrigo partage() {
+        return PARTAGE;
+    }
+
+    /**
+     * Recettes dont tous les ingrédients sont dans le frigo.
+     *
+     * @param frigo Les identifiants des ingrédients disponibles
+     * @param max Le nombre maximal de résultats
+     * @return Les recettes réalisables, les plus riches en ingrédients d'abord
+     * @throws SQLException Si le chargement ou le rafraîchissement échoue
+     */
+    public List<Correspondance> realisables(Collection<Integer> frigo, int max) throws SQLException {
+        return presqueRealisables(frigo, 0, max);
+    }
+
+    /**
+     * Recettes auxquelles il manque au plus k ingrédients.
+     *
+     * @param frigo Les identifiants des ingrédients disponibles
+     * @param manquantsMax Le nombre maximal d'ingrédients manquants
+     * @param max Le nombre maximal de résultats
+     * @return Les recettes, par nombre de manquants croissant puis d'ingrédients communs décroissant
+     * @throws SQLException Si le chargement ou le rafraîchissement échoue
+     */
+    public List<Correspondance> presqueRealisables(Collection<Integer> frigo, int manquantsMax, int max)
+            throws SQLException {
+        return presqueRealisables(frigo, 0, manquantsMax, max);
+    }
+
+    /**
+     * Recettes auxquelles il manque entre manquantsMin et manquantsMax ingrédients.
+     *
+     * @param frigo Les identifiants des ingrédients disponibles
+     * @param manquantsMin Le nombre minimal d'ingrédients manquants
+     * @param manquantsMax Le nombre maximal d'ingrédients manquants
+     * @param max Le nombre maximal de résultats
+     * @return Les recettes, par nombre de manquants croissant puis d'ingrédients communs décroissant
+     * @throws SQLException Si le chargement ou le rafraîchissement échoue
+     */
+    public List<Correspondance> presqueRealisables(Collection<Integer> frigo, int manquantsMin, int manquantsMax,
+                                                   int max) throws SQLException {
+        return chercher(frigo, max, (communs, taille) -> taille - communs >= manquantsMin
+                        && taille - communs <= manquantsMax,
+                Comparator.comparingInt((Correspondance c) -> c.manquants)
+                        .thenComparing(Comparator.comparingInt((Correspondance c) -> c.communs).reversed())
+                        .thenComparingInt(c -> c.id_recette));
+    }
+
+    /**
+     * Recettes les plus proches du frigo selon l'indice de Jaccard
+     * |recette ∩ frigo| / |recette ∪ frigo|.
+     *
+     * @param frigo Les identifiants des ingrédients disponibles
+     * @param max Le nombre maximal de résultats
+     * @return Les recettes, de la plus proche à la moins proche
+     * @throws SQLException Si le chargement ou le rafraîchissement échoue
+     */
+    public List<Correspondance> similaires(Collection<Integer> frigo, int max) throws SQLException {
+        return chercher(frigo, max, (communs, taille) -> true,
+                Comparator.comparingDouble((Correspondance c) -> c.jaccard).reversed()
+                        .thenComparingInt(c -> c.id_recette));
+    }
+
+    /**
+     * Applique les changements de Recette_Ingredient consignés dans le journal depuis
+     * le dernier rafraîchissement.
+     *
+     * @throws SQLException En cas d'erreur de lecture du journal
+     */
+    public void rafraichir() throws SQLException {
+        verrou.writeLock().lock();
+        try {
+            if (!charge) {
+                charger();
+                return;
+            }
+            List<TraceRepository.Trace> nouvelles;
+            try (Connection conn = DatabaseConnection.getConnection()) {
+                nouvelles = suivi.nouvelles(new TraceRepository(conn), 1000);
+            }
+            for (TraceRepository.Trace trace : nouvelles) {
+                if ("INSERT".equals(trace.operation_type)) {
+                    lier(trace.record_id, trace.record_id2);
+                } else if ("DELETE".equals(trace.operation_type)) {
+                    delier(trace.record_id, trace.record_id2);
+                }
+            }
+            dernierRafraichissement = System.currentTimeMillis();
+        } finally {
+            verrou.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        verrou.readLock().lock();
+        try {
+            return "MoteurFrigo[recettes=" + rangs.size() + ", charge=" + charge + "]";
+        } finally {
+            verrou.readLock().unlock();
+        }
+    }
+
+    private interface Critere {
+        boolean retenir(int communs, int taille);
+    }
+
+    private List<Correspondance> chercher(Collection<Integer> frigo, int max, Critere critere,
+                                          Comparator<Correspondance> ordre) throws SQLException {
+        if (!charge || System.currentTimeMillis() - dernierRafraichissement >= rafraichissementMs) {
+            rafraichir();
+        }
+        int[] cles = trier(frigo);
+        if (cles.length == 0 || max < 1) {
+            return Collections.emptyList();
+        }
+
+        verrou.readLock().lock();
+        try {
+            int[] communs = compteurs.get();
+            if (communs.length < nbRecettes) {
+                communs = new int[ids.length];
+                compteurs.set(communs);
+            }
+            // Rangs touchés, pour ne remettre à zéro que ceux-là
+            int[] touches = new int[64];
+            int nbTouches = 0;
+            for (int idIngredient : cles) {
+                Occurrences o = idIngredient < occurrences.length ? occurrences[idIngredient] : null;
+                if (o == null) {
+                    continue;
+                }
+                if (o.mots != null) {
+                    for (int m = 0; m < o.mots.length; m++) {
+                        long mot = o.mots[m];
+                        while (mot != 0) {
+                            int rang = (m << 6) + Long.numberOfTrailingZeros(mot);
+                            mot &= mot - 1;
+                            if (communs[rang]++ == 0) {
+                                if (nbTouches == touches.length) {
+                                    touches = Arrays.copyOf(touches, nbTouches * 2);
+                                }
+                                touches[nbTouches++] = rang;
+                            }
+                        }
+                    }
+                } else {
+                    for (int i = 0; i < o.taille; i++) {
+                        int rang = o.rangs[i];
+                        if (communs[rang]++ == 0) {
+                            if (nbTouches == touches.length) {
+                                touches = Arrays.copyOf(touches, nbTouches * 2);
+                            }
+                            touches[nbTouches++] = rang;
+                        }
+                    }
+                }
+            }
+
+            PriorityQueue<Correspondance> meilleures = new PriorityQueue<>(max + 1, ordre.reversed());
+            for (int t = 0; t < nbTouches; t++) {
+                int rang = touches[t];
+                int nb = communs[rang];
+                communs[rang] = 0;
+                int taille = ingredients[rang].length;
+                if (!critere.retenir(nb, taille)) {
+                    continue;
+                }
+                Correspondance c = new Correspondance(ids[rang], nb, taille - nb,
+                        (double) nb / (taille + cles.length - nb), rang);
+                meilleures.add(c);
+                if (meilleures.size() > max) {
+                    meilleures.poll();
+                }
+            }
+
+            Correspondance[] resultats = new Correspondance[meilleures.size()];
+            for (int i = resultats.length - 1; i >= 0; i--) {
+                resultats[i] = meilleures.poll();
+                resultats[i].ingredientsManquants = difference(ingredients[resultats[i].rang], cles);
+            }
+            return Arrays.asList(resultats);
+        } finally {
+            verrou.readLock().unlock();
+        }
+    }
+
+    // ---------------------------------------------------------------- chargement
+
+    private void charger() throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            // Le curseur du journal est pris avant la lecture des liaisons : une écriture
+            // concurrente sera rejouée, ce qui est sans effet si elle a déjà été lue.
+            TraceRepository.Page derniere = new TraceRepository(conn).lister(FILTRE_LIENS, null, 1);
+            suivi = new TraceRepository.Suivi(FILTRE_LIENS, derniere.curseur, margeMs);
+
+            PreparedStatement pstmt = StatementCache.pour(conn).preparer(SQL_LIENS);
+            pstmt.setFetchSize(10_000);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                int courante = -1;
+                int[] liste = new int[16];
+                int taille = 0;
+                while (rs.next()) {
+                    int idRecette = rs.getInt(1);
+                    if (idRecette != courante && taille > 0) {
+                        ajouterRecette(courante, Arrays.copyOf(liste, taille));
+                        taille = 0;
+                    }
+                    courante = idRecette;
+                    if (taille == liste.length) {
+                        liste = Arrays.copyOf(liste, taille * 2);
+                    }
+                    liste[taille++] = rs.getInt(2);
+                }
+                if (taille > 0) {
+                    ajouterRecette(courante, Arrays.copyOf(liste, taille));
+                }
+            }
+        }
+        charge = true;
+        dernierRafraichissement = System.currentTimeMillis();
+    }
+
+    private void ajouterRecette(int idRecette, int[] ensemble) {
+        int rang = rang(idRecette);
+        ingredients[rang] = ensemble;
+        for (int idIngredient : ensemble) {
+            occurrences(idIngredient).ajouter(rang);
+        }
+    }
+
+    // ---------------------------------------------------------------- mises à jour
+
+    private void lier(int idRecette, int idIngredient) {
+        int rang = rang(idRecette);
+        int[] ensemble = ingredients[rang];
+        int position = Arrays.binarySearch(ensemble, idIngredient);
+        if (position >= 0) {
+            return;
+        }
+        position = -position - 1;
+        int[] nouvel = new int[ensemble.length + 1];
+        System.arraycopy(ensemble, 0, nouvel, 0, position);
+        nouvel[position] = idIngredient;
+        System.arraycopy(ensemble, position, nouvel, position + 1, ensemble.length - position);
+        ingredients[rang] = nouvel;
+        occurrences(idIngredient).ajouter(rang);
+    }
+
+    private void delier(int idRecette, int idIngredient) {
+        Integer rang = rangs.get(idRecette);
+        if (rang == null) {
+            return;
+        }
+        int[] ensemble = ingredients[rang];
+        int position = Arrays.binarySearch(ensemble, idIngredient);
+        if (position < 0) {
+            return;
+        }
+        int[] nouvel = new int[ensemble.length - 1];
+        System.arraycopy(ensemble, 0, nouvel, 0, position);
+        System.arraycopy(ensemble, position + 1, nouvel, position, nouvel.length - position);
+        ingredients[rang] = nouvel;
+        occurrences[idIngredient].retirer(rang);
+    }
+
+    private int rang(int idRecette) {
+        Integer rang = rangs.get(idRecette);
+        if (rang != null) {
+            return rang;
+        }
+        if (nbRecettes == ids.length) {
+            ids = Arrays.copyOf(ids, nbRecettes * 2);
+            ingredients = Arrays.copyOf(ingredients, nbRecettes * 2);
+        }
+        ids[nbRecettes] = idRecette;
+        ingredients[nbRecettes] = new int[0];
+        rangs.put(idRecette, nbRecettes);
+        return nbRecettes++;
+    }
+
+    private Occurrences occurrences(int idIngredient) {
+        if (idIngredient >= occurrences.length) {
+            occurrences = Arrays.copyOf(occurrences, Math.max(idIngredient + 1, occurrences.length * 2));
+        }
+        Occurrences o = occurrences[idIngredient];
+        if (o == null) {
+            o = new Occurrences();
+            occurrences[idIngredient] = o;
+        }
+        return o;
+    }
+
+    // ---------------------------------------------------------------- utilitaires
+
+    private static int[] trier(Collection<Integer> frigo) {
+        int[] cles = new int[frigo.size()];
+        int n = 0;
+        for (Integer id : frigo) {
+            if (id != null && id > 0) {
+                cles[n++] = id;
+            }
+        }
+        cles = Arrays.copyOf(cles, n);
+        Arrays.sort(cles);
+        // Sans doublons
+        int k = 0;
+        for (int i = 0; i < cles.length; i++) {
+            if (k == 0 || cles[k - 1] != cles[i]) {
+                cles[k++] = cles[i];
+            }
+        }
+        return Arrays.copyOf(cles, k);
+    }
+
+    private static int[] difference(int[] ensemble, int[] frigo) {
+        int[] manquants = new int[ensemble.length];
+        int n = 0;
+        for (int id : ensemble) {
+            if (Arrays.binarySearch(frigo, id) < 0) {
+                manquants[n++] = id;
+            }
+        }
+        return Arrays.copyOf(manquants, n);
+    }
+
+    /**
+     * Ensemble de rangs de recettes : liste triée tant qu'il est creux, bitset au-delà
+     * d'un rang sur 32 (la liste coûte alors plus de mémoire que les mots).
+     */
+    private static final class Occurrences {
+        int[] rangs = new int[4];
+        int taille;
+        long[] mots;
+
+        void ajouter(int rang) {
+            if (mots != null) {
+                int m = rang >>> 6;
+                if (m >= mots.length) {
+                    mots = Arrays.copyOf(mots, Math.max(m + 1, mots.length * 2));
+                }
+                if ((mots[m] & (1L << rang)) == 0) {
+                    mots[m] |= 1L << rang;
+                    taille++;
+                }
+                return;
+            }
+            int position = taille > 0 && rangs[taille - 1] < rang ? -taille - 1 : Arrays.binarySearch(rangs, 0, taille, rang);
+            if (position >= 0) {
+                return;
+            }
+            position = -position - 1;
+            if (taille == rangs.length) {
+                rangs = Arrays.copyOf(rangs, taille * 2);
+            }
+            System.arraycopy(rangs, position, rangs, position + 1, taille - position);
+            rangs[position] = rang;
+            taille++;
+            // Passage en bitset quand la liste dépasse la taille des mots couvrant le plus grand rang
+            if (taille > 64 && taille * 32L > rangs[taille - 1] + 1L) {
+                mots = new long[(rangs[taille - 1] >>> 6) + 1];
+                for (int i = 0; i < taille; i++) {
+                    mots[rangs[i] >>> 6] |= 1L << rangs[i];
+                }
+                rangs = null;
+            }
+        }
+
+        void retirer(int rang) {
+            if (mots != null) {
+                int m = rang >>> 6;
+                if (m < mots.length && (mots[m] & (1L << rang)) != 0) {
+                    mots[m] &= ~(1L << rang);
+                    taille--;
+                }
+                return;
+            }
+            int position = Arrays.binarySearch(rangs, 0, taille, rang);
+            if (position >= 0) {
+                System.arraycopy(rangs, position + 1, rangs, position, taille - position - 1);
+                taille--;
+            }
+        }
+    }
+
+    /**
+     * Recette retenue pour un frigo.
+     */
+    static class Correspondance {
+        final int id_recette;
+        /** Ingrédients de la recette présents dans le frigo. */
+        final int communs;
+        /** Ingrédients de la recette absents du frigo. */
+        final int manquants;
+        /** |recette ∩ frigo| / |recette ∪ frigo|. */
+        final double jaccard;
+        /** Identifiants des ingrédients manquants, triés. */
+        int[] ingredientsManquants;
+        private final int rang;
+
+        Correspondance(int id_recette, int communs, int manquants, double jaccard, int rang) {
+            this.id_recette = id_recette;
+            this.communs = communs;
+            this.manquants = manquants;
+            this.jaccard = jaccard;
+            this.rang = rang;
+        }
+    }
+}
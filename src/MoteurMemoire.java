@@ -0,0 +1,1380 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32C;
+
+/**
+ * Moteur de stockage entièrement en mémoire pour Auteur, Ingredient, Recette et
+ * Recette_Ingredient, sans aller-retour vers la base.
+ * <p>
+ * Chaque table est une table de hachage à clés int (adressage ouvert, sans objet Integer)
+ * indexée par la clé primaire, avec l'ensemble des clés vivantes dans un BitSet pour les
+ * parcours dans l'ordre des identifiants. Les liaisons d'une recette sont rangées avec elle.
+ * Les lectures prennent le verrou en lecture et rendent des copies : l'état interne n'est
+ * jamais modifié en place, une écriture remplace la fiche concernée.
+ * <p>
+ * Durabilité : chaque écriture est encodée en un enregistrement et ajoutée au journal
+ * (journal-N.wal, N étant le numéro du premier enregistrement). Un seul thread écrit et
+ * synchronise d'un coup tout ce qui s'est accumulé pendant l'écriture précédente (validation
+ * groupée), puis applique ces enregistrements à l'état, dans l'ordre du journal et par le
+ * même code que la relecture, avant de réveiller leurs écrivains. Une écriture n'est donc
+ * visible qu'une fois sur disque. Quand le journal dépasse recette.memoire.seuilJournal
+ * octets, il est remplacé par un instantané complet (instantane.bin) et un journal neuf.
+ * Au démarrage, l'instantané est lu puis les journaux sont rejoués ; un enregistrement
+ * tronqué en fin de journal (arrêt brutal) est écarté.
+ * <p>
+ * Les contraintes du schéma sont vérifiées avec les mêmes exceptions que le pilote JDBC.
+ * NOT NULL, longueurs des colonnes, précision des temps et cote_sante entre 1 et 5 le sont
+ * avant l'écriture au journal. Email unique, clés primaires et clés étrangères le sont à
+ * l'application, dans l'ordre du journal : deux écritures simultanées ne peuvent pas
+ * toutes deux passer. Un enregistrement refusé reste dans le journal et il est refusé de
+ * nouveau à la relecture, si bien que l'état ne dépend que du journal. Les suppressions se
+ * propagent comme ON DELETE CASCADE. La suppression d'un auteur ou d'un ingrédient parcourt
+ * toutes les recettes ; les autres opérations ne dépendent pas de la taille des tables.
+ * <p>
+ * Si l'écriture du journal échoue, le moteur refuse toute écriture suivante. Les
+ * enregistrements du groupe en échec ne sont pas appliqués : l'état en mémoire reste celui
+ * du disque, à ce groupe près, qui peut y être écrit en partie et relu au redémarrage.
+ */
+public class MoteurMemoire implements Closeable {
+
+    private static final int MAGIC = 0x524D4D31;
+    private static final int VERSION = 1;
+    private static final String INSTANTANE = "instantane.bin";
+    private static final String PREFIXE_JOURNAL = "journal-";
+    private static final String SUFFIXE_JOURNAL = ".wal";
+
+    private static final long SEUIL_JOURNAL = Long.getLong("recette.memoire.seuilJournal", 64L << 20);
+    private static final boolean SYNCHRO = Boolean.parseBoolean(System.getProperty("recette.memoire.synchro", "true"));
+
+    // Types d'enregistrement
+    private static final byte AUTEUR_AJOUT = 1;
+    private static final byte AUTEUR_SUPPRESSION = 2;
+    private static final byte INGREDIENT_AJOUT = 3;
+    private static final byte INGREDIENT_SUPPRESSION = 4;
+    private static final byte RECETTE_AJOUT = 5;
+    private static final byte RECETTE_SUPPRESSION = 6;
+    private static final byte LIEN_AJOUT = 7;
+
+    private static final int[] AUCUN_ID = new int[0];
+    private static final String[] AUCUNE_QUANTITE = new String[0];
+
+    private final Path dossier;
+    private final ReentrantReadWriteLock verrou = new ReentrantReadWriteLock();
+
+    // État, protégé par verrou
+    private final TableEntiers<Main.Auteur> auteurs = new TableEntiers<>();
+    private final BitSet idsAuteurs = new BitSet();
+    private final Map<String, Integer> emails = new HashMap<>();
+    private final TableEntiers<Main.Ingredient> ingredients = new TableEntiers<>();
+    private final BitSet idsIngredients = new BitSet();
+    private final TableEntiers<Fiche> recettes = new TableEntiers<>();
+    private final BitSet idsRecettes = new BitSet();
+    private int dernierAuteur;
+    private int dernierIngredient;
+    private int dernierRecette;
+
+    private final Journal journal;
+
+    private MoteurMemoire(Path dossier) throws IOException {
+        this.dossier = dossier;
+        Files.createDirectories(dossier);
+        long numero = recuperer();
+        this.journal = new Journal(numero);
+    }
+
+    /**
+     * Ouvre le moteur sur un dossier : lit l'instantané, rejoue les journaux et démarre
+     * le thread d'écriture du journal.
+     *
+     * @param dossier Le dossier de l'instantané et des journaux, créé au besoin
+     * @return Le moteur ouvert
+     * @throws IOException Si un fichier est illisible ou corrompu ailleurs qu'en fin de journal
+     */
+    public static MoteurMemoire ouvrir(Path dossier) throws IOException {
+        return new MoteurMemoire(dossier);
+    }
+
+    // ---------------------------------------------------------------- lectures
+
+    /**
+     * @param idAuteur L'identifiant de l'auteur
+     * @return Une copie de l'auteur, ou null s'il n'existe pas
+     */
+    public Main.Auteur auteur(int idAuteur) {
+        verrou.readLock().lock();
+        try {
+            Main.Auteur auteur = auteurs.lire(idAuteur);
+            return auteur == null ? null : copie(auteur);
+        } finally {
+            verrou.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return Tous les auteurs, par identifiant
+     */
+    public List<Main.Auteur> auteurs() {
+        verrou.readLock().lock();
+        try {
+            List<Main.Auteur> liste = new ArrayList<>(auteurs.taille());
+            for (int id = idsAuteurs.nextSetBit(0); id >= 0; id = idsAuteurs.nextSetBit(id + 1)) {
+                liste.add(copie(auteurs.lire(id)));
+            }
+            return liste;
+        } finally {
+            verrou.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param email L'email de l'auteur
+     * @return L'identifiant de l'auteur, ou 0 s'il n'existe pas
+     */
+    public int idParEmail(String email) {
+        verrou.readLock().lock();
+        try {
+            Integer id = emails.get(email);
+            return id == null ? 0 : id;
+        } finally {
+            verrou.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param idIngredient L'identifiant de l'ingrédient
+     * @return Une copie de l'ingrédient, ou null s'il n'existe pas
+     */
+    public Main.Ingredient ingredient(int idIngredient) {
+        verrou.readLock().lock();
+        try {
+            Main.Ingredient ingredient = ingredients.lire(idIngredient);
+            return ingredient == null ? null : copie(ingredient);
+        } finally {
+            verrou.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return Tous les ingrédients, triés par nom comme IngredientRepository.lister
+     */
+    public List<Main.Ingredient> ingredients() {
+        verrou.readLock().lock();
+        try {
+            List<Main.Ingredient> liste = new ArrayList<>(ingredients.taille());
+            for (int id = idsIngredients.nextSetBit(0); id >= 0; id = idsIngredients.nextSetBit(id + 1)) {
+                liste.add(copie(ingredients.lire(id)));
+            }
+            liste.sort(Comparator.comparing((Main.Ingredient i) -> i.nom));
+            return liste;
+        } finally {
+            verrou.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param idRecette L'identifiant de la recette
+     * @return Une copie de la recette, sans ses ingrédients, ou null si elle n'existe pas
+     */
+    public Main.Recette recette(int idRecette) {
+        verrou.readLock().lock();
+        try {
+            Fiche fiche = recettes.lire(idRecette);
+            return fiche == null ? null : copie(fiche.recette);
+        } finally {
+            verrou.readLock().unlock();
+        }
+    }
+
+    /**
+     * Retourne une page de recettes par clé, comme RecetteRepository.listerPage.
+     *
+     * @param apresId L'identifiant de la dernière recette déjà lue (0 pour la première page)
+     * @param taille Le nombre maximal de recettes
+     * @return Les recettes suivantes, par identifiant
+     */
+    public List<Main.Recette> listerPage(int apresId, int taille) {
+        verrou.readLock().lock();
+        try {
+            List<Main.Recette> page = new ArrayList<>(Math.min(taille, 256));
+            for (int id = idsRecettes.nextSetBit(apresId + 1); id >= 0 && page.size() < taille;
+                    id = idsRecettes.nextSetBit(id + 1)) {
+                page.add(copie(recettes.lire(id).recette));
+            }
+            return page;
+        } finally {
+            verrou.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param idRecette L'identifiant de la recette
+     * @return Les ingrédients de la recette triés par nom, vide si elle n'existe pas
+     */
+    public List<RecetteRepository.LigneIngredient> ingredientsDe(int idRecette) {
+        verrou.readLock().lock();
+        try {
+            Fiche fiche = recettes.lire(idRecette);
+            if (fiche == null) {
+                return new ArrayList<>();
+            }
+            List<RecetteRepository.LigneIngredient> lignes = new ArrayList<>(fiche.ingredients.length);
+            for (int i = 0; i < fiche.ingredients.length; i++) {
+                lignes.add(new RecetteRepository.LigneIngredient(ingredients.lire(fiche.ingredients[i]).nom, fiche.quantites[i]));
+            }
+            lignes.sort(Comparator.comparing((RecetteRepository.LigneIngredient l) -> l.nom));
+            return lignes;
+        } finally {
+            verrou.readLock().unlock();
+        }
+    }
+
+    /**
+     * Cote santé moyenne d'une recette, arrondie comme {@link CoteSanteCalculateur}.
+     *
+     * @param idRecette L'identifiant de la recette
+     * @return La cote, ou 0 si la recette n'a pas d'ingrédient ou n'existe pas
+     */
+    public double coteSante(int idRecette) {
+        verrou.readLock().lock();
+        try {
+            Fiche fiche = recettes.lire(idRecette);
+            if (fiche == null) {
+                return 0;
+            }
+            int somme = 0;
+            for (int idIngredient : fiche.ingredients) {
+                somme += ingredients.lire(idIngredient).cote_sante;
+            }
+            return CoteSanteCalculateur.dixiemes(somme, fiche.ingredients.length) / 10.0;
+        } finally {
+            verrou.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return Le nombre de recettes
+     */
+    public int nombreRecettes() {
+        verrou.readLock().lock();
+        try {
+            return recettes.taille();
+        } finally {
+            verrou.readLock().unlock();
+        }
+    }
+
+    // ---------------------------------------------------------------- écritures
+
+    /**
+     * Enregistre un auteur et attend que l'écriture soit durable.
+     *
+     * @param auteur L'auteur ; son identifiant est renseigné
+     * @return L'identifiant attribué
+     * @throws SQLException Si une contrainte est violée ou si le journal ne peut être écrit
+     */
+    public int ajouterAuteur(Main.Auteur auteur) throws SQLException {
+        auteur.id_auteur = journal.attendre(enregistrerAuteur(auteur, true));
+        return auteur.id_auteur;
+    }
+
+    /**
+     * Supprime un auteur, ses recettes et leurs liaisons.
+     *
+     * @param idAuteur L'identifiant de l'auteur
+     * @return Le nombre d'auteurs supprimés (0 ou 1)
+     * @throws SQLException Si le journal ne peut être écrit
+     */
+    public int supprimerAuteur(int idAuteur) throws SQLException {
+        return supprimer(AUTEUR_SUPPRESSION, idAuteur);
+    }
+
+    /**
+     * Enregistre un ingrédient et attend que l'écriture soit durable.
+     *
+     * @param ingredient L'ingrédient ; son identifiant est renseigné
+     * @return L'identifiant attribué
+     * @throws SQLException Si une contrainte est violée ou si le journal ne peut être écrit
+     */
+    public int ajouterIngredient(Main.Ingredient ingredient) throws SQLException {
+        ingredient.id_ingredient = journal.attendre(enregistrerIngredient(ingredient, true));
+        return ingredient.id_ingredient;
+    }
+
+    /**
+     * Supprime un ingrédient et ses liaisons aux recettes.
+     *
+     * @param idIngredient L'identifiant de l'ingrédient
+     * @return Le nombre d'ingrédients supprimés (0 ou 1)
+     * @throws SQLException Si le journal ne peut être écrit
+     */
+    public int supprimerIngredient(int idIngredient) throws SQLException {
+        return supprimer(INGREDIENT_SUPPRESSION, idIngredient);
+    }
+
+    /**
+     * Enregistre une recette avec ses ingrédients en une seule écriture atomique.
+     *
+     * @param recette La recette ; son identifiant est renseigné
+     * @param liens Les ingrédients de la recette
+     * @return L'identifiant attribué
+     * @throws SQLException Si une contrainte est violée ou si le journal ne peut être écrit
+     */
+    public int ajouterRecette(Main.Recette recette, List<RecetteRepository.LienIngredient> liens) throws SQLException {
+        recette.id_recette = journal.attendre(enregistrerRecette(recette, liens, true));
+        return recette.id_recette;
+    }
+
+    /**
+     * Lie un ingrédient à une recette.
+     *
+     * @param idRecette L'identifiant de la recette
+     * @param idIngredient L'identifiant de l'ingrédient
+     * @param quantite La quantité, par exemple "2 tasses"
+     * @return Le nombre de liaisons insérées (1)
+     * @throws SQLException Si une contrainte est violée ou si le journal ne peut être écrit
+     */
+    public int lierIngredient(int idRecette, int idIngredient, String quantite) throws SQLException {
+        return journal.attendre(enregistrerLien(idRecette, idIngredient, quantite, true));
+    }
+
+    /**
+     * Supprime une recette et ses liaisons.
+     *
+     * @param idRecette L'identifiant de la recette
+     * @return Le nombre de recettes supprimées (0 ou 1)
+     * @throws SQLException Si le journal ne peut être écrit
+     */
+    public int supprimerRecette(int idRecette) throws SQLException {
+        return supprimer(RECETTE_SUPPRESSION, idRecette);
+    }
+
+    /**
+     * Copie les quatre tables d'une base dans un moteur vide, en gardant les identifiants.
+     *
+     * @param conn La connexion à la base
+     * @return Le nombre de recettes copiées
+     * @throws SQLException En cas d'erreur SQL, ou si le moteur n'est pas vide
+     */
+    public int importer(Connection conn) throws SQLException {
+        verrou.readLock().lock();
+        try {
+            if (auteurs.taille() > 0 || ingredients.taille() > 0 || recettes.taille() > 0) {
+                throw new SQLException("Le moteur en mémoire n'est pas vide");
+            }
+        } finally {
+            verrou.readLock().unlock();
+        }
+        // Une seule attente à la fin : les enregistrements partent au journal par groupes, et
+        // ceux qui sont refusés à l'application sont comptés
+        long refusAvant = journal.refusSansAttente();
+        long numero = 0;
+        try (Statement stmt = conn.createStatement()) {
+            stmt.setFetchSize(1000);
+            try (ResultSet rs = stmt.executeQuery("SELECT id_auteur, nom, email, bio FROM Auteur")) {
+                while (rs.next()) {
+                    Main.Auteur auteur = new Main.Auteur(rs.getString(2), rs.getString(3), rs.getString(4));
+                    auteur.id_auteur = rs.getInt(1);
+                    numero = enregistrerAuteur(auteur, false);
+                }
+            }
+            try (ResultSet rs = stmt.executeQuery("SELECT id_ingredient, nom, cote_sante FROM Ingredient")) {
+                while (rs.next()) {
+                    Main.Ingredient ingredient = new Main.Ingredient(rs.getString(2), rs.getInt(3));
+                    ingredient.id_ingredient = rs.getInt(1);
+                    numero = enregistrerIngredient(ingredient, false);
+                }
+            }
+            int copiees = 0;
+            try (ResultSet rs = stmt.executeQuery(
+                    "SELECT id_recette, titre, description, instructions, temps_preparation, temps_cuisson, auteur_id " +
+                    "FROM Recette ORDER BY id_recette")) {
+                while (rs.next()) {
+                    Main.Recette recette = new Main.Recette(rs.getString(2), rs.getString(3), rs.getString(4),
+                            rs.getInt(5), rs.getInt(6), rs.getInt(7));
+                    recette.id_recette = rs.getInt(1);
+                    numero = enregistrerRecette(recette, Collections.emptyList(), false);
+                    copiees++;
+                }
+            }
+            try (ResultSet rs = stmt.executeQuery("SELECT id_recette, id_ingredient, quantite FROM Recette_Ingredient")) {
+                while (rs.next()) {
+                    numero = enregistrerLien(rs.getInt(1), rs.getInt(2), rs.getString(3), false);
+                }
+            }
+            journal.attendre(numero);
+            long refus = journal.refusSansAttente() - refusAvant;
+            if (refus > 0) {
+                throw new SQLIntegrityConstraintViolationException(refus + " ligne(s) refusée(s) à l'importation");
+            }
+            return copiees;
+        }
+    }
+
+    /**
+     * Remplace tout de suite le journal par un instantané.
+     *
+     * @throws IOException En cas d'erreur d'écriture
+     */
+    public void compacter() throws IOException {
+        journal.compacter();
+    }
+
+    /**
+     * Attend l'écriture des derniers enregistrements puis arrête le thread d'écriture.
+     */
+    @Override
+    public void close() {
+        journal.fermer();
+    }
+
+    @Override
+    public String toString() {
+        verrou.readLock().lock();
+        try {
+            return "MoteurMemoire[auteurs=" + auteurs.taille() + ", ingredients=" + ingredients.taille()
+                    + ", recettes=" + recettes.taille() + ", " + journal + "]";
+        } finally {
+            verrou.readLock().unlock();
+        }
+    }
+
+    // ---------------------------------------------------------------- enregistrement
+
+    // Chaque méthode vérifie les colonnes, encode l'écriture et l'ajoute au journal, puis rend
+    // le numéro d'enregistrement à attendre : l'importation n'attend que le dernier. Un
+    // identifiant 0 est attribué à l'application, à la suite du plus grand.
+
+    private long enregistrerAuteur(Main.Auteur auteur, boolean attendu) throws SQLException {
+        nonNul(auteur.nom, "Auteur.nom");
+        nonNul(auteur.email, "Auteur.email");
+        longueur(auteur.nom, 100, "Auteur.nom");
+        longueur(auteur.email, 150, "Auteur.email");
+        longueur(auteur.bio, 1000, "Auteur.bio");
+        Enregistrement e = new Enregistrement(AUTEUR_AJOUT);
+        e.entier(Math.max(auteur.id_auteur, 0)).texte(auteur.nom).texte(auteur.email).texte(auteur.bio);
+        return journal.ajouter(e.octets(), attendu);
+    }
+
+    private long enregistrerIngredient(Main.Ingredient ingredient, boolean attendu) throws SQLException {
+        nonNul(ingredient.nom, "Ingredient.nom");
+        longueur(ingredient.nom, 100, "Ingredient.nom");
+        if (ingredient.cote_sante < 1 || ingredient.cote_sante > 5) {
+            throw new SQLIntegrityConstraintViolationException("cote_sante doit être entre 1 et 5 : " + ingredient.cote_sante);
+        }
+        Enregistrement e = new Enregistrement(INGREDIENT_AJOUT);
+        e.entier(Math.max(ingredient.id_ingredient, 0)).texte(ingredient.nom).entier(ingredient.cote_sante);
+        return journal.ajouter(e.octets(), attendu);
+    }
+
+    private long enregistrerRecette(Main.Recette recette, List<RecetteRepository.LienIngredient> liens,
+                                    boolean attendu) throws SQLException {
+        nonNul(recette.titre, "Recette.titre");
+        longueur(recette.titre, 200, "Recette.titre");
+        precision(recette.temps_preparation, "Recette.temps_preparation");
+        precision(recette.temps_cuisson, "Recette.temps_cuisson");
+        for (RecetteRepository.LienIngredient lien : liens) {
+            verifierQuantite(lien.quantite);
+        }
+        Enregistrement e = new Enregistrement(RECETTE_AJOUT);
+        e.entier(Math.max(recette.id_recette, 0)).texte(recette.titre).texte(recette.description)
+                .texte(recette.instructions).entier(recette.temps_preparation).entier(recette.temps_cuisson)
+                .entier(recette.auteur_id).entier(liens.size());
+        for (RecetteRepository.LienIngredient lien : liens) {
+            e.entier(lien.id_ingredient).texte(lien.quantite);
+        }
+        return journal.ajouter(e.octets(), attendu);
+    }
+
+    private long enregistrerLien(int idRecette, int idIngredient, String quantite, boolean attendu) throws SQLException {
+        verifierQuantite(quantite);
+        Enregistrement e = new Enregistrement(LIEN_AJOUT);
+        e.entier(idRecette).entier(idIngredient).texte(quantite);
+        return journal.ajouter(e.octets(), attendu);
+    }
+
+    private int supprimer(byte type, int id) throws SQLException {
+        Enregistrement e = new Enregistrement(type);
+        e.entier(id);
+        return journal.attendre(journal.ajouter(e.octets(), true));
+    }
+
+    // ---------------------------------------------------------------- vérifications
+
+    private static void verifierQuantite(String quantite) throws SQLException {
+        nonNul(quantite, "Recette_Ingredient.quantite");
+        longueur(quantite, 100, "Recette_Ingredient.quantite");
+    }
+
+    private static void nonNul(String valeur, String colonne) throws SQLException {
+        if (valeur == null) {
+            throw new SQLIntegrityConstraintViolationException(colonne + " ne peut pas être NULL");
+        }
+    }
+
+    private static void longueur(String valeur, int max, String colonne) throws SQLException {
+        if (valeur != null && valeur.length() > max) {
+            throw new SQLDataException(colonne + " dépasse " + max + " caractères");
+        }
+    }
+
+    private static void precision(int valeur, String colonne) throws SQLException {
+        // NUMBER(3)
+        if (valeur < -999 || valeur > 999) {
+            throw new SQLDataException(colonne + " dépasse la précision NUMBER(3) : " + valeur);
+        }
+    }
+
+    private void verifierIngredientExiste(int idIngredient) throws SQLException {
+        if (ingredients.lire(idIngredient) == null) {
+            throw new SQLIntegrityConstraintViolationException("Ingrédient " + idIngredient + " inexistant (fk_ri_ingredient)");
+        }
+    }
+
+    // ---------------------------------------------------------------- application
+
+    /**
+     * Vérifie puis applique un enregistrement, en direct comme en relecture du journal. Un
+     * enregistrement refusé ne change rien à l'état. Appelé sous le verrou en écriture.
+     *
+     * @return L'identifiant de la ligne ajoutée, ou le nombre de lignes ajoutées ou supprimées
+     * @throws SQLException Si l'enregistrement viole une contrainte
+     */
+    private int appliquer(byte[] contenu) throws IOException, SQLException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(contenu));
+        byte type = in.readByte();
+        int id = in.readInt();
+        switch (type) {
+            case AUTEUR_AJOUT: {
+                Main.Auteur auteur = new Main.Auteur(lireTexte(in), lireTexte(in), lireTexte(in));
+                auteur.id_auteur = id > 0 ? id : dernierAuteur + 1;
+                if (auteurs.lire(auteur.id_auteur) != null) {
+                    throw new SQLIntegrityConstraintViolationException("Auteur " + auteur.id_auteur + " déjà présent");
+                }
+                if (emails.containsKey(auteur.email)) {
+                    throw new SQLIntegrityConstraintViolationException("Email déjà utilisé : " + auteur.email);
+                }
+                auteurs.ecrire(auteur.id_auteur, auteur);
+                idsAuteurs.set(auteur.id_auteur);
+                emails.put(auteur.email, auteur.id_auteur);
+                dernierAuteur = Math.max(dernierAuteur, auteur.id_auteur);
+                return auteur.id_auteur;
+            }
+            case AUTEUR_SUPPRESSION: {
+                Main.Auteur auteur = auteurs.retirer(id);
+                if (auteur == null) {
+                    return 0;
+                }
+                idsAuteurs.clear(id);
+                emails.remove(auteur.email);
+                for (int r = idsRecettes.nextSetBit(0); r >= 0; r = idsRecettes.nextSetBit(r + 1)) {
+                    if (recettes.lire(r).recette.auteur_id == id) {
+                        recettes.retirer(r);
+                        idsRecettes.clear(r);
+                    }
+                }
+                return 1;
+            }
+            case INGREDIENT_AJOUT: {
+                Main.Ingredient ingredient = new Main.Ingredient(lireTexte(in), in.readInt());
+                ingredient.id_ingredient = id > 0 ? id : dernierIngredient + 1;
+                if (ingredients.lire(ingredient.id_ingredient) != null) {
+                    throw new SQLIntegrityConstraintViolationException("Ingrédient " + ingredient.id_ingredient + " déjà présent");
+                }
+                ingredients.ecrire(ingredient.id_ingredient, ingredient);
+                idsIngredients.set(ingredient.id_ingredient);
+                dernierIngredient = Math.max(dernierIngredient, ingredient.id_ingredient);
+                return ingredient.id_ingredient;
+            }
+            case INGREDIENT_SUPPRESSION: {
+                if (ingredients.retirer(id) == null) {
+                    return 0;
+                }
+                idsIngredients.clear(id);
+                for (int r = idsRecettes.nextSetBit(0); r >= 0; r = idsRecettes.nextSetBit(r + 1)) {
+                    Fiche fiche = recettes.lire(r);
+                    Fiche sans = fiche.sans(id);
+                    if (sans != fiche) {
+                        recettes.ecrire(r, sans);
+                    }
+                }
+                return 1;
+            }
+            case RECETTE_AJOUT: {
+                Main.Recette recette = new Main.Recette(lireTexte(in), lireTexte(in), lireTexte(in),
+                        in.readInt(), in.readInt(), in.readInt());
+                recette.id_recette = id > 0 ? id : dernierRecette + 1;
+                int nombre = in.readInt();
+                int[] ids = nombre == 0 ? AUCUN_ID : new int[nombre];
+                String[] quantites = nombre == 0 ? AUCUNE_QUANTITE : new String[nombre];
+                for (int i = 0; i < nombre; i++) {
+                    ids[i] = in.readInt();
+                    quantites[i] = lireTexte(in);
+                }
+                if (recettes.lire(recette.id_recette) != null) {
+                    throw new SQLIntegrityConstraintViolationException("Recette " + recette.id_recette + " déjà présente");
+                }
+                if (auteurs.lire(recette.auteur_id) == null) {
+                    throw new SQLIntegrityConstraintViolationException("Auteur " + recette.auteur_id + " inexistant (fk_recette_auteur)");
+                }
+                for (int i = 0; i < nombre; i++) {
+                    verifierIngredientExiste(ids[i]);
+                    for (int j = 0; j < i; j++) {
+                        if (ids[j] == ids[i]) {
+                            throw new SQLIntegrityConstraintViolationException("Ingrédient " + ids[i] + " en double dans la recette");
+                        }
+                    }
+                }
+                recettes.ecrire(recette.id_recette, new Fiche(recette, ids, quantites));
+                idsRecettes.set(recette.id_recette);
+                dernierRecette = Math.max(dernierRecette, recette.id_recette);
+                return recette.id_recette;
+            }
+            case RECETTE_SUPPRESSION: {
+                if (recettes.retirer(id) == null) {
+                    return 0;
+                }
+                idsRecettes.clear(id);
+                return 1;
+            }
+            case LIEN_AJOUT: {
+                int idIngredient = in.readInt();
+                String quantite = lireTexte(in);
+                Fiche fiche = recettes.lire(id);
+                if (fiche == null) {
+                    throw new SQLIntegrityConstraintViolationException("Recette " + id + " inexistante (fk_ri_recette)");
+                }
+                verifierIngredientExiste(idIngredient);
+                for (int existant : fiche.ingredients) {
+                    if (existant == idIngredient) {
+                        throw new SQLIntegrityConstraintViolationException(
+                                "Ingrédient " + idIngredient + " déjà lié à la recette " + id);
+                    }
+                }
+                recettes.ecrire(id, fiche.avec(idIngredient, quantite));
+                return 1;
+            }
+            default:
+                throw new IOException("Type d'enregistrement inconnu : " + type);
+        }
+    }
+
+    private static Main.Auteur copie(Main.Auteur a) {
+        Main.Auteur copie = new Main.Auteur(a.nom, a.email, a.bio);
+        copie.id_auteur = a.id_auteur;
+        return copie;
+    }
+
+    private static Main.Ingredient copie(Main.Ingredient i) {
+        Main.Ingredient copie = new Main.Ingredient(i.nom, i.cote_sante);
+        copie.id_ingredient = i.id_ingredient;
+        return copie;
+    }
+
+    private static Main.Recette copie(Main.Recette r) {
+        Main.Recette copie = new Main.Recette(r.titre, r.description, r.instructions,
+                r.temps_preparation, r.temps_cuisson, r.auteur_id);
+        copie.id_recette = r.id_recette;
+        return copie;
+    }
+
+    // ---------------------------------------------------------------- récupération et instantané
+
+    /**
+     * Reconstruit l'état : instantané puis journaux, dans l'ordre de leurs numéros.
+     *
+     * @return Le numéro du dernier enregistrement appliqué
+     */
+    private long recuperer() throws IOException {
+        long numero = 0;
+        Path instantane = dossier.resolve(INSTANTANE);
+        if (Files.exists(instantane)) {
+            numero = lireInstantane(instantane);
+        }
+        List<Path> journaux = journaux();
+        for (int j = 0; j < journaux.size(); j++) {
+            numero = rejouer(journaux.get(j), numero, j == journaux.size() - 1);
+        }
+        return numero;
+    }
+
+    /**
+     * @return Les journaux du dossier, par numéro de premier enregistrement
+     */
+    private List<Path> journaux() throws IOException {
+        List<Path> journaux = new ArrayList<>();
+        try (DirectoryStream<Path> fichiers = Files.newDirectoryStream(dossier, PREFIXE_JOURNAL + "*" + SUFFIXE_JOURNAL)) {
+            for (Path fichier : fichiers) {
+                journaux.add(fichier);
+            }
+        }
+        journaux.sort(Comparator.comparingLong(MoteurMemoire::premierNumero));
+        return journaux;
+    }
+
+    private static long premierNumero(Path journal) {
+        String nom = journal.getFileName().toString();
+        return Long.parseLong(nom.substring(PREFIXE_JOURNAL.length(), nom.length() - SUFFIXE_JOURNAL.length()));
+    }
+
+    /**
+     * Rejoue les enregistrements d'un journal postérieurs à l'instantané. Un enregistrement
+     * incomplet ou dont la somme de contrôle est fausse termine le dernier journal, qui est
+     * tronqué à cet endroit ; ailleurs, c'est une corruption.
+     */
+    private long rejouer(Path fichier, long numero, boolean dernier) throws IOException {
+        long valide = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(fichier), 1 << 16))) {
+            CRC32C crc = new CRC32C();
+            while (true) {
+                int longueur;
+                try {
+                    longueur = in.readInt();
+                } catch (EOFException fin) {
+                    break;
+                }
+                byte[] entete = new byte[12];
+                byte[] contenu = longueur >= 0 && longueur <= (1 << 30) ? new byte[longueur] : null;
+                int somme;
+                try {
+                    somme = in.readInt();
+                    in.readFully(entete, 4, 8);
+                    if (contenu == null) {
+                        throw new EOFException();
+                    }
+                    in.readFully(contenu);
+                } catch (EOFException tronque) {
+                    break;
+                }
+                crc.reset();
+                crc.update(entete, 4, 8);
+                crc.update(contenu);
+                if ((int) crc.getValue() != somme) {
+                    break;
+                }
+                long n = ByteBuffer.wrap(entete, 4, 8).getLong();
+                if (n > numero) {
+                    try {
+                        appliquer(contenu);
+                    } catch (SQLException refuse) {
+                        // Refusé de même à l'écriture : l'enregistrement reste sans effet
+                    }
+                    numero = n;
+                }
+                valide += 16 + longueur;
+            }
+        }
+        long taille = Files.size(fichier);
+        if (valide < taille) {
+            if (!dernier) {
+                throw new IOException("Journal corrompu : " + fichier + " à l'octet " + valide);
+            }
+            System.out.println("Fin de journal incomplète écartée : " + (taille - valide) + " octets dans " + fichier);
+            try (FileChannel canal = FileChannel.open(fichier, StandardOpenOption.WRITE)) {
+                canal.truncate(valide);
+            }
+        }
+        return numero;
+    }
+
+    private long lireInstantane(Path fichier) throws IOException {
+        CRC32C crc = new CRC32C();
+        try (DataInputStream in = new DataInputStream(new java.util.zip.CheckedInputStream(
+                new BufferedInputStream(Files.newInputStream(fichier), 1 << 16), crc))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Instantané de format inconnu : " + fichier);
+            }
+            long numero = in.readLong();
+            int nbAuteurs = in.readInt();
+            for (int i = 0; i < nbAuteurs; i++) {
+                Main.Auteur auteur = new Main.Auteur(null, null, null);
+                auteur.id_auteur = in.readInt();
+                auteur.nom = lireTexte(in);
+                auteur.email = lireTexte(in);
+                auteur.bio = lireTexte(in);
+                auteurs.ecrire(auteur.id_auteur, auteur);
+                idsAuteurs.set(auteur.id_auteur);
+                emails.put(auteur.email, auteur.id_auteur);
+            }
+            int nbIngredients = in.readInt();
+            for (int i = 0; i < nbIngredients; i++) {
+                Main.Ingredient ingredient = new Main.Ingredient(null, 0);
+                ingredient.id_ingredient = in.readInt();
+                ingredient.nom = lireTexte(in);
+                ingredient.cote_sante = in.readInt();
+                ingredients.ecrire(ingredient.id_ingredient, ingredient);
+                idsIngredients.set(ingredient.id_ingredient);
+            }
+            int nbRecettes = in.readInt();
+            for (int i = 0; i < nbRecettes; i++) {
+                int id = in.readInt();
+                Main.Recette recette = new Main.Recette(lireTexte(in), lireTexte(in), lireTexte(in),
+                        in.readInt(), in.readInt(), in.readInt());
+                recette.id_recette = id;
+                int nombre = in.readInt();
+                int[] ids = nombre == 0 ? AUCUN_ID : new int[nombre];
+                String[] quantites = nombre == 0 ? AUCUNE_QUANTITE : new String[nombre];
+                for (int j = 0; j < nombre; j++) {
+                    ids[j] = in.readInt();
+                    quantites[j] = lireTexte(in);
+                }
+                recettes.ecrire(id, new Fiche(recette, ids, quantites));
+                idsRecettes.set(id);
+            }
+            dernierAuteur = in.readInt();
+            dernierIngredient = in.readInt();
+            dernierRecette = in.readInt();
+            int calcule = (int) crc.getValue();
+            if (in.readInt() != calcule) {
+                throw new IOException("Somme de contrôle fausse dans l'instantané : " + fichier);
+            }
+            return numero;
+        }
+    }
+
+    /**
+     * Écrit l'état dans un instantané temporaire puis le met en place d'un seul coup. Appelé
+     * par le thread d'écriture, seul à modifier l'état : les lectures continuent pendant ce temps.
+     */
+    private void ecrireInstantane(long numero) throws IOException {
+        Path temporaire = dossier.resolve(INSTANTANE + ".tmp");
+        CRC32C crc = new CRC32C();
+        try (FileOutputStream fichier = new FileOutputStream(temporaire.toFile());
+             DataOutputStream out = new DataOutputStream(new java.util.zip.CheckedOutputStream(
+                     new BufferedOutputStream(fichier, 1 << 16), crc))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(numero);
+            out.writeInt(auteurs.taille());
+            for (int id = idsAuteurs.nextSetBit(0); id >= 0; id = idsAuteurs.nextSetBit(id + 1)) {
+                Main.Auteur a = auteurs.lire(id);
+                out.writeInt(id);
+                ecrireTexte(out, a.nom);
+                ecrireTexte(out, a.email);
+                ecrireTexte(out, a.bio);
+            }
+            out.writeInt(ingredients.taille());
+            for (int id = idsIngredients.nextSetBit(0); id >= 0; id = idsIngredients.nextSetBit(id + 1)) {
+                Main.Ingredient i = ingredients.lire(id);
+                out.writeInt(id);
+                ecrireTexte(out, i.nom);
+                out.writeInt(i.cote_sante);
+            }
+            out.writeInt(recettes.taille());
+            for (int id = idsRecettes.nextSetBit(0); id >= 0; id = idsRecettes.nextSetBit(id + 1)) {
+                Fiche f = recettes.lire(id);
+                out.writeInt(id);
+                ecrireTexte(out, f.recette.titre);
+                ecrireTexte(out, f.recette.description);
+                ecrireTexte(out, f.recette.instructions);
+                out.writeInt(f.recette.temps_preparation);
+                out.writeInt(f.recette.temps_cuisson);
+                out.writeInt(f.recette.auteur_id);
+                out.writeInt(f.ingredients.length);
+                for (int j = 0; j < f.ingredients.length; j++) {
+                    out.writeInt(f.ingredients[j]);
+                    ecrireTexte(out, f.quantites[j]);
+                }
+            }
+            out.writeInt(dernierAuteur);
+            out.writeInt(dernierIngredient);
+            out.writeInt(dernierRecette);
+            out.flush();
+            out.writeInt((int) crc.getValue());
+            out.flush();
+            fichier.getFD().sync();
+        }
+        Files.move(temporaire, dossier.resolve(INSTANTANE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Texte de longueur quelconque (writeUTF est limité à 64 Ko) : longueur en octets UTF-8, -1 pour null.
+     */
+    private static void ecrireTexte(DataOutput out, String texte) throws IOException {
+        if (texte == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] octets = texte.getBytes(java.nio.charset.StandardCharsets.UTF_8);
+        out.writeInt(octets.length);
+        out.write(octets);
+    }
+
+    private static String lireTexte(DataInput in) throws IOException {
+        int longueur = in.readInt();
+        if (longueur < 0) {
+            return null;
+        }
+        byte[] octets = new byte[longueur];
+        in.readFully(octets);
+        return new String(octets, java.nio.charset.StandardCharsets.UTF_8);
+    }
+
+    // ---------------------------------------------------------------- journal
+
+    /**
+     * Journal d'écriture anticipée avec validation groupée.
+     * <p>
+     * Les écrivains ajoutent leurs enregistrements à un tampon, numérotés dans l'ordre
+     * d'arrivée. Le thread d'écriture échange ce tampon contre un tampon vide, l'écrit et le
+     * synchronise, applique les enregistrements à l'état sous le verrou en écriture, puis
+     * réveille les écrivains avec le résultat de leur enregistrement. C'est le seul thread qui
+     * modifie l'état. Format d'un enregistrement : longueur du contenu, CRC32C du numéro et du
+     * contenu, numéro, contenu.
+     */
+    private final class Journal {
+        private final ReentrantLock verrouJournal = new ReentrantLock();
+        private final Condition aEcrire = verrouJournal.newCondition();
+        private final Condition ecrit = verrouJournal.newCondition();
+        private final CRC32C crc = new CRC32C();
+        private final Thread ecrivain;
+
+        private ByteArrayOutputStream enAttente = new ByteArrayOutputStream(1 << 16);
+        private ByteArrayOutputStream enEcriture = new ByteArrayOutputStream(1 << 16);
+        private List<byte[]> contenusEnAttente = new ArrayList<>();
+        private List<byte[]> contenusEnEcriture = new ArrayList<>();
+        // Numéros dont l'écrivain attend le résultat, et résultats pas encore repris
+        private final Set<Long> attendus = new HashSet<>();
+        private final Map<Long, Object> resultats = new HashMap<>();
+        private long dernierNumero;
+        private long numeroApplique;
+        private long refus;
+        private long refusSansAttente;
+        private boolean compactage;
+        private boolean ferme;
+        private IOException erreur;
+
+        // Utilisés par le seul thread d'écriture
+        private FileChannel canal;
+        private long taille;
+        private long groupes;
+
+        Journal(long numero) throws IOException {
+            this.dernierNumero = numero;
+            this.numeroApplique = numero;
+            List<Path> existants = journaux();
+            Path fichier = existants.isEmpty() ? dossier.resolve(PREFIXE_JOURNAL + (numero + 1) + SUFFIXE_JOURNAL)
+                    : existants.get(existants.size() - 1);
+            canal = FileChannel.open(fichier, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            taille = canal.size();
+            ecrivain = new Thread(this::boucler, "moteur-memoire-journal");
+            ecrivain.setDaemon(true);
+            ecrivain.start();
+        }
+
+        /**
+         * Ajoute un enregistrement au tampon.
+         *
+         * @param attendu Vrai si l'écrivain reprendra le résultat avec {@link #attendre}
+         * @return Le numéro de l'enregistrement
+         * @throws SQLException Si le journal est hors service ou le moteur fermé
+         */
+        long ajouter(byte[] contenu, boolean attendu) throws SQLException {
+            verrouJournal.lock();
+            try {
+                if (erreur != null) {
+                    throw new SQLException("Journal du moteur en mémoire hors service", erreur);
+                }
+                if (ferme) {
+                    throw new SQLException("Moteur en mémoire fermé");
+                }
+                long numero = ++dernierNumero;
+                byte[] entete = ByteBuffer.allocate(16).putInt(contenu.length).putInt(0).putLong(numero).array();
+                crc.reset();
+                crc.update(entete, 8, 8);
+                crc.update(contenu);
+                ByteBuffer.wrap(entete).putInt(4, (int) crc.getValue());
+                enAttente.write(entete, 0, entete.length);
+                enAttente.write(contenu, 0, contenu.length);
+                contenusEnAttente.add(contenu);
+                if (attendu) {
+                    attendus.add(numero);
+                }
+                aEcrire.signal();
+                return numero;
+            } finally {
+                verrouJournal.unlock();
+            }
+        }
+
+        /**
+         * Attend que l'enregistrement soit écrit, synchronisé et appliqué.
+         *
+         * @return Le résultat de l'application, 0 si l'enregistrement n'était pas attendu
+         * @throws SQLException Si l'enregistrement a été refusé ou si le journal est hors service
+         */
+        int attendre(long numero) throws SQLException {
+            Object resultat;
+            verrouJournal.lock();
+            try {
+                while (numeroApplique < numero && erreur == null) {
+                    ecrit.awaitUninterruptibly();
+                }
+                if (numeroApplique < numero) {
+                    attendus.remove(numero);
+                    throw new SQLException("Écriture du journal du moteur en mémoire impossible", erreur);
+                }
+                resultat = resultats.remove(numero);
+            } finally {
+                verrouJournal.unlock();
+            }
+            if (resultat instanceof SQLIntegrityConstraintViolationException) {
+                // Nouvelle exception pour avoir la pile de l'appelant, pas celle du thread d'écriture
+                throw new SQLIntegrityConstraintViolationException(((SQLException) resultat).getMessage());
+            }
+            if (resultat instanceof SQLException) {
+                throw new SQLException(((SQLException) resultat).getMessage(), (SQLException) resultat);
+            }
+            return resultat == null ? 0 : (Integer) resultat;
+        }
+
+        /**
+         * @return Le nombre d'enregistrements refusés sans écrivain pour en reprendre le résultat
+         */
+        long refusSansAttente() {
+            verrouJournal.lock();
+            try {
+                return refusSansAttente;
+            } finally {
+                verrouJournal.unlock();
+            }
+        }
+
+        void compacter() throws IOException {
+            verrouJournal.lock();
+            try {
+                compactage = true;
+                aEcrire.signal();
+                while (compactage && erreur == null && !ferme) {
+                    ecrit.awaitUninterruptibly();
+                }
+                if (erreur != null) {
+                    throw erreur;
+                }
+            } finally {
+                verrouJournal.unlock();
+            }
+        }
+
+        void fermer() {
+            verrouJournal.lock();
+            try {
+                if (ferme) {
+                    return;
+                }
+                ferme = true;
+                aEcrire.signal();
+            } finally {
+                verrouJournal.unlock();
+            }
+            try {
+                ecrivain.join(TimeUnit.SECONDS.toMillis(30));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void boucler() {
+            try {
+                while (true) {
+                    boolean arreter;
+                    boolean compacter;
+                    long numero;
+                    verrouJournal.lock();
+                    try {
+                        while (enAttente.size() == 0 && !ferme && !compactage) {
+                            aEcrire.awaitUninterruptibly();
+                        }
+                        ByteArrayOutputStream plein = enAttente;
+                        enAttente = enEcriture;
+                        enEcriture = plein;
+                        List<byte[]> contenus = contenusEnAttente;
+                        contenusEnAttente = contenusEnEcriture;
+                        contenusEnEcriture = contenus;
+                        numero = dernierNumero;
+                        arreter = ferme && enEcriture.size() == 0;
+                        compacter = compactage;
+                    } finally {
+                        verrouJournal.unlock();
+                    }
+                    if (enEcriture.size() > 0) {
+                        ByteBuffer octets = ByteBuffer.wrap(enEcriture.toByteArray());
+                        taille += octets.remaining();
+                        while (octets.hasRemaining()) {
+                            canal.write(octets);
+                        }
+                        if (SYNCHRO) {
+                            canal.force(false);
+                        }
+                        enEcriture.reset();
+                        groupes++;
+                    }
+                    // Le groupe est durable : il est appliqué dans l'ordre du journal, comme à la relecture
+                    Object[] issues = new Object[contenusEnEcriture.size()];
+                    verrou.writeLock().lock();
+                    try {
+                        for (int i = 0; i < issues.length; i++) {
+                            try {
+                                issues[i] = appliquer(contenusEnEcriture.get(i));
+                            } catch (SQLException refuse) {
+                                issues[i] = refuse;
+                            }
+                        }
+                    } finally {
+                        verrou.writeLock().unlock();
+                    }
+                    contenusEnEcriture.clear();
+                    verrouJournal.lock();
+                    try {
+                        long premier = numero - issues.length + 1;
+                        for (int i = 0; i < issues.length; i++) {
+                            boolean refuse = issues[i] instanceof SQLException;
+                            if (refuse) {
+                                refus++;
+                            }
+                            if (attendus.remove(premier + i)) {
+                                resultats.put(premier + i, issues[i]);
+                            } else if (refuse) {
+                                refusSansAttente++;
+                                System.out.println("Enregistrement " + (premier + i) + " refusé : "
+                                        + ((SQLException) issues[i]).getMessage());
+                            }
+                        }
+                        numeroApplique = numero;
+                        ecrit.signalAll();
+                    } finally {
+                        verrouJournal.unlock();
+                    }
+                    if (compacter || taille >= SEUIL_JOURNAL) {
+                        remplacerParInstantane(numero);
+                    }
+                    if (arreter) {
+                        canal.close();
+                        return;
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                System.out.println("Erreur d'écriture du journal du moteur en mémoire : " + e.getMessage());
+                verrouJournal.lock();
+                try {
+                    erreur = e instanceof IOException ? (IOException) e : new IOException(e);
+                    compactage = false;
+                    ecrit.signalAll();
+                } finally {
+                    verrouJournal.unlock();
+                }
+            }
+        }
+
+        /**
+         * Ouvre un journal neuf, écrit l'instantané puis supprime les journaux qu'il remplace.
+         * L'état est celui du numéro appliqué : ce thread est le seul à le modifier, et les
+         * enregistrements arrivés entre-temps iront dans le journal neuf.
+         */
+        private void remplacerParInstantane(long numero) throws IOException {
+            canal.close();
+            canal = FileChannel.open(dossier.resolve(PREFIXE_JOURNAL + (numero + 1) + SUFFIXE_JOURNAL),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            taille = canal.size();
+            ecrireInstantane(numero);
+            for (Path ancien : journaux()) {
+                if (premierNumero(ancien) <= numero) {
+                    Files.delete(ancien);
+                }
+            }
+            verrouJournal.lock();
+            try {
+                compactage = false;
+                ecrit.signalAll();
+            } finally {
+                verrouJournal.unlock();
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "journal[enregistrements=" + numeroApplique + ", refus=" + refus + ", octets=" + taille
+                    + ", groupes=" + groupes + "]";
+        }
+    }
+
+    // ---------------------------------------------------------------- structures
+
+    /**
+     * Contenu d'un enregistrement : type, identifiant, puis les champs de l'opération.
+     */
+    private static final class Enregistrement {
+        private final ByteArrayOutputStream octets = new ByteArrayOutputStream(128);
+        private final DataOutputStream out = new DataOutputStream(octets);
+
+        Enregistrement(byte type) {
+            octets.write(type);
+        }
+
+        Enregistrement entier(int valeur) {
+            try {
+                out.writeInt(valeur);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return this;
+        }
+
+        Enregistrement texte(String valeur) {
+            try {
+                ecrireTexte(out, valeur);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return this;
+        }
+
+        byte[] octets() {
+            return octets.toByteArray();
+        }
+    }
+
+    /**
+     * Une recette et ses liaisons, jamais modifiée après sa création.
+     */
+    private static final class Fiche {
+        final Main.Recette recette;
+        final int[] ingredients;
+        final String[] quantites;
+
+        Fiche(Main.Recette recette, int[] ingredients, String[] quantites) {
+            this.recette = recette;
+            this.ingredients = ingredients;
+            this.quantites = quantites;
+        }
+
+        Fiche avec(int idIngredient, String quantite) {
+            int n = ingredients.length;
+            int[] ids = Arrays.copyOf(ingredients, n + 1);
+            String[] qs = Arrays.copyOf(quantites, n + 1);
+            ids[n] = idIngredient;
+            qs[n] = quantite;
+            return new Fiche(recette, ids, qs);
+        }
+
+        Fiche sans(int idIngredient) {
+            for (int i = 0; i < ingredients.length; i++) {
+                if (ingredients[i] == idIngredient) {
+                    int[] ids = new int[ingredients.length - 1];
+                    String[] qs = new String[ingredients.length - 1];
+                    System.arraycopy(ingredients, 0, ids, 0, i);
+                    System.arraycopy(ingredients, i + 1, ids, i, ids.length - i);
+                    System.arraycopy(quantites, 0, qs, 0, i);
+                    System.arraycopy(quantites, i + 1, qs, i, qs.length - i);
+                    return new Fiche(recette, ids, qs);
+                }
+            }
+            return this;
+        }
+    }
+
+    /**
+     * Table de hachage à clés int strictement positives, à adressage ouvert et sondage linéaire.
+     * La clé 0 marque une case libre ; la suppression recule les éléments suivants au lieu
+     * de laisser des pierres tombales.
+     */
+    private static final class TableEntiers<V> {
+        private int[] cles = new int[64];
+        private Object[] valeurs = new Object[64];
+        private int taille;
+
+        int taille() {
+            return taille;
+        }
+
+        @SuppressWarnings("unchecked")
+        V lire(int cle) {
+            if (cle <= 0) {
+                return null;
+            }
+            int masque = cles.length - 1;
+            for (int i = melanger(cle) & masque; cles[i] != 0; i = (i + 1) & masque) {
+                if (cles[i] == cle) {
+                    return (V) valeurs[i];
+                }
+            }
+            return null;
+        }
+
+        void ecrire(int cle, V valeur) {
+            if ((taille + 1) * 4 > cles.length * 3) {
+                agrandir();
+            }
+            int masque = cles.length - 1;
+            int i = melanger(cle) & masque;
+            while (cles[i] != 0 && cles[i] != cle) {
+                i = (i + 1) & masque;
+            }
+            if (cles[i] == 0) {
+                cles[i] = cle;
+                taille++;
+            }
+            valeurs[i] = valeur;
+        }
+
+        @SuppressWarnings("unchecked")
+        V retirer(int cle) {
+            if (cle <= 0) {
+                return null;
+            }
+            int masque = cles.length - 1;
+            int i = melanger(cle) & masque;
+            while (cles[i] != cle) {
+                if (cles[i] == 0) {
+                    return null;
+                }
+                i = (i + 1) & masque;
+            }
+            V ancienne = (V) valeurs[i];
+            // Recule les éléments de la même grappe dont la case idéale précède le trou
+            int trou = i;
+            for (int j = (i + 1) & masque; cles[j] != 0; j = (j + 1) & masque) {
+                int ideale = melanger(cles[j]) & masque;
+                if (((j - ideale) & masque) >= ((j - trou) & masque)) {
+                    cles[trou] = cles[j];
+                    valeurs[trou] = valeurs[j];
+                    trou = j;
+                }
+            }
+            cles[trou] = 0;
+            valeurs[trou] = null;
+            taille--;
+            return ancienne;
+        }
+
+        @SuppressWarnings("unchecked")
+        private void agrandir() {
+            int[] anciennesCles = cles;
+            Object[] anciennesValeurs = valeurs;
+            cles = new int[anciennesCles.length * 2];
+            valeurs = new Object[anciennesCles.length * 2];
+            taille = 0;
+            for (int i = 0; i < anciennesCles.length; i++) {
+                if (anciennesCles[i] != 0) {
+                    ecrire(anciennesCles[i], (V) anciennesValeurs[i]);
+                }
+            }
+        }
+
+        private static int melanger(int cle) {
+            int h = cle * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+}
@@ -0,0 +1,601 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache des recettes consultées une à une : la recette, le nom de son auteur, sa version et
+ * ses ingrédients, soit ce que renvoie GET /recettes/{id}. Une recette servie depuis le cache
+ * ne demande aucun accès à la base ; un échec la lit en deux requêtes et l'y place.
+ * <p>
+ * Le cache a deux niveaux :
+ * <ul>
+ * <li>les fiches (colonnes scalaires et ingrédients) sont sur le tas, en nombre borné par
+ *     recette.cache.recettes.taille, selon la politique W-TinyLFU : une petite fenêtre LRU
+ *     reçoit les nouvelles fiches, et celle qui en sort n'entre dans la zone principale
+ *     (LRU segmentée) que si elle a été demandée plus souvent que la fiche qu'elle en
+ *     chasserait, d'après un sketch de fréquences. Un parcours ponctuel du catalogue ne
+ *     chasse donc pas les recettes les plus consultées ;</li>
+ * <li>la description et les instructions, qui peuvent être longues, sont encodées hors du tas
+ *     dans une zone circulaire de recette.cache.textes.octets octets (64 Mio par défaut) :
+ *     un tampon direct, ou un fichier projeté en mémoire si recette.cache.textes.fichier est
+ *     donné. Les textes les plus anciens sont écrasés en premier. Avec 0 octet, les textes
+ *     restent dans les fiches.</li>
+ * </ul>
+ * Le cache est invalidé par les écritures elles-mêmes : il est abonné au {@link JournalAudit},
+ * qui lui transmet après validation les événements de chaque transaction sur Recette,
+ * Recette_Ingredient, Auteur et Ingredient. Une durée de vie (recette.cache.recettes.ttlMs)
+ * borne en plus l'âge d'une fiche, pour les écritures faites hors de l'application.
+ * Les recettes renvoyées sont des copies que l'appelant peut modifier.
+ */
+public class RecetteCache {
+
+    private static final RecetteCache PARTAGE = creerPartage();
+
+    private final int capacite;
+    private final int capaciteFenetre;
+    private final int capaciteProtegee;
+    private final long dureeVieMs;
+
+    /** Fenêtre LRU des fiches récemment chargées. */
+    private final LinkedHashMap<Integer, Fiche> fenetre = new LinkedHashMap<>(16, 0.75f, true);
+    /** Zone principale : fiches admises, pas encore redemandées. */
+    private final LinkedHashMap<Integer, Fiche> probation = new LinkedHashMap<>(16, 0.75f, true);
+    /** Zone principale : fiches redemandées depuis leur admission. */
+    private final LinkedHashMap<Integer, Fiche> protegee = new LinkedHashMap<>(16, 0.75f, true);
+    private final Frequences frequences;
+    private final ZoneTextes textes;
+
+    /** Incrémentée à chaque invalidation pour écarter un chargement commencé avant. */
+    private final AtomicLong generation = new AtomicLong();
+    private long succes;
+    private long echecs;
+    private long admissions;
+    private long refus;
+    private long evictions;
+    private long invalidations;
+
+    /**
+     * Crée un cache.
+     *
+     * @param capacite Le nombre maximal de fiches sur le tas (0 désactive le cache)
+     * @param dureeVieMs La durée de vie d'une fiche, en millisecondes
+     * @param textes La zone des textes hors du tas, ou null pour garder les textes dans les fiches
+     */
+    public RecetteCache(int capacite, long dureeVieMs, ZoneTextes textes) {
+        this.capacite = Math.max(0, capacite);
+        this.capaciteFenetre = Math.max(1, this.capacite / 100);
+        this.capaciteProtegee = (this.capacite - capaciteFenetre) * 4 / 5;
+        this.dureeVieMs = dureeVieMs;
+        this.frequences = new Frequences(Math.max(1, this.capacite));
+        this.textes = textes;
+    }
+
+    /**
+     * @return Le cache partagé par l'application, abonné au journal d'audit
+     */
+    public static RecetteCache partage() {
+        return PARTAGE;
+    }
+
+    private static RecetteCache creerPartage() {
+        long octets = Long.getLong("recette.cache.textes.octets", 64L << 20);
+        ZoneTextes zone = null;
+        if (octets > 0) {
+            String fichier = System.getProperty("recette.cache.textes.fichier");
+            try {
+                zone = fichier == null ? new ZoneTextes(ByteBuffer.allocateDirect((int) Math.min(octets, Integer.MAX_VALUE)))
+                        : ZoneTextes.projeter(fichier, octets);
+            } catch (IOException | RuntimeException e) {
+                System.out.println("Zone des textes du cache indisponible, textes gardés sur le tas : " + e.getMessage());
+            }
+        }
+        RecetteCache cache = new RecetteCache(Integer.getInteger("recette.cache.recettes.taille", 10_000),
+                Long.getLong("recette.cache.recettes.ttlMs", 300_000), zone);
+        JournalAudit.abonner(cache::invalider);
+        return cache;
+    }
+
+    /**
+     * Retourne une recette avec le nom de son auteur, ses textes complets et ses ingrédients,
+     * depuis le cache si possible.
+     *
+     * @param idRecette L'identifiant de la recette
+     * @return Une copie de la recette, ou null si elle n'existe pas
+     * @throws SQLException Si la recette doit être lue et que la lecture échoue
+     */
+    public RecetteRepository.RecetteDetail trouver(int idRecette) throws SQLException {
+        long gen = generation.get();
+        Fiche fiche = capacite == 0 ? null : obtenir(idRecette);
+        if (fiche != null) {
+            if (textes == null) {
+                return fiche.detail(fiche.description, fiche.instructions);
+            }
+            String[] t = textes.lire(idRecette);
+            if (t != null) {
+                return fiche.detail(t[0], t[1]);
+            }
+        }
+
+        RecetteRepository.RecetteDetail detail;
+        List<RecetteRepository.LigneIngredient> ingredients = null;
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            RecetteRepository recettes = new RecetteRepository(conn);
+            detail = recettes.trouver(idRecette);
+            if (detail != null && fiche == null) {
+                ingredients = recettes.listerIngredients(idRecette);
+            }
+        }
+        if (detail == null) {
+            return null;
+        }
+        if (fiche == null) {
+            fiche = new Fiche(detail, ingredients, textes == null, System.currentTimeMillis() + dureeVieMs);
+            if (capacite > 0) {
+                placer(fiche, gen);
+            }
+        }
+        if (textes != null && capacite > 0 && generation.get() == gen) {
+            textes.ecrire(idRecette, detail.description, detail.instructions);
+        }
+        detail.ingredients.addAll(fiche.ingredients);
+        return detail;
+    }
+
+    /**
+     * Oublie une recette ; la prochaine lecture la relira en base.
+     *
+     * @param idRecette L'identifiant de la recette
+     */
+    public void invalider(int idRecette) {
+        generation.incrementAndGet();
+        synchronized (this) {
+            if (retirer(idRecette)) {
+                invalidations++;
+            }
+        }
+        if (textes != null) {
+            textes.retirer(idRecette);
+        }
+    }
+
+    /**
+     * Oublie les recettes touchées par les événements d'une transaction validée : la recette
+     * ou ses liaisons modifiées, les recettes d'un auteur modifié ou supprimé, et tout le cache
+     * pour un ingrédient modifié ou supprimé (les fiches ne retiennent que son nom).
+     *
+     * @param evenements Les événements transmis par le {@link JournalAudit}
+     */
+    public void invalider(List<JournalAudit.Evenement> evenements) {
+        for (JournalAudit.Evenement evenement : evenements) {
+            switch (evenement.table) {
+                case "Recette":
+                case "Recette_Ingredient":
+                    invalider(evenement.id);
+                    break;
+                case "Auteur":
+                    if (!evenement.operation.equals("INSERT")) {
+                        invaliderAuteur(evenement.id);
+                    }
+                    break;
+                case "Ingredient":
+                    if (!evenement.operation.equals("INSERT")) {
+                        vider();
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Oublie toutes les recettes.
+     */
+    public void vider() {
+        generation.incrementAndGet();
+        synchronized (this) {
+            invalidations += fenetre.size() + probation.size() + protegee.size();
+            fenetre.clear();
+            probation.clear();
+            protegee.clear();
+        }
+        if (textes != null) {
+            textes.vider();
+        }
+    }
+
+    /**
+     * @return Les mesures du cache au format texte de Prometheus
+     */
+    public String texte() {
+        StringBuilder sb = new StringBuilder();
+        synchronized (this) {
+            compteur(sb, "recette_cache_succes_total", succes);
+            compteur(sb, "recette_cache_echecs_total", echecs);
+            compteur(sb, "recette_cache_admissions_total", admissions);
+            compteur(sb, "recette_cache_refus_total", refus);
+            compteur(sb, "recette_cache_evictions_total", evictions);
+            compteur(sb, "recette_cache_invalidations_total", invalidations);
+            jauge(sb, "recette_cache_fiches", fenetre.size() + probation.size() + protegee.size());
+            jauge(sb, "recette_cache_taux_succes", taux(succes, echecs));
+        }
+        if (textes != null) {
+            synchronized (textes) {
+                compteur(sb, "recette_cache_textes_succes_total", textes.succes);
+                compteur(sb, "recette_cache_textes_echecs_total", textes.echecs);
+                compteur(sb, "recette_cache_textes_admissions_total", textes.admissions);
+                compteur(sb, "recette_cache_textes_refus_total", textes.refus);
+                compteur(sb, "recette_cache_textes_evictions_total", textes.evictions);
+                jauge(sb, "recette_cache_textes_octets", textes.octetsUtilises());
+                jauge(sb, "recette_cache_textes_taux_succes", taux(textes.succes, textes.echecs));
+            }
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public synchronized String toString() {
+        String s = "RecetteCache[fiches=" + (fenetre.size() + probation.size() + protegee.size()) + "/" + capacite
+                + ", succes=" + succes + ", echecs=" + echecs + ", admissions=" + admissions + ", refus=" + refus
+                + ", evictions=" + evictions + ", invalidations=" + invalidations
+                + String.format(Locale.ROOT, ", taux=%.3f", taux(succes, echecs));
+        return s + (textes == null ? "" : ", " + textes) + "]";
+    }
+
+    // ---------------------------------------------------------------- niveau 1 : W-TinyLFU
+
+    /**
+     * Cherche une fiche ; une fiche de la probation redemandée passe dans la zone protégée.
+     */
+    private synchronized Fiche obtenir(int idRecette) {
+        frequences.incrementer(idRecette);
+        Fiche fiche = fenetre.get(idRecette);
+        if (fiche == null) {
+            fiche = protegee.get(idRecette);
+        }
+        if (fiche == null) {
+            fiche = probation.remove(idRecette);
+            if (fiche != null) {
+                protegee.put(idRecette, fiche);
+                if (protegee.size() > capaciteProtegee) {
+                    Map.Entry<Integer, Fiche> ancienne = plusAncienne(protegee);
+                    protegee.remove(ancienne.getKey());
+                    probation.put(ancienne.getKey(), ancienne.getValue());
+                }
+            }
+        }
+        if (fiche != null && System.currentTimeMillis() >= fiche.expiration) {
+            retirer(idRecette);
+            fiche = null;
+        }
+        if (fiche == null) {
+            echecs++;
+        } else {
+            succes++;
+        }
+        return fiche;
+    }
+
+    /**
+     * Place une fiche chargée dans la fenêtre, sauf si une invalidation a eu lieu depuis le
+     * début de son chargement. La fiche qui sort de la fenêtre est soumise à l'admission.
+     */
+    private synchronized void placer(Fiche fiche, long gen) {
+        if (generation.get() != gen) {
+            return;
+        }
+        fenetre.put(fiche.id_recette, fiche);
+        if (fenetre.size() <= capaciteFenetre) {
+            return;
+        }
+        Map.Entry<Integer, Fiche> sortante = plusAncienne(fenetre);
+        fenetre.remove(sortante.getKey());
+        int candidate = sortante.getKey();
+
+        if (probation.size() + protegee.size() < capacite - capaciteFenetre) {
+            probation.put(candidate, sortante.getValue());
+            admissions++;
+            return;
+        }
+        LinkedHashMap<Integer, Fiche> zone = probation.isEmpty() ? protegee : probation;
+        int victime = plusAncienne(zone).getKey();
+        if (frequences.estimer(candidate) > frequences.estimer(victime)) {
+            zone.remove(victime);
+            probation.put(candidate, sortante.getValue());
+            admissions++;
+            evictions++;
+            if (textes != null) {
+                textes.retirer(victime);
+            }
+        } else {
+            refus++;
+            if (textes != null) {
+                textes.retirer(candidate);
+            }
+        }
+    }
+
+    private boolean retirer(int idRecette) {
+        return fenetre.remove(idRecette) != null | probation.remove(idRecette) != null
+                | protegee.remove(idRecette) != null;
+    }
+
+    private void invaliderAuteur(int idAuteur) {
+        List<Integer> ids = new ArrayList<>();
+        generation.incrementAndGet();
+        synchronized (this) {
+            for (Map<Integer, Fiche> zone : List.of(fenetre, probation, protegee)) {
+                for (Fiche fiche : zone.values()) {
+                    if (fiche.auteur_id == idAuteur) {
+                        ids.add(fiche.id_recette);
+                    }
+                }
+            }
+        }
+        for (int idRecette : ids) {
+            invalider(idRecette);
+        }
+    }
+
+    private static Map.Entry<Integer, Fiche> plusAncienne(LinkedHashMap<Integer, Fiche> zone) {
+        return zone.entrySet().iterator().next();
+    }
+
+    private static double taux(long succes, long echecs) {
+        long total = succes + echecs;
+        return total == 0 ? 0 : (double) succes / total;
+    }
+
+    private static void compteur(StringBuilder sb, String nom, long valeur) {
+        sb.append("# TYPE ").append(nom).append(" counter\n").append(nom).append(' ').append(valeur).append('\n');
+    }
+
+    private static void jauge(StringBuilder sb, String nom, double valeur) {
+        sb.append("# TYPE ").append(nom).append(" gauge\n").append(nom).append(' ')
+                .append(valeur == Math.rint(valeur) ? String.valueOf((long) valeur)
+                        : String.format(Locale.ROOT, "%.4f", valeur)).append('\n');
+    }
+
+    /**
+     * Recette en cache, immuable : ses colonnes scalaires, ses ingrédients et, sans zone
+     * hors du tas, ses textes.
+     */
+    private static final class Fiche {
+        final int id_recette;
+        final String titre;
+        final int temps_preparation;
+        final int temps_cuisson;
+        final int auteur_id;
+        final String auteur_nom;
+        final int version;
+        final List<RecetteRepository.LigneIngredient> ingredients;
+        final String description;
+        final String instructions;
+        final long expiration;
+
+        Fiche(RecetteRepository.RecetteDetail detail, List<RecetteRepository.LigneIngredient> ingredients,
+              boolean avecTextes, long expiration) {
+            this.id_recette = detail.id_recette;
+            this.titre = detail.titre;
+            this.temps_preparation = detail.temps_preparation;
+            this.temps_cuisson = detail.temps_cuisson;
+            this.auteur_id = detail.auteur_id;
+            this.auteur_nom = detail.auteur_nom;
+            this.version = detail.version;
+            this.ingredients = Collections.unmodifiableList(new ArrayList<>(ingredients));
+            this.description = avecTextes ? detail.description : null;
+            this.instructions = avecTextes ? detail.instructions : null;
+            this.expiration = expiration;
+        }
+
+        RecetteRepository.RecetteDetail detail(String description, String instructions) {
+            RecetteRepository.RecetteDetail detail = new RecetteRepository.RecetteDetail(titre, description,
+                    instructions, temps_preparation, temps_cuisson, auteur_id, auteur_nom);
+            detail.id_recette = id_recette;
+            detail.version = version;
+            detail.ingredients.addAll(ingredients);
+            return detail;
+        }
+    }
+
+    /**
+     * Sketch de fréquences (count-min) à compteurs de 4 bits : quatre lignes de compteurs,
+     * une estimation est le minimum des quatre. Tous les compteurs sont divisés par deux
+     * après 10 accès par fiche de capacité, pour que les recettes autrefois populaires
+     * laissent la place aux nouvelles.
+     */
+    private static final class Frequences {
+        private static final int[] GRAINES = {0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F};
+
+        private final byte[] compteurs;
+        private final int largeur;
+        private final int periode;
+        private int acces;
+
+        Frequences(int capacite) {
+            int l = 16;
+            while (l < capacite && l < (1 << 26)) {
+                l <<= 1;
+            }
+            this.largeur = l;
+            this.compteurs = new byte[GRAINES.length * l];
+            this.periode = (int) Math.min(Integer.MAX_VALUE, 10L * capacite);
+        }
+
+        void incrementer(int cle) {
+            for (int ligne = 0; ligne < GRAINES.length; ligne++) {
+                int i = indice(cle, ligne);
+                if (compteurs[i] < 15) {
+                    compteurs[i]++;
+                }
+            }
+            if (++acces >= periode) {
+                for (int i = 0; i < compteurs.length; i++) {
+                    compteurs[i] >>= 1;
+                }
+                acces /= 2;
+            }
+        }
+
+        int estimer(int cle) {
+            int min = 15;
+            for (int ligne = 0; ligne < GRAINES.length; ligne++) {
+                min = Math.min(min, compteurs[indice(cle, ligne)]);
+            }
+            return min;
+        }
+
+        private int indice(int cle, int ligne) {
+            int h = cle * GRAINES[ligne];
+            h ^= h >>> 16;
+            h *= 0x7FEB352D;
+            h ^= h >>> 15;
+            return ligne * largeur + (h & (largeur - 1));
+        }
+    }
+
+    // ---------------------------------------------------------------- niveau 2 : textes hors du tas
+
+    /**
+     * Zone circulaire hors du tas pour la description et les instructions des recettes en
+     * cache, encodées en UTF-8. Les écritures se suivent dans un espace de positions logiques
+     * croissantes ; l'octet de la position p est à p modulo la capacité, et un texte placé en
+     * p est intact tant que la tête d'écriture n'a pas dépassé p + capacité. Les textes sont
+     * donc évincés dans leur ordre d'écriture, sans fragmentation. Un texte plus grand que le
+     * huitième de la zone est refusé, pour qu'il ne chasse pas à lui seul des dizaines d'autres.
+     */
+    static final class ZoneTextes {
+        private final ByteBuffer zone;
+        private final int capacite;
+        /** Position logique de la prochaine écriture. */
+        private long tete;
+        /** Position logique et longueur du texte de chaque recette. */
+        private final Map<Integer, long[]> emplacements = new HashMap<>();
+        /** Identifiant et position de chaque écriture, dans l'ordre, pour l'éviction. */
+        private final ArrayDeque<long[]> ordre = new ArrayDeque<>();
+        long succes;
+        long echecs;
+        long admissions;
+        long refus;
+        long evictions;
+
+        ZoneTextes(ByteBuffer zone) {
+            this.zone = zone;
+            this.capacite = zone.capacity();
+        }
+
+        /**
+         * Projette un fichier en mémoire comme zone des textes ; son contenu précédent est ignoré.
+         */
+        static ZoneTextes projeter(String fichier, long octets) throws IOException {
+            try (FileChannel canal = FileChannel.open(Paths.get(fichier), StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                return new ZoneTextes(canal.map(FileChannel.MapMode.READ_WRITE, 0, Math.min(octets, Integer.MAX_VALUE)));
+            }
+        }
+
+        /**
+         * @return La description et les instructions, ou null si elles ne sont pas dans la zone
+         */
+        synchronized String[] lire(int idRecette) {
+            long[] e = emplacements.get(idRecette);
+            if (e == null) {
+                echecs++;
+                return null;
+            }
+            succes++;
+            int p = (int) (e[0] % capacite);
+            String description = lireTexte(p);
+            int suite = p + 4 + Math.max(0, zone.getInt(p));
+            return new String[] {description, lireTexte(suite)};
+        }
+
+        synchronized void ecrire(int idRecette, String description, String instructions) {
+            byte[] d = description == null ? null : description.getBytes(StandardCharsets.UTF_8);
+            byte[] i = instructions == null ? null : instructions.getBytes(StandardCharsets.UTF_8);
+            int longueur = 8 + (d == null ? 0 : d.length) + (i == null ? 0 : i.length);
+            if (longueur > capacite / 8) {
+                refus++;
+                emplacements.remove(idRecette);
+                return;
+            }
+            long position = tete;
+            if (position % capacite + longueur > capacite) {
+                position += capacite - position % capacite;
+            }
+            int p = (int) (position % capacite);
+            p = ecrireTexte(p, d);
+            ecrireTexte(p, i);
+            tete = position + longueur;
+            emplacements.put(idRecette, new long[] {position, longueur});
+            ordre.addLast(new long[] {idRecette, position});
+            admissions++;
+            // Textes écrasés par cette écriture
+            while (!ordre.isEmpty() && ordre.peekFirst()[1] < tete - capacite) {
+                long[] ancien = ordre.pollFirst();
+                long[] e = emplacements.get((int) ancien[0]);
+                if (e != null && e[0] == ancien[1]) {
+                    emplacements.remove((int) ancien[0]);
+                    evictions++;
+                }
+            }
+        }
+
+        synchronized void retirer(int idRecette) {
+            emplacements.remove(idRecette);
+        }
+
+        synchronized void vider() {
+            emplacements.clear();
+            ordre.clear();
+        }
+
+        synchronized long octetsUtilises() {
+            long octets = 0;
+            for (long[] e : emplacements.values()) {
+                octets += e[1];
+            }
+            return octets;
+        }
+
+        private String lireTexte(int p) {
+            int longueur = zone.getInt(p);
+            if (longueur < 0) {
+                return null;
+            }
+            byte[] octets = new byte[longueur];
+            zone.get(p + 4, octets);
+            return new String(octets, StandardCharsets.UTF_8);
+        }
+
+        private int ecrireTexte(int p, byte[] octets) {
+            zone.putInt(p, octets == null ? -1 : octets.length);
+            if (octets != null) {
+                zone.put(p + 4, octets);
+                return p + 4 + octets.length;
+            }
+            return p + 4;
+        }
+
+        @Override
+        public synchronized String toString() {
+            return "textes[" + emplacements.size() + " recettes, " + capacite + " octets, succes=" + succes
+                    + ", echecs=" + echecs + ", admissions=" + admissions + ", refus=" + refus
+                    + ", evictions=" + evictions + "]";
+        }
+    }
+}
@@ -0,0 +1,1052 @@
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Accès aux données des tables Recette et Recette_Ingredient, ainsi qu'aux vues
+ * et au package RECETTE_PKG qui s'y rattachent.
+ * Les requêtes sont préparées une seule fois par connexion grâce au {@link StatementCache}.
+ * <p>
+ * Les listes ne lisent pas les CLOB description et instructions : seulement un aperçu de la
+ * description, ses {@link #APERCU} premiers caractères convertis en VARCHAR2 par la base.
+ * Les textes complets se lisent à la demande, en flux, avec {@link #lireDescription} et
+ * {@link #lireInstructions}.
+ */
+public class RecetteRepository {
+
+    /** Longueur maximale de l'aperçu de la description dans les listes, en caractères. */
+    static final int APERCU = Integer.getInteger("recette.liste.apercu", 200);
+
+    static final String SQL_AJOUTER =
+        "INSERT INTO Recette (titre, description, instructions, temps_preparation, temps_cuisson, auteur_id) " +
+        "VALUES (?, ?, ?, ?, ?, ?)";
+    static final String SQL_LIER =
+        "INSERT INTO Recette_Ingredient (id_recette, id_ingredient, quantite) VALUES (?, ?, ?)";
+    // Résumé d'une recette recalculé à partir de ses seules lignes, par les clés primaires.
+    // La cote est en dixièmes, arrondie comme CoteSanteCalculateur.dixiemes.
+    static final String SQL_RESUMER = sqlResumer("WHERE r.id_recette = ? ");
+    // Le même calcul pour toutes les recettes, en un parcours
+    private static final String SQL_RECONSTRUIRE_RESUMES = sqlResumer("");
+    private static final String SQL_SUPPRIMER = "DELETE FROM Recette WHERE id_recette = ?";
+    // Verrou pris avant de lire les liaisons supprimées en cascade
+    private static final String SQL_VERROUILLER = "SELECT id_recette FROM Recette WHERE id_recette = ? FOR UPDATE";
+    // Verrou de l'auteur pris avant d'ajouter une recette, comme AuteurRepository.supprimer
+    private static final String SQL_VERROUILLER_AUTEUR = "SELECT id_auteur FROM Auteur WHERE id_auteur = ? FOR UPDATE";
+    private static final String SQL_EDITER =
+        "SELECT titre, temps_preparation, temps_cuisson, auteur_id, version FROM Recette WHERE id_recette = ?";
+    private static final String SQL_LIENS =
+        "SELECT id_ingredient, quantite FROM Recette_Ingredient WHERE id_recette = ? ORDER BY id_ingredient";
+    private static final String SQL_VERSION = "SELECT version FROM Recette WHERE id_recette = ?";
+    // Toute écriture sur les liaisons d'une recette change sa version, pour que les éditions
+    // ouvertes avant elle échouent au lieu de l'écraser.
+    private static final String SQL_NOUVELLE_VERSION =
+        "UPDATE Recette SET version = version + 1 WHERE id_recette = ?";
+    private static final String SQL_QUANTITE =
+        "UPDATE Recette_Ingredient SET quantite = ? WHERE id_recette = ? AND id_ingredient = ?";
+    private static final String SQL_DELIER =
+        "DELETE FROM Recette_Ingredient WHERE id_recette = ? AND id_ingredient = ?";
+    private static final String SQL_LIAISONS = "SELECT id_ingredient FROM Recette_Ingredient WHERE id_recette = ?";
+    private static final String SQL_TROUVER =
+        "SELECT r.id_recette, r.titre, r.description, r.instructions, r.temps_preparation, r.temps_cuisson, " +
+        "r.auteur_id, r.version, a.nom as auteur_nom FROM Recette r " +
+        "JOIN Auteur a ON r.auteur_id = a.id_auteur " +
+        "WHERE r.id_recette = ?";
+    private static final String SQL_TROUVER_APERCU =
+        "SELECT r.id_recette, r.titre, " + apercu("r.description") + ", " +
+        "r.temps_preparation, r.temps_cuisson, r.auteur_id, a.nom as auteur_nom FROM Recette r " +
+        "JOIN Auteur a ON r.auteur_id = a.id_auteur " +
+        "WHERE r.id_recette = ?";
+    private static final String SQL_DESCRIPTION = "SELECT description FROM Recette WHERE id_recette = ?";
+    private static final String SQL_INSTRUCTIONS = "SELECT instructions FROM Recette WHERE id_recette = ?";
+    // Pagination par clé : la sous-requête se positionne directement après le dernier
+    // id_recette lu grâce à l'index de la clé primaire, quel que soit le rang de la page.
+    private static final String SQL_PAGE =
+        "SELECT r.id_recette, r.titre, r.apercu, r.temps_preparation, r.temps_cuisson, r.auteur_id, " +
+        "a.nom as auteur_nom, i.nom as ingredient_nom, ri.quantite " +
+        "FROM (SELECT id_recette, titre, " + apercu("description") + ", temps_preparation, temps_cuisson, auteur_id " +
+        "      FROM Recette WHERE id_recette > ? ORDER BY id_recette FETCH FIRST ? ROWS ONLY) r " +
+        "JOIN Auteur a ON r.auteur_id = a.id_auteur " +
+        "LEFT JOIN Recette_Ingredient ri ON r.id_recette = ri.id_recette " +
+        "LEFT JOIN Ingredient i ON ri.id_ingredient = i.id_ingredient " +
+        "ORDER BY r.id_recette, i.nom";
+    private static final String SQL_TITRES = "SELECT id_recette, titre FROM Recette";
+    // Titres de quelques recettes : listes IN de taille fixe, pour ne préparer que deux formes
+    private static final int TITRES_PAR_PETITE_REQUETE = 10;
+    private static final int TITRES_PAR_REQUETE = 100;
+    private static final String SQL_TITRES_IN_PETITE = SQL_TITRES +
+        " WHERE id_recette IN (?" + ",?".repeat(TITRES_PAR_PETITE_REQUETE - 1) + ")";
+    private static final String SQL_TITRES_IN = SQL_TITRES +
+        " WHERE id_recette IN (?" + ",?".repeat(TITRES_PAR_REQUETE - 1) + ")";
+    private static final String SQL_COLONNES_RESUME =
+        "SELECT id_recette, titre, auteur_nom, temps_total, nb_ingredients, cote_dixiemes FROM Recette_Resume";
+    // Parcours par clé des index idx_resume_temps et idx_resume_sante
+    private static final String SQL_PAR_TEMPS = SQL_COLONNES_RESUME +
+        " WHERE temps_total >= ? AND (temps_total > ? OR id_recette > ?)" +
+        " ORDER BY temps_total, id_recette FETCH FIRST ? ROWS ONLY";
+    private static final String SQL_PLUS_SAINES = SQL_COLONNES_RESUME +
+        " WHERE cote_dixiemes <= ? AND (cote_dixiemes < ? OR id_recette > ?)" +
+        " ORDER BY cote_dixiemes DESC, id_recette FETCH FIRST ? ROWS ONLY";
+    private static final String SQL_INGREDIENTS =
+        "SELECT ingredient, quantite FROM Vue_Ingredients_Recette WHERE id_recette = ?";
+    private static final String SQL_COTE_SANTE = "{? = call RECETTE_PKG.get_cote_sante(?)}";
+    private static final String SQL_INGREDIENTS_TEXTE = "{? = call RECETTE_PKG.get_ingredients_texte(?)}";
+
+    private final Connection conn;
+    private final StatementCache requetes;
+
+    /**
+     * UPDATE de Recette par {@link #enregistrer}, qui vérifie la version lue par l'édition.
+     * Les CLOB ne sont écrits que s'ils ont été remplacés : quatre formes, chacune préparée une
+     * seule fois, indexées par (description ? 1 : 0) + (instructions ? 2 : 0).
+     */
+    private static final String[] SQL_MODIFIER = new String[4];
+
+    static {
+        for (int i = 0; i < SQL_MODIFIER.length; i++) {
+            SQL_MODIFIER[i] = "UPDATE Recette SET titre = ?, temps_preparation = ?, temps_cuisson = ?"
+                    + ((i & 1) != 0 ? ", description = ?" : "")
+                    + ((i & 2) != 0 ? ", instructions = ?" : "")
+                    + ", version = version + 1 WHERE id_recette = ? AND version = ?";
+        }
+    }
+
+    /**
+     * MERGE dans Recette_Resume des recettes retenues par le filtre, appliqué à Recette r.
+     */
+    private static String sqlResumer(String filtre) {
+        return "MERGE INTO Recette_Resume s " +
+            "USING (SELECT r.id_recette, r.titre, r.auteur_id, a.nom AS auteur_nom, " +
+            "              NVL(r.temps_preparation, 0) + NVL(r.temps_cuisson, 0) AS temps_total, " +
+            "              COUNT(i.id_ingredient) AS nb_ingredients, NVL(SUM(i.cote_sante), 0) AS somme_cotes " +
+            "       FROM Recette r " +
+            "       JOIN Auteur a ON r.auteur_id = a.id_auteur " +
+            "       LEFT JOIN Recette_Ingredient ri ON r.id_recette = ri.id_recette " +
+            "       LEFT JOIN Ingredient i ON ri.id_ingredient = i.id_ingredient " +
+            "       " + filtre +
+            "       GROUP BY r.id_recette, r.titre, r.auteur_id, a.nom, r.temps_preparation, r.temps_cuisson) n " +
+            "ON (s.id_recette = n.id_recette) " +
+            "WHEN MATCHED THEN UPDATE SET titre = n.titre, auteur_id = n.auteur_id, auteur_nom = n.auteur_nom, " +
+            "  temps_total = n.temps_total, nb_ingredients = n.nb_ingredients, somme_cotes = n.somme_cotes, " +
+            "  cote_dixiemes = CASE WHEN n.nb_ingredients = 0 THEN 0 " +
+            "    ELSE FLOOR((20 * n.somme_cotes + n.nb_ingredients) / (2 * n.nb_ingredients)) END " +
+            "WHEN NOT MATCHED THEN INSERT (id_recette, titre, auteur_id, auteur_nom, temps_total, " +
+            "  nb_ingredients, somme_cotes, cote_dixiemes) " +
+            "  VALUES (n.id_recette, n.titre, n.auteur_id, n.auteur_nom, n.temps_total, n.nb_ingredients, " +
+            "  n.somme_cotes, CASE WHEN n.nb_ingredients = 0 THEN 0 " +
+            "    ELSE FLOOR((20 * n.somme_cotes + n.nb_ingredients) / (2 * n.nb_ingredients)) END)";
+    }
+
+    /**
+     * Colonne apercu : le début du CLOB converti en VARCHAR2 par la base, avec un caractère
+     * de plus que l'aperçu pour savoir si la description est tronquée.
+     */
+    private static String apercu(String colonne) {
+        return "TO_CHAR(SUBSTR(" + colonne + ", 1, " + (APERCU + 1) + ")) AS apercu";
+    }
+
+    /**
+     * Crée un dépôt travaillant sur la connexion donnée.
+     *
+     * @param conn La connexion empruntée par l'appelant
+     * @throws SQLException En cas d'erreur d'accès à la connexion
+     */
+    public RecetteRepository(Connection conn) throws SQLException {
+        this.conn = conn;
+        this.requetes = StatementCache.pour(conn);
+    }
+
+    /**
+     * Enregistre une recette sans ingrédient et renseigne son identifiant.
+     *
+     * @param recette La recette à enregistrer
+     * @return L'identifiant généré
+     * @throws SQLException En cas d'erreur SQL
+     */
+    public int ajouter(Main.Recette recette) throws SQLException {
+        return ajouter(recette, Collections.emptyList());
+    }
+
+    /**
+     * Enregistre une recette et ses ingrédients dans une seule transaction, puis renseigne
+     * son identifiant. La recette est insérée en un seul ordre : la description et les
+     * instructions sont transmises en flux plutôt que par EMPTY_CLOB() suivi d'un UPDATE.
+     * Les liaisons aux ingrédients sont envoyées en lot, et chaque insertion est consignée
+     * dans le {@link JournalAudit}.
+     * <p>
+     * Si la connexion est déjà dans une transaction (auto-commit désactivé), l'appelant
+     * reste responsable de la valider ; sinon la transaction est validée ici.
+     *
+     * @param recette La recette à enregistrer
+     * @param liens Les ingrédients de la recette
+     * @return L'identifiant généré
+     * @throws SQLException En cas d'erreur SQL ; rien n'est alors enregistré
+     */
+    public int ajouter(Main.Recette recette, List<LienIngredient> liens) throws SQLException {
+        boolean autoCommit = conn.getAutoCommit();
+        if (autoCommit) {
+            conn.setAutoCommit(false);
+        }
+        try {
+            // Une suppression de l'auteur en cours attend cette insertion, ou la fait attendre
+            PreparedStatement verrou = requetes.preparer(SQL_VERROUILLER_AUTEUR);
+            verrou.setInt(1, recette.auteur_id);
+            try (ResultSet rs = verrou.executeQuery()) {
+                // Sans auteur, l'insertion échoue sur la clé étrangère
+            }
+            PreparedStatement pstmt = requetes.preparer(SQL_AJOUTER, "id_recette");
+            pstmt.setString(1, recette.titre);
+            lierTexte(pstmt, 2, recette.description);
+            lierTexte(pstmt, 3, recette.instructions);
+            pstmt.setInt(4, recette.temps_preparation);
+            pstmt.setInt(5, recette.temps_cuisson);
+            pstmt.setInt(6, recette.auteur_id);
+            if (pstmt.executeUpdate() == 0) {
+                throw new SQLException("Aucune ligne insérée dans Recette.");
+            }
+            try (ResultSet generatedKeys = pstmt.getGeneratedKeys()) {
+                if (!generatedKeys.next()) {
+                    throw new SQLException("Impossible de récupérer l'identifiant de la recette.");
+                }
+                recette.id_recette = generatedKeys.getInt(1);
+            }
+
+            List<JournalAudit.Evenement> evenements = new ArrayList<>(liens.size() + 1);
+            evenements.add(new JournalAudit.Evenement("Recette", "INSERT", recette.id_recette, 0));
+            if (!liens.isEmpty()) {
+                PreparedStatement lier = requetes.preparer(SQL_LIER);
+                for (LienIngredient lien : liens) {
+                    lier.setInt(1, recette.id_recette);
+                    lier.setInt(2, lien.id_ingredient);
+                    lier.setString(3, lien.quantite);
+                    lier.addBatch();
+                    evenements.add(new JournalAudit.Evenement("Recette_Ingredient", "INSERT",
+                            recette.id_recette, lien.id_ingredient));
+                }
+                lier.executeBatch();
+            }
+            resumer(recette.id_recette);
+            JournalAudit.partage().enregistrer(conn, evenements);
+
+            if (autoCommit) {
+                conn.commit();
+            }
+            return recette.id_recette;
+        } catch (SQLException | RuntimeException e) {
+            if (autoCommit) {
+                conn.rollback();
+            }
+            recette.id_recette = 0;
+            throw e;
+        } finally {
+            if (autoCommit) {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    /**
+     * Associe un ingrédient à une recette, change la version de la recette et consigne la
+     * liaison dans le {@link JournalAudit}.
+     *
+     * @param idRecette L'identifiant de la recette
+     * @param idIngredient L'identifiant de l'ingrédient
+     * @param quantite La quantité, par exemple "2 tasses"
+     * @return Le nombre de lignes insérées
+     * @throws SQLException En cas d'erreur SQL
+     */
+    public int lierIngredient(int idRecette, int idIngredient, String quantite) throws SQLException {
+        boolean autoCommit = conn.getAutoCommit();
+        if (autoCommit) {
+            conn.setAutoCommit(false);
+        }
+        try {
+            // La version change d'abord : la ligne de la recette est verrouillée avant la liaison
+            PreparedStatement version = requetes.preparer(SQL_NOUVELLE_VERSION);
+            version.setInt(1, idRecette);
+            version.executeUpdate();
+            PreparedStatement pstmt = requetes.preparer(SQL_LIER);
+            pstmt.setInt(1, idRecette);
+            pstmt.setInt(2, idIngredient);
+            pstmt.setString(3, quantite);
+            int inseres = pstmt.executeUpdate();
+            if (inseres > 0) {
+                resumer(idRecette);
+                JournalAudit.partage().enregistrer(conn, "Recette_Ingredient", "INSERT", idRecette, idIngredient);
+            }
+
+            if (autoCommit) {
+                conn.commit();
+            }
+            return inseres;
+        } catch (SQLException | RuntimeException e) {
+            if (autoCommit) {
+                conn.rollback();
+            }
+            throw e;
+        } finally {
+            if (autoCommit) {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    /**
+     * Ouvre l'édition d'une recette : lit ses colonnes scalaires, sa version et ses liaisons
+     * aux ingrédients, sans verrou. Les liaisons sont lues après la version : si un autre
+     * éditeur enregistre entre les deux lectures, l'enregistrement de cette édition échouera
+     * plutôt que d'écraser ses changements.
+     *
+     * @param idRecette L'identifiant de la recette
+     * @return L'édition, ou null si la recette n'existe pas
+     * @throws SQLException En cas d'erreur SQL
+     */
+    public EditionRecette editer(int idRecette) throws SQLException {
+        PreparedStatement pstmt = requetes.preparer(SQL_EDITER);
+        pstmt.setInt(1, idRecette);
+        String titre;
+        int tempsPreparation;
+        int tempsCuisson;
+        int auteurId;
+        int version;
+        try (ResultSet rs = pstmt.executeQuery()) {
+            if (!rs.next()) {
+                return null;
+            }
+            titre = rs.getString("titre");
+            tempsPreparation = rs.getInt("temps_preparation");
+            tempsCuisson = rs.getInt("temps_cuisson");
+            auteurId = rs.getInt("auteur_id");
+            version = rs.getInt("version");
+        }
+
+        Map<Integer, String> liens = new LinkedHashMap<>();
+        PreparedStatement lire = requetes.preparer(SQL_LIENS);
+        lire.setInt(1, idRecette);
+        try (ResultSet rs = lire.executeQuery()) {
+            while (rs.next()) {
+                liens.put(rs.getInt("id_ingredient"), rs.getString("quantite"));
+            }
+        }
+        return new EditionRecette(idRecette, version, titre, tempsPreparation, tempsCuisson, auteurId, liens);
+    }
+
+    /**
+     * Enregistre les changements d'une édition dans une seule transaction : l'UPDATE de
+     * Recette vérifie que la version n'a pas changé depuis la lecture et l'incrémente, puis
+     * les liaisons retirées, modifiées et ajoutées sont envoyées chacune en un lot, le résumé
+     * est recalculé et les changements sont consignés dans le {@link JournalAudit}.
+     * Une édition sans changement n'accède pas à la base.
+     * <p>
+     * Si la connexion est déjà dans une transaction (auto-commit désactivé), l'appelant
+     * reste responsable de la valider ; sinon la transaction est validée ici, et l'édition
+     * passe à la nouvelle version pour pouvoir être poursuivie.
+     *
+     * @param edition L'édition ouverte par {@link #editer}
+     * @return La nouvelle version de la recette
+     * @throws ConflitVersion Si la recette a été modifiée ou supprimée depuis l'ouverture de
+     *                        l'édition ; rien n'est alors enregistré
+     * @throws SQLException En cas d'erreur SQL ; rien n'est alors enregistré
+     */
+    public int enregistrer(EditionRecette edition) throws SQLException {
+        if (!edition.modifiee()) {
+            return edition.version();
+        }
+        int idRecette = edition.idRecette();
+        boolean autoCommit = conn.getAutoCommit();
+        if (autoCommit) {
+            conn.setAutoCommit(false);
+        }
+        try {
+            int forme = (edition.descriptionModifiee() ? 1 : 0) + (edition.instructionsModifiees() ? 2 : 0);
+            PreparedStatement modifier = requetes.preparer(SQL_MODIFIER[forme]);
+            int index = 1;
+            modifier.setString(index++, edition.titre());
+            modifier.setInt(index++, edition.tempsPreparation());
+            modifier.setInt(index++, edition.tempsCuisson());
+            if (edition.descriptionModifiee()) {
+                lierTexte(modifier, index++, edition.description());
+            }
+            if (edition.instructionsModifiees()) {
+                lierTexte(modifier, index++, edition.instructions());
+            }
+            modifier.setInt(index++, idRecette);
+            modifier.setInt(index, edition.version());
+            if (modifier.executeUpdate() == 0) {
+                throw conflit(edition);
+            }
+
+            List<JournalAudit.Evenement> evenements = new ArrayList<>();
+            if (edition.recetteModifiee() || edition.textesModifies()) {
+                evenements.add(new JournalAudit.Evenement("Recette", "UPDATE", idRecette, 0));
+            }
+            if (!edition.retraits().isEmpty()) {
+                PreparedStatement delier = requetes.preparer(SQL_DELIER);
+                for (int idIngredient : edition.retraits()) {
+                    delier.setInt(1, idRecette);
+                    delier.setInt(2, idIngredient);
+                    delier.addBatch();
+                    evenements.add(new JournalAudit.Evenement("Recette_Ingredient", "DELETE", idRecette, idIngredient));
+                }
+                delier.executeBatch();
+            }
+            if (!edition.quantites().isEmpty()) {
+                PreparedStatement quantite = requetes.preparer(SQL_QUANTITE);
+                for (Map.Entry<Integer, String> lien : edition.quantites().entrySet()) {
+                    quantite.setString(1, lien.getValue());
+                    quantite.setInt(2, idRecette);
+                    quantite.setInt(3, lien.getKey());
+                    quantite.addBatch();
+                    evenements.add(new JournalAudit.Evenement("Recette_Ingredient", "UPDATE", idRecette, lien.getKey()));
+                }
+                quantite.executeBatch();
+            }
+            if (!edition.ajouts().isEmpty()) {
+                PreparedStatement lier = requetes.preparer(SQL_LIER);
+                for (Map.Entry<Integer, String> lien : edition.ajouts().entrySet()) {
+                    lier.setInt(1, idRecette);
+                    lier.setInt(2, lien.getKey());
+                    lier.setString(3, lien.getValue());
+                    lier.addBatch();
+                    evenements.add(new JournalAudit.Evenement("Recette_Ingredient", "INSERT", idRecette, lien.getKey()));
+                }
+                lier.executeBatch();
+            }
+            if (edition.recetteModifiee() || edition.liensModifies()) {
+                resumer(idRecette);
+            }
+            JournalAudit.partage().enregistrer(conn, evenements);
+
+            int nouvelleVersion = edition.version() + 1;
+            if (autoCommit) {
+                conn.commit();
+                edition.enregistree(nouvelleVersion);
+            }
+            return nouvelleVersion;
+        } catch (SQLException | RuntimeException e) {
+            if (autoCommit) {
+                conn.rollback();
+            }
+            throw e;
+        } finally {
+            if (autoCommit) {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    /**
+     * Explique l'échec de la vérification de version : la recette a été supprimée, ou
+     * enregistrée par un autre éditeur.
+     */
+    private ConflitVersion conflit(EditionRecette edition) throws SQLException {
+        PreparedStatement pstmt = requetes.preparer(SQL_VERSION);
+        pstmt.setInt(1, edition.idRecette());
+        try (ResultSet rs = pstmt.executeQuery()) {
+            if (!rs.next()) {
+                return new ConflitVersion("La recette " + edition.idRecette() + " a été supprimée.", -1);
+            }
+            int actuelle = rs.getInt(1);
+            return new ConflitVersion("La recette " + edition.idRecette() + " a été modifiée entre-temps (version "
+                    + actuelle + ", l'édition porte sur la version " + edition.version() + ").", actuelle);
+        }
+    }
+
+    /**
+     * Met à jour le résumé d'une recette dans Recette_Resume, dans la transaction en cours.
+     */
+    private void resumer(int idRecette) throws SQLException {
+        PreparedStatement pstmt = requetes.preparer(SQL_RESUMER);
+        pstmt.setInt(1, idRecette);
+        pstmt.executeUpdate();
+    }
+
+    /**
+     * Recalcule le résumé de toutes les recettes. Recette_Resume n'est tenu à jour que par les
+     * écritures de l'application : après une écriture faite par un autre client (SQL*Plus, la
+     * console H2, un script), les listes par temps et par cote restent fausses jusqu'à cet appel.
+     * Les résumés des recettes supprimées disparaissent avec elles, par la clé étrangère.
+     *
+     * @return Le nombre de résumés écrits
+     * @throws SQLException En cas d'erreur SQL
+     */
+    public int reconstruireResumes() throws SQLException {
+        return requetes.preparer(SQL_RECONSTRUIRE_RESUMES).executeUpdate();
+    }
+
+    /**
+     * Supprime une recette ; ses liaisons aux ingrédients et son résumé sont supprimés en cascade.
+     * La recette et chacune de ses liaisons sont consignées dans le {@link JournalAudit}.
+     * La recette est verrouillée avant la lecture de ses liaisons : une liaison ajoutée en même
+     * temps, qui change la version de la recette, attend la fin de la suppression.
+     *
+     * @param idRecette L'identifiant de la recette
+     * @return Le nombre de lignes supprimées dans Recette
+     * @throws SQLException En cas d'erreur SQL
+     */
+    public int supprimer(int idRecette) throws SQLException {
+        boolean autoCommit = conn.getAutoCommit();
+        if (autoCommit) {
+            conn.setAutoCommit(false);
+        }
+        try {
+            PreparedStatement verrou = requetes.preparer(SQL_VERROUILLER);
+            verrou.setInt(1, idRecette);
+            try (ResultSet rs = verrou.executeQuery()) {
+                if (!rs.next()) {
+                    return 0;
+                }
+            }
+
+            List<JournalAudit.Evenement> evenements = new ArrayList<>();
+            PreparedStatement liaisons = requetes.preparer(SQL_LIAISONS);
+            liaisons.setInt(1, idRecette);
+            try (ResultSet rs = liaisons.executeQuery()) {
+                while (rs.next()) {
+                    evenements.add(new JournalAudit.Evenement("Recette_Ingredient", "DELETE", idRecette, rs.getInt(1)));
+                }
+            }
+
+            PreparedStatement pstmt = requetes.preparer(SQL_SUPPRIMER);
+            pstmt.setInt(1, idRecette);
+            int supprimes = pstmt.executeUpdate();
+            if (supprimes > 0) {
+                evenements.add(new JournalAudit.Evenement("Recette", "DELETE", idRecette, 0));
+                JournalAudit.partage().enregistrer(conn, evenements);
+            }
+
+            if (autoCommit) {
+                conn.commit();
+            }
+            return supprimes;
+        } catch (SQLException | RuntimeException e) {
+            if (autoCommit) {
+                conn.rollback();
+            }
+            throw e;
+        } finally {
+            if (autoCommit) {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    /**
+     * Recherche une recette et le nom de son auteur, sans ses ingrédients.
+     *
+     * @param idRecette L'identifiant de la recette
+     * @return La recette, ou null si elle n'existe pas
+     * @throws SQLException En cas d'erreur SQL
+     */
+    public RecetteDetail trouver(int idRecette) throws SQLException {
+        PreparedStatement pstmt = requetes.preparer(SQL_TROUVER);
+        pstmt.setInt(1, idRecette);
+        try (ResultSet rs = pstmt.executeQuery()) {
+            if (!rs.next()) {
+                return null;
+            }
+            RecetteDetail detail = lireDetail(rs);
+            detail.description = rs.getString("description");
+            detail.instructions = rs.getString("instructions");
+            detail.version = rs.getInt("version");
+            return detail;
+        }
+    }
+
+    /**
+     * Recherche une recette et le nom de son auteur, avec l'aperçu de sa description
+     * au lieu des textes complets.
+     *
+     * @param idRecette L'identifiant de la recette
+     * @return La recette, ou null si elle n'existe pas
+     * @throws SQLException En cas d'erreur SQL
+     */
+    public RecetteDetail trouverApercu(int idRecette) throws SQLException {
+        PreparedStatement pstmt = requetes.preparer(SQL_TROUVER_APERCU);
+        pstmt.setInt(1, idRecette);
+        try (ResultSet rs = pstmt.executeQuery()) {
+            if (!rs.next()) {
+                return null;
+            }
+            RecetteDetail detail = lireDetail(rs);
+            lireApercu(detail, rs);
+            return detail;
+        }
+    }
+
+    /**
+     * Ouvre la description complète d'une recette en flux. Le lecteur doit être fermé avant
+     * toute autre lecture de description sur la même connexion.
+     *
+     * @param idRecette L'identifiant de la recette
+     * @return Le lecteur du texte, ou null si la recette n'existe pas ou n'a pas de description
+     * @throws SQLException En cas d'erreur SQL
+     */
+    public Reader lireDescription(int idRecette) throws SQLException {
+        return lireTexte(SQL_DESCRIPTION, idRecette);
+    }
+
+    /**
+     * Ouvre les instructions complètes d'une recette en flux. Le lecteur doit être fermé avant
+     * toute autre lecture d'instructions sur la même connexion.
+     *
+     * @param idRecette L'identifiant de la recette
+     * @return Le lecteur du texte, ou null si la recette n'existe pas ou n'a pas d'instructions
+     * @throws SQLException En cas d'erreur SQL
+     */
+    public Reader lireInstructions(int idRecette) throws SQLException {
+        return lireTexte(SQL_INSTRUCTIONS, idRecette);
+    }
+
+    private Reader lireTexte(String sql, int idRecette) throws SQLException {
+        PreparedStatement pstmt = requetes.preparer(sql);
+        pstmt.setInt(1, idRecette);
+        ResultSet rs = pstmt.executeQuery();
+        try {
+            Reader texte = rs.next() ? rs.getCharacterStream(1) : null;
+            if (texte == null) {
+                rs.close();
+                return null;
+            }
+            return new TexteLong(texte, rs);
+        } catch (SQLException | RuntimeException e) {
+            rs.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Retourne une page de recettes avec leur auteur et leurs ingrédients, en une seule requête.
+     * Les pages se suivent par clé : la page suivante commence après {@link Page#dernierId}.
+     *
+     * @param apresId L'identifiant de la dernière recette déjà lue (0 pour la première page)
+     * @param taille Le nombre maximal de recettes dans la page
+     * @param tailleFetch Le nombre de lignes ramenées par aller-retour réseau
+     * @return La page de recettes, triées par identifiant, leurs ingrédients triés par nom
+     * @throws SQLException En cas d'erreur SQL
+     */
+    public Page listerPage(int apresId, int taille, int tailleFetch) throws SQLException {
+        PreparedStatement pstmt = requetes.preparer(SQL_PAGE);
+        pstmt.setInt(1, apresId);
+        pstmt.setInt(2, taille);
+        pstmt.setFetchSize(tailleFetch);
+        List<RecetteDetail> recettes = new ArrayList<>(taille);
+        try (ResultSet rs = pstmt.executeQuery()) {
+            RecetteDetail courante = null;
+            while (rs.next()) {
+                int id = rs.getInt("id_recette");
+                if (courante == null || courante.id_recette != id) {
+                    courante = lireDetail(rs);
+                    lireApercu(courante, rs);
+                    recettes.add(courante);
+                }
+                // LEFT JOIN : l'ingrédient est NULL pour une recette sans ingrédient
+                String ingredient = rs.getString("ingredient_nom");
+                if (ingredient != null) {
+                    courante.ingredients.add(new LigneIngredient(ingredient, rs.getString("quantite")));
+                }
+            }
+        }
+        return new Page(recettes, taille);
+    }
+
+    /**
+     * Écrit une page de recettes en tableau JSON, directement depuis le ResultSet :
+     * aucune recette n'est construite en mémoire. Chaque recette porte l'aperçu de sa
+     * description (apercu, et apercu_tronque s'il est incomplet). Mêmes requête et ordre
+     * que {@link #listerPage}.
+     *
+     * @param apresId L'identifiant de la dernière recette déjà lue (0 pour la première page)
+     * @param taille Le nombre maximal de recettes dans la page
+     * @param tailleFetch Le nombre de lignes ramenées par aller-retour réseau
+     * @param flux Le flux de sortie
+     * @return La position de la page, sans ses recettes
+     * @throws SQLException En cas d'erreur SQL
+     * @throws IOException En cas d'erreur d'écriture
+     */
+    public Page ecrirePage(int apresId, int taille, int tailleFetch, JsonFlux flux) throws SQLException, IOException {
+        PreparedStatement pstmt = requetes.preparer(SQL_PAGE);
+        pstmt.setInt(1, apresId);
+        pstmt.setInt(2, taille);
+        pstmt.setFetchSize(tailleFetch);
+        int courante = 0;
+        int nombre = 0;
+        flux.debutTableau();
+        try (ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                int id = rs.getInt("id_recette");
+                if (id != courante) {
+                    if (courante != 0) {
+                        flux.finTableau().finObjet();
+                    }
+                    courante = id;
+                    nombre++;
+                    flux.debutObjet();
+                    flux.nom("id_recette").valeur(id);
+                    flux.nom("titre").valeur(rs.getString("titre"));
+                    String apercu = rs.getString("apercu");
+                    boolean tronque = apercu != null && apercu.length() > APERCU;
+                    flux.nom("apercu").valeur(tronque ? apercu.substring(0, APERCU) : apercu);
+                    flux.nom("apercu_tronque").valeur(tronque);
+                    flux.nom("temps_preparation").valeur(rs.getInt("temps_preparation"));
+                    flux.nom("temps_cuisson").valeur(rs.getInt("temps_cuisson"));
+                    flux.nom("auteur_id").valeur(rs.getInt("auteur_id"));
+                    flux.nom("auteur_nom").valeur(rs.getString("auteur_nom"));
+                    flux.nom("ingredients").debutTableau();
+                }
+                String ingredient = rs.getString("ingredient_nom");
+                if (ingredient != null) {
+                    flux.debutObjet();
+                    flux.nom("nom").valeur(ingredient);
+                    flux.nom("quantite").valeur(rs.getString("quantite"));
+                    flux.finObjet();
+                }
+            }
+        }
+        if (courante != 0) {
+            flux.finTableau().finObjet();
+        }
+        flux.finTableau();
+        return new Page(courante, nombre == taille);
+    }
+
+    /**
+     * Retourne l'identifiant et le titre de chaque recette.
+     *
+     * @return Les titres indexés par identifiant de recette
+     * @throws SQLException En cas d'erreur SQL
+     */
+    public Map<Integer, String> listerTitres() throws SQLException {
+        Map<Integer, String> titres = new LinkedHashMap<>();
+        try (ResultSet rs = requetes.preparer(SQL_TITRES).executeQuery()) {
+            while (rs.next()) {
+                titres.put(rs.getInt("id_recette"), rs.getString("titre"));
+            }
+        }
+        return titres;
+    }
+
+    /**
+     * Retourne le titre de quelques recettes choisies.
+     *
+     * @param idsRecettes Les identifiants des recettes
+     * @return Les titres indexés par identifiant ; les recettes inexistantes sont absentes
+     * @throws SQLException En cas d'erreur SQL
+     */
+    public Map<Integer, String> titres(Collection<Integer> idsRecettes) throws SQLException {
+        Map<Integer, String> titres = new HashMap<>();
+        List<Integer> ids = new ArrayList<>(idsRecettes);
+        for (int debut = 0; debut < ids.size(); debut += TITRES_PAR_REQUETE) {
+            int fin = Math.min(ids.size(), debut + TITRES_PAR_REQUETE);
+            // Deux formes seulement : la liste est complétée par sa dernière clé
+            int taille = fin - debut <= TITRES_PAR_PETITE_REQUETE ? TITRES_PAR_PETITE_REQUETE : TITRES_PAR_REQUETE;
+            PreparedStatement pstmt = requetes.preparer(
+                    taille == TITRES_PAR_REQUETE ? SQL_TITRES_IN : SQL_TITRES_IN_PETITE);
+            for (int i = 0; i < taille; i++) {
+                pstmt.setInt(i + 1, ids.get(Math.min(debut + i, fin - 1)));
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    titres.put(rs.getInt("id_recette"), rs.getString("titre"));
+                }
+            }
+        }
+        return titres;
+    }
+
+    /**
+     * Retourne une page de recettes triées par temps total, lue dans Recette_Resume par l'index
+     * idx_resume_temps. La page suivante commence après la dernière recette retournée.
+     *
+     * @param apres La dernière recette déjà lue, ou null pour commencer par la plus rapide
+     * @param taille Le nombre maximal de recettes
+     * @return Les recettes, sans description ni ingrédients
+     * @throws SQLException En cas d'erreur SQL
+     */
+    public List<ResumeRecette> listerParTemps(ResumeRecette apres, int taille) throws SQLException {
+        PreparedStatement pstmt = requetes.preparer(SQL_PAR_TEMPS);
+        pstmt.setInt(1, apres == null ? Integer.MIN_VALUE : apres.temps_total);
+        pstmt.setInt(2, apres == null ? Integer.MIN_VALUE : apres.temps_total);
+        pstmt.setInt(3, apres == null ? 0 : apres.id_recette);
+        pstmt.setInt(4, taille);
+        return lireResumes(pstmt, taille);
+    }
+
+    /**
+     * Retourne une page des recettes à la meilleure cote santé, lue dans Recette_Resume par
+     * l'index idx_resume_sante. La page suivante commence après la dernière recette retournée.
+     *
+     * @param apres La dernière recette déjà lue, ou null pour commencer par la plus saine
+     * @param taille Le nombre maximal de recettes
+     * @return Les recettes, de la plus saine à la moins saine
+     * @throws SQLException En cas d'erreur SQL
+     */
+    public List<ResumeRecette> listerPlusSaines(ResumeRecette apres, int taille) throws SQLException {
+        PreparedStatement pstmt = requetes.preparer(SQL_PLUS_SAINES);
+        pstmt.setInt(1, apres == null ? Integer.MAX_VALUE : apres.cote_dixiemes);
+        pstmt.setInt(2, apres == null ? Integer.MAX_VALUE : apres.cote_dixiemes);
+        pstmt.setInt(3, apres == null ? 0 : apres.id_recette);
+        pstmt.setInt(4, taille);
+        return lireResumes(pstmt, taille);
+    }
+
+    private static List<ResumeRecette> lireResumes(PreparedStatement pstmt, int taille) throws SQLException {
+        pstmt.setFetchSize(Math.min(taille, 500));
+        List<ResumeRecette> recettes = new ArrayList<>(Math.min(taille, 500));
+        try (ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                recettes.add(new ResumeRecette(rs.getInt("id_recette"), rs.getString("titre"),
+                        rs.getString("auteur_nom"), rs.getInt("temps_total"), rs.getInt("nb_ingredients"),
+                        rs.getInt("cote_dixiemes")));
+            }
+        }
+        return recettes;
+    }
+
+    /**
+     * Retourne les ingrédients d'une recette, à partir de la vue Vue_Ingredients_Recette.
+     *
+     * @param idRecette L'identifiant de la recette
+     * @return Les ingrédients et leurs quantités
+     * @throws SQLException En cas d'erreur SQL
+     */
+    public List<LigneIngredient> listerIngredients(int idRecette) throws SQLException {
+        PreparedStatement pstmt = requetes.preparer(SQL_INGREDIENTS);
+        pstmt.setInt(1, idRecette);
+        List<LigneIngredient> ingredients = new ArrayList<>();
+        try (ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                ingredients.add(new LigneIngredient(rs.getString("ingredient"), rs.getString("quantite")));
+            }
+        }
+        return ingredients;
+    }
+
+    /**
+     * Calcule la cote santé moyenne d'une recette avec RECETTE_PKG.get_cote_sante.
+     * {@link CoteSanteCalculateur} obtient le même résultat sans appel PL/SQL.
+     *
+     * @param idRecette L'identifiant de la recette
+     * @return La cote moyenne, ou 0 si la recette n'a pas d'ingrédient
+     * @throws SQLException En cas d'erreur SQL
+     */
+    public double coteSante(int idRecette) throws SQLException {
+        CallableStatement cstmt = requetes.preparerAppel(SQL_COTE_SANTE);
+        cstmt.registerOutParameter(1, Types.NUMERIC);
+        cstmt.setInt(2, idRecette);
+        cstmt.execute();
+        return cstmt.getDouble(1);
+    }
+
+    /**
+     * Retourne les ingrédients d'une recette sous forme de texte avec RECETTE_PKG.get_ingredients_texte.
+     *
+     * @param idRecette L'identifiant de la recette
+     * @return Le texte des ingrédients
+     * @throws SQLException En cas d'erreur SQL
+     */
+    public String ingredientsTexte(int idRecette) throws SQLException {
+        CallableStatement cstmt = requetes.preparerAppel(SQL_INGREDIENTS_TEXTE);
+        cstmt.registerOutParameter(1, Types.VARCHAR);
+        cstmt.setInt(2, idRecette);
+        cstmt.execute();
+        return cstmt.getString(1);
+    }
+
+    /**
+     * Lie un texte long à un paramètre CLOB en flux, sans le copier dans un tampon intermédiaire.
+     */
+    static void lierTexte(PreparedStatement pstmt, int index, String texte) throws SQLException {
+        if (texte == null) {
+            pstmt.setNull(index, Types.CLOB);
+        } else {
+            pstmt.setCharacterStream(index, new StringReader(texte), texte.length());
+        }
+    }
+
+    /**
+     * Lit les colonnes scalaires d'une recette ; la description et les instructions restent null.
+     */
+    private static RecetteDetail lireDetail(ResultSet rs) throws SQLException {
+        RecetteDetail detail = new RecetteDetail(rs.getString("titre"), null, null,
+                rs.getInt("temps_preparation"), rs.getInt("temps_cuisson"), rs.getInt("auteur_id"),
+                rs.getString("auteur_nom"));
+        detail.id_recette = rs.getInt("id_recette");
+        return detail;
+    }
+
+    private static void lireApercu(RecetteDetail detail, ResultSet rs) throws SQLException {
+        String apercu = rs.getString("apercu");
+        if (apercu != null && apercu.length() > APERCU) {
+            detail.apercu = apercu.substring(0, APERCU);
+            detail.apercuTronque = true;
+        } else {
+            detail.apercu = apercu;
+        }
+    }
+
+    /**
+     * Texte long lu en flux depuis un CLOB ; fermer le lecteur ferme le ResultSet.
+     */
+    private static final class TexteLong extends FilterReader {
+        private final ResultSet rs;
+
+        TexteLong(Reader texte, ResultSet rs) {
+            super(texte);
+            this.rs = rs;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                try {
+                    rs.close();
+                } catch (SQLException e) {
+                    System.out.println("Erreur lors de la fermeture d'un texte : " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Recette accompagnée du nom de son auteur et de ses ingrédients. Lue dans une liste,
+     * elle n'a que l'aperçu de sa description ; description et instructions sont null.
+     */
+    static class RecetteDetail extends Main.Recette {
+        /** Nom de l'auteur. */
+        String auteur_nom;
+        /** Début de la description, au plus {@link #APERCU} caractères, pour les listes. */
+        String apercu;
+        /** Vrai si la description est plus longue que son aperçu. */
+        boolean apercuTronque;
+        /** Version de la recette, lue seulement par {@link #trouver}. */
+        int version;
+        /** Ingrédients de la recette, vides s'ils n'ont pas été chargés. */
+        final List<LigneIngredient> ingredients = new ArrayList<>();
+
+        RecetteDetail(String titre, String description, String instructions, int temps_preparation,
+                      int temps_cuisson, int auteur_id, String auteur_nom) {
+            super(titre, description, instructions, temps_preparation, temps_cuisson, auteur_id);
+            this.auteur_nom = auteur_nom;
+        }
+    }
+
+    /**
+     * Échec de l'enregistrement d'une {@link EditionRecette} : la recette a changé depuis
+     * l'ouverture de l'édition.
+     */
+    static class ConflitVersion extends SQLException {
+        private static final long serialVersionUID = 1L;
+
+        /** Version actuelle de la recette, -1 si elle a été supprimée. */
+        final int versionActuelle;
+
+        ConflitVersion(String message, int versionActuelle) {
+            super(message);
+            this.versionActuelle = versionActuelle;
+        }
+
+        /**
+         * @return Vrai si la recette n'existe plus
+         */
+        boolean supprimee() {
+            return versionActuelle < 0;
+        }
+    }
+
+    /**
+     * Page de recettes obtenue par {@link #listerPage}.
+     */
+    static class Page {
+        /** Recettes de la page. */
+        final List<RecetteDetail> recettes;
+        /** Identifiant de la dernière recette de la page, point de départ de la suivante. */
+        final int dernierId;
+        /** Faux si l'on sait qu'aucune recette ne suit cette page. */
+        final boolean suite;
+
+        Page(List<RecetteDetail> recettes, int taille) {
+            this.recettes = recettes;
+            this.dernierId = recettes.isEmpty() ? 0 : recettes.get(recettes.size() - 1).id_recette;
+            this.suite = recettes.size() == taille;
+        }
+
+        /** Page dont les recettes ont été écrites en flux par {@link #ecrirePage}. */
+        Page(int dernierId, boolean suite) {
+            this.recettes = Collections.emptyList();
+            this.dernierId = dernierId;
+            this.suite = suite;
+        }
+    }
+
+    /**
+     * Ingrédient d'une recette avec sa quantité.
+     */
+    static class LigneIngredient {
+        /** Nom de l'ingrédient. */
+        final String nom;
+        /** Quantité, par exemple "2 tasses". */
+        final String quantite;
+
+        LigneIngredient(String nom, String quantite) {
+            this.nom = nom;
+            this.quantite = quantite;
+        }
+    }
+
+    /**
+     * Ingrédient à associer à une recette.
+     */
+    static class LienIngredient {
+        /** Identifiant de l'ingrédient. */
+        final int id_ingredient;
+        /** Quantité, par exemple "2 tasses". */
+        final String quantite;
+
+        LienIngredient(int id_ingredient, String quantite) {
+            this.id_ingredient = id_ingredient;
+            this.quantite = quantite;
+        }
+    }
+
+    /**
+     * Ligne de Recette_Resume.
+     */
+    static class ResumeRecette {
+        final int id_recette;
+        final String titre;
+        final String auteur_nom;
+        /** Temps de préparation et de cuisson cumulés, en minutes. */
+        final int temps_total;
+        final int nb_ingredients;
+        /** Cote santé moyenne en dixièmes (0 à 50), 0 sans ingrédient. */
+        final int cote_dixiemes;
+
+        ResumeRecette(int id_recette, String titre, String auteur_nom, int temps_total,
+                      int nb_ingredients, int cote_dixiemes) {
+            this.id_recette = id_recette;
+            this.titre = titre;
+            this.auteur_nom = auteur_nom;
+            this.temps_total = temps_total;
+            this.nb_ingredients = nb_ingredients;
+            this.cote_dixiemes = cote_dixiemes;
+        }
+
+        /**
+         * @return La cote santé moyenne, arrondie au dixième
+         */
+        double coteSante() {
+            return cote_dixiemes / 10.0;
+        }
+    }
+}
@@ -0,0 +1,1158 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.sql.*;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * API HTTP/JSON du blog : expose les opérations du menu de {@link Main} au front-end.
+ * <p>
+ * Chaque requête est traitée sur son propre thread virtuel quand la JVM en dispose (Java 21 et plus),
+ * sinon sur un pool de threads borné. Une requête emprunte une connexion au {@link ConnectionPool}
+ * le temps de son traitement : le nombre de requêtes concurrentes n'est pas limité par le nombre
+ * de connexions, seules les requêtes en base attendent une connexion libre (recette.pool.taille).
+ * Les listes sont écrites en flux par {@link JsonFlux} directement depuis le ResultSet ;
+ * les autres réponses sont rendues par {@link JsonEcrivain} après la libération de la connexion.
+ * Une recette demandée seule est servie par le {@link RecetteCache}.
+ * Avec -Drecette.cdc=true, le cache et l'index de recherche suivent aussi les écritures faites
+ * hors de ce processus, lues dans le journal par la {@link CaptureChangements}.
+ * <p>
+ * Ressources :
+ * <pre>
+ * GET    /recettes?apres=&amp;taille=      page de recettes avec leurs ingrédients et l'aperçu
+ *                                       de leur description
+ * POST   /recettes                      {titre, description, instructions, temps_preparation,
+ *                                        temps_cuisson, auteur_id, ingredients: [{id_ingredient, quantite}]}
+ * GET    /recettes/par-temps?apres_temps=&amp;apres_id=&amp;taille=
+ *                                       page de recettes triées par temps total
+ * GET    /recettes/plus-saines?taille=  recettes de la meilleure cote santé à la moins bonne
+ * GET    /recettes/{id}                 recette, version et ingrédients
+ * PUT    /recettes/{id}                 {version, titre, description, instructions, temps_preparation,
+ *                                        temps_cuisson, ingredients} : champs facultatifs sauf version,
+ *                                        ingredients remplace toute la liste ; 409 si la version a changé
+ * DELETE /recettes/{id}
+ * GET    /recettes/{id}/ingredients
+ * GET    /recettes/{id}/sante           fiche santé
+ * GET    /recettes/{id}/description     description complète, lue en flux
+ * GET    /recettes/{id}/instructions    instructions complètes, lues en flux
+ * GET    /auteurs                       POST /auteurs {nom, email, bio}
+ * GET    /auteurs/{id}                  DELETE /auteurs/{id} (et ses recettes)
+ * GET    /ingredients                   POST /ingredients {nom, cote_sante}
+ * GET    /journal?table=&amp;operation=&amp;debut=&amp;fin=&amp;avant_date=&amp;avant_id=&amp;taille=
+ * GET    /recherche?q=&amp;max=
+ * GET    /frigo?ingredients=1,2,3&amp;manquants=&amp;max=
+ * GET    /metriques                     mesures JDBC, du pool et du cache des recettes, au format
+ *                                       texte de Prometheus
+ * </pre>
+ * Les dates sont au format ISO-8601 (2024-05-01T12:00:00Z). Les erreurs sont rendues sous la
+ * forme {"erreur": "..."} avec le statut 400, 404, 405, 409, 413, 500 ou 503.
+ */
+public class ServeurApi {
+
+    private static final int PORT = Integer.getInteger("recette.api.port", 8080);
+    /** Connexions TCP en attente d'acceptation. */
+    private static final int FILE_ATTENTE = Integer.getInteger("recette.api.fileAttente", 1024);
+    /** Taille du pool de threads utilisé quand les threads virtuels ne sont pas disponibles. */
+    private static final int THREADS = Integer.getInteger("recette.api.threads", 200);
+    /** Nombre maximal d'éléments par page ou par résultat. */
+    private static final int TAILLE_MAX = Integer.getInteger("recette.api.tailleMax", 100);
+    private static final int TAILLE_DEFAUT = 20;
+    /** Taille maximale d'un corps de requête, en octets. */
+    private static final int CORPS_MAX = 1 << 20;
+
+    private final HttpServer serveur;
+    private final ExecutorService executeur;
+    private final boolean virtuels;
+
+    /**
+     * Crée le serveur sans le démarrer.
+     *
+     * @param port Le port d'écoute (0 pour un port libre)
+     * @throws IOException Si le port ne peut pas être ouvert
+     */
+    public ServeurApi(int port) throws IOException {
+        ExecutorService virtuel = executeurVirtuel();
+        this.virtuels = virtuel != null;
+        this.executeur = virtuel != null ? virtuel : Executors.newFixedThreadPool(THREADS, r -> {
+            Thread t = new Thread(r, "api-requete");
+            t.setDaemon(true);
+            return t;
+        });
+        this.serveur = HttpServer.create(new InetSocketAddress(port), FILE_ATTENTE);
+        serveur.createContext("/", this::traiter);
+        serveur.setExecutor(executeur);
+    }
+
+    /**
+     * Lance le serveur d'API.
+     *
+     * @param args Le port d'écoute, facultatif (recette.api.port par défaut)
+     */
+    public static void main(String[] args) {
+        try {
+            DatabaseConnection.getPool();
+        } catch (SQLException e) {
+            MesuresJdbc.partage().signalerErreur("Erreur de connexion à la base de données", e);
+            return;
+        }
+
+        ServeurApi api;
+        try {
+            api = new ServeurApi(args.length > 0 ? Integer.parseInt(args[0]) : PORT);
+        } catch (IOException | NumberFormatException e) {
+            System.out.println("Impossible de démarrer le serveur d'API : " + e.getMessage());
+            DatabaseConnection.closeConnection();
+            return;
+        }
+        CaptureChangements capture = null;
+        if (Boolean.getBoolean("recette.cdc")) {
+            capture = new CaptureChangements("api");
+            capture.abonner(ServeurApi::rafraichir);
+            try {
+                capture.demarrer(false);
+            } catch (SQLException | IOException e) {
+                System.out.println("Capture des changements désactivée : " + e.getMessage());
+                capture = null;
+            }
+        }
+        CaptureChangements captureDemarree = capture;
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            api.arreter(2);
+            if (captureDemarree != null) {
+                captureDemarree.close();
+            }
+            try {
+                IndexRecherche.partage().sauvegarder();
+            } catch (IOException e) {
+                System.out.println("Erreur lors de l'enregistrement de l'index de recherche : " + e.getMessage());
+            }
+            JournalAudit.fermerPartage();
+            DatabaseConnection.closeConnection();
+        }, "api-arret"));
+        api.demarrer();
+        System.out.println("API à l'écoute sur le port " + api.port()
+                + (api.virtuels ? " (threads virtuels)" : " (pool de " + THREADS + " threads)"));
+    }
+
+    /**
+     * Tient le cache et l'index de recherche à jour des écritures faites par d'autres
+     * processus (menu, imports, autre instance de l'API), transmises par la
+     * {@link CaptureChangements} : chaque recette touchée est relue une fois par lot.
+     */
+    private static void rafraichir(List<CaptureChangements.Changement> changements) throws SQLException {
+        Set<Integer> touchees = new LinkedHashSet<>();
+        for (CaptureChangements.Changement changement : changements) {
+            switch (changement.table_name) {
+                case "Recette":
+                case "Recette_Ingredient":
+                    touchees.add(changement.record_id);
+                    break;
+                case "Ingredient":
+                    if (!changement.operation_type.equals("INSERT")) {
+                        RecetteCache.partage().vider();
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        for (int idRecette : touchees) {
+            RecetteCache.partage().invalider(idRecette);
+            RecetteRepository.RecetteDetail recette = RecetteCache.partage().trouver(idRecette);
+            if (recette == null) {
+                IndexRecherche.partage().retirer(idRecette);
+                continue;
+            }
+            List<String> noms = new ArrayList<>(recette.ingredients.size());
+            for (RecetteRepository.LigneIngredient ligne : recette.ingredients) {
+                noms.add(ligne.nom);
+            }
+            IndexRecherche.partage().indexer(recette, noms);
+        }
+    }
+
+    /**
+     * Démarre l'écoute.
+     */
+    public void demarrer() {
+        serveur.start();
+    }
+
+    /**
+     * Arrête l'écoute et attend la fin des requêtes en cours.
+     *
+     * @param delaiSec L'attente maximale, en secondes
+     */
+    public void arreter(int delaiSec) {
+        serveur.stop(delaiSec);
+        executeur.shutdown();
+        try {
+            executeur.awaitTermination(delaiSec, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return Le port d'écoute effectif
+     */
+    public int port() {
+        return serveur.getAddress().getPort();
+    }
+
+    /**
+     * Exécuteur à un thread virtuel par tâche, obtenu par réflexion pour que l'application
+     * reste compilable et exécutable en Java 17.
+     *
+     * @return L'exécuteur, ou null si la JVM ne fournit pas de threads virtuels
+     */
+    static ExecutorService executeurVirtuel() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    // ---------------------------------------------------------------- aiguillage
+
+    private void traiter(HttpExchange echange) throws IOException {
+        Reponse reponse;
+        try {
+            reponse = router(new Requete(echange));
+            if (reponse.ecriture != null) {
+                diffuser(echange, reponse.ecriture);
+                return;
+            }
+            if (reponse.texte != null) {
+                envoyerTexte(echange, reponse.texte);
+                return;
+            }
+        } catch (ErreurHttp e) {
+            reponse = new Reponse(e.statut, erreur(e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            reponse = new Reponse(400, erreur(e.getMessage()));
+        } catch (SQLIntegrityConstraintViolationException e) {
+            reponse = new Reponse(409, erreur(e.getMessage()));
+        } catch (SQLTimeoutException e) {
+            reponse = new Reponse(503, erreur(e.getMessage()));
+        } catch (SQLException | RuntimeException e) {
+            System.out.println("Erreur sur " + echange.getRequestMethod() + " " + echange.getRequestURI()
+                    + " : " + e.getMessage());
+            reponse = new Reponse(500, erreur(e.getMessage()));
+        }
+        envoyer(echange, reponse.statut, reponse.corps);
+    }
+
+    /**
+     * Écrit une réponse en flux. Les en-têtes ne partent qu'au premier vidage du tampon :
+     * une erreur survenue avant reste une réponse d'erreur complète ; après, la réponse est
+     * interrompue et le client reçoit un corps tronqué.
+     */
+    private static void diffuser(HttpExchange echange, Ecriture ecriture) throws SQLException, IOException {
+        SortieDifferee sortie = new SortieDifferee(echange);
+        JsonFlux flux = new JsonFlux(sortie);
+        try {
+            ecriture.ecrire(flux);
+            flux.close();
+        } catch (SQLException | IOException | RuntimeException e) {
+            flux.abandonner();
+            if (!sortie.envoyee) {
+                throw e;
+            }
+            System.out.println("Réponse interrompue sur " + echange.getRequestURI() + " : " + e.getMessage());
+        } finally {
+            if (sortie.envoyee) {
+                echange.close();
+            }
+        }
+    }
+
+    private Reponse router(Requete requete) throws SQLException, IOException {
+        String[] chemin = requete.chemin;
+        if (chemin.length == 0) {
+            throw new ErreurHttp(404, "Ressource inconnue");
+        }
+        switch (chemin[0]) {
+            case "recettes":
+                if (chemin.length == 1) {
+                    return requete.selon("GET", "POST") ? listerRecettes(requete) : ajouterRecette(requete);
+                }
+                if (chemin.length == 2 && chemin[1].equals("par-temps")) {
+                    requete.selon("GET");
+                    return recettesParTemps(requete);
+                }
+                if (chemin.length == 2 && chemin[1].equals("plus-saines")) {
+                    requete.selon("GET");
+                    return recettesPlusSaines(requete);
+                }
+                int idRecette = identifiant(chemin[1]);
+                if (chemin.length == 2) {
+                    if (requete.selon("GET", "PUT", "DELETE")) {
+                        return recette(idRecette);
+                    }
+                    return requete.echange.getRequestMethod().equals("PUT")
+                            ? modifierRecette(idRecette, requete) : supprimerRecette(idRecette);
+                }
+                if (chemin.length == 3 && chemin[2].equals("ingredients")) {
+                    requete.selon("GET");
+                    return ingredientsRecette(idRecette);
+                }
+                if (chemin.length == 3 && chemin[2].equals("sante")) {
+                    requete.selon("GET");
+                    return sante(idRecette);
+                }
+                if (chemin.length == 3 && (chemin[2].equals("description") || chemin[2].equals("instructions"))) {
+                    requete.selon("GET");
+                    return texte(idRecette, chemin[2]);
+                }
+                break;
+            case "auteurs":
+                if (chemin.length == 1) {
+                    return requete.selon("GET", "POST") ? listerAuteurs() : ajouterAuteur(requete);
+                }
+                if (chemin.length == 2) {
+                    int idAuteur = identifiant(chemin[1]);
+                    return requete.selon("GET", "DELETE") ? auteur(idAuteur) : supprimerAuteur(idAuteur);
+                }
+                break;
+            case "ingredients":
+                if (chemin.length == 1) {
+                    return requete.selon("GET", "POST") ? listerIngredients() : ajouterIngredient(requete);
+                }
+                break;
+            case "journal":
+                if (chemin.length == 1) {
+                    requete.selon("GET");
+                    return journal(requete);
+                }
+                break;
+            case "recherche":
+                if (chemin.length == 1) {
+                    requete.selon("GET");
+                    return rechercher(requete);
+                }
+                break;
+            case "frigo":
+                if (chemin.length == 1) {
+                    requete.selon("GET");
+                    return frigo(requete);
+                }
+                break;
+            case "metriques":
+                if (chemin.length == 1) {
+                    requete.selon("GET");
+                    return metriques();
+                }
+                break;
+            default:
+                break;
+        }
+        throw new ErreurHttp(404, "Ressource inconnue");
+    }
+
+    // ---------------------------------------------------------------- recettes
+
+    private Reponse listerRecettes(Requete requete) {
+        int apres = requete.entier("apres", 0);
+        int taille = requete.taille("taille", TAILLE_DEFAUT);
+        return new Reponse(flux -> {
+            Connection conn = null;
+            try {
+                conn = DatabaseConnection.getConnection();
+                flux.debutObjet().nom("recettes");
+                RecetteRepository.Page page = new RecetteRepository(conn).ecrirePage(apres, taille, taille * 8, flux);
+                flux.nom("suite").valeur(page.suite);
+                flux.nom("apres").valeur(page.dernierId);
+                flux.finObjet();
+            } finally {
+                fermer(conn);
+            }
+        });
+    }
+
+    private Reponse ajouterRecette(Requete requete) throws SQLException, IOException {
+        Map<String, Object> corps = requete.corps();
+        Main.Recette recette = new Main.Recette(texte(corps, "titre", true), texte(corps, "description", true),
+                texte(corps, "instructions", true), positif(corps, "temps_preparation"),
+                positif(corps, "temps_cuisson"), entier(corps, "auteur_id"));
+
+        List<String> noms = new ArrayList<>();
+        List<RecetteRepository.LienIngredient> liens = liens(corps.get("ingredients"), noms);
+
+        Connection conn = null;
+        try {
+            conn = DatabaseConnection.getConnection();
+            new RecetteRepository(conn).ajouter(recette, liens);
+        } finally {
+            fermer(conn);
+        }
+        IndexRecherche.partage().indexer(recette, noms);
+        return new Reponse(201, Collections.singletonMap("id_recette", recette.id_recette));
+    }
+
+    /**
+     * Valide la liste d'ingrédients d'un corps de requête et relève leurs noms pour l'index.
+     */
+    private static List<RecetteRepository.LienIngredient> liens(Object ingredients, List<String> noms) throws SQLException {
+        List<RecetteRepository.LienIngredient> liens = new ArrayList<>();
+        Set<Integer> choisis = new HashSet<>();
+        if (ingredients != null && !(ingredients instanceof List)) {
+            throw new IllegalArgumentException("ingredients doit être un tableau");
+        }
+        for (Object element : ingredients == null ? Collections.emptyList() : (List<?>) ingredients) {
+            if (!(element instanceof Map)) {
+                throw new IllegalArgumentException("Chaque ingrédient doit être un objet");
+            }
+            Map<?, ?> lien = (Map<?, ?>) element;
+            int idIngredient = entier(lien, "id_ingredient");
+            Main.Ingredient ingredient = IngredientCache.partage().trouver(idIngredient);
+            if (ingredient == null) {
+                throw new IllegalArgumentException("Ingrédient inconnu : " + idIngredient);
+            }
+            if (!choisis.add(idIngredient)) {
+                throw new IllegalArgumentException("Ingrédient en double : " + idIngredient);
+            }
+            liens.add(new RecetteRepository.LienIngredient(idIngredient, texte(lien, "quantite", false)));
+            noms.add(ingredient.nom);
+        }
+        return liens;
+    }
+
+    /**
+     * Applique les champs présents dans le corps à une édition de la recette, puis l'enregistre
+     * si la version transmise est toujours celle de la base.
+     */
+    private Reponse modifierRecette(int idRecette, Requete requete) throws SQLException, IOException {
+        Map<String, Object> corps = requete.corps();
+        int version = entier(corps, "version");
+        List<String> noms = new ArrayList<>();
+        List<RecetteRepository.LienIngredient> liens = corps.containsKey("ingredients")
+                ? liens(corps.get("ingredients"), noms) : null;
+
+        RecetteRepository.RecetteDetail recette;
+        int nouvelleVersion;
+        Connection conn = null;
+        try {
+            conn = DatabaseConnection.getConnection();
+            RecetteRepository recettes = new RecetteRepository(conn);
+            EditionRecette edition = recettes.editer(idRecette);
+            if (edition == null) {
+                throw new ErreurHttp(404, "Recette non trouvée : " + idRecette);
+            }
+            if (edition.version() != version) {
+                throw new ErreurHttp(409, "La recette " + idRecette + " a été modifiée entre-temps (version "
+                        + edition.version() + ", la modification porte sur la version " + version + ").");
+            }
+            if (corps.containsKey("titre")) {
+                edition.titre(texte(corps, "titre", true));
+            }
+            if (corps.containsKey("description")) {
+                edition.description(texte(corps, "description", true));
+            }
+            if (corps.containsKey("instructions")) {
+                edition.instructions(texte(corps, "instructions", true));
+            }
+            if (corps.containsKey("temps_preparation")) {
+                edition.tempsPreparation(positif(corps, "temps_preparation"));
+            }
+            if (corps.containsKey("temps_cuisson")) {
+                edition.tempsCuisson(positif(corps, "temps_cuisson"));
+            }
+            if (liens != null) {
+                edition.remplacerIngredients(liens);
+            }
+            if (!edition.modifiee()) {
+                return new Reponse(200, versionRecette(idRecette, version));
+            }
+            try {
+                nouvelleVersion = recettes.enregistrer(edition);
+            } catch (RecetteRepository.ConflitVersion e) {
+                throw new ErreurHttp(e.supprimee() ? 404 : 409, e.getMessage());
+            }
+            // L'index de recherche porte aussi sur les textes : relus après validation
+            recette = recettes.trouver(idRecette);
+            if (recette != null && liens == null) {
+                for (RecetteRepository.LigneIngredient ligne : recettes.listerIngredients(idRecette)) {
+                    noms.add(ligne.nom);
+                }
+            }
+        } finally {
+            fermer(conn);
+        }
+        if (recette != null) {
+            IndexRecherche.partage().indexer(recette, noms);
+        }
+        return new Reponse(200, versionRecette(idRecette, nouvelleVersion));
+    }
+
+    private static Map<String, Object> versionRecette(int idRecette, int version) {
+        Map<String, Object> r = new LinkedHashMap<>();
+        r.put("id_recette", idRecette);
+        r.put("version", version);
+        return r;
+    }
+
+    private Reponse recettesParTemps(Requete requete) throws SQLException {
+        int taille = requete.taille("taille", TAILLE_DEFAUT);
+        RecetteRepository.ResumeRecette apres = requete.parametre("apres_temps") == null ? null
+                : new RecetteRepository.ResumeRecette(requete.entier("apres_id", 0), null, null,
+                        requete.entier("apres_temps", 0), 0, 0);
+
+        List<RecetteRepository.ResumeRecette> resumes;
+        Connection conn = null;
+        try {
+            conn = DatabaseConnection.getConnection();
+            // Une ligne de plus que la page, pour savoir s'il y a une suite
+            resumes = new RecetteRepository(conn).listerParTemps(apres, taille + 1);
+        } finally {
+            fermer(conn);
+        }
+        boolean suite = resumes.size() > taille;
+        if (suite) {
+            resumes = resumes.subList(0, taille);
+        }
+        List<Object> recettes = new ArrayList<>(resumes.size());
+        for (RecetteRepository.ResumeRecette resume : resumes) {
+            Map<String, Object> r = new LinkedHashMap<>();
+            r.put("id_recette", resume.id_recette);
+            r.put("titre", resume.titre);
+            r.put("auteur_nom", resume.auteur_nom);
+            r.put("temps_total", resume.temps_total);
+            r.put("nb_ingredients", resume.nb_ingredients);
+            r.put("cote_sante", resume.coteSante());
+            recettes.add(r);
+        }
+        Map<String, Object> corps = new LinkedHashMap<>();
+        corps.put("recettes", recettes);
+        corps.put("suite", suite);
+        if (!resumes.isEmpty()) {
+            RecetteRepository.ResumeRecette dernier = resumes.get(resumes.size() - 1);
+            corps.put("apres_temps", dernier.temps_total);
+            corps.put("apres_id", dernier.id_recette);
+        }
+        return new Reponse(200, corps);
+    }
+
+    private Reponse recettesPlusSaines(Requete requete) throws SQLException {
+        List<RecetteRepository.ResumeRecette> resumes;
+        Connection conn = null;
+        try {
+            conn = DatabaseConnection.getConnection();
+            resumes = new RecetteRepository(conn).listerPlusSaines(null, requete.taille("taille", TAILLE_DEFAUT));
+        } finally {
+            fermer(conn);
+        }
+        List<Object> recettes = new ArrayList<>(resumes.size());
+        for (RecetteRepository.ResumeRecette resume : resumes) {
+            Map<String, Object> r = new LinkedHashMap<>();
+            r.put("id_recette", resume.id_recette);
+            r.put("titre", resume.titre);
+            r.put("auteur_nom", resume.auteur_nom);
+            r.put("nb_ingredients", resume.nb_ingredients);
+            r.put("cote_sante", resume.coteSante());
+            recettes.add(r);
+        }
+        return new Reponse(200, recettes);
+    }
+
+    private Reponse recette(int idRecette) throws SQLException {
+        RecetteRepository.RecetteDetail recette = RecetteCache.partage().trouver(idRecette);
+        if (recette == null) {
+            throw new ErreurHttp(404, "Recette non trouvée : " + idRecette);
+        }
+        return new Reponse(200, json(recette));
+    }
+
+    private Reponse supprimerRecette(int idRecette) throws SQLException {
+        int lignes;
+        Connection conn = null;
+        try {
+            conn = DatabaseConnection.getConnection();
+            lignes = new RecetteRepository(conn).supprimer(idRecette);
+        } finally {
+            fermer(conn);
+        }
+        if (lignes == 0) {
+            throw new ErreurHttp(404, "Recette non trouvée : " + idRecette);
+        }
+        IndexRecherche.partage().retirer(idRecette);
+        return new Reponse(204, null);
+    }
+
+    /**
+     * Recopie la description ou les instructions d'une recette de leur CLOB vers la réponse.
+     */
+    private Reponse texte(int idRecette, String champ) {
+        return new Reponse(flux -> {
+            Connection conn = null;
+            try {
+                conn = DatabaseConnection.getConnection();
+                RecetteRepository recettes = new RecetteRepository(conn);
+                Reader texte = champ.equals("description")
+                        ? recettes.lireDescription(idRecette) : recettes.lireInstructions(idRecette);
+                if (texte == null && recettes.trouverApercu(idRecette) == null) {
+                    throw new ErreurHttp(404, "Recette non trouvée : " + idRecette);
+                }
+                flux.debutObjet();
+                flux.nom("id_recette").valeur(idRecette);
+                flux.nom(champ).valeur(texte);
+                flux.finObjet();
+            } finally {
+                fermer(conn);
+            }
+        });
+    }
+
+    private Reponse ingredientsRecette(int idRecette) throws SQLException {
+        RecetteRepository.RecetteDetail recette = RecetteCache.partage().trouver(idRecette);
+        return new Reponse(200, json(recette == null
+                ? Collections.<RecetteRepository.LigneIngredient>emptyList() : recette.ingredients));
+    }
+
+    private Reponse sante(int idRecette) throws SQLException {
+        CoteSanteCalculateur.FicheSante fiche;
+        Connection conn = null;
+        try {
+            conn = DatabaseConnection.getConnection();
+            fiche = new CoteSanteCalculateur(conn).fiche(idRecette);
+        } finally {
+            fermer(conn);
+        }
+        if (fiche == null) {
+            throw new ErreurHttp(404, "Recette non trouvée : " + idRecette);
+        }
+        Map<String, Object> corps = new LinkedHashMap<>();
+        corps.put("id_recette", fiche.id_recette);
+        corps.put("titre", fiche.titre);
+        corps.put("description", fiche.description);
+        corps.put("cote_sante", fiche.cote_sante);
+        corps.put("ingredients", fiche.ingredients);
+        return new Reponse(200, corps);
+    }
+
+    // ---------------------------------------------------------------- auteurs et ingrédients
+
+    private Reponse listerAuteurs() {
+        return new Reponse(flux -> {
+            Connection conn = null;
+            try {
+                conn = DatabaseConnection.getConnection();
+                new AuteurRepository(conn).ecrireTous(flux);
+            } finally {
+                fermer(conn);
+            }
+        });
+    }
+
+    private Reponse ajouterAuteur(Requete requete) throws SQLException, IOException {
+        Map<String, Object> corps = requete.corps();
+        Main.Auteur auteur = new Main.Auteur(texte(corps, "nom", true), texte(corps, "email", true),
+                texte(corps, "bio", false));
+        int id;
+        Connection conn = null;
+        try {
+            conn = DatabaseConnection.getConnection();
+            id = new AuteurRepository(conn).ajouter(auteur);
+        } finally {
+            fermer(conn);
+        }
+        return new Reponse(201, Collections.singletonMap("id_auteur", id));
+    }
+
+    private Reponse auteur(int idAuteur) throws SQLException {
+        Main.Auteur auteur;
+        Connection conn = null;
+        try {
+            conn = DatabaseConnection.getConnection();
+            auteur = new AuteurRepository(conn).trouver(idAuteur);
+        } finally {
+            fermer(conn);
+        }
+        if (auteur == null) {
+            throw new ErreurHttp(404, "Auteur non trouvé : " + idAuteur);
+        }
+        return new Reponse(200, json(auteur));
+    }
+
+    private Reponse supprimerAuteur(int idAuteur) throws SQLException {
+        int lignes;
+        Connection conn = null;
+        try {
+            conn = DatabaseConnection.getConnection();
+            lignes = new AuteurRepository(conn).supprimer(idAuteur);
+        } finally {
+            fermer(conn);
+        }
+        if (lignes == 0) {
+            throw new ErreurHttp(404, "Auteur non trouvé : " + idAuteur);
+        }
+        IndexRecherche.partage().retirerAuteur(idAuteur);
+        return new Reponse(204, null);
+    }
+
+    private Reponse listerIngredients() throws SQLException {
+        List<Main.Ingredient> ingredients = IngredientCache.partage().lister();
+        return new Reponse(flux -> {
+            flux.debutTableau();
+            for (Main.Ingredient ingredient : ingredients) {
+                flux.ingredient(ingredient);
+            }
+            flux.finTableau();
+        });
+    }
+
+    private Reponse ajouterIngredient(Requete requete) throws SQLException, IOException {
+        Map<String, Object> corps = requete.corps();
+        int cote = entier(corps, "cote_sante");
+        if (cote < 1 || cote > 5) {
+            throw new IllegalArgumentException("cote_sante doit être entre 1 et 5");
+        }
+        int id;
+        Connection conn = null;
+        try {
+            conn = DatabaseConnection.getConnection();
+            id = new IngredientRepository(conn).ajouter(new Main.Ingredient(texte(corps, "nom", true), cote));
+        } finally {
+            fermer(conn);
+        }
+        IngredientCache.partage().invalider();
+        return new Reponse(201, Collections.singletonMap("id_ingredient", id));
+    }
+
+    // ---------------------------------------------------------------- journal, recherche, frigo
+
+    private Reponse journal(Requete requete) throws SQLException {
+        String table = requete.parametre("table");
+        String operation = requete.parametre("operation");
+        TraceRepository.Filtre filtre = new TraceRepository.Filtre(requete.date("debut"), requete.date("fin"),
+                table, operation == null ? null : operation.toUpperCase());
+        Timestamp avantDate = requete.date("avant_date");
+        TraceRepository.Curseur avant = avantDate == null ? null
+                : new TraceRepository.Curseur(avantDate, requete.entier("avant_id", Integer.MAX_VALUE));
+
+        TraceRepository.Page page;
+        Connection conn = null;
+        try {
+            conn = DatabaseConnection.getConnection();
+            page = new TraceRepository(conn).lister(filtre, avant, requete.taille("taille", TAILLE_DEFAUT));
+        } finally {
+            fermer(conn);
+        }
+        List<Object> traces = new ArrayList<>(page.traces.size());
+        for (TraceRepository.Trace trace : page.traces) {
+            Map<String, Object> t = new LinkedHashMap<>();
+            t.put("id_trace", trace.id_trace);
+            t.put("table_name", trace.table_name);
+            t.put("operation_type", trace.operation_type);
+            t.put("operation_date", trace.operation_date.toInstant().toString());
+            t.put("record_id", trace.record_id);
+            t.put("record_id2", trace.record_id2 > 0 ? trace.record_id2 : null);
+            t.put("tracking_number", trace.tracking_number);
+            traces.add(t);
+        }
+        Map<String, Object> corps = new LinkedHashMap<>();
+        corps.put("traces", traces);
+        corps.put("suite", page.suite);
+        if (page.curseur != null) {
+            corps.put("avant_date", page.curseur.operation_date.toInstant().toString());
+            corps.put("avant_id", page.curseur.id_trace);
+        }
+        return new Reponse(200, corps);
+    }
+
+    private Reponse rechercher(Requete requete) throws SQLException {
+        String q = requete.parametre("q");
+        if (q == null) {
+            throw new IllegalArgumentException("Paramètre q manquant");
+        }
+        List<Object> corps = new ArrayList<>();
+        for (IndexRecherche.Resultat resultat : IndexRecherche.partage().rechercher(q, requete.taille("max", TAILLE_DEFAUT))) {
+            Map<String, Object> r = new LinkedHashMap<>();
+            r.put("id_recette", resultat.id_recette);
+            r.put("titre", resultat.titre);
+            r.put("score", resultat.score);
+            corps.add(r);
+        }
+        return new Reponse(200, corps);
+    }
+
+    private Reponse frigo(Requete requete) throws SQLException {
+        String liste = requete.parametre("ingredients");
+        if (liste == null) {
+            throw new IllegalArgumentException("Paramètre ingredients manquant");
+        }
+        Set<Integer> frigo = new HashSet<>();
+        for (String id : liste.split(",")) {
+            if (!id.isBlank()) {
+                frigo.add(Integer.parseInt(id.trim()));
+            }
+        }
+        int manquants = requete.entier("manquants", 0);
+        if (manquants < 0) {
+            throw new IllegalArgumentException("manquants ne peut pas être négatif");
+        }
+        List<MoteurFrigo.Correspondance> correspondances =
+                MoteurFrigo.partage().presqueRealisables(frigo, manquants, requete.taille("max", TAILLE_DEFAUT));
+
+        List<Integer> ids = new ArrayList<>(correspondances.size());
+        for (MoteurFrigo.Correspondance c : correspondances) {
+            ids.add(c.id_recette);
+        }
+        Map<Integer, String> titres;
+        Connection conn = null;
+        try {
+            conn = DatabaseConnection.getConnection();
+            titres = new RecetteRepository(conn).titres(ids);
+        } finally {
+            fermer(conn);
+        }
+        List<Object> corps = new ArrayList<>(correspondances.size());
+        for (MoteurFrigo.Correspondance c : correspondances) {
+            Map<String, Object> r = new LinkedHashMap<>();
+            r.put("id_recette", c.id_recette);
+            r.put("titre", titres.get(c.id_recette));
+            r.put("manquants", c.ingredientsManquants);
+            r.put("jaccard", c.jaccard);
+            corps.add(r);
+        }
+        return new Reponse(200, corps);
+    }
+
+    // ---------------------------------------------------------------- métriques
+
+    private Reponse metriques() throws SQLException {
+        StringBuilder sb = new StringBuilder(MesuresJdbc.partage().texte());
+        ConnectionPool.Statistiques pool = DatabaseConnection.getPool().statistiques();
+        sb.append("# TYPE recette_pool_actives gauge\nrecette_pool_actives ").append(pool.actives).append('\n');
+        sb.append("# TYPE recette_pool_libres gauge\nrecette_pool_libres ").append(pool.libres).append('\n');
+        sb.append("# TYPE recette_pool_taille_max gauge\nrecette_pool_taille_max ").append(pool.tailleMax).append('\n');
+        sb.append("# TYPE recette_pool_emprunts_total counter\nrecette_pool_emprunts_total ").append(pool.emprunts).append('\n');
+        sb.append("# TYPE recette_pool_delais_depasses_total counter\nrecette_pool_delais_depasses_total ")
+                .append(pool.delaisDepasses).append('\n');
+        sb.append("# TYPE recette_pool_attente_secondes_total counter\nrecette_pool_attente_secondes_total ")
+                .append(String.format(Locale.ROOT, "%.6f", pool.attenteTotaleNanos / 1e9)).append('\n');
+        sb.append(RecetteCache.partage().texte());
+        return new Reponse(sb.toString());
+    }
+
+    // ---------------------------------------------------------------- conversions
+
+    private static Map<String, Object> json(RecetteRepository.RecetteDetail recette) {
+        Map<String, Object> r = new LinkedHashMap<>();
+        r.put("id_recette", recette.id_recette);
+        r.put("titre", recette.titre);
+        r.put("description", recette.description);
+        if (recette.instructions != null) {
+            r.put("instructions", recette.instructions);
+        }
+        r.put("temps_preparation", recette.temps_preparation);
+        r.put("temps_cuisson", recette.temps_cuisson);
+        r.put("auteur_id", recette.auteur_id);
+        r.put("auteur_nom", recette.auteur_nom);
+        r.put("version", recette.version);
+        r.put("ingredients", json(recette.ingredients));
+        return r;
+    }
+
+    private static List<Object> json(List<RecetteRepository.LigneIngredient> lignes) {
+        List<Object> ingredients = new ArrayList<>(lignes.size());
+        for (RecetteRepository.LigneIngredient ligne : lignes) {
+            Map<String, Object> i = new LinkedHashMap<>();
+            i.put("nom", ligne.nom);
+            i.put("quantite", ligne.quantite);
+            ingredients.add(i);
+        }
+        return ingredients;
+    }
+
+    private static Map<String, Object> json(Main.Auteur auteur) {
+        Map<String, Object> a = new LinkedHashMap<>();
+        a.put("id_auteur", auteur.id_auteur);
+        a.put("nom", auteur.nom);
+        a.put("email", auteur.email);
+        a.put("bio", auteur.bio);
+        return a;
+    }
+
+    private static Map<String, Object> erreur(String message) {
+        return Collections.singletonMap("erreur", message != null ? message : "Erreur inconnue");
+    }
+
+    private static int identifiant(String segment) {
+        try {
+            return Integer.parseInt(segment);
+        } catch (NumberFormatException e) {
+            throw new ErreurHttp(404, "Ressource inconnue");
+        }
+    }
+
+    private static String texte(Map<?, ?> corps, String cle, boolean obligatoire) {
+        Object valeur = corps.get(cle);
+        if (valeur == null || (valeur instanceof String && ((String) valeur).trim().isEmpty())) {
+            if (obligatoire) {
+                throw new IllegalArgumentException(cle + " ne peut pas être vide");
+            }
+            return null;
+        }
+        if (!(valeur instanceof String)) {
+            throw new IllegalArgumentException(cle + " doit être une chaîne");
+        }
+        return (String) valeur;
+    }
+
+    private static int entier(Map<?, ?> corps, String cle) {
+        Object valeur = corps.get(cle);
+        if (!(valeur instanceof Long) || (Long) valeur != ((Long) valeur).intValue()) {
+            throw new IllegalArgumentException(cle + " doit être un entier");
+        }
+        return ((Long) valeur).intValue();
+    }
+
+    private static int positif(Map<?, ?> corps, String cle) {
+        int valeur = entier(corps, cle);
+        if (valeur < 0) {
+            throw new IllegalArgumentException(cle + " ne peut pas être négatif");
+        }
+        return valeur;
+    }
+
+    private static void envoyer(HttpExchange echange, int statut, Object corps) throws IOException {
+        try {
+            if (statut == 204) {
+                echange.sendResponseHeaders(statut, -1);
+                return;
+            }
+            byte[] octets = JsonEcrivain.ecrire(corps).getBytes(StandardCharsets.UTF_8);
+            echange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            echange.sendResponseHeaders(statut, octets.length);
+            try (OutputStream out = echange.getResponseBody()) {
+                out.write(octets);
+            }
+        } finally {
+            echange.close();
+        }
+    }
+
+    private static void envoyerTexte(HttpExchange echange, String texte) throws IOException {
+        try {
+            byte[] octets = texte.getBytes(StandardCharsets.UTF_8);
+            echange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            echange.sendResponseHeaders(200, octets.length);
+            try (OutputStream out = echange.getResponseBody()) {
+                out.write(octets);
+            }
+        } finally {
+            echange.close();
+        }
+    }
+
+    private static void fermer(Connection conn) {
+        try {
+            if (conn != null) conn.close();
+        } catch (SQLException e) {
+            System.out.println("Erreur lors de la fermeture des ressources : " + e.getMessage());
+        }
+    }
+
+    // ---------------------------------------------------------------- types internes
+
+    /**
+     * Requête reçue : chemin découpé, paramètres décodés et corps JSON.
+     */
+    private static final class Requete {
+        final HttpExchange echange;
+        final String[] chemin;
+        final Map<String, String> parametres = new HashMap<>();
+
+        Requete(HttpExchange echange) {
+            this.echange = echange;
+            List<String> segments = new ArrayList<>();
+            for (String segment : echange.getRequestURI().getPath().split("/")) {
+                if (!segment.isEmpty()) {
+                    segments.add(segment);
+                }
+            }
+            this.chemin = segments.toArray(new String[0]);
+            String requete = echange.getRequestURI().getRawQuery();
+            if (requete != null) {
+                for (String paire : requete.split("&")) {
+                    int egal = paire.indexOf('=');
+                    if (egal > 0) {
+                        parametres.put(URLDecoder.decode(paire.substring(0, egal), StandardCharsets.UTF_8),
+                                URLDecoder.decode(paire.substring(egal + 1), StandardCharsets.UTF_8));
+                    }
+                }
+            }
+        }
+
+        /**
+         * Vérifie la méthode HTTP.
+         *
+         * @param premiere La première méthode acceptée
+         * @param autres Les autres méthodes acceptées
+         * @return Vrai si la méthode est la première
+         */
+        boolean selon(String premiere, String... autres) {
+            String methode = echange.getRequestMethod();
+            if (methode.equals(premiere)) {
+                return true;
+            }
+            for (String autre : autres) {
+                if (methode.equals(autre)) {
+                    return false;
+                }
+            }
+            StringJoiner permises = new StringJoiner(", ").add(premiere);
+            for (String autre : autres) {
+                permises.add(autre);
+            }
+            echange.getResponseHeaders().set("Allow", permises.toString());
+            throw new ErreurHttp(405, "Méthode non permise : " + methode);
+        }
+
+        String parametre(String nom) {
+            String valeur = parametres.get(nom);
+            return valeur == null || valeur.isBlank() ? null : valeur.trim();
+        }
+
+        int entier(String nom, int defaut) {
+            String valeur = parametre(nom);
+            return valeur == null ? defaut : Integer.parseInt(valeur);
+        }
+
+        int taille(String nom, int defaut) {
+            int taille = entier(nom, defaut);
+            if (taille < 1) {
+                throw new IllegalArgumentException(nom + " doit être positif");
+            }
+            return Math.min(taille, TAILLE_MAX);
+        }
+
+        Timestamp date(String nom) {
+            String valeur = parametre(nom);
+            if (valeur == null) {
+                return null;
+            }
+            try {
+                return Timestamp.from(Instant.parse(valeur));
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException(nom + " doit être une date ISO-8601 : " + valeur);
+            }
+        }
+
+        Map<String, Object> corps() throws IOException {
+            byte[] octets;
+            try (InputStream in = echange.getRequestBody()) {
+                octets = in.readNBytes(CORPS_MAX + 1);
+            }
+            if (octets.length > CORPS_MAX) {
+                throw new ErreurHttp(413, "Corps de requête trop volumineux");
+            }
+            return JsonLecteur.lireObjet(new String(octets, StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Écriture d'un corps de réponse en flux, avec les ressources qu'elle emprunte.
+     */
+    private interface Ecriture {
+        void ecrire(JsonFlux flux) throws SQLException, IOException;
+    }
+
+    /**
+     * Réponse à envoyer : un corps converti par {@link JsonEcrivain}, ou une écriture en flux
+     * pour les listes dont la taille dépend du catalogue.
+     */
+    private static final class Reponse {
+        final int statut;
+        final Object corps;
+        final Ecriture ecriture;
+        /** Corps en texte brut plutôt qu'en JSON. */
+        final String texte;
+
+        Reponse(int statut, Object corps) {
+            this.statut = statut;
+            this.corps = corps;
+            this.ecriture = null;
+            this.texte = null;
+        }
+
+        Reponse(Ecriture ecriture) {
+            this.statut = 200;
+            this.corps = null;
+            this.ecriture = ecriture;
+            this.texte = null;
+        }
+
+        Reponse(String texte) {
+            this.statut = 200;
+            this.corps = null;
+            this.ecriture = null;
+            this.texte = texte;
+        }
+    }
+
+    /**
+     * Corps de réponse qui n'envoie les en-têtes (200, transfert par morceaux) qu'à la première écriture.
+     */
+    private static final class SortieDifferee extends OutputStream {
+        private final HttpExchange echange;
+        private OutputStream corps;
+        boolean envoyee;
+
+        SortieDifferee(HttpExchange echange) {
+            this.echange = echange;
+        }
+
+        private OutputStream corps() throws IOException {
+            if (!envoyee) {
+                echange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+                echange.sendResponseHeaders(200, 0);
+                corps = echange.getResponseBody();
+                envoyee = true;
+            }
+            return corps;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            corps().write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int debut, int longueur) throws IOException {
+            corps().write(b, debut, longueur);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (envoyee) {
+                corps.flush();
+            }
+        }
+    }
+
+    private static final class ErreurHttp extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        final int statut;
+
+        ErreurHttp(int statut, String message) {
+            super(message);
+            this.statut = statut;
+        }
+    }
+}
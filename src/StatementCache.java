@@ -0,0 +1,154 @@
+import java.sql.*;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache LRU de PreparedStatement pour une connexion, indexé par le texte SQL.
+ * Un même ordre SQL réutilise le curseur déjà analysé au lieu d'être préparé de nouveau.
+ * <p>
+ * Les connexions du pool ont chacune leur cache, qui survit aux emprunts successifs ;
+ * on l'obtient avec {@link #pour(Connection)}. Les requêtes obtenues du cache ne doivent
+ * pas être fermées par l'appelant. Un cache n'est pas thread-safe : il suit la connexion,
+ * qui n'est utilisée que par un emprunteur à la fois.
+ */
+public class StatementCache {
+
+    /** Taille par défaut d'un cache. */
+    public static final int TAILLE_DEFAUT = Integer.getInteger("recette.pool.cacheRequetes", 64);
+
+    private final Connection connexion;
+    private final Map<String, PreparedStatement> requetes;
+    private long succes;
+    private long echecs;
+
+    /**
+     * Crée un cache pour une connexion.
+     *
+     * @param connexion La connexion qui prépare les requêtes
+     * @param tailleMax Le nombre maximal de requêtes conservées
+     */
+    public StatementCache(Connection connexion, int tailleMax) {
+        this.connexion = connexion;
+        this.requetes = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                if (size() > tailleMax) {
+                    fermerRequete(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Retourne le cache de la connexion physique d'une connexion empruntée au pool.
+     * Une connexion ouverte hors du pool n'a pas de cache partagé : son propriétaire crée le
+     * sien avec le constructeur et le vide avant de fermer la connexion.
+     *
+     * @param conn Une connexion empruntée au {@link ConnectionPool}
+     * @return Le cache de requêtes de la connexion
+     * @throws SQLException Si la connexion ne vient pas du pool, ou en cas d'erreur d'accès
+     */
+    public static StatementCache pour(Connection conn) throws SQLException {
+        if (conn.isWrapperFor(StatementCache.class)) {
+            return conn.unwrap(StatementCache.class);
+        }
+        // Un cache par appel ne servirait jamais deux fois et laisserait ses curseurs ouverts
+        throw new SQLException("Connexion hors du pool : aucun cache de requêtes associé.");
+    }
+
+    /**
+     * Retourne une requête préparée pour l'ordre SQL donné.
+     *
+     * @param sql L'ordre SQL
+     * @return La requête préparée, à ne pas fermer
+     * @throws SQLException En cas d'erreur de préparation
+     */
+    public PreparedStatement preparer(String sql) throws SQLException {
+        PreparedStatement ps = requetes.get(sql);
+        if (ps == null || ps.isClosed()) {
+            echecs++;
+            ps = connexion.prepareStatement(sql);
+            requetes.put(sql, ps);
+        } else {
+            succes++;
+        }
+        return ps;
+    }
+
+    /**
+     * Retourne une requête préparée qui renvoie les valeurs des colonnes générées.
+     *
+     * @param sql L'ordre SQL
+     * @param colonnesGenerees Les colonnes dont les valeurs générées sont renvoyées
+     * @return La requête préparée, à ne pas fermer
+     * @throws SQLException En cas d'erreur de préparation
+     */
+    public PreparedStatement preparer(String sql, String... colonnesGenerees) throws SQLException {
+        String cle = sql + "\u0000" + String.join(",", colonnesGenerees);
+        PreparedStatement ps = requetes.get(cle);
+        if (ps == null || ps.isClosed()) {
+            echecs++;
+            ps = connexion.prepareStatement(sql, colonnesGenerees);
+            requetes.put(cle, ps);
+        } else {
+            succes++;
+        }
+        return ps;
+    }
+
+    /**
+     * Retourne un appel de procédure ou de fonction préparé.
+     *
+     * @param sql L'appel au format JDBC, par exemple {? = call PKG.fonction(?)}
+     * @return L'appel préparé, à ne pas fermer
+     * @throws SQLException En cas d'erreur de préparation
+     */
+    public CallableStatement preparerAppel(String sql) throws SQLException {
+        String cle = "\u0001" + sql;
+        PreparedStatement ps = requetes.get(cle);
+        if (ps == null || ps.isClosed()) {
+            echecs++;
+            ps = connexion.prepareCall(sql);
+            requetes.put(cle, ps);
+        } else {
+            succes++;
+        }
+        return (CallableStatement) ps;
+    }
+
+    /**
+     * @return Le nombre de requêtes servies depuis le cache
+     */
+    public long getSucces() {
+        return succes;
+    }
+
+    /**
+     * @return Le nombre de requêtes qui ont dû être préparées
+     */
+    public long getEchecs() {
+        return echecs;
+    }
+
+    /**
+     * Ferme toutes les requêtes du cache.
+     */
+    public void vider() {
+        Iterator<PreparedStatement> it = requetes.values().iterator();
+        while (it.hasNext()) {
+            fermerRequete(it.next());
+            it.remove();
+        }
+    }
+
+    private static void fermerRequete(PreparedStatement ps) {
+        try {
+            ps.close();
+        } catch (SQLException e) {
+            System.out.println("Erreur lors de la fermeture d'une requête en cache : " + e.getMessage());
+        }
+    }
+}
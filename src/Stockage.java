@@ -0,0 +1,72 @@
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Base de données utilisée par l'application.
+ * <p>
+ * {@link DatabaseConnection} crée son pool à partir du stockage choisi par la propriété
+ * recette.stockage : oracle (par défaut, la base du cours) ou h2 (base embarquée dans un
+ * fichier local, créée au premier lancement à partir de reset-h2.sql). Les dépôts ne
+ * dépendent que de JDBC ; seuls le pilote, l'URL et la création du schéma changent.
+ */
+public interface Stockage {
+
+    /**
+     * @return L'URL JDBC de la base
+     */
+    String url();
+
+    /**
+     * @return L'utilisateur de connexion
+     */
+    String utilisateur();
+
+    /**
+     * @return Le mot de passe de connexion
+     */
+    String motDePasse();
+
+    /**
+     * Charge le pilote JDBC s'il ne s'enregistre pas de lui-même.
+     *
+     * @throws SQLException Si le pilote est introuvable
+     */
+    void chargerPilote() throws SQLException;
+
+    /**
+     * Prépare la base sur la première connexion ouverte, par exemple en créant le schéma.
+     *
+     * @param conn Une connexion empruntée au pool
+     * @throws SQLException En cas d'erreur SQL
+     */
+    void preparer(Connection conn) throws SQLException;
+
+    /**
+     * Retourne l'ordre SQL exécuté à l'ouverture de chaque connexion physique, par exemple
+     * pour identifier les sessions de l'application auprès de la base.
+     *
+     * @return L'ordre SQL, ou null s'il n'y en a pas
+     */
+    default String initialisationSession() {
+        return null;
+    }
+
+    /**
+     * Retourne le stockage désigné par la propriété recette.stockage.
+     *
+     * @return Le stockage Oracle ou embarqué
+     * @throws IllegalArgumentException Si la valeur de recette.stockage est inconnue
+     */
+    static Stockage choisir() {
+        String nom = System.getProperty("recette.stockage", "oracle");
+        switch (nom.toLowerCase()) {
+            case "oracle":
+                return new StockageOracle();
+            case "h2":
+            case "embarque":
+                return new StockageEmbarque();
+            default:
+                throw new IllegalArgumentException("Stockage inconnu : " + nom + " (oracle ou h2)");
+        }
+    }
+}
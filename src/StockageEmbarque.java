@@ -0,0 +1,138 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Base H2 embarquée en mode Oracle, pour les lancements locaux, les tests de charge et
+ * l'intégration continue.
+ * <p>
+ * La base est un fichier local (./donnees/recettes par défaut, remplaçable par
+ * -Drecette.db.url). Au premier lancement, le schéma est créé avec reset-h2.sql, le portage
+ * de reset.sql : mêmes tables, index, vues et séquence, donc les mêmes plans d'exécution,
+ * et RECETTE_PKG fourni par {@link FonctionsH2}. Les données d'exemple sont chargées sauf si
+ * recette.embarque.exemples vaut false.
+ */
+public class StockageEmbarque implements Stockage {
+
+    private static final String URL_DEFAUT = "jdbc:h2:file:./donnees/recettes;MODE=Oracle";
+    private static final String SCRIPT = "reset-h2.sql";
+    /** Début des données d'exemple dans le script : tout ce qui précède est le schéma. */
+    private static final String DEBUT_EXEMPLES = "-- INSERTION DES DONNÉES D'EXEMPLE";
+
+    private final String url;
+    private final boolean exemples;
+
+    /**
+     * Crée le stockage décrit par les propriétés recette.db.url et recette.embarque.exemples.
+     */
+    public StockageEmbarque() {
+        this(System.getProperty("recette.db.url", URL_DEFAUT),
+                Boolean.parseBoolean(System.getProperty("recette.embarque.exemples", "true")));
+    }
+
+    /**
+     * @param url L'URL JDBC H2 de la base
+     * @param exemples Vrai pour charger les données d'exemple à la création du schéma
+     */
+    public StockageEmbarque(String url, boolean exemples) {
+        this.url = url;
+        this.exemples = exemples;
+    }
+
+    @Override
+    public String url() {
+        return url;
+    }
+
+    @Override
+    public String utilisateur() {
+        return System.getProperty("recette.db.user", "sa");
+    }
+
+    @Override
+    public String motDePasse() {
+        return System.getProperty("recette.db.password", "");
+    }
+
+    @Override
+    public void chargerPilote() {
+        // Le pilote H2 s'enregistre auprès de DriverManager
+    }
+
+    /**
+     * Crée le schéma si la base est neuve ; une base existante est laissée telle quelle.
+     */
+    @Override
+    public void preparer(Connection conn) throws SQLException {
+        try (ResultSet rs = conn.getMetaData().getTables(null, null, "RECETTE", null)) {
+            if (rs.next()) {
+                return;
+            }
+        }
+        System.out.println("Création du schéma de la base embarquée...");
+        creerSchema(conn, exemples);
+    }
+
+    /**
+     * Exécute reset-h2.sql : supprime tout le contenu de la base et recrée le schéma.
+     *
+     * @param conn La connexion
+     * @param exemples Vrai pour charger aussi les données d'exemple
+     * @throws SQLException En cas d'erreur SQL ou si le script est introuvable
+     */
+    public static void creerSchema(Connection conn, boolean exemples) throws SQLException {
+        String script;
+        try {
+            script = lireScript();
+        } catch (IOException e) {
+            throw new SQLException("Script " + SCRIPT + " illisible", e);
+        }
+        if (!exemples) {
+            int debut = script.indexOf(DEBUT_EXEMPLES);
+            if (debut >= 0) {
+                script = script.substring(0, debut);
+            }
+        }
+        StringBuilder sql = new StringBuilder(script.length());
+        for (String ligne : script.split("\n")) {
+            if (!ligne.trim().startsWith("--")) {
+                sql.append(ligne).append('\n');
+            }
+        }
+        boolean autoCommit = conn.getAutoCommit();
+        try (Statement stmt = conn.createStatement()) {
+            for (String ordre : sql.toString().split(";")) {
+                if (!ordre.isBlank()) {
+                    stmt.execute(ordre);
+                }
+            }
+            if (!autoCommit) {
+                conn.commit();
+            }
+        }
+    }
+
+    /**
+     * Lit le script dans le classpath (jar de l'application), sinon dans src/ pour un
+     * lancement depuis les sources.
+     */
+    private static String lireScript() throws IOException {
+        try (InputStream in = StockageEmbarque.class.getResourceAsStream("/" + SCRIPT)) {
+            if (in != null) {
+                return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            }
+        }
+        Path fichier = Paths.get("src", SCRIPT);
+        if (!Files.exists(fichier)) {
+            throw new IOException(SCRIPT + " introuvable dans le classpath et dans src/");
+        }
+        return new String(Files.readAllBytes(fichier), StandardCharsets.UTF_8);
+    }
+}
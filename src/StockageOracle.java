@@ -0,0 +1,58 @@
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * La base Oracle du cours, dont le schéma est créé à la main avec reset.sql.
+ * Les paramètres de connexion sont remplaçables par -Drecette.db.url, -Drecette.db.user
+ * et -Drecette.db.password.
+ */
+public class StockageOracle implements Stockage {
+
+    // Paramètres de connexion déjà correctement configurés pour Oracle
+    private static final String URL = System.getProperty("recette.db.url", "jdbc:oracle:thin:@//gaia.emp.uqtr.ca:1521/coursbd.uqtr.ca");
+    private static final String USER = System.getProperty("recette.db.user", "SMI1002_029");
+    private static final String PASSWORD = System.getProperty("recette.db.password", "26jvbd88");
+
+    @Override
+    public String url() {
+        return URL;
+    }
+
+    @Override
+    public String utilisateur() {
+        return USER;
+    }
+
+    @Override
+    public String motDePasse() {
+        return PASSWORD;
+    }
+
+    @Override
+    public void chargerPilote() throws SQLException {
+        if (!URL.startsWith("jdbc:oracle:")) {
+            return;
+        }
+        try {
+            Class.forName("oracle.jdbc.driver.OracleDriver");
+        } catch (ClassNotFoundException e) {
+            SQLException erreur = new SQLException("Pilote Oracle JDBC non trouvé : " + e.getMessage(), "08001", e);
+            MesuresJdbc.partage().signalerErreur("Pilote JDBC Oracle introuvable", erreur);
+            throw erreur;
+        }
+    }
+
+    /**
+     * Identifie la session comme une session de l'application : les déclencheurs trg_*_trace
+     * de reset.sql l'écartent, puisque {@link JournalAudit} écrit déjà son journal.
+     */
+    @Override
+    public String initialisationSession() {
+        return URL.startsWith("jdbc:oracle:") ? "BEGIN DBMS_SESSION.SET_IDENTIFIER('BlogRecette'); END;" : null;
+    }
+
+    @Override
+    public void preparer(Connection conn) {
+        // Le schéma existe déjà : il est créé et remis à zéro avec reset.sql
+    }
+}
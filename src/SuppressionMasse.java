@@ -0,0 +1,439 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Suppression en masse d'auteurs ou de recettes, par exemple pour purger les comptes de
+ * pourriel.
+ * <p>
+ * Les identifiants sont traités par lots, une transaction par lot. Chaque lot commence par
+ * verrouiller ses lignes (SELECT ... FOR UPDATE), et pour des auteurs leurs recettes : une
+ * recette ou une liaison ajoutée en même temps attend la fin du lot. Une seule requête relève
+ * ensuite les lignes effacées en cascade (recettes, liaisons Recette_Ingredient) pour le
+ * {@link JournalAudit}, puis un seul DELETE ... WHERE id IN (...) efface le lot ; les
+ * contraintes ON DELETE CASCADE se chargent du reste. Les événements d'audit du lot sont
+ * soumis ensemble juste avant la validation.
+ * <p>
+ * Les purges par critère (auteurs sans recette, recettes sans ingrédient) vérifient de nouveau
+ * le critère en verrouillant le lot, puis dans le DELETE : une ligne qui a reçu une recette ou
+ * un ingrédient depuis le relevé des candidats n'est pas supprimée, et rien n'est effacé en
+ * cascade.
+ * <p>
+ * La liste IN a toujours {@link #tailleLot} paramètres (le dernier lot est complété en
+ * répétant son dernier identifiant), pour que chaque requête reste dans le
+ * {@link StatementCache}. Oracle limite une liste IN à 1000 éléments.
+ */
+public class SuppressionMasse {
+
+    /** Nombre d'identifiants par transaction si aucune taille n'est fournie. */
+    private static final int TAILLE_LOT_DEFAUT = 500;
+    /** Taille maximale d'une liste IN sous Oracle (ORA-01795). */
+    private static final int TAILLE_LOT_MAX = 1000;
+
+    private static final String SANS_RECETTE =
+        "NOT EXISTS (SELECT 1 FROM Recette r WHERE r.auteur_id = a.id_auteur)";
+    private static final String SANS_INGREDIENT =
+        "NOT EXISTS (SELECT 1 FROM Recette_Ingredient ri WHERE ri.id_recette = r.id_recette)";
+    private static final String SQL_AUTEURS_SANS_RECETTE =
+        "SELECT a.id_auteur FROM Auteur a WHERE " + SANS_RECETTE + " ORDER BY a.id_auteur";
+    private static final String SQL_RECETTES_SANS_INGREDIENT =
+        "SELECT r.id_recette FROM Recette r WHERE " + SANS_INGREDIENT + " ORDER BY r.id_recette";
+    // Recette n'a pas de date de création : elle est lue dans le journal (idx_trace_table_op_date)
+    private static final String SQL_RECETTES_CREEES_AVANT =
+        "SELECT DISTINCT t.record_id FROM Trace t " +
+        "JOIN Recette r ON r.id_recette = t.record_id " +
+        "WHERE t.table_name = 'Recette' AND t.operation_type = 'INSERT' AND t.operation_date < ? " +
+        "ORDER BY t.record_id";
+
+    private final Connection conn;
+    private final int tailleLot;
+    private final StatementCache requetes;
+    private final Cible auteurs;
+    private final Cible recettes;
+    private final Cible auteursSansRecette;
+    private final Cible recettesSansIngredient;
+
+    /**
+     * Prépare une suppression sur la connexion donnée.
+     *
+     * @param conn La connexion, réservée à la suppression pendant sa durée
+     * @param tailleLot Le nombre d'identifiants par transaction (1 à 1000)
+     * @throws SQLException En cas d'erreur d'accès à la connexion
+     */
+    public SuppressionMasse(Connection conn, int tailleLot) throws SQLException {
+        if (tailleLot < 1 || tailleLot > TAILLE_LOT_MAX) {
+            throw new IllegalArgumentException("La taille des lots doit être entre 1 et " + TAILLE_LOT_MAX + " : " + tailleLot);
+        }
+        this.conn = conn;
+        this.tailleLot = tailleLot;
+        this.requetes = StatementCache.pour(conn);
+
+        String parametres = "?" + ",?".repeat(tailleLot - 1);
+        String auteursDuLot = "a.id_auteur IN (" + parametres + ")";
+        String recettesDuLot = "r.id_recette IN (" + parametres + ")";
+        this.auteurs = new Cible(true,
+            "SELECT a.id_auteur FROM Auteur a WHERE " + auteursDuLot + " ORDER BY a.id_auteur FOR UPDATE",
+            "SELECT r.id_recette FROM Recette r WHERE r.auteur_id IN (" + parametres + ") FOR UPDATE",
+            "SELECT a.id_auteur, r.id_recette, ri.id_ingredient FROM Auteur a " +
+            "LEFT JOIN Recette r ON r.auteur_id = a.id_auteur " +
+            "LEFT JOIN Recette_Ingredient ri ON ri.id_recette = r.id_recette " +
+            "WHERE " + auteursDuLot + " ORDER BY a.id_auteur, r.id_recette",
+            "DELETE FROM Auteur a WHERE " + auteursDuLot,
+            null);
+        this.recettes = new Cible(false,
+            "SELECT r.id_recette FROM Recette r WHERE " + recettesDuLot + " ORDER BY r.id_recette FOR UPDATE",
+            null,
+            "SELECT r.id_recette, ri.id_ingredient FROM Recette r " +
+            "LEFT JOIN Recette_Ingredient ri ON ri.id_recette = r.id_recette " +
+            "WHERE " + recettesDuLot + " ORDER BY r.id_recette",
+            "DELETE FROM Recette r WHERE " + recettesDuLot,
+            null);
+        this.auteursSansRecette = new Cible(true,
+            "SELECT a.id_auteur FROM Auteur a WHERE " + auteursDuLot + " AND " + SANS_RECETTE +
+            " ORDER BY a.id_auteur FOR UPDATE",
+            null,
+            null,
+            "DELETE FROM Auteur a WHERE " + auteursDuLot + " AND " + SANS_RECETTE,
+            "SELECT a.id_auteur FROM Auteur a WHERE " + auteursDuLot);
+        this.recettesSansIngredient = new Cible(false,
+            "SELECT r.id_recette FROM Recette r WHERE " + recettesDuLot + " AND " + SANS_INGREDIENT +
+            " ORDER BY r.id_recette FOR UPDATE",
+            null,
+            null,
+            "DELETE FROM Recette r WHERE " + recettesDuLot + " AND " + SANS_INGREDIENT,
+            "SELECT r.id_recette FROM Recette r WHERE " + recettesDuLot);
+    }
+
+    /**
+     * Point d'entrée en ligne de commande.
+     *
+     * @param args Le critère et, en option, la taille des lots
+     */
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.out.println("Usage : java SuppressionMasse <critère> [taille des lots]");
+            System.out.println("  auteurs-sans-recette");
+            System.out.println("  recettes-sans-ingredient");
+            System.out.println("  recettes-avant:AAAA-MM-JJ");
+            System.out.println("  auteurs:1,2,3");
+            System.out.println("  recettes:1,2,3");
+            return;
+        }
+        String critere = args[0];
+        int tailleLot = args.length > 1 ? Integer.parseInt(args[1]) : TAILLE_LOT_DEFAUT;
+
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            SuppressionMasse suppression = new SuppressionMasse(conn, tailleLot);
+            Bilan bilan;
+            if (critere.equals("auteurs-sans-recette")) {
+                bilan = suppression.supprimerAuteursSansRecette();
+            } else if (critere.equals("recettes-sans-ingredient")) {
+                bilan = suppression.supprimerRecettesSansIngredient();
+            } else if (critere.startsWith("recettes-avant:")) {
+                LocalDate date = LocalDate.parse(critere.substring("recettes-avant:".length()));
+                bilan = suppression.supprimerRecettes(suppression.recettesCreeesAvant(Timestamp.valueOf(date.atStartOfDay())));
+            } else if (critere.startsWith("auteurs:")) {
+                bilan = suppression.supprimerAuteurs(identifiants(critere.substring("auteurs:".length())));
+            } else if (critere.startsWith("recettes:")) {
+                bilan = suppression.supprimerRecettes(identifiants(critere.substring("recettes:".length())));
+            } else {
+                System.out.println("Critère inconnu : " + critere);
+                return;
+            }
+            IndexRecherche.partage().sauvegarder();
+            System.out.println("\nSuppression terminée :");
+            System.out.println(bilan);
+        } catch (IllegalArgumentException | java.time.DateTimeException e) {
+            System.out.println("Critère invalide : " + e.getMessage());
+        } catch (java.io.IOException e) {
+            System.out.println("Erreur lors de l'enregistrement de l'index : " + e.getMessage());
+        } catch (SQLException e) {
+            MesuresJdbc.partage().signalerErreur("Erreur lors de la suppression", e);
+        } finally {
+            JournalAudit.fermerPartage();
+            DatabaseConnection.closeConnection();
+        }
+    }
+
+    private static List<Integer> identifiants(String liste) {
+        List<Integer> ids = new ArrayList<>();
+        for (String id : liste.split(",")) {
+            if (!id.isBlank()) {
+                ids.add(Integer.parseInt(id.trim()));
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Supprime les auteurs qui n'ont aucune recette. Le critère est vérifié de nouveau dans
+     * chaque lot : un auteur qui a publié une recette depuis le relevé est gardé.
+     *
+     * @return Le bilan de la suppression
+     * @throws SQLException En cas d'erreur SQL ; les lots déjà validés le restent
+     */
+    public Bilan supprimerAuteursSansRecette() throws SQLException {
+        return supprimer(lireIds(requetes.preparer(SQL_AUTEURS_SANS_RECETTE)), auteursSansRecette);
+    }
+
+    /**
+     * Supprime les recettes qui n'ont aucun ingrédient. Le critère est vérifié de nouveau dans
+     * chaque lot : une recette qui a reçu un ingrédient depuis le relevé est gardée.
+     *
+     * @return Le bilan de la suppression
+     * @throws SQLException En cas d'erreur SQL ; les lots déjà validés le restent
+     */
+    public Bilan supprimerRecettesSansIngredient() throws SQLException {
+        return supprimer(lireIds(requetes.preparer(SQL_RECETTES_SANS_INGREDIENT)), recettesSansIngredient);
+    }
+
+    /**
+     * Retourne les recettes créées avant une date, d'après leur insertion dans la table Trace.
+     * Les recettes dont l'insertion n'a pas été journalisée ne sont pas retenues.
+     *
+     * @param date La date limite (exclue)
+     * @return Les identifiants des recettes
+     * @throws SQLException En cas d'erreur SQL
+     */
+    public List<Integer> recettesCreeesAvant(Timestamp date) throws SQLException {
+        PreparedStatement pstmt = requetes.preparer(SQL_RECETTES_CREEES_AVANT);
+        pstmt.setTimestamp(1, date);
+        return lireIds(pstmt);
+    }
+
+    private static List<Integer> lireIds(PreparedStatement pstmt) throws SQLException {
+        List<Integer> ids = new ArrayList<>();
+        try (ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                ids.add(rs.getInt(1));
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Supprime des auteurs avec leurs recettes et les ingrédients liés à celles-ci.
+     * Les identifiants inexistants sont ignorés.
+     *
+     * @param ids Les identifiants des auteurs
+     * @return Le bilan de la suppression
+     * @throws SQLException En cas d'erreur SQL ; les lots déjà validés le restent
+     */
+    public Bilan supprimerAuteurs(Collection<Integer> ids) throws SQLException {
+        return supprimer(ids, auteurs);
+    }
+
+    /**
+     * Supprime des recettes avec leurs liaisons à des ingrédients.
+     * Les identifiants inexistants sont ignorés.
+     *
+     * @param ids Les identifiants des recettes
+     * @return Le bilan de la suppression
+     * @throws SQLException En cas d'erreur SQL ; les lots déjà validés le restent
+     */
+    public Bilan supprimerRecettes(Collection<Integer> ids) throws SQLException {
+        return supprimer(ids, recettes);
+    }
+
+    private Bilan supprimer(Collection<Integer> ids, Cible cible) throws SQLException {
+        Bilan bilan = new Bilan();
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        List<Integer> lot = new ArrayList<>(tailleLot);
+        try {
+            for (Integer id : ids) {
+                lot.add(id);
+                if (lot.size() == tailleLot) {
+                    supprimerLot(lot, bilan, cible);
+                    lot.clear();
+                }
+            }
+            if (!lot.isEmpty()) {
+                supprimerLot(lot, bilan, cible);
+            }
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+        bilan.finNanos = System.nanoTime();
+        return bilan;
+    }
+
+    /**
+     * Supprime un lot dans une transaction : verrou des lignes, relevé des lignes effacées en
+     * cascade, DELETE ensembliste, événements d'audit, validation.
+     */
+    private void supprimerLot(List<Integer> lot, Bilan bilan, Cible cible) throws SQLException {
+        List<JournalAudit.Evenement> evenements = new ArrayList<>();
+        List<Integer> recettesSupprimees = new ArrayList<>();
+        int nbAuteurs = 0;
+        int nbLiens = 0;
+        try {
+            PreparedStatement verrou = requetes.preparer(cible.sqlVerrou);
+            lier(verrou, lot);
+            List<Integer> verrouilles = lireIds(verrou);
+            if (!verrouilles.isEmpty() && cible.sqlVerrouRecettes != null) {
+                PreparedStatement verrouRecettes = requetes.preparer(cible.sqlVerrouRecettes);
+                lier(verrouRecettes, verrouilles);
+                lireIds(verrouRecettes);
+            }
+
+            if (!verrouilles.isEmpty() && cible.sqlCascade != null) {
+                PreparedStatement cascade = requetes.preparer(cible.sqlCascade);
+                lier(cascade, verrouilles);
+                try (ResultSet rs = cascade.executeQuery()) {
+                    int auteurCourant = 0;
+                    int recetteCourante = 0;
+                    while (rs.next()) {
+                        int colonne = 1;
+                        if (cible.auteurs) {
+                            int idAuteur = rs.getInt(colonne++);
+                            if (idAuteur != auteurCourant) {
+                                evenements.add(new JournalAudit.Evenement("Auteur", "DELETE", idAuteur, 0));
+                                nbAuteurs++;
+                                auteurCourant = idAuteur;
+                            }
+                        }
+                        int idRecette = rs.getInt(colonne++);
+                        if (rs.wasNull()) {
+                            continue;
+                        }
+                        if (idRecette != recetteCourante) {
+                            evenements.add(new JournalAudit.Evenement("Recette", "DELETE", idRecette, 0));
+                            recettesSupprimees.add(idRecette);
+                            recetteCourante = idRecette;
+                        }
+                        int idIngredient = rs.getInt(colonne);
+                        if (!rs.wasNull()) {
+                            evenements.add(new JournalAudit.Evenement("Recette_Ingredient", "DELETE", idRecette, idIngredient));
+                            nbLiens++;
+                        }
+                    }
+                }
+            }
+
+            if (!verrouilles.isEmpty()) {
+                PreparedStatement pstmt = requetes.preparer(cible.sqlSupprimer);
+                lier(pstmt, verrouilles);
+                int supprimes = pstmt.executeUpdate();
+                if (cible.sqlCascade == null) {
+                    // Le DELETE vérifie de nouveau le critère : les lignes qui ne le remplissent
+                    // plus sont restées, et aucune ligne n'a été effacée en cascade
+                    List<Integer> supprimees = new ArrayList<>(verrouilles);
+                    if (supprimes < verrouilles.size()) {
+                        PreparedStatement restantes = requetes.preparer(cible.sqlRestantes);
+                        lier(restantes, verrouilles);
+                        supprimees.removeAll(lireIds(restantes));
+                    }
+                    for (int id : supprimees) {
+                        evenements.add(new JournalAudit.Evenement(cible.auteurs ? "Auteur" : "Recette", "DELETE", id, 0));
+                        if (cible.auteurs) {
+                            nbAuteurs++;
+                        } else {
+                            recettesSupprimees.add(id);
+                        }
+                    }
+                }
+                JournalAudit.partage().enregistrer(conn, evenements);
+            }
+            conn.commit();
+        } catch (SQLException | RuntimeException e) {
+            conn.rollback();
+            throw e;
+        }
+
+        bilan.lots++;
+        bilan.demandes += lot.size();
+        bilan.auteurs += nbAuteurs;
+        bilan.recettes += recettesSupprimees.size();
+        bilan.liens += nbLiens;
+        for (int idRecette : recettesSupprimees) {
+            IndexRecherche.partage().retirer(idRecette);
+        }
+        System.out.println((cible.auteurs ? bilan.auteurs + " auteurs" : bilan.recettes + " recettes")
+                + " supprimés (lot " + bilan.lots + ")");
+    }
+
+    /**
+     * Lie les identifiants du lot aux paramètres de la liste IN, en répétant le dernier
+     * pour compléter un lot incomplet.
+     */
+    private void lier(PreparedStatement pstmt, List<Integer> lot) throws SQLException {
+        for (int i = 0; i < tailleLot; i++) {
+            pstmt.setInt(i + 1, lot.get(Math.min(i, lot.size() - 1)));
+        }
+    }
+
+    /**
+     * Requêtes d'une sorte de suppression, construites pour la taille des lots.
+     */
+    private static final class Cible {
+        /** Vrai si le lot contient des auteurs, faux pour des recettes. */
+        final boolean auteurs;
+        /** Verrouille et retourne les lignes du lot qui existent et remplissent le critère. */
+        final String sqlVerrou;
+        /** Verrouille les recettes des auteurs du lot, ou null. */
+        final String sqlVerrouRecettes;
+        /** Relève les lignes effacées en cascade, ou null si le critère exclut toute cascade. */
+        final String sqlCascade;
+        final String sqlSupprimer;
+        /** Relit les lignes du lot encore présentes après le DELETE, pour une purge par critère. */
+        final String sqlRestantes;
+
+        Cible(boolean auteurs, String sqlVerrou, String sqlVerrouRecettes, String sqlCascade,
+              String sqlSupprimer, String sqlRestantes) {
+            this.auteurs = auteurs;
+            this.sqlVerrou = sqlVerrou;
+            this.sqlVerrouRecettes = sqlVerrouRecettes;
+            this.sqlCascade = sqlCascade;
+            this.sqlSupprimer = sqlSupprimer;
+            this.sqlRestantes = sqlRestantes;
+        }
+    }
+
+    /**
+     * Bilan d'une suppression en masse.
+     */
+    public static class Bilan {
+        final long debutNanos = System.nanoTime();
+        long finNanos;
+        /** Transactions validées. */
+        long lots;
+        /** Identifiants reçus. */
+        long demandes;
+        /** Auteurs supprimés. */
+        long auteurs;
+        /** Recettes supprimées, directement ou en cascade. */
+        long recettes;
+        /** Lignes de Recette_Ingredient supprimées en cascade. */
+        long liens;
+
+        public long getAuteurs() {
+            return auteurs;
+        }
+
+        public long getRecettes() {
+            return recettes;
+        }
+
+        public long getLiens() {
+            return liens;
+        }
+
+        @Override
+        public String toString() {
+            long fin = finNanos == 0 ? System.nanoTime() : finNanos;
+            return "Identifiants demandés: " + demandes
+                    + "\nAuteurs supprimés: " + auteurs
+                    + "\nRecettes supprimées: " + recettes
+                    + "\nIngrédients déliés: " + liens
+                    + "\nTransactions: " + lots
+                    + "\nDurée: " + String.format("%.2f", (fin - debutNanos) / 1e9) + " s";
+        }
+    }
+}
@@ -0,0 +1,376 @@
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lecture du journal d'activité (table Trace) alimenté par le {@link JournalAudit}.
+ * <p>
+ * Le journal grossit à chaque écriture : il n'est jamais lu en entier. Les entrées sont
+ * filtrées par période, table et opération, et parcourues par clé sur (operation_date, id_trace)
+ * grâce aux index idx_trace_date, idx_trace_table_date (filtre sur la table) et
+ * idx_trace_table_op_date (filtre sur la table et l'opération), si bien que le coût d'une
+ * page ne dépend pas de la taille du journal.
+ * Les requêtes sont préparées une seule fois par connexion grâce au {@link StatementCache}.
+ */
+public class TraceRepository {
+
+    private static final String SQL_COLONNES =
+        "SELECT id_trace, table_name, operation_type, operation_date, " +
+        "record_id, record_id2, tracking_number FROM Trace";
+
+    // Lectures par la clé primaire, pour la capture des changements
+    private static final String SQL_APRES = SQL_COLONNES +
+        " WHERE id_trace > ? ORDER BY id_trace FETCH FIRST ? ROWS ONLY";
+    private static final String SQL_ENTRE = SQL_COLONNES +
+        " WHERE id_trace BETWEEN ? AND ? ORDER BY id_trace FETCH FIRST ? ROWS ONLY";
+    private static final String SQL_DERNIER = "SELECT NVL(MAX(id_trace), 0) FROM Trace";
+    // Âge de la plus ancienne transaction ouverte, en ms ; START_DATE est à la seconde près
+    private static final String SQL_AGE_TRANSACTION_ORACLE =
+        "SELECT (SYSDATE - MIN(start_date)) * 86400000 + 1000 FROM V$TRANSACTION";
+    private static final String SQL_AGE_TRANSACTION_H2 =
+        "SELECT DATEDIFF('MILLISECOND', MIN(session_start), CURRENT_TIMESTAMP) " +
+        "FROM INFORMATION_SCHEMA.SESSIONS WHERE contains_uncommitted";
+
+    private final Connection conn;
+    private final StatementCache requetes;
+
+    /**
+     * Crée un dépôt travaillant sur la connexion donnée.
+     *
+     * @param conn La connexion empruntée par l'appelant
+     * @throws SQLException En cas d'erreur d'accès à la connexion
+     */
+    public TraceRepository(Connection conn) throws SQLException {
+        this.conn = conn;
+        this.requetes = StatementCache.pour(conn);
+    }
+
+    /**
+     * Retourne une page d'entrées, de la plus récente à la plus ancienne.
+     * La page suivante commence avant {@link Page#curseur}.
+     *
+     * @param filtre Les critères de sélection
+     * @param avant La dernière entrée déjà lue, ou null pour commencer par la plus récente
+     * @param taille Le nombre maximal d'entrées dans la page
+     * @return La page d'entrées
+     * @throws SQLException En cas d'erreur SQL
+     */
+    public Page lister(Filtre filtre, Curseur avant, int taille) throws SQLException {
+        return new Page(lire(filtre, avant, false, taille), taille);
+    }
+
+    /**
+     * Retourne les entrées postérieures à un curseur, de la plus ancienne à la plus récente.
+     *
+     * @param filtre Les critères de sélection
+     * @param apres La dernière entrée déjà lue
+     * @param taille Le nombre maximal d'entrées retournées
+     * @return Les entrées, au plus taille
+     * @throws SQLException En cas d'erreur SQL
+     */
+    public List<Trace> suivre(Filtre filtre, Curseur apres, int taille) throws SQLException {
+        return lire(filtre, apres, true, taille);
+    }
+
+    /**
+     * Retourne les entrées de clé supérieure à une clé donnée, dans l'ordre des clés.
+     *
+     * @param idTrace La dernière clé déjà lue
+     * @param taille Le nombre maximal d'entrées retournées
+     * @return Les entrées, au plus taille
+     * @throws SQLException En cas d'erreur SQL
+     */
+    public List<Trace> apres(long idTrace, int taille) throws SQLException {
+        PreparedStatement pstmt = requetes.preparer(SQL_APRES);
+        pstmt.setLong(1, idTrace);
+        pstmt.setInt(2, taille);
+        return lireTout(pstmt, taille);
+    }
+
+    /**
+     * Retourne les entrées dont la clé est comprise entre deux bornes incluses.
+     *
+     * @param debut La plus petite clé
+     * @param fin La plus grande clé
+     * @param taille Le nombre maximal d'entrées retournées
+     * @return Les entrées, dans l'ordre des clés
+     * @throws SQLException En cas d'erreur SQL
+     */
+    public List<Trace> entre(long debut, long fin, int taille) throws SQLException {
+        PreparedStatement pstmt = requetes.preparer(SQL_ENTRE);
+        pstmt.setLong(1, debut);
+        pstmt.setLong(2, fin);
+        pstmt.setInt(3, taille);
+        return lireTout(pstmt, taille);
+    }
+
+    /**
+     * @return La plus grande clé du journal, 0 s'il est vide
+     * @throws SQLException En cas d'erreur SQL
+     */
+    public long dernierId() throws SQLException {
+        try (ResultSet rs = requetes.preparer(SQL_DERNIER).executeQuery()) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    /**
+     * Retourne depuis combien de temps la plus ancienne transaction encore ouverte dans la
+     * base a commencé, toutes sessions confondues : une clé du journal absente ne peut être
+     * validée que par une transaction commencée avant qu'on la remarque. Oracle la lit dans
+     * V$TRANSACTION (privilège SELECT sur la vue requis) ; H2 ne donne que le début de la
+     * session qui porte la transaction, plus ancien encore.
+     *
+     * @return L'âge en millisecondes, 0 sans transaction ouverte, -1 si la base ne le dit pas
+     * @throws SQLException En cas d'erreur SQL, par exemple sans accès à V$TRANSACTION
+     */
+    public long ageTransactionLaPlusAncienne() throws SQLException {
+        String produit = conn.getMetaData().getDatabaseProductName();
+        String sql;
+        if (produit.startsWith("Oracle")) {
+            sql = SQL_AGE_TRANSACTION_ORACLE;
+        } else if (produit.startsWith("H2")) {
+            sql = SQL_AGE_TRANSACTION_H2;
+        } else {
+            return -1;
+        }
+        try (ResultSet rs = requetes.preparer(sql).executeQuery()) {
+            return rs.next() ? Math.max(0, rs.getLong(1)) : 0;
+        }
+    }
+
+    private static List<Trace> lireTout(PreparedStatement pstmt, int taille) throws SQLException {
+        pstmt.setFetchSize(Math.min(taille, 500));
+        List<Trace> traces = new ArrayList<>(Math.min(taille, 500));
+        try (ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                traces.add(lire(rs));
+            }
+        }
+        return traces;
+    }
+
+    private List<Trace> lire(Filtre filtre, Curseur curseur, boolean croissant, int taille) throws SQLException {
+        StringBuilder sql = new StringBuilder(SQL_COLONNES).append(" WHERE 1 = 1");
+        if (filtre.table != null) {
+            sql.append(" AND table_name = ?");
+        }
+        if (filtre.operation != null) {
+            sql.append(" AND operation_type = ?");
+        }
+        if (filtre.debut != null) {
+            sql.append(" AND operation_date >= ?");
+        }
+        if (filtre.fin != null) {
+            sql.append(" AND operation_date < ?");
+        }
+        // Position par clé, écrite pour que la borne sur operation_date guide le parcours d'index
+        if (curseur != null) {
+            sql.append(croissant
+                    ? " AND operation_date >= ? AND (operation_date > ? OR id_trace > ?)"
+                    : " AND operation_date <= ? AND (operation_date < ? OR id_trace < ?)");
+        }
+        sql.append(croissant
+                ? " ORDER BY operation_date, id_trace"
+                : " ORDER BY operation_date DESC, id_trace DESC");
+        sql.append(" FETCH FIRST ? ROWS ONLY");
+
+        PreparedStatement pstmt = requetes.preparer(sql.toString());
+        int i = 1;
+        if (filtre.table != null) {
+            pstmt.setString(i++, filtre.table);
+        }
+        if (filtre.operation != null) {
+            pstmt.setString(i++, filtre.operation);
+        }
+        if (filtre.debut != null) {
+            pstmt.setTimestamp(i++, filtre.debut);
+        }
+        if (filtre.fin != null) {
+            pstmt.setTimestamp(i++, filtre.fin);
+        }
+        if (curseur != null) {
+            pstmt.setTimestamp(i++, curseur.operation_date);
+            pstmt.setTimestamp(i++, curseur.operation_date);
+            pstmt.setLong(i++, curseur.id_trace);
+        }
+        pstmt.setInt(i, taille);
+        return lireTout(pstmt, taille);
+    }
+
+    static Trace lire(ResultSet rs) throws SQLException {
+        return new Trace(rs.getLong("id_trace"), rs.getString("table_name"), rs.getString("operation_type"),
+                rs.getTimestamp("operation_date"), rs.getInt("record_id"), rs.getInt("record_id2"),
+                rs.getLong("tracking_number"));
+    }
+
+    /**
+     * Critères de sélection des entrées ; un critère null ne filtre pas.
+     */
+    static class Filtre {
+        /** Début de la période, inclus. */
+        final Timestamp debut;
+        /** Fin de la période, exclue. */
+        final Timestamp fin;
+        /** Table modifiée. */
+        final String table;
+        /** INSERT, UPDATE ou DELETE. */
+        final String operation;
+
+        /** Aucun critère : tout le journal. */
+        static final Filtre TOUT = new Filtre(null, null, null, null);
+
+        Filtre(Timestamp debut, Timestamp fin, String table, String operation) {
+            this.debut = debut;
+            this.fin = fin;
+            this.table = table;
+            this.operation = operation;
+        }
+    }
+
+    /**
+     * Position d'une entrée dans l'ordre (operation_date, id_trace).
+     */
+    static class Curseur {
+        final Timestamp operation_date;
+        final long id_trace;
+
+        Curseur(Timestamp operation_date, long id_trace) {
+            this.operation_date = operation_date;
+            this.id_trace = id_trace;
+        }
+
+        /**
+         * @param trace Une entrée du journal
+         * @return La position de cette entrée
+         */
+        static Curseur de(Trace trace) {
+            return new Curseur(trace.operation_date, trace.id_trace);
+        }
+    }
+
+    /**
+     * Page d'entrées obtenue par {@link #lister}.
+     */
+    static class Page {
+        /** Entrées de la page, de la plus récente à la plus ancienne. */
+        final List<Trace> traces;
+        /** Position de la dernière entrée de la page, point de départ de la suivante. */
+        final Curseur curseur;
+        /** Faux si l'on sait qu'aucune entrée ne suit cette page. */
+        final boolean suite;
+
+        Page(List<Trace> traces, int taille) {
+            this.traces = traces;
+            this.curseur = traces.isEmpty() ? null : Curseur.de(traces.get(traces.size() - 1));
+            this.suite = traces.size() == taille;
+        }
+    }
+
+    /**
+     * Suivi des nouvelles entrées du journal, appel après appel.
+     * <p>
+     * La date d'une entrée est celle de l'opération, pas celle de sa validation : une entrée
+     * écrite par lot peut apparaître après une entrée plus récente. Chaque appel relit donc
+     * une marge de temps avant le curseur et écarte les entrées déjà rendues.
+     */
+    static class Suivi {
+        private final Filtre filtre;
+        private final long margeMs;
+        /** Position de départ : les entrées qui la précèdent ne sont jamais rendues. */
+        private final Curseur origine;
+        private Curseur curseur;
+        /** Entrées déjà rendues dans la marge, avec leur date en millisecondes. */
+        private final Map<Long, Long> rendues = new HashMap<>();
+
+        /**
+         * @param filtre Les critères de sélection
+         * @param depuis La dernière entrée déjà affichée, ou null pour partir de maintenant
+         * @param margeMs La durée relue avant le curseur à chaque appel
+         */
+        Suivi(Filtre filtre, Curseur depuis, long margeMs) {
+            this.filtre = filtre;
+            this.margeMs = margeMs;
+            this.origine = depuis != null ? depuis : new Curseur(new Timestamp(System.currentTimeMillis()), 0);
+            this.curseur = origine;
+        }
+
+        /**
+         * Retourne les entrées apparues depuis l'appel précédent, de la plus ancienne à la plus récente.
+         *
+         * @param depot Le dépôt à interroger
+         * @param taille Le nombre d'entrées lues par requête
+         * @return Les nouvelles entrées
+         * @throws SQLException En cas d'erreur SQL
+         */
+        List<Trace> nouvelles(TraceRepository depot, int taille) throws SQLException {
+            long limite = curseur.operation_date.getTime() - margeMs;
+            Curseur position = new Curseur(new Timestamp(limite), 0);
+            List<Trace> nouvelles = new ArrayList<>();
+            List<Trace> lues;
+            do {
+                lues = depot.suivre(filtre, position, taille);
+                for (Trace trace : lues) {
+                    if (!apresOrigine(trace)) {
+                        continue;
+                    }
+                    if (rendues.put(trace.id_trace, trace.operation_date.getTime()) == null) {
+                        nouvelles.add(trace);
+                    }
+                }
+                if (!lues.isEmpty()) {
+                    position = Curseur.de(lues.get(lues.size() - 1));
+                    if (position.operation_date.after(curseur.operation_date)) {
+                        curseur = position;
+                    }
+                }
+            } while (lues.size() == taille);
+
+            // On oublie les entrées sorties de la marge : elles ne seront plus relues
+            long oubli = curseur.operation_date.getTime() - margeMs;
+            for (Iterator<Long> it = rendues.values().iterator(); it.hasNext(); ) {
+                if (it.next() < oubli) {
+                    it.remove();
+                }
+            }
+            return nouvelles;
+        }
+
+        private boolean apresOrigine(Trace trace) {
+            int ordre = trace.operation_date.compareTo(origine.operation_date);
+            return ordre > 0 || (ordre == 0 && trace.id_trace > origine.id_trace);
+        }
+    }
+
+    /**
+     * Entrée du journal d'activité.
+     */
+    static class Trace {
+        final long id_trace;
+        /** Table modifiée. */
+        final String table_name;
+        /** INSERT, UPDATE ou DELETE. */
+        final String operation_type;
+        final Timestamp operation_date;
+        /** Clé de la ligne modifiée. */
+        final int record_id;
+        /** Second élément de la clé pour Recette_Ingredient, 0 sinon. */
+        final int record_id2;
+        /** Numéro de suivi tiré de seq_tracking_number. */
+        final long tracking_number;
+
+        Trace(long id_trace, String table_name, String operation_type, Timestamp operation_date,
+              int record_id, int record_id2, long tracking_number) {
+            this.id_trace = id_trace;
+            this.table_name = table_name;
+            this.operation_type = operation_type;
+            this.operation_date = operation_date;
+            this.record_id = record_id;
+            this.record_id2 = record_id2;
+            this.tracking_number = tracking_number;
+        }
+    }
+}
@@ -0,0 +1,209 @@
+-- PETIT RESET, version portable de reset.sql pour la base H2 embarquée (mode Oracle).
+-- Chargé par StockageEmbarque à la création de la base. Différences avec reset.sql :
+-- les suppressions se font par DROP ALL OBJECTS, et RECETTE_PKG est un schéma dont les
+-- fonctions sont des alias vers les méthodes Java de FonctionsH2 (pas de PL/SQL).
+-- Les ordres sont séparés par des points-virgules et les lignes de commentaire sont ignorées.
+
+DROP ALL OBJECTS;
+
+
+-- CRÉATION DES TABLES
+
+
+-- Table Auteur
+CREATE TABLE Auteur (
+  id_auteur NUMBER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+  nom VARCHAR2(100) NOT NULL,
+  email VARCHAR2(150) UNIQUE NOT NULL,
+  bio VARCHAR2(1000)
+);
+
+-- Table Recette
+CREATE TABLE Recette (
+  id_recette NUMBER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+  titre VARCHAR2(200) NOT NULL,
+  description CLOB,
+  instructions CLOB,
+  temps_preparation NUMBER(3),
+  temps_cuisson NUMBER(3),
+  auteur_id NUMBER NOT NULL,
+  -- Incrémentée à chaque modification : concurrence optimiste des éditions (EditionRecette)
+  version NUMBER DEFAULT 0 NOT NULL,
+  CONSTRAINT fk_recette_auteur
+    FOREIGN KEY (auteur_id)
+    REFERENCES Auteur(id_auteur)
+    ON DELETE CASCADE
+);
+-- Index de la clé étrangère : la suppression d'un auteur retrouve ses recettes sans
+-- parcourir toute la table (Oracle n'indexe pas les clés étrangères)
+CREATE INDEX idx_recette_auteur ON Recette (auteur_id, id_recette);
+
+-- Table Ingredient
+CREATE TABLE Ingredient (
+  id_ingredient NUMBER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+  nom VARCHAR2(100) NOT NULL,
+  cote_sante NUMBER(1) NOT NULL CHECK (cote_sante BETWEEN 1 AND 5)
+);
+
+-- Table de liaison Recette_Ingredient
+CREATE TABLE Recette_Ingredient (
+  id_recette NUMBER NOT NULL,
+  id_ingredient NUMBER NOT NULL,
+  quantite VARCHAR2(100) NOT NULL,
+  PRIMARY KEY (id_recette, id_ingredient),
+  CONSTRAINT fk_ri_recette
+    FOREIGN KEY (id_recette)
+    REFERENCES Recette(id_recette)
+    ON DELETE CASCADE,
+  CONSTRAINT fk_ri_ingredient
+    FOREIGN KEY (id_ingredient)
+    REFERENCES Ingredient(id_ingredient)
+    ON DELETE CASCADE
+);
+
+-- Table Trace
+CREATE TABLE Trace (
+  id_trace NUMBER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+  table_name VARCHAR2(50) NOT NULL,
+  operation_type VARCHAR2(10) NOT NULL,
+  operation_date TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+  record_id NUMBER,
+  record_id2 NUMBER,
+  tracking_number NUMBER
+);
+-- Index du journal : parcours par clé (operation_date, id_trace), sans filtre, filtré sur
+-- la table, ou sur la table et l'opération. Un filtre sur l'opération seule parcourt
+-- idx_trace_date (trois opérations possibles).
+CREATE INDEX idx_trace_date ON Trace (operation_date, id_trace);
+CREATE INDEX idx_trace_table_date ON Trace (table_name, operation_date, id_trace);
+CREATE INDEX idx_trace_table_op_date ON Trace (table_name, operation_type, operation_date, id_trace);
+-- Résumé de chaque recette, tenu à jour par l'application à chaque écriture sur Recette
+-- ou Recette_Ingredient (RecetteRepository.SQL_RESUMER) : les listes par temps total et par
+-- cote santé sont des parcours d'index, sans jointure ni tri. Les écritures faites hors de
+-- l'application ne le mettent pas à jour : le recalculer ensuite avec
+-- « Main --reconstruire-resumes » (RecetteRepository.reconstruireResumes).
+CREATE TABLE Recette_Resume (
+  id_recette NUMBER PRIMARY KEY,
+  titre VARCHAR2(200) NOT NULL,
+  auteur_id NUMBER NOT NULL,
+  auteur_nom VARCHAR2(100) NOT NULL,
+  temps_total NUMBER(4) NOT NULL,
+  nb_ingredients NUMBER NOT NULL,
+  somme_cotes NUMBER NOT NULL,
+  cote_dixiemes NUMBER(2) NOT NULL,
+  CONSTRAINT fk_resume_recette
+    FOREIGN KEY (id_recette)
+    REFERENCES Recette(id_recette)
+    ON DELETE CASCADE
+);
+CREATE INDEX idx_resume_temps ON Recette_Resume (temps_total, id_recette);
+CREATE INDEX idx_resume_sante ON Recette_Resume (cote_dixiemes DESC, id_recette);
+-- Création d'une séquence pour numéros de suivi des transactions.
+-- L'application réserve les numéros par blocs de 100 (JournalAudit.TAILLE_BLOC) :
+-- chaque NEXTVAL donne le premier numéro d'un bloc.
+CREATE SEQUENCE seq_tracking_number
+  START WITH 1
+  INCREMENT BY 100
+  NOCYCLE;
+
+
+-- VUES ET FONCTIONS
+
+
+CREATE OR REPLACE VIEW Vue_Recette_Details AS
+SELECT 
+    r.id_recette,
+    r.titre,
+    a.nom AS auteur_nom,
+    (NVL(r.temps_preparation, 0) + NVL(r.temps_cuisson, 0)) AS temps_total
+FROM 
+    Recette r
+JOIN 
+    Auteur a ON r.auteur_id = a.id_auteur;
+
+
+CREATE OR REPLACE VIEW Vue_Ingredients_Recette AS
+SELECT 
+    r.id_recette,
+    r.titre AS recette,
+    i.nom AS ingredient,
+    ri.quantite
+FROM 
+    Recette_Ingredient ri
+JOIN 
+    Recette r ON ri.id_recette = r.id_recette
+JOIN 
+    Ingredient i ON ri.id_ingredient = i.id_ingredient;
+
+CREATE SCHEMA RECETTE_PKG;
+-- Cote santé moyenne d'une recette, ROUND(AVG(i.cote_sante), 1)
+CREATE ALIAS RECETTE_PKG.GET_COTE_SANTE FOR "FonctionsH2.coteSante";
+-- Ingrédients d'une recette sous forme de texte, triés par nom
+CREATE ALIAS RECETTE_PKG.GET_INGREDIENTS_TEXTE FOR "FonctionsH2.ingredientsTexte";
+
+
+-- INSERTION DES DONNÉES D'EXEMPLE
+
+
+-- Auteurs
+INSERT INTO Auteur (nom, email, bio) VALUES ('Marie Tremblay', 'marie@recettesqc.ca', 'Passionnée de cuisine maison et de plats traditionnels québécois.');
+INSERT INTO Auteur (nom, email, bio) VALUES ('Olivier Gagnon', 'olivier@veggieblog.com', 'Chef végétarien amateur qui aime réinventer les classiques.');
+INSERT INTO Auteur (nom, email, bio) VALUES ('Sophie Moreau', 'sophie@santedelice.ca', 'Spécialisée en cuisine santé et recettes rapides.');
+
+-- Ingrédients
+INSERT INTO Ingredient (nom, cote_sante) VALUES ('Oeuf', 4);
+INSERT INTO Ingredient (nom, cote_sante) VALUES ('Farine blanche', 2);
+INSERT INTO Ingredient (nom, cote_sante) VALUES ('Épinards', 5);
+INSERT INTO Ingredient (nom, cote_sante) VALUES ('Lait', 3);
+INSERT INTO Ingredient (nom, cote_sante) VALUES ('Pâtes de blé entier', 4);
+INSERT INTO Ingredient (nom, cote_sante) VALUES ('Beurre', 1);
+
+-- Recettes
+INSERT INTO Recette (titre, description, instructions, temps_preparation, temps_cuisson, auteur_id)
+VALUES ('Crêpes maison', 'Des crêpes moelleuses parfaites pour le déjeuner.', '1. Mélanger les ingrédients. 2. Cuire à feu moyen.', 10, 5, 1);
+
+INSERT INTO Recette (titre, description, instructions, temps_preparation, temps_cuisson, auteur_id)
+VALUES ('Salade d''épinards', 'Une salade simple et rafraîchissante.', '1. Laver les épinards. 2. Ajouter vinaigrette au goût.', 5, 0, 3);
+
+INSERT INTO Recette (titre, description, instructions, temps_preparation, temps_cuisson, auteur_id)
+VALUES ('Pâtes aux épinards et œufs', 'Pâtes santé avec œufs pochés et épinards.', '1. Cuire les pâtes. 2. Ajouter œufs pochés et épinards sautés.', 15, 10, 2);
+
+INSERT INTO Recette (titre, description, instructions, temps_preparation, temps_cuisson, auteur_id)
+VALUES ('Oeufs brouillés au beurre', 'Classique rapide pour le matin.', '1. Battre les œufs. 2. Cuire avec beurre à feu doux.', 3, 5, 1);
+
+-- Recette_Ingredient (liaisons avec quantités)
+INSERT INTO Recette_Ingredient VALUES (1, 1, '2 œufs');
+INSERT INTO Recette_Ingredient VALUES (1, 2, '1 tasse de farine');
+INSERT INTO Recette_Ingredient VALUES (1, 4, '1 tasse de lait');
+INSERT INTO Recette_Ingredient VALUES (2, 3, '2 tasses d’épinards');
+INSERT INTO Recette_Ingredient VALUES (3, 1, '2 œufs');
+INSERT INTO Recette_Ingredient VALUES (3, 3, '1 tasse d’épinards');
+INSERT INTO Recette_Ingredient VALUES (3, 5, '200g de pâtes');
+INSERT INTO Recette_Ingredient VALUES (4, 1, '3 œufs');
+INSERT INTO Recette_Ingredient VALUES (4, 6, '1 c. à soupe de beurre');
+
+-- Journal des données d'exemple : la base embarquée n'a pas les déclencheurs trg_*_trace
+-- de reset.sql, et seules les écritures de l'application (JournalAudit) sont journalisées.
+-- Un numéro de suivi par ligne, comme log_transaction.
+INSERT INTO Trace (table_name, operation_type, record_id, tracking_number)
+SELECT 'Auteur', 'INSERT', id_auteur, seq_tracking_number.NEXTVAL FROM (SELECT id_auteur FROM Auteur ORDER BY id_auteur);
+INSERT INTO Trace (table_name, operation_type, record_id, tracking_number)
+SELECT 'Ingredient', 'INSERT', id_ingredient, seq_tracking_number.NEXTVAL FROM (SELECT id_ingredient FROM Ingredient ORDER BY id_ingredient);
+INSERT INTO Trace (table_name, operation_type, record_id, tracking_number)
+SELECT 'Recette', 'INSERT', id_recette, seq_tracking_number.NEXTVAL FROM (SELECT id_recette FROM Recette ORDER BY id_recette);
+INSERT INTO Trace (table_name, operation_type, record_id, record_id2, tracking_number)
+SELECT 'Recette_Ingredient', 'INSERT', id_recette, id_ingredient, seq_tracking_number.NEXTVAL
+FROM (SELECT id_recette, id_ingredient FROM Recette_Ingredient ORDER BY id_recette, id_ingredient);
+
+-- Résumés des recettes d'exemple
+INSERT INTO Recette_Resume (id_recette, titre, auteur_id, auteur_nom, temps_total, nb_ingredients, somme_cotes, cote_dixiemes)
+SELECT r.id_recette, r.titre, r.auteur_id, a.nom,
+       NVL(r.temps_preparation, 0) + NVL(r.temps_cuisson, 0),
+       COUNT(i.id_ingredient), NVL(SUM(i.cote_sante), 0),
+       CASE WHEN COUNT(i.id_ingredient) = 0 THEN 0
+            ELSE FLOOR((20 * SUM(i.cote_sante) + COUNT(i.id_ingredient)) / (2 * COUNT(i.id_ingredient))) END
+FROM Recette r
+JOIN Auteur a ON r.auteur_id = a.id_auteur
+LEFT JOIN Recette_Ingredient ri ON r.id_recette = ri.id_recette
+LEFT JOIN Ingredient i ON ri.id_ingredient = i.id_ingredient
+GROUP BY r.id_recette, r.titre, r.auteur_id, a.nom, r.temps_preparation, r.temps_cuisson;
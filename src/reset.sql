@@ -1,6 +1,14 @@
 -- PETIT RESET
 
 -- Suppression des tables existantes
+BEGIN
+  EXECUTE IMMEDIATE 'DROP TABLE Recette_Resume CASCADE CONSTRAINTS';
+EXCEPTION
+  WHEN OTHERS THEN
+    NULL;
+END;
+/
+
 BEGIN
   EXECUTE IMMEDIATE 'DROP TABLE Recette_Ingredient CASCADE CONSTRAINTS';
   EXECUTE IMMEDIATE 'DROP TABLE Recette CASCADE CONSTRAINTS';
@@ -35,11 +43,16 @@ CREATE TABLE Recette (
   temps_preparation NUMBER(3),
   temps_cuisson NUMBER(3),
   auteur_id NUMBER NOT NULL,
+  -- Incrémentée à chaque modification : concurrence optimiste des éditions (EditionRecette)
+  version NUMBER DEFAULT 0 NOT NULL,
   CONSTRAINT fk_recette_auteur
     FOREIGN KEY (auteur_id)
     REFERENCES Auteur(id_auteur)
     ON DELETE CASCADE
 );
+-- Index de la clé étrangère : la suppression d'un auteur retrouve ses recettes sans
+-- parcourir toute la table (Oracle n'indexe pas les clés étrangères)
+CREATE INDEX idx_recette_auteur ON Recette (auteur_id, id_recette);
 
 -- Table Ingredient
 CREATE TABLE Ingredient (
@@ -74,18 +87,52 @@ CREATE TABLE Trace (
   record_id2 NUMBER,
   tracking_number NUMBER
 );
--- Création d'une séquence pour numéros de suivi des transactions
+-- Index du journal : parcours par clé (operation_date, id_trace), sans filtre, filtré sur
+-- la table, ou sur la table et l'opération. Un filtre sur l'opération seule parcourt
+-- idx_trace_date (trois opérations possibles).
+CREATE INDEX idx_trace_date ON Trace (operation_date, id_trace);
+CREATE INDEX idx_trace_table_date ON Trace (table_name, operation_date, id_trace);
+CREATE INDEX idx_trace_table_op_date ON Trace (table_name, operation_type, operation_date, id_trace);
+-- Résumé de chaque recette, tenu à jour par l'application à chaque écriture sur Recette
+-- ou Recette_Ingredient (RecetteRepository.SQL_RESUMER) : les listes par temps total et par
+-- cote santé sont des parcours d'index, sans jointure ni tri. Les écritures faites hors de
+-- l'application ne le mettent pas à jour : le recalculer ensuite avec
+-- « Main --reconstruire-resumes » (RecetteRepository.reconstruireResumes).
+CREATE TABLE Recette_Resume (
+  id_recette NUMBER PRIMARY KEY,
+  titre VARCHAR2(200) NOT NULL,
+  auteur_id NUMBER NOT NULL,
+  auteur_nom VARCHAR2(100) NOT NULL,
+  temps_total NUMBER(4) NOT NULL,
+  nb_ingredients NUMBER NOT NULL,
+  somme_cotes NUMBER NOT NULL,
+  cote_dixiemes NUMBER(2) NOT NULL,
+  CONSTRAINT fk_resume_recette
+    FOREIGN KEY (id_recette)
+    REFERENCES Recette(id_recette)
+    ON DELETE CASCADE
+);
+CREATE INDEX idx_resume_temps ON Recette_Resume (temps_total, id_recette);
+CREATE INDEX idx_resume_sante ON Recette_Resume (cote_dixiemes DESC, id_recette);
+-- Création d'une séquence pour numéros de suivi des transactions.
+-- L'application réserve les numéros par blocs de 100 (JournalAudit.TAILLE_BLOC) :
+-- chaque NEXTVAL donne le premier numéro d'un bloc.
 CREATE SEQUENCE seq_tracking_number
   START WITH 1
-  INCREMENT BY 1
-  NOCACHE
+  INCREMENT BY 100
   NOCYCLE;
 
  
 -- IMPLÉMENTATION DU JOURNAL DE TRACE
 
+-- L'application écrit elle-même le journal (classe JournalAudit), par lots et hors des
+-- déclencheurs. Ses sessions s'identifient par DBMS_SESSION.SET_IDENTIFIER('BlogRecette')
+-- (StockageOracle) : la clause WHEN écarte alors les déclencheurs sans exécuter leur corps.
+-- Les écritures des autres sessions (ce script, SQL*Plus, autres clients) restent
+-- journalisées ligne par ligne, comme avant.
 
--- Création de la procédure de journalisation
+-- Création de la procédure de journalisation. Chaque appel prend un numéro de suivi
+-- (le premier d'un bloc de 100) : il ne croise jamais ceux distribués par l'application.
 CREATE OR REPLACE PROCEDURE log_transaction(
   p_table_name IN VARCHAR2,
   p_operation_type IN VARCHAR2,
@@ -106,6 +153,7 @@ END;
 CREATE OR REPLACE TRIGGER trg_auteur_trace
 AFTER INSERT OR UPDATE OR DELETE ON Auteur
 FOR EACH ROW
+WHEN (NVL(SYS_CONTEXT('USERENV', 'CLIENT_IDENTIFIER'), '-') <> 'BlogRecette')
 BEGIN
   IF INSERTING THEN
     log_transaction('Auteur', 'INSERT', :NEW.id_auteur);
@@ -121,6 +169,7 @@ END;
 CREATE OR REPLACE TRIGGER trg_recette_trace
 AFTER INSERT OR UPDATE OR DELETE ON Recette
 FOR EACH ROW
+WHEN (NVL(SYS_CONTEXT('USERENV', 'CLIENT_IDENTIFIER'), '-') <> 'BlogRecette')
 BEGIN
   IF INSERTING THEN
     log_transaction('Recette', 'INSERT', :NEW.id_recette);
@@ -136,6 +185,7 @@ END;
 CREATE OR REPLACE TRIGGER trg_ingredient_trace
 AFTER INSERT OR UPDATE OR DELETE ON Ingredient
 FOR EACH ROW
+WHEN (NVL(SYS_CONTEXT('USERENV', 'CLIENT_IDENTIFIER'), '-') <> 'BlogRecette')
 BEGIN
   IF INSERTING THEN
     log_transaction('Ingredient', 'INSERT', :NEW.id_ingredient);
@@ -151,6 +201,7 @@ END;
 CREATE OR REPLACE TRIGGER trg_recette_ingredient_trace
 AFTER INSERT OR UPDATE OR DELETE ON Recette_Ingredient
 FOR EACH ROW
+WHEN (NVL(SYS_CONTEXT('USERENV', 'CLIENT_IDENTIFIER'), '-') <> 'BlogRecette')
 BEGIN
   IF INSERTING THEN
     log_transaction('Recette_Ingredient', 'INSERT', :NEW.id_recette, :NEW.id_ingredient);
@@ -203,6 +254,19 @@ INSERT INTO Recette_Ingredient VALUES (3, 5, '200g de pâtes');
 INSERT INTO Recette_Ingredient VALUES (4, 1, '3 œufs');
 INSERT INTO Recette_Ingredient VALUES (4, 6, '1 c. à soupe de beurre');
 
+-- Résumés des recettes d'exemple
+INSERT INTO Recette_Resume (id_recette, titre, auteur_id, auteur_nom, temps_total, nb_ingredients, somme_cotes, cote_dixiemes)
+SELECT r.id_recette, r.titre, r.auteur_id, a.nom,
+       NVL(r.temps_preparation, 0) + NVL(r.temps_cuisson, 0),
+       COUNT(i.id_ingredient), NVL(SUM(i.cote_sante), 0),
+       CASE WHEN COUNT(i.id_ingredient) = 0 THEN 0
+            ELSE FLOOR((20 * SUM(i.cote_sante) + COUNT(i.id_ingredient)) / (2 * COUNT(i.id_ingredient))) END
+FROM Recette r
+JOIN Auteur a ON r.auteur_id = a.id_auteur
+LEFT JOIN Recette_Ingredient ri ON r.id_recette = ri.id_recette
+LEFT JOIN Ingredient i ON ri.id_ingredient = i.id_ingredient
+GROUP BY r.id_recette, r.titre, r.auteur_id, a.nom, r.temps_preparation, r.temps_cuisson;
+
 
 CREATE OR REPLACE VIEW Vue_Recette_Details AS
 SELECT 